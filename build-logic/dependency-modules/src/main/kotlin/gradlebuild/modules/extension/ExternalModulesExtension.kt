@@ -148,6 +148,7 @@ abstract class ExternalModulesExtension {
     val jacksonKotlin = "com.fasterxml.jackson.module:jackson-module-kotlin"
     val javaParser = "com.github.javaparser:javaparser-core"
     val jetty = "org.eclipse.jetty:jetty-http"
+    val jettyHttp2Server = "org.eclipse.jetty.http2:http2-server"
     val jettySecurity = "org.eclipse.jetty:jetty-security"
     val jettyWebApp = "org.eclipse.jetty:jetty-webapp"
     val joptSimple = "net.sf.jopt-simple:jopt-simple"
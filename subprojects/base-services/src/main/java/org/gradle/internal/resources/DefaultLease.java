@@ -25,6 +25,10 @@ public DefaultLease(String displayName, ResourceLockCoordinationService coordina
         this.parent = parent;
     }
 
+    public LeaseHolder getLeaseHolder() {
+        return parent;
+    }
+
     @Override
     protected boolean doIsLocked() {
         return ownerThread != null;
@@ -24,6 +24,10 @@ public TaskExecutionLock(String displayName, ProjectLock stateLock, ResourceLock
         this.stateLock = stateLock;
     }
 
+    public ProjectLock getStateLock() {
+        return stateLock;
+    }
+
     @Override
     protected boolean canAcquire() {
         return stateLock.isLockedByCurrentThread() || stateLock.tryLock();
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The compression codecs for build cache entries.
+ *
+ * <p>Each codec starts its output with some magic bytes, which are used to select the codec when decompressing an entry.
+ * This way a cache can contain entries that use different codecs.</p>
+ */
+public enum BuildCacheEntryCompression {
+    /**
+     * Compatible with the entries of previous Gradle versions.
+     */
+    GZIP("gzip", new byte[]{0x1f, (byte) 0x8b}) {
+        @Override
+        public OutputStream compress(OutputStream output) throws IOException {
+            return new GZIPOutputStream(output);
+        }
+
+        @Override
+        InputStream doDecompress(InputStream input) throws IOException {
+            return new GZIPInputStream(input);
+        }
+    },
+
+    /**
+     * Larger entries than {@link #GZIP}, but much faster to compress and decompress.
+     */
+    LZ4("lz4", Lz4BlockOutputStream.MAGIC) {
+        @Override
+        public OutputStream compress(OutputStream output) throws IOException {
+            return new Lz4BlockOutputStream(output);
+        }
+
+        @Override
+        InputStream doDecompress(InputStream input) throws IOException {
+            return new Lz4BlockInputStream(input);
+        }
+    };
+
+    private static final int MAX_MAGIC_LENGTH = 4;
+
+    private final String id;
+    private final byte[] magic;
+
+    BuildCacheEntryCompression(String id, byte[] magic) {
+        this.id = id;
+        this.magic = magic;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns whether entries compressed with this codec can be loaded by all Gradle versions.
+     * Entries using any other codec must be stored under build cache keys that identify the codec.
+     */
+    public boolean isLoadableByAllVersions() {
+        return this == GZIP;
+    }
+
+    /**
+     * Returns a stream that compresses the data written to it into the given stream. Closing the returned stream closes the given stream.
+     */
+    public abstract OutputStream compress(OutputStream output) throws IOException;
+
+    abstract InputStream doDecompress(InputStream input) throws IOException;
+
+    /**
+     * Returns a stream that decompresses the given stream, using the codec that was used to compress it.
+     */
+    public static InputStream decompress(InputStream input) throws IOException {
+        BufferedInputStream bufferedInput = new BufferedInputStream(input);
+        bufferedInput.mark(MAX_MAGIC_LENGTH);
+        byte[] header = new byte[MAX_MAGIC_LENGTH];
+        int headerLength = 0;
+        while (headerLength < header.length) {
+            int read = bufferedInput.read(header, headerLength, header.length - headerLength);
+            if (read < 0) {
+                break;
+            }
+            headerLength += read;
+        }
+        bufferedInput.reset();
+        for (BuildCacheEntryCompression compression : values()) {
+            if (headerLength >= compression.magic.length && Arrays.equals(Arrays.copyOf(header, compression.magic.length), compression.magic)) {
+                return compression.doDecompress(bufferedInput);
+            }
+        }
+        throw new IOException("Cached entry format error, unknown compression.");
+    }
+
+    public static BuildCacheEntryCompression forId(String id) {
+        for (BuildCacheEntryCompression compression : values()) {
+            if (compression.id.equals(id)) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown build cache entry compression '%s'.", id));
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compresses and decompresses single blocks in the LZ4 block format, using a greedy single-probe match finder.
+ *
+ * <p>Instances are not thread-safe, as the match finder's hash table is reused between blocks.</p>
+ */
+class Lz4BlockCompressor {
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_OFFSET = 65535;
+    private static final int RUN_MASK = 15;
+    private static final int HASH_LOG = 14;
+    private static final int SKIP_TRIGGER = 6;
+
+    private final int[] hashTable = new int[1 << HASH_LOG];
+
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses the given bytes into the given buffer, which must have room for at least {@link #maxCompressedLength(int)} bytes.
+     *
+     * @return the compressed length.
+     */
+    int compress(byte[] source, int sourceLength, byte[] target) {
+        int anchor = 0;
+        int targetPos = 0;
+        if (sourceLength > MF_LIMIT) {
+            Arrays.fill(hashTable, -1);
+            int limit = sourceLength - MF_LIMIT;
+            int matchLimit = sourceLength - LAST_LITERALS;
+            int pos = 0;
+            while (pos < limit) {
+                int sequence = readInt(source, pos);
+                int hash = hash(sequence);
+                int ref = hashTable[hash];
+                hashTable[hash] = pos;
+                if (ref < 0 || pos - ref > MAX_OFFSET || readInt(source, ref) != sequence) {
+                    pos += 1 + ((pos - anchor) >>> SKIP_TRIGGER);
+                    continue;
+                }
+                while (pos > anchor && ref > 0 && source[pos - 1] == source[ref - 1]) {
+                    pos--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (pos + matchLength < matchLimit && source[pos + matchLength] == source[ref + matchLength]) {
+                    matchLength++;
+                }
+                targetPos = writeSequence(source, anchor, pos - anchor, pos - ref, matchLength, target, targetPos);
+                pos += matchLength;
+                anchor = pos;
+                if (pos < limit) {
+                    hashTable[hash(readInt(source, pos - 2))] = pos - 2;
+                }
+            }
+        }
+        return writeLastLiterals(source, anchor, sourceLength - anchor, target, targetPos);
+    }
+
+    /**
+     * Decompresses the given block into the given buffer.
+     *
+     * @return the decompressed length.
+     */
+    static int decompress(byte[] source, int sourceLength, byte[] target, int targetLength) throws IOException {
+        int sourcePos = 0;
+        int targetPos = 0;
+        while (sourcePos < sourceLength) {
+            int token = source[sourcePos++] & 0xff;
+
+            int literalLength = token >>> 4;
+            if (literalLength == RUN_MASK) {
+                int b;
+                do {
+                    if (sourcePos >= sourceLength) {
+                        throw corrupt();
+                    }
+                    b = source[sourcePos++] & 0xff;
+                    literalLength += b;
+                } while (b == 255);
+            }
+            if (literalLength > sourceLength - sourcePos || literalLength > targetLength - targetPos) {
+                throw corrupt();
+            }
+            System.arraycopy(source, sourcePos, target, targetPos, literalLength);
+            sourcePos += literalLength;
+            targetPos += literalLength;
+            if (sourcePos == sourceLength) {
+                // The last sequence only has literals
+                return targetPos;
+            }
+
+            if (sourcePos + 2 > sourceLength) {
+                throw corrupt();
+            }
+            int offset = (source[sourcePos] & 0xff) | (source[sourcePos + 1] & 0xff) << 8;
+            sourcePos += 2;
+            if (offset == 0 || offset > targetPos) {
+                throw corrupt();
+            }
+
+            int matchLength = token & RUN_MASK;
+            if (matchLength == RUN_MASK) {
+                int b;
+                do {
+                    if (sourcePos >= sourceLength) {
+                        throw corrupt();
+                    }
+                    b = source[sourcePos++] & 0xff;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+            if (matchLength > targetLength - targetPos) {
+                throw corrupt();
+            }
+            int matchPos = targetPos - offset;
+            if (offset >= matchLength) {
+                System.arraycopy(target, matchPos, target, targetPos, matchLength);
+                targetPos += matchLength;
+            } else {
+                // Overlapping match, repeats the last offset bytes
+                for (int i = 0; i < matchLength; i++) {
+                    target[targetPos++] = target[matchPos + i];
+                }
+            }
+        }
+        return targetPos;
+    }
+
+    private static int writeSequence(byte[] source, int literalStart, int literalLength, int offset, int matchLength, byte[] target, int targetPos) {
+        int tokenPos = targetPos++;
+        int token;
+        if (literalLength >= RUN_MASK) {
+            token = RUN_MASK << 4;
+            targetPos = writeLength(literalLength - RUN_MASK, target, targetPos);
+        } else {
+            token = literalLength << 4;
+        }
+        System.arraycopy(source, literalStart, target, targetPos, literalLength);
+        targetPos += literalLength;
+
+        target[targetPos++] = (byte) offset;
+        target[targetPos++] = (byte) (offset >>> 8);
+
+        int remainingMatchLength = matchLength - MIN_MATCH;
+        if (remainingMatchLength >= RUN_MASK) {
+            token |= RUN_MASK;
+            targetPos = writeLength(remainingMatchLength - RUN_MASK, target, targetPos);
+        } else {
+            token |= remainingMatchLength;
+        }
+        target[tokenPos] = (byte) token;
+        return targetPos;
+    }
+
+    private static int writeLastLiterals(byte[] source, int literalStart, int literalLength, byte[] target, int targetPos) {
+        if (literalLength >= RUN_MASK) {
+            target[targetPos++] = (byte) (RUN_MASK << 4);
+            targetPos = writeLength(literalLength - RUN_MASK, target, targetPos);
+        } else {
+            target[targetPos++] = (byte) (literalLength << 4);
+        }
+        System.arraycopy(source, literalStart, target, targetPos, literalLength);
+        return targetPos + literalLength;
+    }
+
+    private static int writeLength(int length, byte[] target, int targetPos) {
+        while (length >= 255) {
+            target[targetPos++] = (byte) 255;
+            length -= 255;
+        }
+        target[targetPos++] = (byte) length;
+        return targetPos;
+    }
+
+    private static int readInt(byte[] bytes, int pos) {
+        return (bytes[pos] & 0xff) | (bytes[pos + 1] & 0xff) << 8 | (bytes[pos + 2] & 0xff) << 16 | (bytes[pos + 3] & 0xff) << 24;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static IOException corrupt() {
+        return new IOException("Corrupt LZ4 block");
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Decompresses data written by {@link Lz4BlockOutputStream}.
+ */
+public class Lz4BlockInputStream extends InputStream {
+    private static final int MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+
+    private final DataInputStream input;
+    private byte[] block = new byte[0];
+    private byte[] compressed = new byte[0];
+    private int blockLength;
+    private int position;
+    private boolean finished;
+
+    public Lz4BlockInputStream(InputStream input) throws IOException {
+        this.input = new DataInputStream(input);
+        byte[] magic = new byte[Lz4BlockOutputStream.MAGIC.length];
+        this.input.readFully(magic);
+        if (!Arrays.equals(magic, Lz4BlockOutputStream.MAGIC)) {
+            throw new IOException("Not in LZ4 block format");
+        }
+    }
+
+    private boolean nextBlock() throws IOException {
+        while (position == blockLength) {
+            if (finished) {
+                return false;
+            }
+            int length = input.readInt();
+            if (length == 0) {
+                finished = true;
+                return false;
+            }
+            int storedLength = input.readInt();
+            if (length < 0 || length > MAX_BLOCK_SIZE || storedLength <= 0 || storedLength > length) {
+                throw new IOException("Corrupt LZ4 block header");
+            }
+            if (block.length < length) {
+                block = new byte[length];
+            }
+            if (storedLength == length) {
+                input.readFully(block, 0, length);
+            } else {
+                if (compressed.length < storedLength) {
+                    compressed = new byte[storedLength];
+                }
+                input.readFully(compressed, 0, storedLength);
+                int decompressedLength = Lz4BlockCompressor.decompress(compressed, storedLength, block, length);
+                if (decompressedLength != length) {
+                    throw new IOException("Corrupt LZ4 block");
+                }
+            }
+            blockLength = length;
+            position = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextBlock()) {
+            return -1;
+        }
+        return block[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!nextBlock()) {
+            return -1;
+        }
+        int count = Math.min(length, blockLength - position);
+        System.arraycopy(block, position, bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return blockLength - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
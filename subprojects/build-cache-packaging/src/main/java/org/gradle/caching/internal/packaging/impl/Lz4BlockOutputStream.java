@@ -0,0 +1,110 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses data using LZ4, in independent blocks.
+ *
+ * <p>The stream starts with the {@link #MAGIC} bytes, followed by a sequence of blocks. Each block starts with its uncompressed length and
+ * its stored length, followed by the stored bytes. When the stored length is the same as the uncompressed length, the block is stored
+ * uncompressed. A block with an uncompressed length of 0 marks the end of the stream.</p>
+ */
+public class Lz4BlockOutputStream extends OutputStream {
+    static final byte[] MAGIC = {'G', 'L', 'Z', '4'};
+    static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+    private final Lz4BlockCompressor compressor = new Lz4BlockCompressor();
+    private final DataOutputStream output;
+    private final byte[] block;
+    private final byte[] compressed;
+    private int blockLength;
+    private boolean closed;
+
+    public Lz4BlockOutputStream(OutputStream output) throws IOException {
+        this(output, DEFAULT_BLOCK_SIZE);
+    }
+
+    Lz4BlockOutputStream(OutputStream output, int blockSize) throws IOException {
+        this.output = new DataOutputStream(output);
+        this.block = new byte[blockSize];
+        this.compressed = new byte[Lz4BlockCompressor.maxCompressedLength(blockSize)];
+        this.output.write(MAGIC);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        block[blockLength++] = (byte) b;
+        if (blockLength == block.length) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            int count = Math.min(length, block.length - blockLength);
+            System.arraycopy(bytes, offset, block, blockLength, count);
+            blockLength += count;
+            offset += count;
+            length -= count;
+            if (blockLength == block.length) {
+                writeBlock();
+            }
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        int compressedLength = compressor.compress(block, blockLength, compressed);
+        output.writeInt(blockLength);
+        if (compressedLength < blockLength) {
+            output.writeInt(compressedLength);
+            output.write(compressed, 0, compressedLength);
+        } else {
+            output.writeInt(blockLength);
+            output.write(block, 0, blockLength);
+        }
+        blockLength = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (blockLength > 0) {
+            writeBlock();
+        }
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (blockLength > 0) {
+                writeBlock();
+            }
+            output.writeInt(0);
+        } finally {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginReader;
+import org.gradle.caching.internal.origin.OriginWriter;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Produces {@link BuildCacheEntryCompression#GZIP} compressed entries, but compresses independent chunks of an entry in parallel.
+ * When unpacking, the entry is decompressed on a separate thread while the unpacked files are written to disk.
+ *
+ * <p>The entries produced by this packer can be unpacked by {@link CompressingBuildCacheEntryPacker}, and the other way around.</p>
+ *
+ * <p>The given executor is shut down when this packer is closed.</p>
+ */
+public class ParallelGZipBuildCacheEntryPacker implements BuildCacheEntryPacker, Closeable {
+    private final BuildCacheEntryPacker delegate;
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    public ParallelGZipBuildCacheEntryPacker(BuildCacheEntryPacker delegate, ExecutorService executor, int parallelism) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
+        try (ParallelGZipOutputStream gzipOutput = new ParallelGZipOutputStream(output, executor, parallelism)) {
+            return delegate.pack(entity, snapshots, gzipOutput, writeOrigin);
+        }
+    }
+
+    @Override
+    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+        try (InputStream decompressedInput = new ReadAheadInputStream(BuildCacheEntryCompression.decompress(input), executor)) {
+            return delegate.unpack(entity, decompressedInput, readOrigin);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
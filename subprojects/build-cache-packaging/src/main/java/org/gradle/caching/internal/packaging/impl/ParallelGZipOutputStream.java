@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses the data written to it in fixed size chunks, using the given executor to compress several chunks at the same time.
+ *
+ * <p>Each chunk is written as a separate gzip member. The concatenation of the members is a valid gzip stream, that
+ * {@link java.util.zip.GZIPInputStream} reads as a single stream.</p>
+ */
+public class ParallelGZipOutputStream extends OutputStream {
+    public static final int DEFAULT_CHUNK_SIZE = 128 * 1024;
+
+    private final OutputStream output;
+    private final ExecutorService executor;
+    private final int maxPendingChunks;
+    private final Deque<Future<byte[]>> pendingChunks = new ArrayDeque<>();
+    private byte[] chunk;
+    private int chunkLength;
+    private boolean wroteChunk;
+    private boolean closed;
+
+    public ParallelGZipOutputStream(OutputStream output, ExecutorService executor, int parallelism) {
+        this(output, executor, parallelism, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelGZipOutputStream(OutputStream output, ExecutorService executor, int parallelism, int chunkSize) {
+        this.output = output;
+        this.executor = executor;
+        this.maxPendingChunks = 2 * Math.max(1, parallelism);
+        this.chunk = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        chunk[chunkLength++] = (byte) b;
+        if (chunkLength == chunk.length) {
+            submitChunk();
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            int count = Math.min(length, chunk.length - chunkLength);
+            System.arraycopy(bytes, offset, chunk, chunkLength, count);
+            chunkLength += count;
+            offset += count;
+            length -= count;
+            if (chunkLength == chunk.length) {
+                submitChunk();
+            }
+        }
+    }
+
+    private void submitChunk() throws IOException {
+        while (pendingChunks.size() >= maxPendingChunks) {
+            writeNextChunk();
+        }
+        byte[] bytes = chunk;
+        int length = chunkLength;
+        pendingChunks.add(executor.submit(() -> compress(bytes, length)));
+        wroteChunk = true;
+        chunk = new byte[bytes.length];
+        chunkLength = 0;
+    }
+
+    private static byte[] compress(byte[] bytes, int length) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+        try (GZIPOutputStream gzipOutput = new GZIPOutputStream(compressed, 8192)) {
+            gzipOutput.write(bytes, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    private void writeNextChunk() throws IOException {
+        Future<byte[]> next = pendingChunks.removeFirst();
+        byte[] compressed;
+        try {
+            compressed = next.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IOException("Could not compress", cause);
+        }
+        output.write(compressed);
+    }
+
+    /**
+     * Waits for all the complete chunks written so far to be compressed and written to the underlying stream.
+     * A partial chunk is kept until more data is written or the stream is closed.
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!pendingChunks.isEmpty()) {
+            writeNextChunk();
+        }
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // An empty gzip member is required when nothing was written, so that the result is still a valid gzip stream
+            if (chunkLength > 0 || !wroteChunk) {
+                submitChunk();
+            }
+            flush();
+        } finally {
+            for (Future<byte[]> pendingChunk : pendingChunks) {
+                pendingChunk.cancel(false);
+            }
+            pendingChunks.clear();
+            output.close();
+        }
+    }
+}
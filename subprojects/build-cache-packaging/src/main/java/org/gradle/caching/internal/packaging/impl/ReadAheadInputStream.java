@@ -0,0 +1,227 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads from the given stream on a separate thread, ahead of the consumer of this stream.
+ *
+ * <p>This allows the work done when reading from the source stream, such as decompressing, to overlap with the work done by the consumer,
+ * such as writing the unpacked entries to disk. At most a fixed number of buffers is read ahead.</p>
+ */
+public class ReadAheadInputStream extends InputStream {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_BUFFER_COUNT = 4;
+
+    private static final Buffer END_OF_STREAM = new Buffer(new byte[0], -1, null);
+
+    private final InputStream source;
+    private final BlockingQueue<Buffer> buffers;
+    private final CountDownLatch producerFinished = new CountDownLatch(1);
+    private final Object producerLock = new Object();
+    // Guarded by producerLock
+    private Thread producer;
+    private boolean producerStarted;
+    private volatile boolean closed;
+    private Buffer current;
+    private int position;
+
+    public ReadAheadInputStream(InputStream source, Executor executor) {
+        this(source, executor, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT);
+    }
+
+    public ReadAheadInputStream(InputStream source, Executor executor, int bufferSize, int bufferCount) {
+        this.source = source;
+        this.buffers = new ArrayBlockingQueue<>(bufferCount);
+        executor.execute(() -> readAhead(bufferSize));
+    }
+
+    private void readAhead(int bufferSize) {
+        synchronized (producerLock) {
+            if (closed) {
+                // Closed before the executor got to run this
+                return;
+            }
+            producer = Thread.currentThread();
+            producerStarted = true;
+        }
+        try {
+            while (!closed) {
+                byte[] bytes = new byte[bufferSize];
+                int length = readFully(bytes);
+                if (length > 0 && !enqueue(new Buffer(bytes, length, null))) {
+                    return;
+                }
+                if (length < bytes.length) {
+                    enqueue(END_OF_STREAM);
+                    return;
+                }
+            }
+        } catch (Throwable e) {
+            enqueue(new Buffer(END_OF_STREAM.bytes, -1, e));
+        } finally {
+            synchronized (producerLock) {
+                producer = null;
+                // Clear the interrupt close() may have sent, so that it does not leak into the next task run by the executor
+                Thread.interrupted();
+            }
+            producerFinished.countDown();
+        }
+    }
+
+    private int readFully(byte[] bytes) throws IOException {
+        int length = 0;
+        while (length < bytes.length) {
+            int read = source.read(bytes, length, bytes.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    private boolean enqueue(Buffer buffer) {
+        try {
+            while (!closed) {
+                if (buffers.offer(buffer, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Returns the buffer to read from, or null at the end of the stream.
+     */
+    @Nullable
+    private Buffer currentBuffer() throws IOException {
+        if (current != null && position < current.length) {
+            return current;
+        }
+        if (current == END_OF_STREAM) {
+            return null;
+        }
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        try {
+            current = buffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading", e);
+        }
+        position = 0;
+        if (current.failure != null) {
+            Throwable failure = current.failure;
+            current = END_OF_STREAM;
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            throw new IOException(failure);
+        }
+        return current == END_OF_STREAM ? null : current;
+    }
+
+    @Override
+    public int read() throws IOException {
+        Buffer buffer = currentBuffer();
+        if (buffer == null) {
+            return -1;
+        }
+        return buffer.bytes[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        Buffer buffer = currentBuffer();
+        if (buffer == null) {
+            return -1;
+        }
+        int count = Math.min(length, buffer.length - position);
+        System.arraycopy(buffer.bytes, position, bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current != null && current != END_OF_STREAM ? current.length - position : 0;
+    }
+
+    /**
+     * Stops the producer and closes the source stream. The producer is interrupted, in case it is waiting for the consumer to take a buffer
+     * or is blocked reading from the source, and the source is closed before waiting for the producer to finish, so that a read blocked on
+     * a stream which does not respond to interrupts fails.
+     */
+    @Override
+    public void close() throws IOException {
+        boolean producerStarted;
+        synchronized (producerLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            producerStarted = this.producerStarted;
+            if (producer != null) {
+                producer.interrupt();
+            }
+        }
+        buffers.clear();
+        try {
+            source.close();
+        } finally {
+            if (producerStarted) {
+                try {
+                    producerFinished.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while closing", e);
+                } finally {
+                    buffers.clear();
+                }
+            }
+        }
+    }
+
+    private static class Buffer {
+        final byte[] bytes;
+        final int length;
+        @Nullable
+        final Throwable failure;
+
+        Buffer(byte[] bytes, int length, @Nullable Throwable failure) {
+            this.bytes = bytes;
+            this.length = length;
+            this.failure = failure;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+
+class BuildCacheEntryCompressionTest extends Specification {
+
+    def "can decompress #compression entry of #length bytes"() {
+        def data = new byte[length]
+        def random = new Random(1234L)
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) random.nextInt(length % 2 == 0 ? 256 : 8)
+        }
+        def compressed = new ByteArrayOutputStream()
+
+        when:
+        def output = compression.compress(compressed)
+        output.write(data)
+        output.close()
+
+        then:
+        BuildCacheEntryCompression.decompress(new ByteArrayInputStream(compressed.toByteArray())).bytes == data
+
+        where:
+        [compression, length] << [BuildCacheEntryCompression.values(), [0, 1, 1000, 300 * 1024 + 1]].combinations()
+    }
+
+    def "parallel gzip output can be decompressed"() {
+        def data = "some text".multiply(100000).bytes
+        def compressed = new ByteArrayOutputStream()
+        def executor = Executors.newFixedThreadPool(2)
+
+        when:
+        def output = new ParallelGZipOutputStream(compressed, executor, 2)
+        output.write(data)
+        output.close()
+
+        then:
+        BuildCacheEntryCompression.decompress(new ByteArrayInputStream(compressed.toByteArray())).bytes == data
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def "fails on unknown compression"() {
+        when:
+        BuildCacheEntryCompression.decompress(new ByteArrayInputStream("PK\u0003\u0004".bytes))
+
+        then:
+        def e = thrown(IOException)
+        e.message == "Cached entry format error, unknown compression."
+    }
+
+    def "can look up compression by id"() {
+        expect:
+        BuildCacheEntryCompression.forId("gzip") == BuildCacheEntryCompression.GZIP
+        BuildCacheEntryCompression.forId("lz4") == BuildCacheEntryCompression.LZ4
+
+        when:
+        BuildCacheEntryCompression.forId("bzip2")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
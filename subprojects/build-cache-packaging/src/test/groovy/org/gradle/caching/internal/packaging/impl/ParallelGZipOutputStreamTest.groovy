@@ -0,0 +1,62 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+import java.util.zip.GZIPInputStream
+
+class ParallelGZipOutputStreamTest extends Specification {
+    def executor = Executors.newFixedThreadPool(4)
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "output can be read as a single gzip stream (#length bytes)"() {
+        def data = new byte[length]
+        new Random(1234L).nextBytes(data)
+        def compressed = new ByteArrayOutputStream()
+
+        when:
+        def output = new ParallelGZipOutputStream(compressed, executor, 4, 1024)
+        output.write(data, 0, Math.min(100, length))
+        if (length > 100) {
+            output.write(data[100])
+            output.write(data, 101, length - 101)
+        }
+        output.close()
+
+        then:
+        new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())).bytes == data
+
+        where:
+        length << [0, 100, 1024, 1025, 50 * 1024 + 17]
+    }
+
+    def "closes underlying stream"() {
+        def compressed = Mock(OutputStream)
+
+        when:
+        new ParallelGZipOutputStream(compressed, executor, 4).close()
+
+        then:
+        (1.._) * compressed.write(_ as byte[])
+        1 * compressed.close()
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+
+class ReadAheadInputStreamTest extends Specification {
+    def executor = Executors.newFixedThreadPool(2)
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "reads the content of the source stream (#length bytes)"() {
+        def data = new byte[length]
+        new Random(1234L).nextBytes(data)
+
+        when:
+        def input = new ReadAheadInputStream(new ByteArrayInputStream(data), executor, 1024, 2)
+        def first = input.read()
+        def rest = input.bytes
+
+        then:
+        length == 0 ? first == -1 : ([first as byte] + (rest as List)) == (data as List)
+        input.read() == -1
+
+        cleanup:
+        input?.close()
+
+        where:
+        length << [0, 1, 1024, 1025, 10 * 1024 + 17]
+    }
+
+    def "rethrows failure to read source stream"() {
+        def failure = new IOException("broken")
+        def source = Stub(InputStream) {
+            read(_, _, _) >> { throw failure }
+        }
+
+        when:
+        def input = new ReadAheadInputStream(source, executor)
+        input.read()
+
+        then:
+        def e = thrown(IOException)
+        e == failure
+
+        cleanup:
+        input?.close()
+    }
+
+    def "can close before the source stream has been read"() {
+        def source = Mock(InputStream)
+        _ * source.read(_, _, _) >> { byte[] bytes, int offset, int length -> length }
+
+        when:
+        def input = new ReadAheadInputStream(source, executor, 16, 1)
+        input.read()
+        input.close()
+
+        then:
+        1 * source.close()
+    }
+
+    def "does not wait for a producer the executor has not started when closed"() {
+        def source = Mock(InputStream)
+        Runnable producer = null
+        def input = new ReadAheadInputStream(source, { producer = it } as Executor)
+
+        when:
+        input.close()
+
+        then:
+        1 * source.close()
+
+        when:
+        producer.run()
+
+        then:
+        0 * source._
+    }
+
+    @Timeout(10)
+    def "interrupts a producer waiting for the consumer when closed"() {
+        def bufferFull = new CountDownLatch(2)
+        def source = Stub(InputStream) {
+            read(_, _, _) >> { byte[] bytes, int offset, int length ->
+                bufferFull.countDown()
+                length
+            }
+        }
+
+        when:
+        def input = new ReadAheadInputStream(source, executor, 16, 1)
+        bufferFull.await()
+        input.close()
+
+        then:
+        noExceptionThrown()
+    }
+
+    @Timeout(10)
+    def "closes a source the producer is blocked reading from when closed"() {
+        def reading = new CountDownLatch(1)
+        def closed = new CountDownLatch(1)
+        def source = new InputStream() {
+            @Override
+            int read() {
+                throw new UnsupportedOperationException()
+            }
+
+            @Override
+            int read(byte[] bytes, int offset, int length) {
+                reading.countDown()
+                // Ignores interrupts, like reading from a socket
+                while (closed.count > 0) {
+                    try {
+                        closed.await()
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+                throw new IOException("closed")
+            }
+
+            @Override
+            void close() {
+                closed.countDown()
+            }
+        }
+
+        when:
+        def input = new ReadAheadInputStream(source, executor)
+        reading.await()
+        input.close()
+
+        then:
+        noExceptionThrown()
+    }
+}
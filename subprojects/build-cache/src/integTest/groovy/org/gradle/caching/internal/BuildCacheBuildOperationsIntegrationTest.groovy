@@ -288,6 +288,8 @@ class BuildCacheBuildOperationsIntegrationTest extends AbstractIntegrationSpec {
 
         packOp.result.archiveEntryCount == 5
         remoteStoreOp.details.archiveSize == packOp.result.archiveSize
+        !remoteStoreOp.details.deferred
+        remoteStoreOp.details.deferredByMillis == 0
 
         operations.orderedSerialSiblings(remoteMissLoadOp, packOp, remoteStoreOp)
 
@@ -298,6 +300,38 @@ class BuildCacheBuildOperationsIntegrationTest extends AbstractIntegrationSpec {
         false      | false             | "local.enabled = false; remote($remoteCacheClass) { push = true }"
     }
 
+    def "records deferred store when storing in the background"() {
+        given:
+        remote("", "writer.writeTo(new ${NullOutputStream.name}())")
+
+        settingsFile << """
+            buildCache {
+                local.enabled = false
+                remote($remoteCacheClass) { push = true }
+            }
+        """
+
+        buildFile << cacheableTask() << """
+            apply plugin: "base"
+            tasks.create("t", CustomTask).paths << "out1" << "out2"
+        """
+
+        when:
+        executer.withArgument("-Dorg.gradle.internal.build-cache.async-remote-store=true")
+        executer.withArgument("-Dorg.gradle.internal.build-cache.async-remote-store-threads=1")
+        succeeds("t")
+
+        then:
+        def packOp = operations.only(BuildCacheArchivePackBuildOperationType)
+        def remoteStoreOp = operations.only(BuildCacheRemoteStoreBuildOperationType)
+
+        remoteStoreOp.details.cacheKey == packOp.details.cacheKey
+        remoteStoreOp.details.archiveSize == packOp.result.archiveSize
+        remoteStoreOp.details.deferred
+        remoteStoreOp.details.deferredByMillis >= 0
+        remoteStoreOp.result.stored
+    }
+
     def "records ops for remote hit"() {
         def buildCache = new TestBuildCache(testDirectory.file("build-cache-dir").createDir())
         settingsFile << buildCache.localCacheConfiguration()
@@ -55,6 +55,8 @@ public abstract class AbstractTaskOutputPackagingBenchmark {
         .put("tar.small", new AntTarPacker(2))
         .put("tar.large", new AntTarPacker(64))
         .put("tar.gz", new GzipPacker(new AntTarPacker(4)))
+        .put("tar.gz.parallel", new ParallelGzipPacker(new AntTarPacker(4)))
+        .put("tar.lz4", new Lz4Packer(new AntTarPacker(4)))
         .put("zip", new ZipPacker(4))
         .build();
 
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interners;
+import org.apache.commons.io.FileUtils;
+import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.impl.DirectorySnapshotter;
+import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Snapshots a generated tree of small files, like generated sources or a node_modules directory,
+ * walking it either on a single thread or on a fork/join pool.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class DirectorySnapshotterBenchmark {
+    private static final int FILES_PER_DIRECTORY = 20;
+    private static final int SUBDIRECTORIES_PER_DIRECTORY = 8;
+
+    @Param({"10000", "100000"})
+    int fileCount;
+
+    @Param({"true", "false"})
+    boolean parallel;
+
+    Path root;
+    ForkJoinPool pool;
+    DirectorySnapshotter snapshotter;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("directory-snapshotter");
+        generate(root, fileCount);
+        pool = parallel ? new ForkJoinPool(Runtime.getRuntime().availableProcessors()) : null;
+        snapshotter = new DirectorySnapshotter(
+            new DefaultFileHasher(new DefaultStreamHasher()),
+            Interners.newWeakInterner(),
+            ImmutableList.of(),
+            new DirectorySnapshotterStatistics.Collector(),
+            pool
+        );
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        FileUtils.forceDelete(root.toFile());
+    }
+
+    @Benchmark
+    public FileSystemLocationSnapshot snapshot() {
+        return snapshotter.snapshot(root.toString(), null, new AtomicBoolean(), snapshot -> {});
+    }
+
+    private static int generate(Path dir, int remainingFiles) throws IOException {
+        int files = Math.min(FILES_PER_DIRECTORY, remainingFiles);
+        for (int i = 0; i < files; i++) {
+            Files.write(dir.resolve("file" + i + ".js"), ("content of " + dir + " " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        int generated = files;
+        int perSubdirectory = (remainingFiles - files + SUBDIRECTORIES_PER_DIRECTORY - 1) / SUBDIRECTORIES_PER_DIRECTORY;
+        for (int i = 0; i < SUBDIRECTORIES_PER_DIRECTORY && generated < remainingFiles; i++) {
+            generated += generate(Files.createDirectory(dir.resolve("dir" + i)), Math.min(perSubdirectory, remainingFiles - generated));
+        }
+        return generated;
+    }
+}
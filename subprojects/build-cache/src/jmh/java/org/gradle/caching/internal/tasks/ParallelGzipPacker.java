@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import org.gradle.caching.internal.packaging.impl.ParallelGZipOutputStream;
+import org.gradle.caching.internal.packaging.impl.ReadAheadInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+public class ParallelGzipPacker implements Packer {
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(PARALLELISM, runnable -> {
+        Thread thread = new Thread(runnable, "Parallel gzip packer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Packer delegate;
+
+    public ParallelGzipPacker(Packer delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void pack(List<DataSource> inputs, DataTarget output) throws IOException {
+        delegate.pack(inputs, new DelegatingDataTarget(output) {
+            @Override
+            public OutputStream openOutput() throws IOException {
+                return new ParallelGZipOutputStream(super.openOutput(), EXECUTOR, PARALLELISM);
+            }
+        });
+    }
+
+    @Override
+    public void unpack(DataSource input, DataTargetFactory targetFactory) throws IOException {
+        delegate.unpack(new DelegatingDataSource(input) {
+            @Override
+            public InputStream openInput() throws IOException {
+                return new ReadAheadInputStream(new GZIPInputStream(super.openInput(), ReadAheadInputStream.DEFAULT_BUFFER_SIZE), EXECUTOR);
+            }
+        }, targetFactory);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.file.temp.TemporaryFileProvider;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.service.RemoteBuildCacheServiceHandle;
+import org.gradle.util.internal.GFileUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stores entries in the remote build cache in the background, so that the work producing an entry does not wait for it to be uploaded.
+ *
+ * <p>The number and the total size of the entries waiting to be stored are limited. When a limit is reached, adding another entry
+ * blocks until enough entries have been stored. Closing the queue waits for all entries to be stored.</p>
+ */
+class AsyncRemoteStoreQueue implements Closeable {
+    static final int DEFAULT_MAX_PENDING_ENTRIES = 64;
+    static final long DEFAULT_MAX_PENDING_BYTES = 256 * 1024 * 1024;
+
+    private final RemoteBuildCacheServiceHandle remote;
+    private final TemporaryFileProvider temporaryFileProvider;
+    private final ExecutorService executor;
+    private final int maxPendingEntries;
+    private final long maxPendingBytes;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition pendingChanged = lock.newCondition();
+    private int pendingEntries;
+    private long pendingBytes;
+
+    AsyncRemoteStoreQueue(RemoteBuildCacheServiceHandle remote, TemporaryFileProvider temporaryFileProvider, ExecutorService executor) {
+        this(remote, temporaryFileProvider, executor, DEFAULT_MAX_PENDING_ENTRIES, DEFAULT_MAX_PENDING_BYTES);
+    }
+
+    AsyncRemoteStoreQueue(RemoteBuildCacheServiceHandle remote, TemporaryFileProvider temporaryFileProvider, ExecutorService executor, int maxPendingEntries, long maxPendingBytes) {
+        this.remote = remote;
+        this.temporaryFileProvider = temporaryFileProvider;
+        this.executor = executor;
+        this.maxPendingEntries = maxPendingEntries;
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * Schedules the given packed entry to be stored in the remote cache.
+     *
+     * @param keepFile whether the given file has to be left in place, in which case it is copied instead of moved.
+     */
+    void submit(BuildCacheKey key, File file, boolean keepFile) {
+        long size = file.length();
+        acquire(size);
+        File storeFile;
+        try {
+            storeFile = temporaryFileProvider.createTemporaryFile("build-cache-", ".store");
+            if (keepFile) {
+                Files.copy(file.toPath(), storeFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.move(file.toPath(), storeFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            release(size);
+            throw new UncheckedIOException(e);
+        }
+
+        long submittedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                try {
+                    remote.maybeStoreDeferred(key, storeFile, Duration.ofNanos(System.nanoTime() - submittedAt));
+                } finally {
+                    GFileUtils.deleteQuietly(storeFile);
+                    release(size);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            GFileUtils.deleteQuietly(storeFile);
+            release(size);
+            throw e;
+        }
+    }
+
+    private void acquire(long size) {
+        lock.lock();
+        try {
+            // Always accept an entry when nothing is pending, so that entries larger than the limit can still be stored
+            while (pendingEntries > 0 && (pendingEntries >= maxPendingEntries || pendingBytes + size > maxPendingBytes)) {
+                pendingChanged.awaitUninterruptibly();
+            }
+            pendingEntries++;
+            pendingBytes += size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long size) {
+        lock.lock();
+        try {
+            pendingEntries--;
+            pendingBytes -= size;
+            pendingChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for all the entries submitted so far to be stored.
+     */
+    void drain() {
+        lock.lock();
+        try {
+            while (pendingEntries > 0) {
+                pendingChanged.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            drain();
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
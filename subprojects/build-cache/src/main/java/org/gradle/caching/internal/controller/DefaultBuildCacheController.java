@@ -67,6 +67,7 @@
 import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class DefaultBuildCacheController implements BuildCacheController {
@@ -80,6 +81,8 @@ public class DefaultBuildCacheController implements BuildCacheController {
     private final BuildCacheTempFileStore tmp;
     private final boolean emitDebugLogging;
     private final PackOperationExecutor packExecutor;
+    @Nullable
+    private final AsyncRemoteStoreQueue asyncRemoteStores;
 
     private boolean closed;
 
@@ -93,7 +96,8 @@ public DefaultBuildCacheController(
         FileSystemAccess fileSystemAccess,
         BuildCacheEntryPacker packer,
         OriginMetadataFactory originMetadataFactory,
-        StringInterner stringInterner
+        StringInterner stringInterner,
+        @Nullable ExecutorService asyncRemoteStoreExecutor
     ) {
         this.emitDebugLogging = emitDebugLogging;
         this.local = toLocalHandle(config.getLocal(), config.isLocalPush());
@@ -106,6 +110,9 @@ public DefaultBuildCacheController(
             originMetadataFactory,
             stringInterner
         );
+        this.asyncRemoteStores = asyncRemoteStoreExecutor != null
+            ? new AsyncRemoteStoreQueue(remote, temporaryFileProvider, asyncRemoteStoreExecutor)
+            : null;
     }
 
     @Override
@@ -162,7 +169,11 @@ public void store(BuildCacheKey key, CacheableEntity entity, Map<String, FileSys
         }
         tmp.withTempFile(key, file -> {
             packExecutor.pack(file, key, entity, snapshots, executionTime);
-            remote.maybeStore(key, file);
+            if (asyncRemoteStores != null && remote.canStore()) {
+                asyncRemoteStores.submit(key, file, local.canStore());
+            } else {
+                remote.maybeStore(key, file);
+            }
             local.maybeStore(key, file);
         });
     }
@@ -174,6 +185,10 @@ public void close() throws IOException {
             Closer closer = Closer.create();
             closer.register(local);
             closer.register(remote);
+            if (asyncRemoteStores != null) {
+                // Closed first, so that the pending entries are stored before the remote cache is closed
+                closer.register(asyncRemoteStores);
+            }
             closer.close();
         }
     }
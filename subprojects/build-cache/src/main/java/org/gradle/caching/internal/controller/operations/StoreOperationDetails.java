@@ -19,14 +19,26 @@
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.internal.operations.BuildCacheRemoteStoreBuildOperationType;
 
+import javax.annotation.Nullable;
+import java.time.Duration;
+
 public class StoreOperationDetails implements BuildCacheRemoteStoreBuildOperationType.Details {
 
     private final BuildCacheKey cacheKey;
     private final long archiveSize;
+    private final Duration deferredBy;
 
     public StoreOperationDetails(BuildCacheKey cacheKey, long archiveSize) {
+        this(cacheKey, archiveSize, null);
+    }
+
+    /**
+     * @param deferredBy how long storing the entry has been deferred, or {@code null} when it is stored right after it has been produced.
+     */
+    public StoreOperationDetails(BuildCacheKey cacheKey, long archiveSize, @Nullable Duration deferredBy) {
         this.cacheKey = cacheKey;
         this.archiveSize = archiveSize;
+        this.deferredBy = deferredBy;
     }
 
     @Override
@@ -38,4 +50,14 @@ public String getCacheKey() {
     public long getArchiveSize() {
         return archiveSize;
     }
+
+    @Override
+    public boolean isDeferred() {
+        return deferredBy != null;
+    }
+
+    @Override
+    public long getDeferredByMillis() {
+        return deferredBy == null ? 0 : deferredBy.toMillis();
+    }
 }
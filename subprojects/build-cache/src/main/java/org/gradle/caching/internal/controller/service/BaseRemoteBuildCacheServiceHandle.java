@@ -24,6 +24,7 @@
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.time.Duration;
 import java.util.Optional;
 import java.util.function.Function;
 
@@ -38,7 +39,7 @@ public class BaseRemoteBuildCacheServiceHandle implements RemoteBuildCacheServic
     private final boolean logStackTraces;
     private final boolean disableOnError;
 
-    private boolean disabled;
+    private volatile boolean disabled;
 
     public BaseRemoteBuildCacheServiceHandle(
         BuildCacheService service,
@@ -103,13 +104,22 @@ public boolean canStore() {
 
     @Override
     public final boolean maybeStore(BuildCacheKey key, File file) {
+        return doMaybeStore(key, file, null);
+    }
+
+    @Override
+    public final boolean maybeStoreDeferred(BuildCacheKey key, File file, Duration deferredBy) {
+        return doMaybeStore(key, file, deferredBy);
+    }
+
+    private boolean doMaybeStore(BuildCacheKey key, File file, @Nullable Duration deferredBy) {
         if (!canStore()) {
             return false;
         }
         String description = "Store entry " + key.getDisplayName() + " in " + role.getDisplayName() + " build cache";
         LOGGER.debug(description);
         try {
-            storeInner(description, key, new StoreTarget(file));
+            storeInner(description, key, new StoreTarget(file), deferredBy);
             return true;
         } catch (Exception e) {
             failure("store", "in", key, e);
@@ -117,7 +127,10 @@ public final boolean maybeStore(BuildCacheKey key, File file) {
         }
     }
 
-    protected void storeInner(String description, BuildCacheKey key, StoreTarget storeTarget) {
+    /**
+     * @param deferredBy how long storing the entry has been deferred, or {@code null} when it has not been deferred.
+     */
+    protected void storeInner(String description, BuildCacheKey key, StoreTarget storeTarget, @Nullable Duration deferredBy) {
         service.store(key, storeTarget);
     }
 
@@ -21,6 +21,7 @@
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.time.Duration;
 import java.util.Optional;
 import java.util.function.Function;
 
@@ -54,6 +55,11 @@ public boolean maybeStore(BuildCacheKey key, File file) {
         return false;
     }
 
+    @Override
+    public boolean maybeStoreDeferred(BuildCacheKey key, File file, Duration deferredBy) {
+        return false;
+    }
+
     @Override
     public void close() {
 
@@ -29,8 +29,10 @@
 import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 
 public class OpFiringRemoteBuildCacheServiceHandle extends BaseRemoteBuildCacheServiceHandle {
 
@@ -64,18 +66,18 @@ public BuildOperationDescriptor.Builder description() {
     }
 
     @Override
-    protected void storeInner(final String description, final BuildCacheKey key, final StoreTarget storeTarget) {
+    protected void storeInner(final String description, final BuildCacheKey key, final StoreTarget storeTarget, @Nullable Duration deferredBy) {
         buildOperationExecutor.run(new RunnableBuildOperation() {
             @Override
             public void run(BuildOperationContext context) {
-                OpFiringRemoteBuildCacheServiceHandle.super.storeInner(description, key, storeTarget);
+                OpFiringRemoteBuildCacheServiceHandle.super.storeInner(description, key, storeTarget, deferredBy);
                 context.setResult(storeTarget.isStored() ? StoreOperationResult.STORED : StoreOperationResult.NOT_STORED);
             }
 
             @Override
             public BuildOperationDescriptor.Builder description() {
                 return BuildOperationDescriptor.displayName(description)
-                    .details(new StoreOperationDetails(key, storeTarget.getSize()))
+                    .details(new StoreOperationDetails(key, storeTarget.getSize(), deferredBy))
                     .progressDisplayName("Uploading to remote build cache");
             }
         });
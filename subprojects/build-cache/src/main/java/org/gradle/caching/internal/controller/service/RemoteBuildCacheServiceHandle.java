@@ -23,6 +23,7 @@
 import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.File;
+import java.time.Duration;
 import java.util.Optional;
 import java.util.function.Function;
 
@@ -52,6 +53,15 @@ public interface RemoteBuildCacheServiceHandle extends Closeable {
      */
     boolean maybeStore(BuildCacheKey key, File file);
 
+    /**
+     * Stores the file to the cache, after storing it has been deferred for the given time.
+     *
+     * If canStore() returns false, then this method will do nothing and will return false.
+     *
+     * Returns true if store was completed.
+     */
+    boolean maybeStoreDeferred(BuildCacheKey key, File file, Duration deferredBy);
+
     @Override
     void close();
 }
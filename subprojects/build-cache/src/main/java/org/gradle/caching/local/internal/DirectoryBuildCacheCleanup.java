@@ -0,0 +1,129 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.CleanableStore;
+import org.gradle.cache.CleanupAction;
+import org.gradle.cache.CleanupProgressMonitor;
+import org.gradle.cache.internal.FilesFinder;
+import org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup;
+import org.gradle.cache.internal.SingleDepthFilesFinder;
+import org.gradle.internal.file.FileAccessTimeJournal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+/**
+ * Deletes the entries of a directory build cache that have not been accessed within the specified number of days.
+ *
+ * <p>Each run cleans up a bounded number of shards, continuing with the shards after the ones cleaned up by the previous run,
+ * so that a run stays short however large the cache is. Entries are therefore removed up to a few runs after they expire.
+ * Entries stored in the base directory by previous Gradle versions are cleaned up by every run.</p>
+ */
+public class DirectoryBuildCacheCleanup implements CleanupAction {
+    static final int SHARDS_PER_RUN = 64;
+    static final String NEXT_SHARD_FILE_NAME = "gc-next-shard.txt";
+
+    private static final FilesFinder LEGACY_ENTRIES_FINDER = (baseDir, filter) -> {
+        File[] files = baseDir.listFiles(file -> file.isFile() && !file.getName().equals(NEXT_SHARD_FILE_NAME) && filter.accept(file));
+        return files == null ? Collections.emptyList() : Arrays.asList(files);
+    };
+
+    private final LeastRecentlyUsedCacheCleanup shardCleanup;
+    private final LeastRecentlyUsedCacheCleanup legacyEntriesCleanup;
+
+    public DirectoryBuildCacheCleanup(FileAccessTimeJournal journal, long numberOfDays) {
+        this.shardCleanup = new LeastRecentlyUsedCacheCleanup(new SingleDepthFilesFinder(1), journal, numberOfDays);
+        this.legacyEntriesCleanup = new LeastRecentlyUsedCacheCleanup(LEGACY_ENTRIES_FINDER, journal, numberOfDays);
+    }
+
+    @Override
+    public void clean(CleanableStore cleanableStore, CleanupProgressMonitor progressMonitor) {
+        legacyEntriesCleanup.clean(cleanableStore, progressMonitor);
+
+        File[] shardDirs = cleanableStore.getBaseDir().listFiles(DirectoryBuildCacheShards::isShardDirectory);
+        if (shardDirs == null || shardDirs.length == 0) {
+            return;
+        }
+        Arrays.sort(shardDirs);
+        File nextShardFile = new File(cleanableStore.getBaseDir(), NEXT_SHARD_FILE_NAME);
+        String nextShard = readNextShard(nextShardFile);
+        int start = 0;
+        while (start < shardDirs.length && shardDirs[start].getName().compareTo(nextShard) < 0) {
+            start++;
+        }
+        int count = Math.min(SHARDS_PER_RUN, shardDirs.length);
+        for (int i = 0; i < count; i++) {
+            File shardDir = shardDirs[(start + i) % shardDirs.length];
+            shardCleanup.clean(new ShardStore(cleanableStore, shardDir), progressMonitor);
+        }
+        writeNextShard(nextShardFile, shardDirs[(start + count) % shardDirs.length].getName());
+    }
+
+    private static String readNextShard(File nextShardFile) {
+        if (!nextShardFile.isFile()) {
+            return "";
+        }
+        try {
+            return new String(Files.readAllBytes(nextShardFile.toPath()), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeNextShard(File nextShardFile, String shardName) {
+        try {
+            Files.write(nextShardFile.toPath(), shardName.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class ShardStore implements CleanableStore {
+        private final CleanableStore cacheStore;
+        private final File shardDir;
+
+        ShardStore(CleanableStore cacheStore, File shardDir) {
+            this.cacheStore = cacheStore;
+            this.shardDir = shardDir;
+        }
+
+        @Override
+        public File getBaseDir() {
+            return shardDir;
+        }
+
+        @Override
+        public Collection<File> getReservedCacheFiles() {
+            return cacheStore.getReservedCacheFiles().stream()
+                .filter(file -> shardDir.equals(file.getParentFile()))
+                .collect(Collectors.toList());
+        }
+
+        @Override
+        public String getDisplayName() {
+            return cacheStore.getDisplayName() + " shard " + shardDir.getName();
+        }
+    }
+}
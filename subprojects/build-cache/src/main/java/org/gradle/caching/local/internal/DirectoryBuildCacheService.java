@@ -32,13 +32,26 @@
 import org.gradle.util.internal.GFileUtils;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A build cache stored in a local directory.
+ *
+ * <p>Entries are stored in shard directories, see {@link DirectoryBuildCacheShards}. Neither loading nor storing an entry takes a lock:
+ * entries are only ever moved into place atomically, so that readers in any process see either a complete entry or none.
+ * An entry removed by a concurrent cleanup while being loaded is treated as a miss, and an entry stored while its shard
+ * is being cleaned up may be removed again, which only costs a later miss.</p>
+ */
 public class DirectoryBuildCacheService implements LocalBuildCacheService, BuildCacheService {
 
     private final PathKeyFileStore fileStore;
@@ -46,10 +59,11 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
     private final BuildCacheTempFileStore tempFileStore;
     private final FileAccessTracker fileAccessTracker;
     private final String failedFileSuffix;
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final DirectoryBuildCacheShards shards;
 
-    public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix) {
+    public DirectoryBuildCacheService(PathKeyFileStore fileStore, DirectoryBuildCacheShards shards, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix) {
         this.fileStore = fileStore;
+        this.shards = shards;
         this.persistentCache = persistentCache;
         this.tempFileStore = tempFileStore;
         this.fileAccessTracker = fileAccessTracker;
@@ -90,29 +104,21 @@ public boolean load(final BuildCacheKey key, final BuildCacheEntryReader reader)
 
     @Override
     public void loadLocally(final BuildCacheKey key, final Action<? super File> reader) {
-        // We need to lock other processes out here because garbage collection can be under way in another process
-        persistentCache.withFileLock(() -> {
-            lock.readLock().lock();
-            try {
-                loadInsideLock(key, reader);
-            } finally {
-                lock.readLock().unlock();
-            }
-        });
-    }
-
-    private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
-        LocallyAvailableResource resource = fileStore.get(key.getHashCode());
-        if (resource == null) {
+        // Entries are only ever replaced or removed by atomic file system operations, so no lock is needed to read them
+        File file = locateEntry(key.getHashCode());
+        if (file == null) {
             return;
         }
 
-        File file = resource.getFile();
         fileAccessTracker.markAccessed(file);
 
         try {
             reader.execute(file);
         } catch (Exception e) {
+            if (!file.exists()) {
+                // The entry was removed by the cleanup while we were trying to read it, treat it as a miss
+                return;
+            }
             // Try to move the file out of the way in case its permanently corrupt
             // Don't delete, so that it can be potentially used for debugging
             File failedFile = new File(file.getAbsolutePath() + failedFileSuffix);
@@ -124,6 +130,28 @@ private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
         }
     }
 
+    @Nullable
+    private File locateEntry(String hashCode) {
+        File file = shards.entryFile(hashCode);
+        if (file.isFile()) {
+            return file;
+        }
+        LocallyAvailableResource legacyResource = fileStore.get(hashCode);
+        if (legacyResource == null) {
+            return null;
+        }
+        // Move entries stored by previous Gradle versions into their shard, so that they are tracked and cleaned up like the other entries.
+        // Another thread or process may be moving the same entry, in which case the entry is found in the shard.
+        try {
+            moveIntoPlace(legacyResource.getFile(), file);
+        } catch (IOException e) {
+            if (!file.isFile()) {
+                return legacyResource.getFile().isFile() ? legacyResource.getFile() : null;
+            }
+        }
+        return file;
+    }
+
     @Override
     public void store(final BuildCacheKey key, final BuildCacheEntryWriter result) throws BuildCacheException {
         tempFileStore.withTempFile(key, new Action<File>() {
@@ -149,32 +177,57 @@ public void execute(@Nonnull File file) {
 
     @Override
     public void storeLocally(final BuildCacheKey key, final File file) {
-        persistentCache.withFileLock(new Runnable() {
-            @Override
-            public void run() {
-                lock.writeLock().lock();
-                try {
-                    storeInsideLock(key, file);
-                } finally {
-                    lock.writeLock().unlock();
-                }
+        File entryFile = shards.entryFile(key.getHashCode());
+        try {
+            moveIntoPlace(file, entryFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fileAccessTracker.markAccessed(entryFile);
+    }
+
+    /**
+     * Moves the given file into place, so that concurrent readers, possibly in other processes, either see the complete previous entry or the complete new one.
+     */
+    private static void moveIntoPlace(File source, File target) throws IOException {
+        Path targetPath = target.toPath();
+        try {
+            moveAtomically(source.toPath(), targetPath);
+        } catch (NoSuchFileException e) {
+            // The shard directory does not exist yet, or has just been removed by a cleanup
+            if (!source.exists()) {
+                throw e;
             }
-        });
+            Files.createDirectories(targetPath.getParent());
+            moveAtomically(source.toPath(), targetPath);
+        } catch (AccessDeniedException e) {
+            // On Windows, an entry that is being read cannot be replaced. Entries with the same key have the same contents, so keep the existing one.
+            if (!target.isFile()) {
+                throw e;
+            }
+            GFileUtils.deleteQuietly(source);
+        }
     }
 
-    private void storeInsideLock(BuildCacheKey key, File file) {
-        LocallyAvailableResource resource = fileStore.move(key.getHashCode(), file);
-        fileAccessTracker.markAccessed(resource.getFile());
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            // The file is on another file system, copy it next to the entry first so that the entry itself is still replaced atomically
+            Path copy = Files.createTempFile(target.getParent(), target.getFileName().toString() + "-", BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX);
+            try {
+                Files.copy(source, copy, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(copy, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(copy);
+            }
+            Files.delete(source);
+        }
     }
 
     @Override
     public void withTempFile(final BuildCacheKey key, final Action<? super File> action) {
-        persistentCache.withFileLock(new Runnable() {
-            @Override
-            public void run() {
-                tempFileStore.withTempFile(key, action);
-            }
-        });
+        tempFileStore.withTempFile(key, action);
     }
 
     @Override
@@ -22,8 +22,6 @@
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.internal.CleanupActionFactory;
-import org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup;
-import org.gradle.cache.internal.SingleDepthFilesFinder;
 import org.gradle.cache.scopes.GlobalScopedCache;
 import org.gradle.caching.BuildCacheService;
 import org.gradle.caching.BuildCacheServiceFactory;
@@ -43,10 +41,13 @@
 public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFactory<DirectoryBuildCache> {
     public static final String FAILED_READ_SUFFIX = ".failed";
 
+    // Entries are stored in shard directories, see DirectoryBuildCacheShards. Entries stored in the base directory
+    // by previous Gradle versions are moved into their shard when loaded, so the cache keeps its version.
     private static final String BUILD_CACHE_VERSION = "1";
     private static final String BUILD_CACHE_KEY = "build-cache-" + BUILD_CACHE_VERSION;
     private static final String DIRECTORY_BUILD_CACHE_TYPE = "directory";
-    private static final int FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP = 1;
+    private static final int ENTRY_DEPTH = 2;
+    private static final int SHARD_DEPTH = 1;
 
     private final CacheRepository cacheRepository;
     private final GlobalScopedCache globalScopedCache;
@@ -85,17 +86,24 @@ public BuildCacheService createBuildCacheService(DirectoryBuildCache configurati
             config("removeUnusedEntriesAfter", String.valueOf(removeUnusedEntriesAfterDays) + " days");
 
         PathKeyFileStore fileStore = fileStoreFactory.createFileStore(target);
+        DirectoryBuildCacheShards shards = new DirectoryBuildCacheShards(target);
         PersistentCache persistentCache = cacheRepository
             .cache(target)
-            .withCleanup(cleanupActionFactory.create(new LeastRecentlyUsedCacheCleanup(new SingleDepthFilesFinder(FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP), fileAccessTimeJournal, removeUnusedEntriesAfterDays)))
+            .withCleanup(cleanupActionFactory.create(new DirectoryBuildCacheCleanup(fileAccessTimeJournal, removeUnusedEntriesAfterDays)))
             .withDisplayName("Build cache")
             .withLockOptions(mode(OnDemand))
             .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
             .open();
         BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(temporaryFileProvider);
-        FileAccessTracker fileAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, target, FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
+        FileAccessTracker entryAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, target, ENTRY_DEPTH);
+        // Previous Gradle versions sharing the cache directory clean up the files directly in it, so the shards are marked as accessed as well
+        FileAccessTracker shardAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, target, SHARD_DEPTH);
+        FileAccessTracker fileAccessTracker = file -> {
+            entryAccessTracker.markAccessed(file);
+            shardAccessTracker.markAccessed(file);
+        };
 
-        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX);
+        return new DirectoryBuildCacheService(fileStore, shards, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX);
     }
 
     private static void checkDirectory(File directory) {
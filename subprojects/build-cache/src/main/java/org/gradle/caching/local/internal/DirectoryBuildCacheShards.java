@@ -0,0 +1,56 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import java.io.File;
+import java.util.regex.Pattern;
+
+/**
+ * The layout of a directory build cache, where each entry is stored in a shard directory named after the first characters of its key.
+ *
+ * <p>Shards keep directories small, and let the cleanup of the cache process a few of them at a time.</p>
+ */
+public class DirectoryBuildCacheShards {
+    public static final int SHARD_NAME_LENGTH = 2;
+    private static final Pattern SHARD_NAME = Pattern.compile("\\p{XDigit}{" + SHARD_NAME_LENGTH + "}");
+
+    private final File baseDir;
+
+    public DirectoryBuildCacheShards(File baseDir) {
+        this.baseDir = baseDir;
+    }
+
+    public static String shardName(String key) {
+        return key.substring(0, Math.min(SHARD_NAME_LENGTH, key.length()));
+    }
+
+    public static boolean isShardDirectory(File file) {
+        return SHARD_NAME.matcher(file.getName()).matches() && file.isDirectory();
+    }
+
+    public File getBaseDir() {
+        return baseDir;
+    }
+
+    public File shardDir(String shardName) {
+        return new File(baseDir, shardName);
+    }
+
+    public File entryFile(String key) {
+        return new File(shardDir(shardName(key)), key);
+    }
+}
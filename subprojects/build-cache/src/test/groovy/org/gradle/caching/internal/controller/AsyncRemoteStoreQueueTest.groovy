@@ -0,0 +1,134 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller
+
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.internal.controller.service.RemoteBuildCacheServiceHandle
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+class AsyncRemoteStoreQueueTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def remote = Mock(RemoteBuildCacheServiceHandle)
+    def executor = Executors.newCachedThreadPool()
+    def temporaryFileProvider = TestFiles.tmpDirTemporaryFileProvider(tmpDir.createDir("tmp"))
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "stores a copy of the entry and deletes it afterwards"() {
+        def queue = new AsyncRemoteStoreQueue(remote, temporaryFileProvider, executor)
+        def entry = tmpDir.file("entry") << "content"
+        def key = Stub(BuildCacheKey)
+        File storedFile = null
+
+        when:
+        queue.submit(key, entry, true)
+        queue.close()
+
+        then:
+        1 * remote.maybeStoreDeferred(key, _, _) >> { BuildCacheKey k, File file, deferredBy ->
+            storedFile = file
+            assert file.text == "content"
+            true
+        }
+        entry.text == "content"
+        !storedFile.exists()
+    }
+
+    def "moves the entry when it does not have to be kept"() {
+        def queue = new AsyncRemoteStoreQueue(remote, temporaryFileProvider, executor)
+        def entry = tmpDir.file("entry") << "content"
+
+        when:
+        queue.submit(Stub(BuildCacheKey), entry, false)
+        queue.close()
+
+        then:
+        1 * remote.maybeStoreDeferred(_, { it.text == "content" }, _) >> true
+        !entry.exists()
+    }
+
+    def "blocks when too many entries are pending"() {
+        def queue = new AsyncRemoteStoreQueue(remote, temporaryFileProvider, executor, 1, Long.MAX_VALUE)
+        def storing = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def submittedSecond = new AtomicBoolean()
+        remote.maybeStoreDeferred(_, _, _) >> {
+            storing.countDown()
+            release.await()
+            true
+        }
+
+        when:
+        queue.submit(Stub(BuildCacheKey), tmpDir.file("first") << "first", false)
+        storing.await()
+        def submitter = Thread.start {
+            queue.submit(Stub(BuildCacheKey), tmpDir.file("second") << "second", false)
+            submittedSecond.set(true)
+        }
+        submitter.join(200)
+
+        then:
+        !submittedSecond.get()
+
+        when:
+        release.countDown()
+        submitter.join(TimeUnit.SECONDS.toMillis(10))
+        queue.close()
+
+        then:
+        submittedSecond.get()
+    }
+
+    def "accepts an entry larger than the size limit when nothing is pending"() {
+        def queue = new AsyncRemoteStoreQueue(remote, temporaryFileProvider, executor, 10, 1)
+
+        when:
+        queue.submit(Stub(BuildCacheKey), tmpDir.file("entry") << "larger than a byte", false)
+        queue.close()
+
+        then:
+        1 * remote.maybeStoreDeferred(_, _, _) >> true
+    }
+
+    def "deletes the entry when storing it fails"() {
+        def queue = new AsyncRemoteStoreQueue(remote, temporaryFileProvider, executor)
+        File storedFile = null
+
+        when:
+        queue.submit(Stub(BuildCacheKey), tmpDir.file("entry") << "content", false)
+        queue.close()
+
+        then:
+        1 * remote.maybeStoreDeferred(_, _, _) >> { BuildCacheKey k, File file, deferredBy ->
+            storedFile = file
+            throw new RuntimeException("failed")
+        }
+        !storedFile.exists()
+    }
+}
@@ -25,6 +25,7 @@ import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
 import org.gradle.caching.internal.CacheableEntity
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
+import org.gradle.caching.internal.operations.BuildCacheRemoteStoreBuildOperationType
 import org.gradle.caching.internal.origin.OriginMetadataFactory
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
 import org.gradle.caching.local.internal.LocalBuildCacheService
@@ -36,6 +37,8 @@ import org.junit.Rule
 import spock.lang.Specification
 
 import java.time.Duration
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
 
 class DefaultBuildCacheControllerTest extends Specification {
 
@@ -70,7 +73,7 @@ class DefaultBuildCacheControllerTest extends Specification {
 
     interface Local extends BuildCacheService, LocalBuildCacheService {}
 
-    BuildCacheController getController(boolean disableRemoteOnError = true) {
+    BuildCacheController getController(boolean disableRemoteOnError = true, ExecutorService asyncRemoteStoreExecutor = null) {
         new DefaultBuildCacheController(
             new BuildCacheServicesConfiguration(
                 local,
@@ -86,7 +89,8 @@ class DefaultBuildCacheControllerTest extends Specification {
             fileSystemAccess,
             packer,
             originMetadataFactory,
-            stringInterner
+            stringInterner,
+            asyncRemoteStoreExecutor
         )
     }
 
@@ -276,4 +280,40 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * local.close()
         1 * remote.close()
     }
+
+    def "stores to remote in the background when enabled"() {
+        given:
+        def controller = getController(true, Executors.newSingleThreadExecutor())
+
+        when:
+        controller.store(key, cacheableEntity, snapshots, executionTime)
+        controller.close()
+
+        then:
+        1 * remote.store(key, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            writer.writeTo(new ByteArrayOutputStream())
+        }
+        1 * local.storeLocally(key, _)
+
+        and:
+        with(operations.log.mostRecentDetails(BuildCacheRemoteStoreBuildOperationType)) {
+            deferred
+        }
+    }
+
+    def "stores to remote in the background when local push is disabled"() {
+        given:
+        localPush = false
+        def controller = getController(true, Executors.newSingleThreadExecutor())
+
+        when:
+        controller.store(key, cacheableEntity, snapshots, executionTime)
+        controller.close()
+
+        then:
+        1 * remote.store(key, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            writer.writeTo(new ByteArrayOutputStream())
+        }
+        0 * local.storeLocally(key, _)
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.gradle.cache.CleanableStore
+import org.gradle.cache.CleanupProgressMonitor
+import org.gradle.internal.file.FileAccessTimeJournal
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class DirectoryBuildCacheCleanupTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+    def cacheDir = temporaryFolder.createDir("cache")
+    def gcFile = cacheDir.file("gc.properties").createFile()
+    def cleanableStore = Stub(CleanableStore) {
+        getBaseDir() >> cacheDir
+        getReservedCacheFiles() >> [gcFile]
+        getDisplayName() >> "Build cache"
+    }
+    def journal = Stub(FileAccessTimeJournal) {
+        getLastAccessTime(_) >> { File file -> file.lastModified() }
+    }
+    def cleanup = new DirectoryBuildCacheCleanup(journal, 7)
+    def now = System.currentTimeMillis()
+    def tenDaysAgo = now - TimeUnit.DAYS.toMillis(10)
+
+    def "deletes old entries from each shard"() {
+        given:
+        def newEntry = createEntry(cacheDir.file("ab", "ab01"), now)
+        def oldEntry = createEntry(cacheDir.file("ab", "ab02"), tenDaysAgo)
+        def otherOldEntry = createEntry(cacheDir.file("cd", "cd01"), tenDaysAgo)
+
+        when:
+        cleanup.clean(cleanableStore, Stub(CleanupProgressMonitor))
+
+        then:
+        newEntry.assertIsFile()
+        oldEntry.assertDoesNotExist()
+        otherOldEntry.assertDoesNotExist()
+        cacheDir.file("ab").assertIsDir()
+        gcFile.assertIsFile()
+    }
+
+    def "deletes old entries stored by previous versions"() {
+        given:
+        def newEntry = createEntry(cacheDir.file("ab01"), now)
+        def oldEntry = createEntry(cacheDir.file("ab02"), tenDaysAgo)
+        gcFile.lastModified = tenDaysAgo
+
+        when:
+        cleanup.clean(cleanableStore, Stub(CleanupProgressMonitor))
+
+        then:
+        newEntry.assertIsFile()
+        oldEntry.assertDoesNotExist()
+        gcFile.assertIsFile()
+    }
+
+    def "cleans up a bounded number of shards in each run"() {
+        given:
+        def shardCount = DirectoryBuildCacheCleanup.SHARDS_PER_RUN + 6
+        def oldEntries = (0..<shardCount).collect { index ->
+            def shardName = String.format("%02x", index)
+            createEntry(cacheDir.file(shardName, shardName + "01"), tenDaysAgo)
+        }
+
+        when:
+        cleanup.clean(cleanableStore, Stub(CleanupProgressMonitor))
+
+        then:
+        oldEntries.take(DirectoryBuildCacheCleanup.SHARDS_PER_RUN).every { !it.exists() }
+        oldEntries.drop(DirectoryBuildCacheCleanup.SHARDS_PER_RUN).every { it.isFile() }
+        cacheDir.file(DirectoryBuildCacheCleanup.NEXT_SHARD_FILE_NAME).text == String.format("%02x", DirectoryBuildCacheCleanup.SHARDS_PER_RUN)
+
+        when:
+        def newEntry = createEntry(cacheDir.file("00", "0002"), now)
+        createEntry(cacheDir.file("01", "0101"), tenDaysAgo)
+        cleanup.clean(cleanableStore, Stub(CleanupProgressMonitor))
+
+        then:
+        oldEntries.every { !it.exists() }
+        newEntry.assertIsFile()
+        cacheDir.file(DirectoryBuildCacheCleanup.NEXT_SHARD_FILE_NAME).assertIsFile()
+    }
+
+    def "does not delete other directories"() {
+        given:
+        def entry = createEntry(cacheDir.file("not-a-shard", "ab01"), tenDaysAgo)
+
+        when:
+        cleanup.clean(cleanableStore, Stub(CleanupProgressMonitor))
+
+        then:
+        entry.assertIsFile()
+    }
+
+    private static TestFile createEntry(TestFile file, long lastModified) {
+        file.createFile()
+        file.lastModified = lastModified
+        file
+    }
+}
@@ -42,7 +42,8 @@ class DirectoryBuildCacheServiceTest extends Specification {
     }
     def tempFileStore = new DefaultBuildCacheTempFileStore(new DefaultTemporaryFileProvider(() -> cacheDir))
     def fileAccessTracker = Mock(FileAccessTracker)
-    def service = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed")
+    def shards = new DirectoryBuildCacheShards(cacheDir)
+    def service = new DirectoryBuildCacheService(fileStore, shards, persistentCache, tempFileStore, fileAccessTracker, ".failed")
     def hashCode = "1234abcd"
     def key = Mock(BuildCacheKey) {
         getHashCode() >> hashCode
@@ -134,4 +135,125 @@ class DirectoryBuildCacheServiceTest extends Specification {
         1 * fileAccessTracker.markAccessed(cachedFile)
         loaded
     }
+
+    def "stores entries in the shard of their key"() {
+        given:
+        def originalFile = temporaryFolder.createFile("foo")
+        originalFile.text = "bar"
+
+        when:
+        service.storeLocally(key, originalFile)
+
+        then:
+        1 * fileAccessTracker.markAccessed(cacheDir.file("12", hashCode))
+        cacheDir.file("12", hashCode).text == "bar"
+        !originalFile.exists()
+    }
+
+    def "does not take the cross-process lock when storing or loading"() {
+        given:
+        def originalFile = temporaryFolder.createFile("foo")
+        originalFile.text = "bar"
+
+        when:
+        service.storeLocally(key, originalFile)
+
+        then:
+        0 * persistentCache.withFileLock(_)
+
+        when:
+        service.loadLocally(key, { file -> assert file.text == "bar" })
+
+        then:
+        0 * persistentCache.withFileLock(_)
+    }
+
+    def "recreates the shard directory when storing"() {
+        given:
+        cacheDir.file("12", "12ab").text = "other"
+        cacheDir.file("12").deleteDir()
+        def originalFile = temporaryFolder.createFile("foo")
+        originalFile.text = "bar"
+
+        when:
+        service.storeLocally(key, originalFile)
+
+        then:
+        cacheDir.file("12", hashCode).text == "bar"
+        !originalFile.exists()
+    }
+
+    def "replaces existing entry when storing"() {
+        given:
+        cacheDir.file("12", hashCode).text = "old"
+        def originalFile = temporaryFolder.createFile("foo")
+        originalFile.text = "new"
+
+        when:
+        service.storeLocally(key, originalFile)
+
+        then:
+        cacheDir.file("12", hashCode).text == "new"
+    }
+
+    def "loads entries stored by previous versions and moves them into their shard"() {
+        given:
+        cacheDir.file(hashCode).text = "legacy"
+
+        when:
+        def loaded = service.load(key, new BuildCacheEntryReader() {
+            @Override
+            void readFrom(InputStream input) throws IOException {
+                assert input.text == "legacy"
+            }
+        })
+
+        then:
+        loaded
+        0 * persistentCache.withFileLock(_)
+        1 * fileAccessTracker.markAccessed(cacheDir.file("12", hashCode))
+        !cacheDir.file(hashCode).exists()
+        cacheDir.file("12", hashCode).text == "legacy"
+    }
+
+    def "does not load missing entry"() {
+        when:
+        def loaded = service.load(key, Mock(BuildCacheEntryReader))
+
+        then:
+        !loaded
+        0 * fileAccessTracker.markAccessed(_)
+    }
+
+    def "treats entry removed while loading as a miss"() {
+        given:
+        def cachedFile = cacheDir.file("12", hashCode)
+        cachedFile.text = "removed"
+
+        when:
+        service.loadLocally(key, { file ->
+            file.delete()
+            throw new FileNotFoundException(file.absolutePath)
+        })
+
+        then:
+        noExceptionThrown()
+        !cachedFile.exists()
+        !cacheDir.file("12", hashCode + ".failed").exists()
+    }
+
+    def "moves corrupt entry out of the way"() {
+        given:
+        def cachedFile = cacheDir.file("12", hashCode)
+        cachedFile.text = "corrupt"
+
+        when:
+        service.loadLocally(key, { file -> throw new IOException("Corrupt") })
+
+        then:
+        def ex = thrown IOException
+        ex.message == "Corrupt"
+        !cachedFile.exists()
+        cacheDir.file("12", hashCode + ".failed").text == "corrupt"
+    }
 }
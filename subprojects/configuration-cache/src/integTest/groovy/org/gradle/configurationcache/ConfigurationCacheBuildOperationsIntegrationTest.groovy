@@ -67,7 +67,9 @@ class ConfigurationCacheBuildOperationsIntegrationTest extends AbstractConfigura
             size() == 1
             with(get(0)) {
                 details == [:]
-                it.result == [:]
+                it.result.keySet() == ['decodedObjectCount', 'deferredTaskCount', 'heapGrowth'] as Set
+                it.result.decodedObjectCount > 0
+                it.result.deferredTaskCount == 0
             }
         }
         operations.all(ConfigurationCacheStoreBuildOperationType).empty
@@ -108,12 +110,34 @@ class ConfigurationCacheBuildOperationsIntegrationTest extends AbstractConfigura
             size() == 1
             with(get(0)) {
                 details == [:]
-                it.result == [:]
+                it.result.keySet() == ['decodedObjectCount', 'deferredTaskCount', 'heapGrowth'] as Set
+                it.result.decodedObjectCount > 0
+                it.result.deferredTaskCount == 0
             }
         }
         operations.all(ConfigurationCacheStoreBuildOperationType).empty
     }
 
+    def "reports tasks whose state is loaded lazily"() {
+        given:
+        withLibBuild()
+        withAppBuild()
+
+        when:
+        inDirectory 'app'
+        configurationCacheRun 'assemble'
+        inDirectory 'app'
+        configurationCacheRun 'assemble', '-Dorg.gradle.internal.configuration-cache.lazy-load=true'
+
+        then:
+        with(operations.all(ConfigurationCacheLoadBuildOperationType)) {
+            size() == 1
+            with(get(0)) {
+                it.result.deferredTaskCount > 0
+            }
+        }
+    }
+
     private TestFile withLibBuild(boolean withPrecompiledScriptPlugin = false) {
         createDir('lib') {
             file('settings.gradle') << """
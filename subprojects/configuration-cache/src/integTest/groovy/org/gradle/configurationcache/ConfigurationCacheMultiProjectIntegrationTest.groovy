@@ -114,4 +114,73 @@ class ConfigurationCacheMultiProjectIntegrationTest extends AbstractConfiguratio
         result.assertTasksExecuted(':ok', ':a:ok', ':b:ok')
         configurationCache.assertStateLoaded()
     }
+
+    def "stores and loads tasks of many projects when loading in parallel"() {
+        given:
+        settingsFile << """
+            include 'a', 'b', 'c', 'd'
+        """
+        buildScript """
+            import java.util.concurrent.atomic.AtomicInteger
+
+            abstract class Counter implements BuildService<BuildServiceParameters.None> {
+                final AtomicInteger count = new AtomicInteger()
+            }
+
+            abstract class Produce extends DefaultTask {
+                @Input
+                abstract Property<String> getMessage()
+
+                @Internal
+                abstract Property<Counter> getCounter()
+
+                @OutputFile
+                abstract RegularFileProperty getOutputFile()
+
+                @TaskAction
+                def produce() {
+                    outputFile.get().asFile.text = message.get()
+                    println("\$path: count = \${counter.get().count.incrementAndGet()}")
+                }
+            }
+
+            def counter = gradle.sharedServices.registerIfAbsent("counter", Counter) {}
+
+            allprojects {
+                def produce = tasks.register("produce", Produce) {
+                    it.message.set("from \$project.path")
+                    it.counter.set(counter)
+                    it.usesService(counter)
+                    it.outputFile.set(layout.buildDirectory.file("out.txt"))
+                }
+                if (project != rootProject) {
+                    produce.configure {
+                        dependsOn(rootProject.tasks.named("produce"))
+                    }
+                }
+            }
+        """
+        def configurationCache = newConfigurationCacheFixture()
+
+        when:
+        configurationCacheRun "produce", "-Dorg.gradle.internal.configuration-cache.parallel-load=true"
+
+        then:
+        configurationCache.assertStateStored()
+        result.assertTasksExecuted(':produce', ':a:produce', ':b:produce', ':c:produce', ':d:produce')
+
+        when:
+        file("build").deleteDir()
+        ['a', 'b', 'c', 'd'].each { file("$it/build").deleteDir() }
+        configurationCacheRun "produce", "-Dorg.gradle.internal.configuration-cache.parallel-load=true"
+
+        then:
+        configurationCache.assertStateLoaded()
+        result.assertTasksExecuted(':produce', ':a:produce', ':b:produce', ':c:produce', ':d:produce')
+        result.assertTaskOrder(':produce', ':a:produce')
+        result.assertTaskOrder(':produce', ':d:produce')
+        file("build/out.txt").text == "from :"
+        ['a', 'b', 'c', 'd'].every { file("$it/build/out.txt").text == "from :$it" }
+        (1..5).each { outputContains("count = $it") }
+    }
 }
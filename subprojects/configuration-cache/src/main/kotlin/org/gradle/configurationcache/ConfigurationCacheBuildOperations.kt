@@ -16,6 +16,8 @@
 
 package org.gradle.configurationcache
 
+import org.gradle.configurationcache.fingerprint.FingerprintCheckStatistics
+import org.gradle.internal.configurationcache.ConfigurationCacheCheckFingerprintBuildOperationType
 import org.gradle.internal.configurationcache.ConfigurationCacheLoadBuildOperationType
 import org.gradle.internal.configurationcache.ConfigurationCacheStoreBuildOperationType
 import org.gradle.internal.operations.BuildOperationContext
@@ -25,13 +27,30 @@ import org.gradle.internal.operations.CallableBuildOperation
 
 
 internal
-fun <T : Any> BuildOperationExecutor.withLoadOperation(block: () -> T) =
-    withOperation("Load configuration cache state", block, LoadDetails, LoadResult)
+fun <T : Any> BuildOperationExecutor.withLoadOperation(statistics: ConfigurationCacheLoadStatistics, block: () -> T): T {
+    val decodedObjectsBefore = statistics.decodedObjects.sum()
+    val deferredTasksBefore = statistics.deferredTasks.sum()
+    val usedHeapBefore = usedHeap()
+    return withOperation("Load configuration cache state", block, LoadDetails) {
+        LoadResult(
+            statistics.decodedObjects.sum() - decodedObjectsBefore,
+            statistics.deferredTasks.sum() - deferredTasksBefore,
+            usedHeap() - usedHeapBefore
+        )
+    }
+}
+
+
+internal
+fun <T : Any> BuildOperationExecutor.withCheckFingerprintOperation(statistics: FingerprintCheckStatistics, block: () -> T): T =
+    withOperation("Check configuration cache fingerprint", block, CheckFingerprintDetails) {
+        CheckFingerprintResult(statistics.checkTimes)
+    }
 
 
 internal
 fun BuildOperationExecutor.withStoreOperation(cacheKey: String, block: () -> Unit) =
-    withOperation("Store configuration cache state $cacheKey", block, StoreDetails, StoreResult)
+    withOperation("Store configuration cache state $cacheKey", block, StoreDetails) { StoreResult }
 
 
 private
@@ -39,7 +58,31 @@ object LoadDetails : ConfigurationCacheLoadBuildOperationType.Details
 
 
 private
-object LoadResult : ConfigurationCacheLoadBuildOperationType.Result
+class LoadResult(
+    private val decodedObjectCount: Long,
+    private val deferredTaskCount: Long,
+    private val heapGrowth: Long
+) : ConfigurationCacheLoadBuildOperationType.Result {
+
+    override fun getDecodedObjectCount(): Long = decodedObjectCount
+
+    override fun getDeferredTaskCount(): Long = deferredTaskCount
+
+    override fun getHeapGrowth(): Long = heapGrowth
+}
+
+
+private
+object CheckFingerprintDetails : ConfigurationCacheCheckFingerprintBuildOperationType.Details
+
+
+private
+class CheckFingerprintResult(
+    private val checkTimes: Map<String, Long>
+) : ConfigurationCacheCheckFingerprintBuildOperationType.Result {
+
+    override fun getCheckTimes(): Map<String, Long> = checkTimes
+}
 
 
 private
@@ -51,11 +94,16 @@ object StoreResult : ConfigurationCacheStoreBuildOperationType.Result
 
 
 private
-fun <T : Any, D : Any, R : Any> BuildOperationExecutor.withOperation(displayName: String, block: () -> T, details: D, result: R): T =
+fun usedHeap(): Long =
+    Runtime.getRuntime().run { totalMemory() - freeMemory() }
+
+
+private
+fun <T : Any, D : Any, R : Any> BuildOperationExecutor.withOperation(displayName: String, block: () -> T, details: D, result: () -> R): T =
     call(object : CallableBuildOperation<T> {
         override fun description(): BuildOperationDescriptor.Builder =
             BuildOperationDescriptor.displayName(displayName).details(details)
 
         override fun call(context: BuildOperationContext): T =
-            block().also { context.setResult(result) }
+            block().also { context.setResult(result()) }
     })
@@ -42,8 +42,10 @@ import org.gradle.configurationcache.serialization.writeCollection
 import org.gradle.configurationcache.serialization.writeFile
 import org.gradle.internal.build.BuildStateRegistry
 import org.gradle.internal.buildtree.BuildTreeWorkGraph
+import org.gradle.internal.concurrent.ExecutorFactory
 import org.gradle.internal.serialize.Decoder
 import org.gradle.internal.serialize.Encoder
+import org.gradle.internal.serialize.kryo.ByteBufferDecoder
 import org.gradle.internal.serialize.kryo.KryoBackedDecoder
 import org.gradle.internal.serialize.kryo.KryoBackedEncoder
 import org.gradle.internal.service.scopes.Scopes
@@ -52,6 +54,7 @@ import org.gradle.util.Path
 import java.io.File
 import java.io.InputStream
 import java.io.OutputStream
+import java.util.concurrent.Executor
 
 
 @ServiceScope(Scopes.Gradle::class)
@@ -61,7 +64,8 @@ class ConfigurationCacheIO internal constructor(
     private val problems: ConfigurationCacheProblems,
     private val scopeRegistryListener: ConfigurationCacheClassLoaderScopeRegistryListener,
     private val beanStateReaderLookup: BeanStateReaderLookup,
-    private val beanStateWriterLookup: BeanStateWriterLookup
+    private val beanStateWriterLookup: BeanStateWriterLookup,
+    private val statistics: ConfigurationCacheLoadStatistics
 ) {
     private
     val codecs = codecs()
@@ -136,9 +140,11 @@ class ConfigurationCacheIO internal constructor(
 
     internal
     fun readRootBuildStateFrom(stateFile: ConfigurationCacheStateFile, graph: BuildTreeWorkGraph) {
-        readConfigurationCacheState(stateFile) { state ->
-            state.run {
-                readRootBuildState(graph, host::createBuild)
+        withWorkGraphExecutor { executor ->
+            readConfigurationCacheState(stateFile, executor) { state ->
+                state.run {
+                    readRootBuildState(graph, host::createBuild)
+                }
             }
         }
     }
@@ -154,19 +160,35 @@ class ConfigurationCacheIO internal constructor(
 
     internal
     fun readIncludedBuildStateFrom(stateFile: ConfigurationCacheStateFile, includedBuild: ConfigurationCacheBuild) =
-        readConfigurationCacheState(stateFile) { state ->
-            state.run {
-                readBuildState(includedBuild)
+        withWorkGraphExecutor { executor ->
+            readConfigurationCacheState(stateFile, executor) { state ->
+                state.run {
+                    readBuildState(includedBuild)
+                }
             }
         }
 
+    private
+    fun <T> withWorkGraphExecutor(action: (Executor?) -> T): T {
+        if (!startParameter.isParallelLoad) {
+            return action(null)
+        }
+        val executor = service<ExecutorFactory>().create("Configuration cache load", Runtime.getRuntime().availableProcessors())
+        try {
+            return action(executor)
+        } finally {
+            executor.stop()
+        }
+    }
+
     private
     fun <T> readConfigurationCacheState(
         stateFile: ConfigurationCacheStateFile,
+        workGraphExecutor: Executor? = null,
         action: suspend DefaultReadContext.(ConfigurationCacheState) -> T
     ): T {
-        return withReadContextFor(stateFile.inputStream()) { codecs ->
-            ConfigurationCacheState(codecs, stateFile).run {
+        return withReadContextFor(decoderFor(stateFile)) { codecs ->
+            ConfigurationCacheState(codecs, stateFile, workGraphExecutor, startParameter.isLazyLoad, statistics).run {
                 action(this)
             }
         }
@@ -235,12 +257,30 @@ class ConfigurationCacheIO internal constructor(
             codecs
         ) to codecs
 
+    /**
+     * Reads the given state file from memory when [ConfigurationCacheStartParameter.isMappedLoad] is set,
+     * so that the parts of the state that are decoded separately, such as the segments of the work graph, are not copied.
+     */
+    private
+    fun decoderFor(stateFile: ConfigurationCacheStateFile): Decoder =
+        when {
+            startParameter.isMappedLoad -> ByteBufferDecoder(stateFile.mappedBuffer())
+            else -> KryoBackedDecoder(stateFile.inputStream())
+        }
+
     internal
     fun <R> withReadContextFor(
         inputStream: InputStream,
         readOperation: suspend DefaultReadContext.(Codecs) -> R
     ): R =
-        readerContextFor(inputStream).let { (context, codecs) ->
+        withReadContextFor(KryoBackedDecoder(inputStream), readOperation)
+
+    private
+    fun <R> withReadContextFor(
+        decoder: Decoder,
+        readOperation: suspend DefaultReadContext.(Codecs) -> R
+    ): R =
+        readerContextFor(decoder).let { (context, codecs) ->
             context.use {
                 context.run {
                     initClassLoader(javaClass.classLoader)
@@ -251,11 +291,6 @@ class ConfigurationCacheIO internal constructor(
             }
         }
 
-    private
-    fun readerContextFor(
-        inputStream: InputStream,
-    ) = readerContextFor(KryoBackedDecoder(inputStream))
-
     internal
     fun readerContextFor(
         decoder: Decoder,
@@ -288,7 +323,8 @@ class ConfigurationCacheIO internal constructor(
         decoder,
         beanStateReaderLookup,
         logger,
-        problems
+        problems,
+        decodedObjects = statistics.decodedObjects
     )
 
     private
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configurationcache
+
+import org.gradle.internal.service.scopes.Scopes
+import org.gradle.internal.service.scopes.ServiceScope
+import java.util.concurrent.atomic.LongAdder
+
+
+/**
+ * Counts the work done to load the configuration cache state, for the load build operation result.
+ */
+@ServiceScope(Scopes.BuildTree::class)
+class ConfigurationCacheLoadStatistics {
+
+    /**
+     * The number of objects decoded from the configuration cache state.
+     */
+    val decodedObjects = LongAdder()
+
+    /**
+     * The number of tasks whose state is only decoded when they are about to be executed.
+     */
+    val deferredTasks = LongAdder()
+}
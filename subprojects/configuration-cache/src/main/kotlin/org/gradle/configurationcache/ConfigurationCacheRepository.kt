@@ -39,8 +39,11 @@ import org.gradle.internal.service.scopes.ServiceScope
 import java.io.File
 import java.io.InputStream
 import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
 import java.nio.file.Files
 import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
 
 
 @ServiceScope(Scopes.BuildTree::class)
@@ -97,6 +100,11 @@ class ConfigurationCacheRepository(
         override fun inputStream(): InputStream =
             file.also(::markAccessed).inputStream()
 
+        override fun mappedBuffer(): ByteBuffer =
+            FileChannel.open(file.also(::markAccessed).toPath(), StandardOpenOption.READ).use { channel ->
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+            }
+
         override fun delete() {
             throw UnsupportedOperationException()
         }
@@ -125,6 +133,9 @@ class ConfigurationCacheRepository(
         override fun inputStream(): InputStream =
             throw UnsupportedOperationException()
 
+        override fun mappedBuffer(): ByteBuffer =
+            throw UnsupportedOperationException()
+
         override fun delete() {
             if (file.exists()) {
                 Files.delete(file.toPath())
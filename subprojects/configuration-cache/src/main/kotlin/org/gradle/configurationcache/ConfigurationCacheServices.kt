@@ -47,6 +47,7 @@ class ConfigurationCacheServices : AbstractPluginServiceRegistry() {
             add(ConfigurationCacheRepository::class.java)
             add(InstrumentedInputAccessListener::class.java)
             add(ConfigurationCacheFingerprintController::class.java)
+            add(ConfigurationCacheLoadStatistics::class.java)
         }
     }
 
@@ -36,6 +36,7 @@ import org.gradle.configurationcache.problems.DocumentationSection.NotYetImpleme
 import org.gradle.configurationcache.serialization.DefaultReadContext
 import org.gradle.configurationcache.serialization.DefaultWriteContext
 import org.gradle.configurationcache.serialization.codecs.Codecs
+import org.gradle.configurationcache.serialization.codecs.TaskNodeCodec
 import org.gradle.configurationcache.serialization.codecs.WorkNodeCodec
 import org.gradle.configurationcache.serialization.logNotImplemented
 import org.gradle.configurationcache.serialization.readCollection
@@ -77,6 +78,8 @@ import org.gradle.vcs.internal.VcsMappingsStore
 import java.io.File
 import java.io.InputStream
 import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.util.concurrent.Executor
 import kotlin.contracts.InvocationKind
 import kotlin.contracts.contract
 
@@ -92,6 +95,11 @@ interface ConfigurationCacheStateFile {
     val exists: Boolean
     fun outputStream(): OutputStream
     fun inputStream(): InputStream
+
+    /**
+     * Maps the contents of this state file into memory.
+     */
+    fun mappedBuffer(): ByteBuffer
     fun delete()
 
     // Replace the contents of this state file, by moving the given file to the location of this state file
@@ -103,7 +111,16 @@ interface ConfigurationCacheStateFile {
 internal
 class ConfigurationCacheState(
     private val codecs: Codecs,
-    private val stateFile: ConfigurationCacheStateFile
+    private val stateFile: ConfigurationCacheStateFile,
+    /**
+     * Decodes the segments of the work graph concurrently, when present.
+     */
+    private val workGraphExecutor: Executor? = null,
+    /**
+     * Decodes the state of the tasks of the work graph only when they are about to be executed.
+     */
+    private val lazyTaskState: Boolean = false,
+    private val statistics: ConfigurationCacheLoadStatistics? = null
 ) {
     /**
      * Writes the state for the whole build starting from the given root [build] and returns the set
@@ -250,17 +267,21 @@ class ConfigurationCacheState(
 
     private
     suspend fun DefaultWriteContext.writeWorkGraphOf(gradle: GradleInternal, scheduledNodes: List<Node>) {
-        WorkNodeCodec(gradle, internalTypesCodec).run {
+        WorkNodeCodec(gradle, internalTypesCodec, taskNodeCodec()).run {
             writeWork(scheduledNodes)
         }
     }
 
     private
     suspend fun DefaultReadContext.readWorkGraph(gradle: GradleInternal) =
-        WorkNodeCodec(gradle, internalTypesCodec).run {
+        WorkNodeCodec(gradle, internalTypesCodec, taskNodeCodec(), workGraphExecutor, lazyTaskState, statistics).run {
             readWork()
         }
 
+    private
+    fun taskNodeCodec() =
+        TaskNodeCodec(userTypesCodec, codecs.taskNodeFactory)
+
     private
     suspend fun DefaultWriteContext.writeRequiredBuildServicesOf(gradle: GradleInternal, buildTreeState: StoredBuildTreeState) {
         withGradleIsolate(gradle, userTypesCodec) {
@@ -26,6 +26,7 @@ import org.gradle.api.logging.Logging
 import org.gradle.configurationcache.cacheentry.EntryDetails
 import org.gradle.configurationcache.extensions.uncheckedCast
 import org.gradle.configurationcache.fingerprint.ConfigurationCacheFingerprintController
+import org.gradle.configurationcache.fingerprint.FingerprintCheckStatistics
 import org.gradle.configurationcache.initialization.ConfigurationCacheStartParameter
 import org.gradle.configurationcache.metadata.ProjectMetadataController
 import org.gradle.configurationcache.models.IntermediateModelController
@@ -42,6 +43,7 @@ import org.gradle.internal.buildtree.BuildTreeWorkGraph
 import org.gradle.internal.classpath.Instrumented
 import org.gradle.internal.component.local.model.LocalComponentMetadata
 import org.gradle.internal.concurrent.CompositeStoppable
+import org.gradle.internal.concurrent.ExecutorFactory
 import org.gradle.internal.concurrent.Stoppable
 import org.gradle.internal.operations.BuildOperationExecutor
 import org.gradle.internal.vfs.FileSystemAccess
@@ -49,6 +51,7 @@ import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem
 import org.gradle.util.Path
 import java.io.File
 import java.io.OutputStream
+import java.util.concurrent.Executor
 
 
 class DefaultConfigurationCache internal constructor(
@@ -65,6 +68,7 @@ class DefaultConfigurationCache internal constructor(
     private val virtualFileSystem: BuildLifecycleAwareVirtualFileSystem,
     private val buildOperationExecutor: BuildOperationExecutor,
     private val cacheFingerprintController: ConfigurationCacheFingerprintController,
+    private val loadStatistics: ConfigurationCacheLoadStatistics,
     /**
      * Force the [FileSystemAccess] service to be initialized as it initializes important static state.
      */
@@ -257,18 +261,36 @@ class DefaultConfigurationCache internal constructor(
 
     private
     fun checkFingerprint(): CheckedFingerprint {
-        return store.useForStateLoad { layout ->
-            val entryFile = layout.fileFor(StateType.Entry)
-            val entryDetails = cacheIO.readCacheEntryDetailsFrom(entryFile)
-            if (entryDetails == null) {
-                // No entry file -> treat the entry as empty/missing/invalid
-                CheckedFingerprint.NotFound
-            } else {
-                checkFingerprint(entryDetails, layout)
+        val statistics = FingerprintCheckStatistics()
+        return buildOperationExecutor.withCheckFingerprintOperation(statistics) {
+            withFingerprintCheckExecutor { executor ->
+                store.useForStateLoad { layout ->
+                    val entryFile = layout.fileFor(StateType.Entry)
+                    val entryDetails = cacheIO.readCacheEntryDetailsFrom(entryFile)
+                    if (entryDetails == null) {
+                        // No entry file -> treat the entry as empty/missing/invalid
+                        CheckedFingerprint.NotFound
+                    } else {
+                        checkFingerprint(entryDetails, layout, FingerprintCheck(executor, statistics))
+                    }
+                }
             }
         }
     }
 
+    private
+    fun <T> withFingerprintCheckExecutor(action: (Executor?) -> T): T {
+        if (!startParameter.isParallelFingerprintCheck) {
+            return action(null)
+        }
+        val executor = host.service<ExecutorFactory>().create("Configuration cache fingerprint check", Runtime.getRuntime().availableProcessors())
+        try {
+            return action(executor)
+        } finally {
+            executor.stop()
+        }
+    }
+
     private
     fun <T> runWorkThatContributesToCacheEntry(action: () -> T): T {
         prepareForWork()
@@ -353,7 +375,7 @@ class DefaultConfigurationCache internal constructor(
         // when loading the task graph.
         scopeRegistryListener.dispose()
 
-        val result = buildOperationExecutor.withLoadOperation {
+        val result = buildOperationExecutor.withLoadOperation(loadStatistics) {
             store.useForStateLoad(stateType, action)
         }
         crossConfigurationTimeBarrier()
@@ -407,7 +429,7 @@ class DefaultConfigurationCache internal constructor(
     }
 
     private
-    fun checkFingerprint(entryDetails: EntryDetails, layout: ConfigurationCacheRepository.Layout): CheckedFingerprint {
+    fun checkFingerprint(entryDetails: EntryDetails, layout: ConfigurationCacheRepository.Layout, check: FingerprintCheck): CheckedFingerprint {
         // Register all included build root directories as watchable hierarchies,
         // so we can load the fingerprint for build scripts and other files from included builds
         // without violating file system invariants.
@@ -415,7 +437,7 @@ class DefaultConfigurationCache internal constructor(
 
         loadGradleProperties()
 
-        return checkFingerprintAgainstLoadedProperties(entryDetails, layout).also { result ->
+        return checkFingerprintAgainstLoadedProperties(entryDetails, layout, check).also { result ->
             if (result !== CheckedFingerprint.Valid) {
                 // Force Gradle properties to be reloaded so the Gradle properties files
                 // along with any Gradle property defining system properties and environment variables
@@ -426,15 +448,19 @@ class DefaultConfigurationCache internal constructor(
     }
 
     private
-    fun checkFingerprintAgainstLoadedProperties(entryDetails: EntryDetails, layout: ConfigurationCacheRepository.Layout): CheckedFingerprint {
-        val result = checkBuildScopedFingerprint(layout.fileFor(StateType.BuildFingerprint))
+    fun checkFingerprintAgainstLoadedProperties(
+        entryDetails: EntryDetails,
+        layout: ConfigurationCacheRepository.Layout,
+        check: FingerprintCheck
+    ): CheckedFingerprint {
+        val result = checkBuildScopedFingerprint(layout.fileFor(StateType.BuildFingerprint), check)
         if (result !is CheckedFingerprint.Valid) {
             return result
         }
 
         // Build inputs are up-to-date, check project specific inputs
 
-        val projectResult = checkProjectScopedFingerprint(layout.fileFor(StateType.ProjectFingerprint))
+        val projectResult = checkProjectScopedFingerprint(layout.fileFor(StateType.ProjectFingerprint), check)
         if (projectResult is CheckedFingerprint.ProjectsInvalid) {
             intermediateModels.value.restoreFromCacheEntry(entryDetails.intermediateModels, projectResult)
             projectMetadata.value.restoreFromCacheEntry(entryDetails.projectMetadata, projectResult)
@@ -444,8 +470,8 @@ class DefaultConfigurationCache internal constructor(
     }
 
     private
-    fun checkBuildScopedFingerprint(fingerprintFile: ConfigurationCacheStateFile): CheckedFingerprint {
-        return readFingerprintFile(fingerprintFile) { host ->
+    fun checkBuildScopedFingerprint(fingerprintFile: ConfigurationCacheStateFile, check: FingerprintCheck): CheckedFingerprint {
+        return readFingerprintFile(fingerprintFile, check) { host ->
             cacheFingerprintController.run {
                 checkBuildScopedFingerprint(host)
             }
@@ -453,8 +479,8 @@ class DefaultConfigurationCache internal constructor(
     }
 
     private
-    fun checkProjectScopedFingerprint(fingerprintFile: ConfigurationCacheStateFile): CheckedFingerprint {
-        return readFingerprintFile(fingerprintFile) { host ->
+    fun checkProjectScopedFingerprint(fingerprintFile: ConfigurationCacheStateFile, check: FingerprintCheck): CheckedFingerprint {
+        return readFingerprintFile(fingerprintFile, check) { host ->
             cacheFingerprintController.run {
                 checkProjectScopedFingerprint(host)
             }
@@ -462,7 +488,11 @@ class DefaultConfigurationCache internal constructor(
     }
 
     private
-    fun <T> readFingerprintFile(fingerprintFile: ConfigurationCacheStateFile, action: suspend ReadContext.(ConfigurationCacheFingerprintController.Host) -> T): T =
+    fun <T> readFingerprintFile(
+        fingerprintFile: ConfigurationCacheStateFile,
+        check: FingerprintCheck = FingerprintCheck(null, FingerprintCheckStatistics()),
+        action: suspend ReadContext.(ConfigurationCacheFingerprintController.Host) -> T
+    ): T =
         fingerprintFile.inputStream().use { inputStream ->
             cacheIO.withReadContextFor(inputStream) { codecs ->
                 withIsolate(IsolateOwner.OwnerHost(host), codecs.userTypesCodec()) {
@@ -471,11 +501,24 @@ class DefaultConfigurationCache internal constructor(
                             get() = host.service()
                         override val gradleProperties: GradleProperties
                             get() = gradlePropertiesController.gradleProperties
+                        override val checkExecutor: Executor?
+                            get() = check.executor
+                        override val checkStatistics: FingerprintCheckStatistics
+                            get() = check.statistics
                     })
                 }
             }
         }
 
+    /**
+     * How the inputs of the cache entry are checked.
+     */
+    private
+    class FingerprintCheck(
+        val executor: Executor?,
+        val statistics: FingerprintCheckStatistics
+    )
+
     private
     fun registerWatchableBuildDirectories(buildDirs: Iterable<File>) {
         buildDirs.forEach(virtualFileSystem::registerWatchableHierarchy)
@@ -29,6 +29,10 @@ import org.gradle.internal.hash.HashCode
 import org.gradle.internal.util.NumberUtil.ordinal
 import org.gradle.util.Path
 import java.io.File
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.function.Consumer
 
 
@@ -37,7 +41,10 @@ typealias InvalidationReason = String
 
 
 internal
-class ConfigurationCacheFingerprintChecker(private val host: Host) {
+class ConfigurationCacheFingerprintChecker(
+    private val host: Host,
+    private val statistics: FingerprintCheckStatistics = FingerprintCheckStatistics()
+) {
 
     interface Host {
         val gradleUserHomeDir: File
@@ -45,6 +52,11 @@ class ConfigurationCacheFingerprintChecker(private val host: Host) {
         val startParameterProperties: Map<String, Any?>
         val buildStartTime: Long
         val invalidateCoupledProjects: Boolean
+
+        /**
+         * The executor to check the file system inputs on, or `null` to check all inputs one after the other on the calling thread.
+         */
+        val checkExecutor: Executor?
         fun gradleProperty(propertyName: String): String?
         fun fingerprintOf(fileCollection: FileCollectionInternal): HashCode
         fun hashCodeOf(file: File): HashCode?
@@ -54,26 +66,40 @@ class ConfigurationCacheFingerprintChecker(private val host: Host) {
 
     suspend fun ReadContext.checkBuildScopedFingerprint(): CheckedFingerprint {
         // TODO: log some debug info
-        while (true) {
+        val concurrentChecks = host.checkExecutor?.let { ConcurrentChecks(it, true) }
+        while (concurrentChecks?.hasInvalidInput != true) {
             when (val input = read()) {
                 null -> break
                 is ConfigurationCacheFingerprint -> {
                     // An input that is not specific to a project. If it is out-of-date, then invalidate the whole cache entry and skip any further checks
-                    val reason = check(input)
-                    if (reason != null) {
-                        return CheckedFingerprint.EntryInvalid(reason)
+                    if (concurrentChecks != null && isCheckedConcurrently(input)) {
+                        concurrentChecks.submit(input)
+                    } else {
+                        val reason = measuredCheck(input)
+                        if (reason != null) {
+                            // An input preceding this one might be out-of-date as well
+                            return CheckedFingerprint.EntryInvalid(concurrentChecks?.firstReason() ?: reason)
+                        }
                     }
                 }
                 else -> throw IllegalStateException("Unexpected configuration cache fingerprint: $input")
             }
         }
-        return CheckedFingerprint.Valid
+        return when (val reason = concurrentChecks?.firstReason()) {
+            null -> CheckedFingerprint.Valid
+            else -> CheckedFingerprint.EntryInvalid(reason)
+        }
     }
 
     suspend fun ReadContext.checkProjectScopedFingerprint(): CheckedFingerprint {
         // TODO: log some debug info
         var firstReason: InvalidationReason? = null
         val projects = mutableMapOf<Path, ProjectInvalidationState>()
+        val concurrentChecks = host.checkExecutor?.let { ConcurrentChecks(it, false) }
+        // The checks of the inputs of each project, in the order they are recorded, when they are checked concurrently
+        val projectChecks = mutableListOf<Pair<ProjectInvalidationState, CompletableFuture<InvalidationReason?>>>()
+        // The concurrent checks of each project which have not been joined yet
+        val pendingChecks = mutableMapOf<ProjectInvalidationState, MutableList<CompletableFuture<InvalidationReason?>>>()
         while (true) {
             when (val input = read()) {
                 null -> break
@@ -81,8 +107,28 @@ class ConfigurationCacheFingerprintChecker(private val host: Host) {
                     // An input that is specific to a project. If it is out-of-date, then invalidate that project's values and continue checking values
                     // Don't check a value for a project that is already out-of-date
                     val state = projects.entryFor(input.projectPath)
-                    if (!state.isInvalid) {
-                        val reason = check(input.value)
+                    if (concurrentChecks != null) {
+                        if (!state.isInvalid && isCheckedConcurrently(input.value)) {
+                            val check = concurrentChecks.submit(input.value)
+                            projectChecks.add(state to check)
+                            pendingChecks.getOrPut(state) { mutableListOf() }.add(check)
+                        } else if (!state.isInvalid) {
+                            // Other inputs may run user code, so only check them once the inputs of the project checked before are known to be up-to-date
+                            pendingChecks.remove(state)?.forEach { check ->
+                                if (joinCheck(check) != null) {
+                                    state.invalidate()
+                                }
+                            }
+                            if (!state.isInvalid) {
+                                val reason = measuredCheck(input.value)
+                                projectChecks.add(state to CompletableFuture.completedFuture(reason))
+                                if (reason != null) {
+                                    state.invalidate()
+                                }
+                            }
+                        }
+                    } else if (!state.isInvalid) {
+                        val reason = measuredCheck(input.value)
                         if (reason != null) {
                             if (firstReason == null) {
                                 firstReason = reason
@@ -107,6 +153,17 @@ class ConfigurationCacheFingerprintChecker(private val host: Host) {
                 else -> throw IllegalStateException("Unexpected configuration cache fingerprint: $input")
             }
         }
+        // Invalidate the projects in the order their inputs are recorded, so the reported reason does not depend on the order the checks complete in.
+        // A project invalidated after its dependencies have been recorded still invalidates the projects consuming it
+        for ((state, check) in projectChecks) {
+            val reason = joinCheck(check)
+            if (reason != null) {
+                if (firstReason == null) {
+                    firstReason = reason
+                }
+                state.invalidate()
+            }
+        }
         return if (firstReason == null) {
             CheckedFingerprint.Valid
         } else {
@@ -137,6 +194,81 @@ class ConfigurationCacheFingerprintChecker(private val host: Host) {
     private
     fun MutableMap<Path, ProjectInvalidationState>.entryFor(path: Path) = getOrPut(path) { ProjectInvalidationState() }
 
+    /**
+     * Whether the input is checked on the [Host.checkExecutor]. These inputs are only checked against the file system, through the virtual file system,
+     * while other inputs are cheap to check, or require the calling thread.
+     */
+    private
+    fun isCheckedConcurrently(input: ConfigurationCacheFingerprint) =
+        input is ConfigurationCacheFingerprint.InputFile || input is ConfigurationCacheFingerprint.WorkInputs
+
+    private
+    fun measuredCheck(input: ConfigurationCacheFingerprint): InvalidationReason? =
+        statistics.measure(InputCategory.of(input)) {
+            check(input)
+        }
+
+    /**
+     * Checks inputs concurrently on the given [executor].
+     *
+     * When [stopAtFirstInvalidInput] is true, a check is skipped once an input submitted earlier is known to be out-of-date.
+     */
+    private
+    inner class ConcurrentChecks(
+        private val executor: Executor,
+        private val stopAtFirstInvalidInput: Boolean
+    ) {
+        private
+        val checks = mutableListOf<CompletableFuture<InvalidationReason?>>()
+
+        /**
+         * The index of the first input known to be out-of-date, if any.
+         */
+        private
+        val firstInvalidInput = AtomicInteger(Int.MAX_VALUE)
+
+        val hasInvalidInput: Boolean
+            get() = firstInvalidInput.get() != Int.MAX_VALUE
+
+        fun submit(input: ConfigurationCacheFingerprint): CompletableFuture<InvalidationReason?> {
+            val index = checks.size
+            val check = CompletableFuture.supplyAsync({
+                if (stopAtFirstInvalidInput && index > firstInvalidInput.get()) {
+                    null
+                } else {
+                    measuredCheck(input)?.also {
+                        firstInvalidInput.accumulateAndGet(index, Math::min)
+                    }
+                }
+            }, executor)
+            checks.add(check)
+            return check
+        }
+
+        /**
+         * Waits for the checks submitted so far and returns the reason of the first out-of-date input, in the order the inputs were submitted.
+         * Once an out-of-date input is found, the checks that have not started yet are skipped.
+         */
+        fun firstReason(): InvalidationReason? {
+            for (check in checks) {
+                val reason = joinCheck(check)
+                if (reason != null) {
+                    firstInvalidInput.set(-1)
+                    return reason
+                }
+            }
+            return null
+        }
+    }
+
+    private
+    fun joinCheck(check: CompletableFuture<InvalidationReason?>): InvalidationReason? =
+        try {
+            check.join()
+        } catch (e: CompletionException) {
+            throw e.cause ?: e
+        }
+
     private
     fun check(input: ConfigurationCacheFingerprint): InvalidationReason? {
         when (input) {
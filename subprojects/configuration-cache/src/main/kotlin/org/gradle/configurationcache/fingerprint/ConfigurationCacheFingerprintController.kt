@@ -54,6 +54,7 @@ import java.io.File
 import java.io.FileOutputStream
 import java.io.OutputStream
 import java.nio.file.Files
+import java.util.concurrent.Executor
 
 
 /**
@@ -79,6 +80,12 @@ class ConfigurationCacheFingerprintController internal constructor(
     interface Host {
         val valueSourceProviderFactory: ValueSourceProviderFactory
         val gradleProperties: GradleProperties
+
+        /**
+         * The executor to check the file system inputs on, or `null` to check them on the calling thread.
+         */
+        val checkExecutor: Executor?
+        val checkStatistics: FingerprintCheckStatistics
     }
 
     private
@@ -236,12 +243,12 @@ class ConfigurationCacheFingerprintController internal constructor(
     }
 
     suspend fun ReadContext.checkBuildScopedFingerprint(host: Host): CheckedFingerprint =
-        ConfigurationCacheFingerprintChecker(CacheFingerprintCheckerHost(host)).run {
+        ConfigurationCacheFingerprintChecker(CacheFingerprintCheckerHost(host), host.checkStatistics).run {
             checkBuildScopedFingerprint()
         }
 
     suspend fun ReadContext.checkProjectScopedFingerprint(host: Host): CheckedFingerprint =
-        ConfigurationCacheFingerprintChecker(CacheFingerprintCheckerHost(host)).run {
+        ConfigurationCacheFingerprintChecker(CacheFingerprintCheckerHost(host), host.checkStatistics).run {
             checkProjectScopedFingerprint()
         }
 
@@ -322,6 +329,9 @@ class ConfigurationCacheFingerprintController internal constructor(
         override val invalidateCoupledProjects: Boolean
             get() = modelParameters.isInvalidateCoupledProjects
 
+        override val checkExecutor: Executor?
+            get() = host.checkExecutor
+
         override fun gradleProperty(propertyName: String): String? =
             gradleProperties.find(propertyName)?.uncheckedCast()
 
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configurationcache.fingerprint
+
+import java.util.EnumMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.LongAdder
+
+
+/**
+ * Measures the time spent checking each category of input of a cache entry, for the check fingerprint build operation result.
+ *
+ * Inputs can be checked concurrently, so the times of a category add up the time spent by each thread.
+ */
+internal
+class FingerprintCheckStatistics {
+
+    private
+    val times = EnumMap<InputCategory, LongAdder>(InputCategory::class.java).apply {
+        InputCategory.values().forEach { category -> put(category, LongAdder()) }
+    }
+
+    fun <T> measure(category: InputCategory, check: () -> T): T {
+        val start = System.nanoTime()
+        try {
+            return check()
+        } finally {
+            times.getValue(category).add(System.nanoTime() - start)
+        }
+    }
+
+    /**
+     * The time spent checking each category of input so far, in milliseconds, by category key.
+     */
+    val checkTimes: Map<String, Long>
+        get() = times.entries.associate { (category, time) ->
+            category.key to TimeUnit.NANOSECONDS.toMillis(time.sum())
+        }
+}
+
+
+internal
+enum class InputCategory(val key: String) {
+    GRADLE_ENVIRONMENT("gradleEnvironment"),
+    INIT_SCRIPTS("initScripts"),
+    FILES("files"),
+    WORK_INPUTS("workInputs"),
+    VALUE_SOURCES("valueSources"),
+    SYSTEM_PROPERTIES("systemProperties"),
+    ENVIRONMENT_VARIABLES("environmentVariables"),
+    DEPENDENCY_RESOLUTION("dependencyResolution");
+
+    companion object {
+        fun of(input: ConfigurationCacheFingerprint): InputCategory = when (input) {
+            is ConfigurationCacheFingerprint.GradleEnvironment -> GRADLE_ENVIRONMENT
+            is ConfigurationCacheFingerprint.InitScripts -> INIT_SCRIPTS
+            is ConfigurationCacheFingerprint.InputFile -> FILES
+            is ConfigurationCacheFingerprint.WorkInputs -> WORK_INPUTS
+            is ConfigurationCacheFingerprint.ValueSource -> VALUE_SOURCES
+            is ConfigurationCacheFingerprint.UndeclaredSystemProperty -> SYSTEM_PROPERTIES
+            is ConfigurationCacheFingerprint.SystemPropertiesPrefixedBy -> SYSTEM_PROPERTIES
+            is ConfigurationCacheFingerprint.UndeclaredEnvironmentVariable -> ENVIRONMENT_VARIABLES
+            is ConfigurationCacheFingerprint.EnvironmentVariablesPrefixedBy -> ENVIRONMENT_VARIABLES
+            is ConfigurationCacheFingerprint.ChangingDependencyResolutionValue -> DEPENDENCY_RESOLUTION
+        }
+    }
+}
@@ -53,6 +53,30 @@ class ConfigurationCacheStartParameter(
     val recreateCache: Boolean
         get() = startParameter.isConfigurationCacheRecreateCache
 
+    /**
+     * Whether the segments of a cached work graph are decoded concurrently.
+     */
+    val isParallelLoad: Boolean
+        get() = java.lang.Boolean.getBoolean(PARALLEL_LOAD_PROPERTY)
+
+    /**
+     * Whether the state of the tasks of a cached work graph is only decoded when the tasks are about to be executed.
+     */
+    val isLazyLoad: Boolean
+        get() = java.lang.Boolean.getBoolean(LAZY_LOAD_PROPERTY)
+
+    /**
+     * Whether cached state files are mapped into memory instead of being read through a stream.
+     */
+    val isMappedLoad: Boolean
+        get() = java.lang.Boolean.getBoolean(MAPPED_LOAD_PROPERTY)
+
+    /**
+     * Whether the file system inputs of a cache entry are checked concurrently.
+     */
+    val isParallelFingerprintCheck: Boolean
+        get() = java.lang.Boolean.getBoolean(PARALLEL_FINGERPRINT_CHECK_PROPERTY)
+
     /**
      * See [StartParameter.getProjectDir].
      */
@@ -97,3 +121,19 @@ class ConfigurationCacheStartParameter(
     val includedBuilds: List<File>
         get() = startParameter.includedBuilds
 }
+
+
+private
+const val PARALLEL_LOAD_PROPERTY = "org.gradle.internal.configuration-cache.parallel-load"
+
+
+private
+const val LAZY_LOAD_PROPERTY = "org.gradle.internal.configuration-cache.lazy-load"
+
+
+private
+const val MAPPED_LOAD_PROPERTY = "org.gradle.internal.configuration-cache.mapped-load"
+
+
+private
+const val PARALLEL_FINGERPRINT_CHECK_PROPERTY = "org.gradle.internal.configuration-cache.parallel-fingerprint-check"
@@ -114,6 +114,8 @@ class ConfigurationCacheProblems(
         onProblem(problem, ProblemSeverity.Failure)
     }
 
+    // Problems can be reported concurrently while loading the work graph
+    @Synchronized
     private
     fun onProblem(problem: PropertyProblem, severity: ProblemSeverity) {
         if (summarizer.onProblem(problem, severity)) {
@@ -32,6 +32,11 @@ import org.gradle.initialization.ClassLoaderScopeRegistry
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.serialize.Decoder
 import org.gradle.internal.serialize.Encoder
+import org.gradle.internal.serialize.kryo.ByteBufferDecoder
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder
+import java.nio.ByteBuffer
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAdder
 
 
 internal
@@ -51,11 +56,23 @@ class DefaultWriteContext(
 
     override val tracer: Tracer?,
 
-    problemsListener: ProblemsListener
+    problemsListener: ProblemsListener,
+
+    override val sharedIdentities: WriteIdentities = WriteIdentities(),
+
+    /**
+     * When present, classes are written as references to this table instead of being written inline.
+     */
+    private
+    val classTable: WriteClassTable? = null
 
 ) : AbstractIsolateContext<WriteIsolate>(codec, problemsListener), WriteContext, Encoder by encoder, AutoCloseable {
 
-    override val sharedIdentities = WriteIdentities()
+    private
+    val segmentCodec = codec
+
+    private
+    val segmentProblemsListener = problemsListener
 
     private
     val classes = WriteIdentities()
@@ -82,7 +99,49 @@ class DefaultWriteContext(
         }
     }
 
+    /**
+     * Creates a context to encode a segment of the state to the given [encoder].
+     *
+     * The segment has its own isolates, but shares the identities of shared objects with this context,
+     * and refers to classes through the given [classTable], which has to be written before the segment.
+     * See [SegmentedWriter].
+     */
+    internal
+    fun segmentContextFor(encoder: Encoder, classTable: WriteClassTable) = DefaultWriteContext(
+        segmentCodec,
+        encoder,
+        scopeLookup,
+        beanStateWriterLookup,
+        logger,
+        segmentTracerFor(encoder),
+        segmentProblemsListener,
+        sharedIdentities,
+        classTable
+    )
+
+    private
+    fun segmentTracerFor(encoder: Encoder): Tracer? = tracer.let { tracer ->
+        if (tracer is LoggingTracer && encoder is KryoBackedEncoder) tracer.forSegment(encoder::getWritePosition)
+        else tracer
+    }
+
+    /**
+     * Creates a context to encode a segment nested in the segment encoded by this context.
+     * See [writeNestedSegment].
+     */
+    internal
+    fun nestedSegmentContextFor(encoder: Encoder): DefaultWriteContext {
+        require(classTable != null) {
+            "Nested segments can only be written by a segment."
+        }
+        return segmentContextFor(encoder, classTable)
+    }
+
     override fun writeClass(type: Class<*>) {
+        if (classTable != null) {
+            writeSmallInt(classTable.idOf(type))
+            return
+        }
         val id = classes.getId(type)
         if (id != null) {
             writeSmallInt(id)
@@ -142,16 +201,24 @@ class DefaultWriteContext(
 
 
 internal
-class LoggingTracer(
+class LoggingTracer private constructor(
     private val profile: String,
     private val writePosition: () -> Long,
     private val logger: Logger,
-    private val level: LogLevel
+    private val level: LogLevel,
+    // Include a sequence number in the events so the order of events can be preserved in face of log output reordering
+    private val sequenceNumbers: AtomicLong
 ) : Tracer {
 
-    // Include a sequence number in the events so the order of events can be preserved in face of log output reordering
-    private
-    var nextSequenceNumber = 0L
+    constructor(profile: String, writePosition: () -> Long, logger: Logger, level: LogLevel) :
+        this(profile, writePosition, logger, level, AtomicLong())
+
+    /**
+     * Returns a tracer for a segment encoded to its own buffer, which reports positions in that buffer
+     * and shares the sequence numbers of this tracer.
+     */
+    fun forSegment(writePosition: () -> Long): Tracer =
+        LoggingTracer(profile, writePosition, logger, level, sequenceNumbers)
 
     override fun open(frame: String) {
         log(frame, 'O')
@@ -170,9 +237,7 @@ class LoggingTracer(
     }
 
     private
-    fun nextSequenceNumber() = nextSequenceNumber.also {
-        nextSequenceNumber += 1
-    }
+    fun nextSequenceNumber() = sequenceNumbers.getAndIncrement()
 }
 
 
@@ -203,11 +268,29 @@ class DefaultReadContext(
 
     override val logger: Logger,
 
-    problemsListener: ProblemsListener
+    problemsListener: ProblemsListener,
+
+    override val sharedIdentities: ReadIdentities = ReadIdentities(),
+
+    /**
+     * When present, classes are read as references to this table instead of being read inline.
+     */
+    private
+    val classTable: List<Class<*>>? = null,
+
+    /**
+     * When present, counts the objects decoded by this context.
+     */
+    private
+    val decodedObjects: LongAdder? = null
 
 ) : AbstractIsolateContext<ReadIsolate>(codec, problemsListener), ReadContext, Decoder by decoder, AutoCloseable {
 
-    override val sharedIdentities = ReadIdentities()
+    private
+    val segmentCodec = codec
+
+    private
+    val segmentProblemsListener = problemsListener
 
     private
     val classes = ReadIdentities()
@@ -237,6 +320,7 @@ class DefaultReadContext(
     }
 
     override suspend fun read(): Any? = getCodec().run {
+        decodedObjects?.increment()
         decode()
     }
 
@@ -246,7 +330,68 @@ class DefaultReadContext(
     override fun beanStateReaderFor(beanType: Class<*>): BeanStateReader =
         beanStateReaderLookup.beanStateReaderFor(beanType)
 
+    /**
+     * Creates a context to decode a segment of the state from the given [decoder].
+     * See [DefaultWriteContext.segmentContextFor] and [SegmentedReader].
+     */
+    internal
+    fun segmentContextFor(decoder: Decoder, classTable: List<Class<*>>, sharedIdentities: ReadIdentities) =
+        segmentContextFactory(classTable, sharedIdentities)(decoder)
+
+    /**
+     * Returns a function that creates contexts to decode the segments nested in the segment decoded by this context,
+     * without retaining this context. See [readNestedSegment].
+     */
+    internal
+    fun nestedSegmentContextFactory(): (Decoder) -> DefaultReadContext {
+        require(classTable != null) {
+            "Nested segments can only be read by a segment."
+        }
+        return segmentContextFactory(classTable, sharedIdentities)
+    }
+
+    private
+    fun segmentContextFactory(classTable: List<Class<*>>, sharedIdentities: ReadIdentities): (Decoder) -> DefaultReadContext {
+        val codec = segmentCodec
+        val beanStateReaderLookup = beanStateReaderLookup
+        val logger = logger
+        val problemsListener = segmentProblemsListener
+        val decodedObjects = decodedObjects
+        val classLoader = classLoader
+        val projectProvider = projectProvider
+        val immediateMode = immediateMode
+        return { decoder ->
+            DefaultReadContext(
+                codec,
+                decoder,
+                beanStateReaderLookup,
+                logger,
+                problemsListener,
+                sharedIdentities,
+                classTable,
+                decodedObjects
+            ).also { segment ->
+                segment.classLoader = classLoader
+                segment.projectProvider = projectProvider
+                segment.immediateMode = immediateMode
+            }
+        }
+    }
+
+    /**
+     * Reads the next [length] bytes, without copying them when the state is read from memory.
+     */
+    internal
+    fun readSlice(length: Int): ByteBuffer =
+        when (decoder) {
+            is ByteBufferDecoder -> decoder.readSlice(length)
+            else -> ByteBuffer.wrap(ByteArray(length).also { readBytes(it) })
+        }
+
     override fun readClass(): Class<*> {
+        if (classTable != null) {
+            return classTable[readSmallInt()]
+        }
         val id = readSmallInt()
         val type = classes.getInstance(id)
         if (type != null) {
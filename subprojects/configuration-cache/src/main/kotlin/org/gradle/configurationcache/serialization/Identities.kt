@@ -24,6 +24,9 @@ class WriteIdentities {
     private
     val instanceIds = IdentityHashMap<Any, Int>()
 
+    val size: Int
+        get() = instanceIds.size
+
     fun getId(instance: Any) = instanceIds[instance]
 
     fun putInstance(instance: Any): Int {
@@ -34,14 +37,14 @@ class WriteIdentities {
 }
 
 
-class ReadIdentities {
+open class ReadIdentities {
 
     private
     val instanceIds = HashMap<Int, Any>()
 
-    fun getInstance(id: Int) = instanceIds[id]
+    open fun getInstance(id: Int): Any? = instanceIds[id]
 
-    fun putInstance(id: Int, instance: Any) {
+    open fun putInstance(id: Int, instance: Any) {
         instanceIds[id] = instance
     }
 }
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configurationcache.serialization
+
+import org.gradle.internal.serialize.Decoder
+import org.gradle.internal.serialize.Encoder
+import org.gradle.internal.serialize.kryo.ByteBufferDecoder
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+import java.util.IdentityHashMap
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+
+
+/**
+ * Writes state as a sequence of segments that can be decoded independently of each other by a [SegmentedReader].
+ *
+ * Each segment is encoded by its own context, with its own isolates. The segments still share the identities
+ * of shared objects, such as build service providers, with each other and with the enclosing context.
+ * The classes referenced by the segments are written once, in a table preceding the segments.
+ * The segments are preceded by a table of their lengths, so a reader can locate each segment without decoding the preceding ones.
+ *
+ * Segments are encoded one at a time, in the order they are written, on the calling thread.
+ */
+internal
+class SegmentedWriter(private val context: DefaultWriteContext) {
+
+    private
+    val classTable = WriteClassTable()
+
+    private
+    val segments = ArrayList<EncodedSegment>()
+
+    suspend fun writeSegment(writeOperation: suspend DefaultWriteContext.() -> Unit) {
+        segments.add(
+            encodeSegment(context, { encoder -> context.segmentContextFor(encoder, classTable) }, writeOperation)
+        )
+    }
+
+    /**
+     * Writes the class table followed by the segments written so far to the enclosing context.
+     */
+    fun writeSegmentsToContext() {
+        context.run {
+            writeSmallInt(classTable.classes.size)
+            classTable.classes.forEach { type ->
+                writeClass(type)
+            }
+            writeSmallInt(segments.size)
+            segments.forEach { segment ->
+                writeSmallInt(segment.firstSharedId)
+                writeSmallInt(segment.sharedIdCount)
+                writeSmallInt(segment.bytes.remaining())
+            }
+            segments.forEach { segment ->
+                writeBuffer(segment.bytes)
+            }
+        }
+    }
+}
+
+
+/**
+ * Reads the segments written by a [SegmentedWriter].
+ */
+internal
+class SegmentedReader(private val context: DefaultReadContext) {
+
+    /**
+     * Decodes each segment with the given [readOperation] and returns the results in segment order.
+     *
+     * The segments are decoded concurrently on the given [executor], or one after the other on the calling thread when there is none.
+     * A segment referring to a shared object decoded by a preceding segment waits for that object to become available,
+     * so the [executor] must start the segments in the order they are submitted.
+     */
+    fun <T> readSegments(executor: Executor?, readOperation: suspend DefaultReadContext.() -> T): List<T> {
+        val classTable = List(context.readSmallInt()) {
+            context.readClass()
+        }
+        val segmentTable = List(context.readSmallInt()) {
+            Triple(context.readSmallInt(), context.readSmallInt(), context.readSmallInt())
+        }
+        val segments = segmentTable.map { (firstSharedId, sharedIdCount, length) ->
+            EncodedSegment(firstSharedId, sharedIdCount, context.readSlice(length))
+        }
+        val sharedIdentities = SharedReadIdentities(context.sharedIdentities, segments.firstOrNull()?.firstSharedId ?: 0)
+        val results = when (executor) {
+            null -> segments.map { segment ->
+                readSegment(segment, classTable, sharedIdentities, readOperation)
+            }
+            else -> segments.map { segment ->
+                CompletableFuture.supplyAsync({ readSegment(segment, classTable, sharedIdentities, readOperation) }, executor)
+            }.map { result ->
+                try {
+                    result.join()
+                } catch (e: CompletionException) {
+                    throw e.cause ?: e
+                }
+            }
+        }
+        sharedIdentities.copyToEnclosingContext()
+        return results
+    }
+
+    private
+    fun <T> readSegment(
+        segment: EncodedSegment,
+        classTable: List<Class<*>>,
+        sharedIdentities: SharedReadIdentities,
+        readOperation: suspend DefaultReadContext.() -> T
+    ): T = try {
+        context.segmentContextFor(ByteBufferDecoder(segment.bytes), classTable, sharedIdentities.forSegment(segment.firstSharedId, segment.sharedIdCount)).runReadOperation {
+            readOperation()
+        }
+    } finally {
+        sharedIdentities.segmentDone(segment.firstSharedId, segment.sharedIdCount)
+    }
+}
+
+
+/**
+ * Writes a segment nested in the segment encoded by this context, so it can be decoded separately, and possibly later, by [readNestedSegment].
+ *
+ * The nested segment refers to classes through the class table of this segment.
+ */
+internal
+suspend fun DefaultWriteContext.writeNestedSegment(writeOperation: suspend DefaultWriteContext.() -> Unit) {
+    val segment = encodeSegment(this, ::nestedSegmentContextFor, writeOperation)
+    writeSmallInt(segment.firstSharedId)
+    writeSmallInt(segment.sharedIdCount)
+    writeSmallInt(segment.bytes.remaining())
+    writeBuffer(segment.bytes)
+}
+
+
+/**
+ * Reads a segment written by [writeNestedSegment].
+ */
+internal
+fun DefaultReadContext.readNestedSegment(): NestedSegment =
+    NestedSegment(
+        EncodedSegment(readSmallInt(), readSmallInt(), readSlice(readSmallInt())),
+        nestedSegmentContextFactory()
+    )
+
+
+/**
+ * A segment nested in another segment, which can be decoded at any point once the enclosing segments have been decoded.
+ */
+internal
+class NestedSegment(
+    private val segment: EncodedSegment,
+    private val contextFactory: (Decoder) -> DefaultReadContext
+) {
+    /**
+     * Whether the segment decodes shared objects, in which case it has to be decoded before any segment referring to them.
+     */
+    val definesSharedObjects: Boolean
+        get() = segment.sharedIdCount > 0
+
+    fun <T> read(readOperation: suspend DefaultReadContext.() -> T): T =
+        contextFactory(ByteBufferDecoder(segment.bytes)).runReadOperation {
+            readOperation()
+        }
+}
+
+
+private
+suspend fun encodeSegment(
+    enclosingContext: DefaultWriteContext,
+    segmentContextFor: (Encoder) -> DefaultWriteContext,
+    writeOperation: suspend DefaultWriteContext.() -> Unit
+): EncodedSegment {
+    val firstSharedId = enclosingContext.sharedIdentities.size
+    val output = ByteArrayOutputStream()
+    KryoBackedEncoder(output).use { encoder ->
+        segmentContextFor(encoder).writeOperation()
+    }
+    val sharedIdCount = enclosingContext.sharedIdentities.size - firstSharedId
+    return EncodedSegment(firstSharedId, sharedIdCount, ByteBuffer.wrap(output.toByteArray()))
+}
+
+
+private
+fun Encoder.writeBuffer(buffer: ByteBuffer) {
+    writeBytes(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining())
+}
+
+
+internal
+class WriteClassTable {
+
+    private
+    val ids = IdentityHashMap<Class<*>, Int>()
+
+    val classes = ArrayList<Class<*>>()
+
+    fun idOf(type: Class<*>): Int =
+        ids.getOrPut(type) {
+            classes.add(type)
+            classes.size - 1
+        }
+}
+
+
+/**
+ * The identities of the shared objects decoded by a set of segments.
+ *
+ * Shared objects with an id lower than [firstSegmentId] have been decoded by the enclosing context before the segments.
+ * Each segment decodes a contiguous range of ids above that, and only ever refers to objects decoded by itself,
+ * by a preceding segment or by the enclosing context.
+ */
+internal
+class SharedReadIdentities(
+    private val enclosingIdentities: ReadIdentities,
+    private val firstSegmentId: Int
+) {
+    private
+    val instances = ConcurrentHashMap<Int, CompletableFuture<Any>>()
+
+    fun forSegment(firstId: Int, count: Int): ReadIdentities =
+        SegmentReadIdentities(firstId, count)
+
+    /**
+     * Fails any wait for an object the segment with the given range of ids was expected to decode, but did not.
+     */
+    fun segmentDone(firstId: Int, count: Int) {
+        for (id in firstId until firstId + count) {
+            instanceFor(id).completeExceptionally(IllegalStateException("Shared object $id has not been decoded."))
+        }
+    }
+
+    /**
+     * Makes the shared objects decoded by the segments available to the enclosing context,
+     * once all the segments have been decoded.
+     */
+    fun copyToEnclosingContext() {
+        instances.forEach { (id, instance) ->
+            if (!instance.isCompletedExceptionally) {
+                enclosingIdentities.putInstance(id, instance.join())
+            }
+        }
+    }
+
+    private
+    fun await(id: Int): Any =
+        when {
+            id < firstSegmentId -> enclosingIdentities.getInstance(id)
+                ?: throw IllegalStateException("Shared object $id has not been decoded.")
+            else -> instanceFor(id).join()
+        }
+
+    private
+    fun instanceFor(id: Int) =
+        instances.computeIfAbsent(id) { CompletableFuture() }
+
+    private
+    inner class SegmentReadIdentities(
+        private val firstId: Int,
+        private val count: Int
+    ) : ReadIdentities() {
+
+        override fun getInstance(id: Int): Any? = when {
+            id < firstId -> await(id)
+            id < firstId + count -> super.getInstance(id)
+            else -> throw IllegalStateException("Shared object $id is decoded by a later segment.")
+        }
+
+        override fun putInstance(id: Int, instance: Any) {
+            super.putInstance(id, instance)
+            instanceFor(id).complete(instance)
+        }
+    }
+}
+
+
+/**
+ * The encoded content of a segment, which can be a slice of the buffer the enclosing state is read from.
+ */
+internal
+class EncodedSegment(
+    val firstSharedId: Int,
+    val sharedIdCount: Int,
+    val bytes: ByteBuffer
+)
@@ -165,7 +165,11 @@ class BuildServiceProviderCodec(
             val implementationType = readClassOf<BuildService<*>>()
             val parameters = read() as BuildServiceParameters?
             val maxUsages = readInt()
-            buildServiceRegistryOf(buildIdentifier).register(name, implementationType, parameters, maxUsages)
+            val registry = buildServiceRegistryOf(buildIdentifier)
+            // Services can be registered concurrently while loading the work graph
+            synchronized(registry) {
+                registry.register(name, implementationType, parameters, maxUsages)
+            }
         }
 
     private
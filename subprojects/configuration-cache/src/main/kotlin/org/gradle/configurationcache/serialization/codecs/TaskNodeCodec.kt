@@ -68,57 +68,64 @@ class TaskNodeCodec(
 
     override suspend fun WriteContext.encode(value: LocalTaskNode) {
         val task = value.task
-        writeTask(task)
+        withDebugFrame({ task.path }) {
+            writeTaskIdentity(task)
+            writeTaskState(task)
+        }
     }
 
     override suspend fun ReadContext.decode(): LocalTaskNode {
-        val task = readTask()
-        val node = taskNodeFactory.getOrCreateNode(task) as LocalTaskNode
-        node.isolated()
-        return node
+        val task = readTaskIdentity()
+        readTaskState(task)
+        return nodeFor(task)
     }
 
-    private
-    suspend fun WriteContext.writeTask(task: TaskInternal) {
-        withDebugFrame({ task.path }) {
-            val taskType = GeneratedSubclasses.unpackType(task)
-            val projectPath = task.project.path
-            val taskName = task.name
-            writeClass(taskType)
-            writeString(projectPath)
-            writeString(taskName)
-            writeNullableString(task.reasonTaskIsIncompatibleWithConfigurationCache.orElse(null))
-
-            withDebugFrame({ taskType.name }) {
-                withTaskOf(taskType, task, userTypesCodec) {
-                    writeUpToDateSpec(task)
-                    writeCollection(task.outputs.cacheIfSpecs)
-                    writeCollection(task.outputs.doNotCacheIfSpecs)
-                    writeReasonNotToTrackState(task)
-                    beanStateWriterFor(task.javaClass).run {
-                        writeStateOf(task)
-                        writeRegisteredPropertiesOf(
-                            task,
-                            this as BeanPropertyWriter
-                        )
-                    }
-                    writeDestroyablesOf(task)
-                    writeLocalStateOf(task)
-                    writeRegisteredServicesOf(task)
+    /**
+     * Writes what is required to recreate the given [task], without its state.
+     */
+    fun WriteContext.writeTaskIdentity(task: TaskInternal) {
+        val taskType = GeneratedSubclasses.unpackType(task)
+        writeClass(taskType)
+        writeString(task.project.path)
+        writeString(task.name)
+        writeNullableString(task.reasonTaskIsIncompatibleWithConfigurationCache.orElse(null))
+    }
+
+    /**
+     * Writes the state of the given [task], to be read by [readTaskState] once the task has been recreated by [readTaskIdentity].
+     */
+    suspend fun WriteContext.writeTaskState(task: TaskInternal) {
+        val taskType = GeneratedSubclasses.unpackType(task)
+        withDebugFrame({ taskType.name }) {
+            withTaskOf(taskType, task, userTypesCodec) {
+                writeUpToDateSpec(task)
+                writeCollection(task.outputs.cacheIfSpecs)
+                writeCollection(task.outputs.doNotCacheIfSpecs)
+                writeReasonNotToTrackState(task)
+                beanStateWriterFor(task.javaClass).run {
+                    writeStateOf(task)
+                    writeRegisteredPropertiesOf(
+                        task,
+                        this as BeanPropertyWriter
+                    )
                 }
+                writeDestroyablesOf(task)
+                writeLocalStateOf(task)
+                writeRegisteredServicesOf(task)
             }
         }
     }
 
-    private
-    suspend fun ReadContext.readTask(): Task {
+    fun ReadContext.readTaskIdentity(): TaskInternal {
         val taskType = readClassOf<Task>()
         val projectPath = readString()
         val taskName = readString()
         val incompatibleReason = readNullableString()
+        return createTask(projectPath, taskName, taskType, incompatibleReason)
+    }
 
-        val task = createTask(projectPath, taskName, taskType, incompatibleReason)
-
+    suspend fun ReadContext.readTaskState(task: TaskInternal) {
+        val taskType = GeneratedSubclasses.unpackType(task)
         withTaskOf(taskType, task, userTypesCodec) {
             readUpToDateSpec(task)
             readCollectionInto { task.outputs.cacheIfSpecs.uncheckedCast() }
@@ -132,8 +139,12 @@ class TaskNodeCodec(
             readLocalStateOf(task)
             readRegisteredServicesOf(task)
         }
+    }
 
-        return task
+    fun nodeFor(task: TaskInternal): LocalTaskNode {
+        val node = taskNodeFactory.getOrCreateNode(task) as LocalTaskNode
+        node.isolated()
+        return node
     }
 
     private
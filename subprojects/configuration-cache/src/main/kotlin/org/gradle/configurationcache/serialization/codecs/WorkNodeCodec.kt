@@ -17,74 +17,152 @@
 package org.gradle.configurationcache.serialization.codecs
 
 import org.gradle.api.internal.GradleInternal
+import org.gradle.api.internal.project.ProjectInternal
+import org.gradle.configurationcache.ConfigurationCacheLoadStatistics
 import org.gradle.configurationcache.serialization.Codec
+import org.gradle.configurationcache.serialization.DefaultReadContext
+import org.gradle.configurationcache.serialization.DefaultWriteContext
 import org.gradle.configurationcache.serialization.ReadContext
+import org.gradle.configurationcache.serialization.SegmentedReader
+import org.gradle.configurationcache.serialization.SegmentedWriter
 import org.gradle.configurationcache.serialization.WriteContext
+import org.gradle.configurationcache.serialization.readNestedSegment
 import org.gradle.configurationcache.serialization.readNonNull
+import org.gradle.configurationcache.serialization.withDebugFrame
 import org.gradle.configurationcache.serialization.withGradleIsolate
+import org.gradle.configurationcache.serialization.writeNestedSegment
+import org.gradle.execution.plan.LocalTaskNode
 import org.gradle.execution.plan.Node
 import org.gradle.execution.plan.TaskInAnotherBuild
 import org.gradle.execution.plan.TaskNode
+import java.util.concurrent.Executor
 
 
 internal
 class WorkNodeCodec(
     private val owner: GradleInternal,
-    private val internalTypesCodec: Codec<Any?>
+    private val internalTypesCodec: Codec<Any?>,
+    private val taskNodeCodec: TaskNodeCodec,
+    private val segmentExecutor: Executor? = null,
+    /**
+     * Whether to decode the state of a task only when the task is about to be executed, instead of when the graph is loaded.
+     */
+    private val lazyTaskState: Boolean = false,
+    private val statistics: ConfigurationCacheLoadStatistics? = null
 ) {
 
-    suspend fun WriteContext.writeWork(nodes: List<Node>) {
-        // Share bean instances across all nodes (except tasks, which have their own isolate)
-        withGradleIsolate(owner, internalTypesCodec) {
-            writeNodes(nodes)
+    /**
+     * Writes the given [nodes] in segments, one for the tasks of each project and one for all the other nodes,
+     * so they can be decoded concurrently. The relationships between the nodes are written after the segments,
+     * as they can cross segment boundaries.
+     *
+     * The state of each task is written in its own nested segment, after what is needed to recreate the task,
+     * so it can be decoded separately from the graph.
+     */
+    suspend fun DefaultWriteContext.writeWork(nodes: List<Node>) {
+        writeSmallInt(nodes.size)
+        SegmentedWriter(this).run {
+            for (segment in segmentsOf(nodes)) {
+                writeSegment {
+                    // Share bean instances across all nodes of the segment (except tasks, which have their own isolate)
+                    withGradleIsolate(owner, internalTypesCodec) {
+                        writeSmallInt(segment.size)
+                        for (nodeId in segment) {
+                            writeSmallInt(nodeId)
+                            writeNode(nodes[nodeId])
+                        }
+                    }
+                }
+            }
+            writeSegmentsToContext()
         }
+        writeRelationshipsOf(nodes)
     }
 
-    suspend fun ReadContext.readWork(): List<Node> =
-        withGradleIsolate(owner, internalTypesCodec) {
-            readNodes()
+    suspend fun DefaultReadContext.readWork(): List<Node> {
+        val nodeCount = readSmallInt()
+        val nodes = arrayOfNulls<Node>(nodeCount)
+        SegmentedReader(this).readSegments(segmentExecutor) {
+            withGradleIsolate(owner, internalTypesCodec) {
+                repeat(readSmallInt()) {
+                    val nodeId = readSmallInt()
+                    nodes[nodeId] = readNode()
+                }
+            }
         }
+        return readRelationshipsOf(nodes.map { it!! })
+    }
 
     private
-    suspend fun WriteContext.writeNodes(nodes: List<Node>) {
-        val nodeCount = nodes.size
-        writeSmallInt(nodeCount)
-        val scheduledNodeIds = HashMap<Node, Int>(nodeCount)
-        nodes.forEachIndexed { nodeId, node ->
-            writeNode(node, scheduledNodeIds)
-            scheduledNodeIds[node] = nodeId
+    suspend fun DefaultWriteContext.writeNode(node: Node) {
+        if (node is LocalTaskNode) {
+            writeBoolean(true)
+            val task = node.task
+            withDebugFrame({ task.path }) {
+                taskNodeCodec.run {
+                    writeTaskIdentity(task)
+                    writeNestedSegment {
+                        writeTaskState(task)
+                    }
+                }
+            }
+        } else {
+            writeBoolean(false)
+            write(node)
         }
     }
 
     private
-    suspend fun ReadContext.readNodes(): List<Node> {
-        val nodeCount = readSmallInt()
-        val nodes = ArrayList<Node>(nodeCount)
-        val nodesById = HashMap<Int, Node>(nodeCount)
-        for (nodeId in 0 until nodeCount) {
-            val node = readNode(nodesById)
-            nodesById[nodeId] = node
-            nodes.add(node)
+    suspend fun DefaultReadContext.readNode(): Node {
+        if (!readBoolean()) {
+            return readNonNull()
+        }
+        return taskNodeCodec.run {
+            val task = readTaskIdentity()
+            val taskState = readNestedSegment()
+            val node = nodeFor(task)
+            // The state of a task that defines shared objects is decoded immediately, as other nodes can refer to these objects
+            if (lazyTaskState && !taskState.definesSharedObjects) {
+                node.loadStateBeforeExecution {
+                    taskState.read { readTaskState(task) }
+                }
+                statistics?.deferredTasks?.increment()
+            } else {
+                taskState.read { readTaskState(task) }
+            }
+            node
         }
-        return nodes
     }
 
     private
-    suspend fun WriteContext.writeNode(
-        node: Node,
-        scheduledNodeIds: Map<Node, Int>
-    ) {
-        write(node)
-        writeSuccessorReferencesOf(node, scheduledNodeIds)
-        writeExecutionStateOf(node)
+    fun segmentsOf(nodes: List<Node>): Collection<List<Int>> {
+        val segments = LinkedHashMap<ProjectInternal?, MutableList<Int>>()
+        nodes.forEachIndexed { nodeId, node ->
+            val project = (node as? LocalTaskNode)?.owningProject
+            segments.getOrPut(project) { ArrayList() }.add(nodeId)
+        }
+        return segments.values
     }
 
     private
-    suspend fun ReadContext.readNode(nodesById: Map<Int, Node>): Node {
-        val node = readNonNull<Node>()
-        readSuccessorReferencesOf(node, nodesById)
-        readExecutionStateOf(node)
-        return node
+    fun WriteContext.writeRelationshipsOf(nodes: List<Node>) {
+        val scheduledNodeIds = HashMap<Node, Int>(nodes.size)
+        nodes.forEachIndexed { nodeId, node ->
+            writeSuccessorReferencesOf(node, scheduledNodeIds)
+            writeExecutionStateOf(node)
+            scheduledNodeIds[node] = nodeId
+        }
+    }
+
+    private
+    fun ReadContext.readRelationshipsOf(nodes: List<Node>): List<Node> {
+        val nodesById = HashMap<Int, Node>(nodes.size)
+        nodes.forEachIndexed { nodeId, node ->
+            readSuccessorReferencesOf(node, nodesById)
+            readExecutionStateOf(node)
+            nodesById[nodeId] = node
+        }
+        return nodes
     }
 
     private
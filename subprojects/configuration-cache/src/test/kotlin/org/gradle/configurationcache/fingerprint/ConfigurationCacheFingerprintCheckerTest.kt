@@ -45,12 +45,15 @@ import org.gradle.internal.hash.HashCode
 import org.gradle.internal.hash.TestHashCodes
 import org.gradle.internal.serialize.Decoder
 import org.gradle.internal.serialize.Encoder
+import org.gradle.util.Path
 import org.hamcrest.CoreMatchers.equalTo
 import org.hamcrest.MatcherAssert.assertThat
 import org.junit.Test
 import java.io.File
 import java.io.InputStream
 import java.io.OutputStream
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
 
 
 class ConfigurationCacheFingerprintCheckerTest {
@@ -175,6 +178,77 @@ class ConfigurationCacheFingerprintCheckerTest {
         )
     }
 
+    @Test
+    fun `first changed file is reported when files are checked concurrently`() {
+        val files = (0 until 20).map { File("file$it.txt") }
+        assertThat(
+            checkFilesConcurrentlyGiven(
+                files.mapIndexed { index, file ->
+                    // The 6th and 13th files have changed
+                    val hash = if (index == 5 || index == 12) 1000 else index
+                    ConfigurationCacheFingerprint.InputFile(file, TestHashCodes.hashCodeFrom(hash))
+                },
+                currentHashOf = { file -> TestHashCodes.hashCodeFrom(files.indexOf(file)) }
+            ),
+            equalTo("file 'file5.txt' has changed")
+        )
+    }
+
+    @Test
+    fun `changed file is reported before an input recorded after it when files are checked concurrently`() {
+        val file = File("build.gradle.kts")
+        val property = "org.gradle.fingerprint.test.${System.nanoTime()}"
+        assertThat(
+            checkFilesConcurrentlyGiven(
+                listOf(
+                    ConfigurationCacheFingerprint.InputFile(file, TestHashCodes.hashCodeFrom(1)),
+                    ConfigurationCacheFingerprint.UndeclaredSystemProperty(property, "unset")
+                ),
+                currentHashOf = { TestHashCodes.hashCodeFrom(2) }
+            ),
+            equalTo("file 'build.gradle.kts' has changed")
+        )
+    }
+
+    @Test
+    fun `inputs of a project known to be out-of-date are not checked when files are checked concurrently`() {
+        val project = Path.path(":a")
+        val obtainedValue = obtainedValueMock()
+        val checkedFiles = AtomicInteger()
+        val instantiatedValueSources = AtomicInteger()
+        val executor = Executors.newFixedThreadPool(4)
+        try {
+            val checkedFingerprint = checkProjectScopedFingerprintGiven(
+                mock {
+                    on { checkExecutor } doReturn executor
+                    on { hashCodeOf(any()) }.then {
+                        checkedFiles.incrementAndGet()
+                        TestHashCodes.hashCodeFrom(2)
+                    }
+                    on { displayNameOf(any()) }.then { invocation ->
+                        invocation.getArgument<File>(0).name
+                    }
+                    on { instantiateValueSourceOf(obtainedValue) }.then {
+                        instantiatedValueSources.incrementAndGet()
+                        throw IllegalStateException("Value source should not be checked")
+                    }
+                },
+                listOf(
+                    ProjectSpecificFingerprint.ProjectFingerprint(project, ConfigurationCacheFingerprint.InputFile(File("build.gradle.kts"), TestHashCodes.hashCodeFrom(1))),
+                    ProjectSpecificFingerprint.ProjectFingerprint(project, ConfigurationCacheFingerprint.ValueSource(obtainedValue)),
+                    ProjectSpecificFingerprint.ProjectFingerprint(project, ConfigurationCacheFingerprint.InputFile(File("settings.gradle.kts"), TestHashCodes.hashCodeFrom(2)))
+                )
+            )
+
+            assertThat(checkedFingerprint.reason, equalTo("file 'build.gradle.kts' has changed"))
+            assertThat(checkedFingerprint.invalidProjects, equalTo(setOf(project)))
+            assertThat(instantiatedValueSources.get(), equalTo(0))
+            assertThat(checkedFiles.get(), equalTo(1))
+        } finally {
+            executor.shutdown()
+        }
+    }
+
     @Test
     fun `invalidation reason includes ValueSource description`() {
 
@@ -220,14 +294,45 @@ class ConfigurationCacheFingerprintCheckerTest {
         )
     }
 
+    private
+    fun checkFilesConcurrentlyGiven(
+        fingerprints: List<ConfigurationCacheFingerprint>,
+        currentHashOf: (File) -> HashCode
+    ): InvalidationReason? {
+        val executor = Executors.newFixedThreadPool(4)
+        try {
+            return checkFingerprintGiven(
+                mock {
+                    on { checkExecutor } doReturn executor
+                    on { hashCodeOf(any()) }.then { invocation ->
+                        currentHashOf(invocation.getArgument(0))
+                    }
+                    on { displayNameOf(any()) }.then { invocation ->
+                        invocation.getArgument<File>(0).name
+                    }
+                },
+                fingerprints
+            )
+        } finally {
+            executor.shutdown()
+        }
+    }
+
     private
     fun checkFingerprintGiven(
         host: ConfigurationCacheFingerprintChecker.Host,
         fingerprint: ConfigurationCacheFingerprint
+    ): InvalidationReason? =
+        checkFingerprintGiven(host, listOf(fingerprint))
+
+    private
+    fun checkFingerprintGiven(
+        host: ConfigurationCacheFingerprintChecker.Host,
+        fingerprints: List<ConfigurationCacheFingerprint>
     ): InvalidationReason? {
 
         val readContext = recordWritingOf {
-            write(fingerprint)
+            fingerprints.forEach { write(it) }
             write(null)
         }
 
@@ -243,6 +348,25 @@ class ConfigurationCacheFingerprintCheckerTest {
         }
     }
 
+    private
+    fun checkProjectScopedFingerprintGiven(
+        host: ConfigurationCacheFingerprintChecker.Host,
+        fingerprints: List<ProjectSpecificFingerprint>
+    ): CheckedFingerprint.ProjectsInvalid {
+
+        val readContext = recordWritingOf {
+            fingerprints.forEach { write(it) }
+            write(null)
+        }
+
+        val checkedFingerprint = readContext.runReadOperation {
+            ConfigurationCacheFingerprintChecker(host).run {
+                checkProjectScopedFingerprint()
+            }
+        }
+        return checkedFingerprint as CheckedFingerprint.ProjectsInvalid
+    }
+
     private
     fun obtainedValueMock(): ObtainedValue = mock {
         on { value } doReturn Try.successful(42)
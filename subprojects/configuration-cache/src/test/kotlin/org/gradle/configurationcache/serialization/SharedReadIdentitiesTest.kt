@@ -0,0 +1,94 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configurationcache.serialization
+
+import org.hamcrest.CoreMatchers.equalTo
+import org.hamcrest.CoreMatchers.nullValue
+import org.hamcrest.CoreMatchers.sameInstance
+import org.hamcrest.MatcherAssert.assertThat
+import org.junit.Test
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.TimeUnit
+
+
+class SharedReadIdentitiesTest {
+
+    private
+    val enclosing = ReadIdentities()
+
+    private
+    val shared = SharedReadIdentities(enclosing, 2)
+
+    @Test
+    fun `segment refers to objects decoded by the enclosing context`() {
+        val instance = Any()
+        enclosing.putInstance(1, instance)
+
+        val segment = shared.forSegment(2, 1)
+
+        assertThat(segment.getInstance(1), sameInstance(instance))
+    }
+
+    @Test
+    fun `segment decodes objects in its own range`() {
+        val instance = Any()
+        val segment = shared.forSegment(2, 2)
+
+        assertThat(segment.getInstance(3), nullValue())
+        segment.putInstance(3, instance)
+        assertThat(segment.getInstance(3), sameInstance(instance))
+    }
+
+    @Test
+    fun `segment waits for objects decoded by a preceding segment`() {
+        val instance = Any()
+        val first = shared.forSegment(2, 1)
+        val second = shared.forSegment(3, 1)
+
+        val found = CompletableFuture.supplyAsync { second.getInstance(2) }
+        Thread.sleep(50)
+        assertThat(found.isDone, equalTo(false))
+
+        first.putInstance(2, instance)
+        assertThat(found.get(10, TimeUnit.SECONDS), sameInstance(instance))
+    }
+
+    @Test(expected = CompletionException::class)
+    fun `segment fails when a preceding segment completes without decoding an object`() {
+        val second = shared.forSegment(3, 1)
+
+        shared.segmentDone(2, 1)
+        second.getInstance(2)
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun `segment fails when referring to an object decoded by a later segment`() {
+        shared.forSegment(2, 1).getInstance(3)
+    }
+
+    @Test
+    fun `makes objects decoded by segments available to the enclosing context`() {
+        val instance = Any()
+        shared.forSegment(2, 1).putInstance(2, instance)
+        shared.segmentDone(2, 1)
+
+        shared.copyToEnclosingContext()
+
+        assertThat(enclosing.getInstance(2), sameInstance(instance))
+    }
+}
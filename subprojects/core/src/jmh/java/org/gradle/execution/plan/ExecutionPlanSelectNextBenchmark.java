@@ -0,0 +1,249 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.Stat;
+import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
+import org.gradle.internal.resources.ProjectLock;
+import org.gradle.internal.resources.ResourceLock;
+import org.gradle.internal.resources.ResourceLockContainer;
+import org.gradle.internal.snapshot.CaseSensitivity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how long it takes to select and run all nodes of a synthetic execution plan,
+ * simulating a fixed number of workers that each hold one node at a time.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ExecutionPlanSelectNextBenchmark {
+
+    @Param({"10000", "100000"})
+    int nodeCount;
+
+    @Param({"32"})
+    int workerCount;
+
+    @Param({"25"})
+    int nodesPerProject;
+
+    @Param({"4"})
+    int dependenciesPerNode;
+
+    private DefaultResourceLockCoordinationService coordinator;
+    private DefaultExecutionPlan executionPlan;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        coordinator = new DefaultResourceLockCoordinationService();
+        executionPlan = new DefaultExecutionPlan(
+            "benchmark",
+            new TaskNodeFactory(null, null, null, null),
+            new TaskDependencyResolver(Collections.emptyList()),
+            new ExecutionNodeAccessHierarchy(CaseSensitivity.CASE_SENSITIVE, new UnusedStat()),
+            new ExecutionNodeAccessHierarchy(CaseSensitivity.CASE_SENSITIVE, new UnusedStat()),
+            coordinator
+        );
+        executionPlan.addNodes(createGraph());
+        executionPlan.determineExecutionPlan();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        executionPlan.close();
+    }
+
+    @Benchmark
+    public int selectAndRunAllNodes() {
+        Deque<Node> running = new ArrayDeque<>();
+        int executed = 0;
+        while (true) {
+            ExecutionPlan.NodeSelection selection = ExecutionPlan.NO_NODES_READY_TO_START;
+            while (running.size() < workerCount) {
+                selection = coordinator.withStateLock(() -> executionPlan.selectNext());
+                if (selection == ExecutionPlan.NO_NODES_READY_TO_START || selection == ExecutionPlan.NO_MORE_NODES_TO_START) {
+                    break;
+                }
+                running.add(selection.getNode());
+            }
+            if (running.isEmpty()) {
+                if (selection == ExecutionPlan.NO_MORE_NODES_TO_START) {
+                    return executed;
+                }
+                throw new IllegalStateException("Cannot make progress");
+            }
+            Node finished = running.removeFirst();
+            coordinator.withStateLock(() -> executionPlan.finishedExecuting(finished));
+            executed++;
+        }
+    }
+
+    private List<Node> createGraph() {
+        Random random = new Random(1234L);
+        List<ResourceLock> projectLocks = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, nodeCount / nodesPerProject); i++) {
+            projectLocks.add(new SyntheticLock("project " + i, coordinator));
+        }
+        List<Node> nodes = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            SyntheticNode node = new SyntheticNode(i, projectLocks.get(random.nextInt(projectLocks.size())));
+            for (int j = 0; j < dependenciesPerNode && i > 0; j++) {
+                node.addDependencySuccessor(nodes.get(random.nextInt(i)));
+            }
+            node.require();
+            node.dependenciesProcessed();
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private static class SyntheticNode extends Node {
+        private final int id;
+        private final ResourceLock projectLock;
+
+        SyntheticNode(int id, ResourceLock projectLock) {
+            this.id = id;
+            this.projectLock = projectLock;
+        }
+
+        @Override
+        public Throwable getNodeFailure() {
+            return null;
+        }
+
+        @Override
+        public void rethrowNodeFailure() {
+        }
+
+        @Override
+        public void resolveDependencies(TaskDependencyResolver dependencyResolver, Action<Node> processHardSuccessor) {
+        }
+
+        @Override
+        public ResourceLock getProjectToLock() {
+            return projectLock;
+        }
+
+        @Override
+        public ProjectInternal getOwningProject() {
+            return null;
+        }
+
+        @Override
+        public List<? extends ResourceLock> getResourcesToLock() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int compareTo(Node other) {
+            return Integer.compare(id, ((SyntheticNode) other).id);
+        }
+
+        @Override
+        public String toString() {
+            return "node " + id;
+        }
+    }
+
+    /**
+     * A project lock which is not owned by a thread, as all nodes are run by the benchmark thread.
+     * Like the real locks, it reports to the coordinator when it is released, so that the plan is notified.
+     */
+    private static class SyntheticLock extends ProjectLock {
+        private final DefaultResourceLockCoordinationService coordinator;
+        private boolean locked;
+
+        SyntheticLock(String displayName, DefaultResourceLockCoordinationService coordinator) {
+            super(displayName, coordinator, NoOpResourceLockContainer.INSTANCE, null);
+            this.coordinator = coordinator;
+        }
+
+        @Override
+        public boolean isLocked() {
+            return locked;
+        }
+
+        @Override
+        public boolean isLockedByCurrentThread() {
+            return locked;
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (locked) {
+                return false;
+            }
+            locked = true;
+            coordinator.getCurrent().registerLocked(this);
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            if (locked) {
+                locked = false;
+                coordinator.getCurrent().registerUnlocked(this);
+            }
+        }
+    }
+
+    private enum NoOpResourceLockContainer implements ResourceLockContainer {
+        INSTANCE;
+
+        @Override
+        public void lockAcquired(ResourceLock lock) {
+        }
+
+        @Override
+        public void lockReleased(ResourceLock lock) {
+        }
+    }
+
+    private static class UnusedStat implements Stat {
+        @Override
+        public int getUnixMode(File f) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileMetadata stat(File f) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
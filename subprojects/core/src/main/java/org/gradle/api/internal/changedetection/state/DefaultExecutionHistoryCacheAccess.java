@@ -19,18 +19,22 @@
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.scopes.ScopedCache;
 import org.gradle.internal.execution.history.ExecutionHistoryCacheAccess;
+import org.gradle.internal.hash.FileContentHashingMode;
 
 import java.io.Closeable;
+import java.util.Collections;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class DefaultExecutionHistoryCacheAccess implements ExecutionHistoryCacheAccess, Closeable {
     private final PersistentCache cache;
 
-    public DefaultExecutionHistoryCacheAccess(ScopedCache cacheRepository) {
+    public DefaultExecutionHistoryCacheAccess(ScopedCache cacheRepository, FileContentHashingMode fileContentHashingMode) {
         this.cache = cacheRepository
             .cache("executionHistory")
             .withDisplayName("execution history cache")
+            // Invalidate the history when file content is hashed differently
+            .withProperties(Collections.singletonMap("fileContentHashing", fileContentHashingMode.getId()))
             .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
             .open();
     }
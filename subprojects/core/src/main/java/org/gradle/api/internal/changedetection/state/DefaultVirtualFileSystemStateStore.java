@@ -0,0 +1,184 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.collect.Interner;
+import org.gradle.cache.GlobalCacheLocations;
+import org.gradle.internal.execution.history.impl.FileSystemSnapshotSerializer;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.Stat;
+import org.gradle.internal.hash.FileContentHashingMode;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.impl.RestoredSnapshotValidator;
+import org.gradle.internal.watch.vfs.VirtualFileSystemStateStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the watched snapshots of the virtual file system in a single file in the Gradle user home.
+ *
+ * The file is replaced atomically, so daemons sharing the Gradle user home never see a partially written state.
+ * The last daemon to stop wins.
+ *
+ * The file records the file content hashing mode and the default excludes the snapshots have been taken with.
+ * The state is dropped when either of them differs when loading it.
+ */
+public class DefaultVirtualFileSystemStateStore implements VirtualFileSystemStateStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultVirtualFileSystemStateStore.class);
+
+    /**
+     * Files modified this shortly before the state has been stored may have been modified again
+     * without a change to their modification time, depending on the precision of the file system timestamps.
+     */
+    private static final long UNRELIABLE_MODIFICATION_TIME_MILLIS = 2000;
+
+    private final File stateFile;
+    private final FileContentHashingMode fileContentHashingMode;
+    private final FileSystemSnapshotSerializer serializer;
+    private final Stat stat;
+    private final Supplier<? extends Collection<String>> defaultExcludes;
+    private final GlobalCacheLocations globalCacheLocations;
+
+    public DefaultVirtualFileSystemStateStore(
+        File stateDir,
+        FileContentHashingMode fileContentHashingMode,
+        Interner<String> stringInterner,
+        Stat stat,
+        Supplier<? extends Collection<String>> defaultExcludes,
+        GlobalCacheLocations globalCacheLocations
+    ) {
+        this.stateFile = new File(stateDir, "vfs-state.bin");
+        this.fileContentHashingMode = fileContentHashingMode;
+        this.serializer = new FileSystemSnapshotSerializer(stringInterner);
+        this.stat = stat;
+        this.defaultExcludes = defaultExcludes;
+        this.globalCacheLocations = globalCacheLocations;
+    }
+
+    @Override
+    public StoredState load() {
+        if (!stateFile.isFile()) {
+            return StoredState.EMPTY;
+        }
+        try (KryoBackedDecoder decoder = new KryoBackedDecoder(new FileInputStream(stateFile))) {
+            String hashingMode = decoder.readString();
+            if (!hashingMode.equals(fileContentHashingMode.getId())) {
+                LOGGER.info("Not restoring the virtual file system state from {}, since it has been stored with file content hashing mode '{}'", stateFile, hashingMode);
+                return StoredState.EMPTY;
+            }
+            int excludesCount = decoder.readSmallInt();
+            List<String> storedDefaultExcludes = new ArrayList<>(excludesCount);
+            for (int i = 0; i < excludesCount; i++) {
+                storedDefaultExcludes.add(decoder.readString());
+            }
+            List<String> currentDefaultExcludes = currentDefaultExcludes();
+            if (!storedDefaultExcludes.equals(currentDefaultExcludes)) {
+                LOGGER.info("Not restoring the virtual file system state from {}, since it has been stored with default excludes {} instead of {}", stateFile, storedDefaultExcludes, currentDefaultExcludes);
+                return StoredState.EMPTY;
+            }
+            long storedAt = decoder.readLong();
+            int count = decoder.readSmallInt();
+            List<FileSystemLocationSnapshot> snapshots = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                snapshots.add((FileSystemLocationSnapshot) serializer.read(decoder));
+            }
+            RestoredSnapshotValidator validator = new RestoredSnapshotValidator(stat, storedDefaultExcludes);
+            return new DefaultStoredState(Collections.unmodifiableList(snapshots), validator, storedAt - UNRELIABLE_MODIFICATION_TIME_MILLIS);
+        } catch (Exception e) {
+            LOGGER.info("Could not restore the virtual file system state from {}", stateFile, e);
+            return StoredState.EMPTY;
+        }
+    }
+
+    @Override
+    public void store(Collection<FileSystemLocationSnapshot> snapshots) {
+        // Snapshots accessed via symlinks are invalidated on restore anyway, and the global caches are not watched
+        List<FileSystemLocationSnapshot> snapshotsToStore = snapshots.stream()
+            .filter(snapshot -> snapshot.getAccessType() == AccessType.DIRECT)
+            .filter(snapshot -> !globalCacheLocations.isInsideGlobalCache(snapshot.getAbsolutePath()))
+            .collect(Collectors.toList());
+        File stateDir = stateFile.getParentFile();
+        File tempFile = null;
+        try {
+            Files.createDirectories(stateDir.toPath());
+            tempFile = File.createTempFile("vfs-state", ".tmp", stateDir);
+            try (KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(tempFile))) {
+                encoder.writeString(fileContentHashingMode.getId());
+                // The snapshots have been taken with the default excludes in effect right now
+                List<String> currentDefaultExcludes = currentDefaultExcludes();
+                encoder.writeSmallInt(currentDefaultExcludes.size());
+                for (String defaultExclude : currentDefaultExcludes) {
+                    encoder.writeString(defaultExclude);
+                }
+                encoder.writeLong(System.currentTimeMillis());
+                encoder.writeSmallInt(snapshotsToStore.size());
+                for (FileSystemLocationSnapshot snapshot : snapshotsToStore) {
+                    serializer.write(encoder, snapshot);
+                }
+            }
+            Files.move(tempFile.toPath(), stateFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            LOGGER.debug("Stored {} snapshots of the virtual file system in {}", snapshotsToStore.size(), stateFile);
+        } catch (Exception e) {
+            LOGGER.info("Could not store the virtual file system state in {}", stateFile, e);
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private List<String> currentDefaultExcludes() {
+        return defaultExcludes.get().stream()
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    private static class DefaultStoredState implements StoredState {
+        private final List<FileSystemLocationSnapshot> snapshots;
+        private final RestoredSnapshotValidator validator;
+        private final long modifiedAfterMillis;
+
+        public DefaultStoredState(List<FileSystemLocationSnapshot> snapshots, RestoredSnapshotValidator validator, long modifiedAfterMillis) {
+            this.snapshots = snapshots;
+            this.validator = validator;
+            this.modifiedAfterMillis = modifiedAfterMillis;
+        }
+
+        @Override
+        public List<FileSystemLocationSnapshot> getSnapshots() {
+            return snapshots;
+        }
+
+        @Override
+        public List<String> findChangedLocations(FileSystemLocationSnapshot snapshot) {
+            return validator.findChangedLocations(snapshot, modifiedAfterMillis);
+        }
+    }
+}
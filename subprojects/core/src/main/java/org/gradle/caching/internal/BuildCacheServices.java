@@ -29,9 +29,11 @@
 import org.gradle.caching.internal.controller.RootBuildCacheControllerRef;
 import org.gradle.caching.internal.origin.OriginMetadataFactory;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.BuildCacheEntryCompression;
+import org.gradle.caching.internal.packaging.impl.CompressingBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.DefaultTarPackerFileSystemSupport;
 import org.gradle.caching.internal.packaging.impl.FilePermissionAccess;
-import org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.ParallelGZipBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarPackerFileSystemSupport;
 import org.gradle.caching.internal.services.BuildCacheControllerFactory;
@@ -39,6 +41,7 @@
 import org.gradle.caching.local.internal.DirectoryBuildCacheFileStoreFactory;
 import org.gradle.caching.local.internal.DirectoryBuildCacheServiceFactory;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.file.FileException;
 import org.gradle.internal.hash.ChecksumService;
@@ -67,6 +70,17 @@
  */
 public final class BuildCacheServices extends AbstractPluginServiceRegistry {
 
+    /**
+     * When set to true, build cache entries are compressed and decompressed using several threads.
+     */
+    public static final String PARALLEL_PACKING_PROPERTY = "org.gradle.internal.build-cache.parallel-packing";
+
+    /**
+     * The compression used for new build cache entries, either {@code gzip} (the default) or {@code lz4}.
+     * Entries using any compression can be loaded regardless of this setting.
+     */
+    public static final String COMPRESSION_PROPERTY = "org.gradle.internal.build-cache.compression";
+
     @Override
     public void registerBuildTreeServices(ServiceRegistration registration) {
         registration.addProvider(new Object() {
@@ -113,14 +127,24 @@ TarPackerFileSystemSupport createPackerFileSystemSupport(Deleter deleter) {
                 return new DefaultTarPackerFileSystemSupport(deleter);
             }
 
+            BuildCacheEntryCompression createBuildCacheEntryCompression() {
+                return BuildCacheEntryCompression.forId(System.getProperty(COMPRESSION_PROPERTY, BuildCacheEntryCompression.GZIP.getId()));
+            }
+
             BuildCacheEntryPacker createResultPacker(
+                BuildCacheEntryCompression compression,
                 TarPackerFileSystemSupport fileSystemSupport,
                 FileSystem fileSystem,
                 StreamHasher fileHasher,
-                StringInterner stringInterner
+                StringInterner stringInterner,
+                ExecutorFactory executorFactory
             ) {
-                return new GZipBuildCacheEntryPacker(
-                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner));
+                TarBuildCacheEntryPacker tarPacker = new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner);
+                if (compression == BuildCacheEntryCompression.GZIP && Boolean.getBoolean(PARALLEL_PACKING_PROPERTY)) {
+                    int parallelism = Runtime.getRuntime().availableProcessors();
+                    return new ParallelGZipBuildCacheEntryPacker(tarPacker, executorFactory.create("Build cache entry packing", parallelism), parallelism);
+                }
+                return new CompressingBuildCacheEntryPacker(tarPacker, compression);
             }
 
             OriginMetadataFactory createOriginMetadataFactory(
@@ -148,10 +172,11 @@ BuildCacheController createBuildCacheController(
                 FileSystemAccess fileSystemAccess,
                 BuildCacheEntryPacker packer,
                 OriginMetadataFactory originMetadataFactory,
-                StringInterner stringInterner
+                StringInterner stringInterner,
+                ExecutorFactory executorFactory
             ) {
                 if (isRoot(gradle) || isGradleBuildTaskRoot(rootControllerRef)) {
-                    return doCreateBuildCacheController(serviceRegistry, buildCacheConfiguration, buildOperationExecutor, instantiatorFactory, gradle, temporaryFileProvider, fileSystemAccess, packer, originMetadataFactory, stringInterner);
+                    return doCreateBuildCacheController(serviceRegistry, buildCacheConfiguration, buildOperationExecutor, instantiatorFactory, gradle, temporaryFileProvider, fileSystemAccess, packer, originMetadataFactory, stringInterner, executorFactory);
                 } else {
                     // must be an included build or buildSrc
                     return rootControllerRef.getForNonRootBuild();
@@ -174,7 +199,7 @@ private boolean isRoot(GradleInternal gradle) {
             private BuildCacheController doCreateBuildCacheController(
                 ServiceRegistry serviceRegistry, BuildCacheConfigurationInternal buildCacheConfiguration, BuildOperationExecutor buildOperationExecutor, InstantiatorFactory instantiatorFactory,
                 GradleInternal gradle, TemporaryFileProvider temporaryFileProvider, FileSystemAccess fileSystemAccess, BuildCacheEntryPacker packer, OriginMetadataFactory originMetadataFactory,
-                StringInterner stringInterner
+                StringInterner stringInterner, ExecutorFactory executorFactory
             ) {
                 StartParameter startParameter = gradle.getStartParameter();
                 Path buildIdentityPath = gradle.getIdentityPath();
@@ -196,7 +221,8 @@ private BuildCacheController doCreateBuildCacheController(
                     fileSystemAccess,
                     packer,
                     originMetadataFactory,
-                    stringInterner
+                    stringInterner,
+                    executorFactory
                 );
             }
         });
@@ -36,6 +36,7 @@
 import org.gradle.caching.local.DirectoryBuildCache;
 import org.gradle.caching.local.internal.DirectoryBuildCacheService;
 import org.gradle.internal.Cast;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -50,12 +51,26 @@
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 public final class BuildCacheControllerFactory {
 
     public static final String REMOTE_CONTINUE_ON_ERROR_PROPERTY = "org.gradle.unsafe.build-cache.remote-continue-on-error";
 
+    /**
+     * When set to true, entries are stored in the remote build cache in the background, instead of before the work producing them completes.
+     * All entries are stored before the build finishes.
+     */
+    public static final String ASYNC_REMOTE_STORE_PROPERTY = "org.gradle.internal.build-cache.async-remote-store";
+
+    /**
+     * The number of threads storing entries in the remote build cache in the background, 4 by default.
+     */
+    public static final String ASYNC_REMOTE_STORE_THREADS_PROPERTY = "org.gradle.internal.build-cache.async-remote-store-threads";
+
+    private static final int DEFAULT_ASYNC_REMOTE_STORE_THREADS = 4;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(BuildCacheControllerFactory.class);
 
     public enum BuildCacheMode {
@@ -79,7 +94,8 @@ public static BuildCacheController create(
         final FileSystemAccess fileSystemAccess,
         final BuildCacheEntryPacker packer,
         final OriginMetadataFactory originMetadataFactory,
-        final StringInterner stringInterner
+        final StringInterner stringInterner,
+        final ExecutorFactory executorFactory
     ) {
         return buildOperationExecutor.call(new CallableBuildOperation<BuildCacheController>() {
             @Override
@@ -124,6 +140,9 @@ public BuildCacheController call(BuildOperationContext context) {
                         localDescribedService,
                         remoteDescribedService
                     );
+                    ExecutorService asyncRemoteStoreExecutor = config.getRemote() != null && config.isRemotePush() && Boolean.getBoolean(ASYNC_REMOTE_STORE_PROPERTY)
+                        ? executorFactory.create("Build cache remote store", Math.max(1, Integer.getInteger(ASYNC_REMOTE_STORE_THREADS_PROPERTY, DEFAULT_ASYNC_REMOTE_STORE_THREADS)))
+                        : null;
 
                     return new DefaultBuildCacheController(
                         config,
@@ -135,7 +154,8 @@ public BuildCacheController call(BuildOperationContext context) {
                         fileSystemAccess,
                         packer,
                         originMetadataFactory,
-                        stringInterner
+                        stringInterner,
+                        asyncRemoteStoreExecutor
                     );
                 }
             }
@@ -50,6 +50,8 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 import java.io.StringWriter;
 import java.util.AbstractCollection;
 import java.util.ArrayDeque;
@@ -80,7 +82,7 @@ public class DefaultExecutionPlan implements ExecutionPlan {
 
     private final Set<Node> entryNodes = new LinkedHashSet<>();
     private final NodeMapping nodeMapping = new NodeMapping();
-    private final List<Node> executionQueue = new LinkedList<>();
+    private final ExecutionQueue executionQueue = new ExecutionQueue();
     private final FailureCollector failureCollector = new FailureCollector();
     private final String displayName;
     private final TaskNodeFactory taskNodeFactory;
@@ -103,10 +105,6 @@ public class DefaultExecutionPlan implements ExecutionPlan {
     private Consumer<LocalTaskNode> completionHandler = localTaskNode -> {
     };
 
-    // When true, there may be nodes that are "ready", which means their dependencies have completed and the action is ready to execute
-    // When false, there are definitely no nodes that are "ready"
-    private boolean maybeNodesReady;
-
     // When true, there may be nodes that are both ready and "selectable", which means their project and resources are able to be locked
     // When false, there are definitely no nodes that are "selectable"
     private boolean maybeNodesSelectable;
@@ -380,7 +378,8 @@ public NodeInVisitingSegment apply(Node node) {
         executionQueue.addAll(nodeMapping);
 
         for (Node node : executionQueue) {
-            maybeNodesReady(node.updateAllDependenciesComplete() && node.isReady());
+            node.updateAllDependenciesComplete();
+            maybeNodeReady(node);
         }
 
         maybeNodesSelectable = true;
@@ -402,7 +401,7 @@ public void close() {
     }
 
     private void resourceUnlocked(ResourceLock resourceLock) {
-        if (!(resourceLock instanceof WorkerLeaseRegistry.WorkerLease) && maybeNodesReady) {
+        if (!(resourceLock instanceof WorkerLeaseRegistry.WorkerLease) && executionQueue.lockReleased(resourceLock)) {
             maybeNodesSelectable = true;
         }
     }
@@ -679,53 +678,61 @@ public NodeSelection selectNext() {
         }
 
         List<ResourceLock> resources = new ArrayList<>();
-        Iterator<Node> iterator = executionQueue.iterator();
         boolean foundReadyNode = false;
         boolean foundNotReadyNode = false;
-        while (iterator.hasNext()) {
-            Node node = iterator.next();
-            if (node.isReady() && node.allDependenciesComplete()) {
-                if (!node.allDependenciesSuccessful()) {
-                    // Cannot execute this node due to failed dependencies - skip it
-                    node.skipExecution(this::recordNodeCompleted);
-                    iterator.remove();
-                    continue;
+        boolean rebuiltReadyNodes = false;
+        while (true) {
+            Node node = executionQueue.pollReadyNode();
+            if (node == null) {
+                if (rebuiltReadyNodes || !runningNodes.isEmpty()) {
+                    break;
                 }
+                // Nothing is running that could make the remaining nodes ready, so look at every node in the queue
+                foundNotReadyNode = executionQueue.rebuildReadyNodes();
+                rebuiltReadyNodes = true;
+                continue;
+            }
+            if (!node.isReady() || !node.allDependenciesComplete()) {
+                // Node is not ready to run anymore
+                // - its dependencies are not yet complete
+                // - it is waiting for some external event such as completion of a task in another build
+                // It is marked as ready again when this changes
+                continue;
+            }
+            if (!node.allDependenciesSuccessful()) {
+                // Cannot execute this node due to failed dependencies - skip it
+                node.skipExecution(this::recordNodeCompleted);
+                executionQueue.remove(node);
+                continue;
+            }
 
-                foundReadyNode = true;
+            foundReadyNode = true;
 
-                Node prepareNode = node.getPrepareNode();
-                if (prepareNode != null) {
-                    if (!prepareNode.isRequired()) {
-                        prepareNode.require();
-                    }
-                    if (prepareNode.isReady()) {
-                        if (attemptToStart(prepareNode, resources)) {
-                            node.addDependencySuccessor(prepareNode);
-                            node.forceAllDependenciesCompleteUpdate();
-                            return NodeSelection.of(prepareNode);
-                        } else {
-                            // Cannot start prepare node, so skip to next node
-                            continue;
-                        }
+            Node prepareNode = node.getPrepareNode();
+            if (prepareNode != null) {
+                if (!prepareNode.isRequired()) {
+                    prepareNode.require();
+                }
+                if (prepareNode.isReady()) {
+                    if (attemptToStart(prepareNode, node, resources)) {
+                        node.addDependencySuccessor(prepareNode);
+                        node.forceAllDependenciesCompleteUpdate();
+                        return NodeSelection.of(prepareNode);
+                    } else {
+                        // Cannot start prepare node, so skip to next node
+                        continue;
                     }
-                    // else prepare node has already completed
                 }
+                // else prepare node has already completed
+            }
 
-                if (attemptToStart(node, resources)) {
-                    iterator.remove();
-                    return NodeSelection.of(node);
-                }
-            } else if (!node.isComplete()) {
-                // Node is not yet complete
-                // - its dependencies are not yet complete
-                // - it is waiting for some external event such as completion of a task in another build
-                foundNotReadyNode = true;
+            if (attemptToStart(node, node, resources)) {
+                executionQueue.remove(node);
+                return NodeSelection.of(node);
             }
         }
 
         LOGGER.debug("No node could be selected, nodes ready: {}", foundReadyNode);
-        maybeNodesReady = foundReadyNode;
         maybeNodesSelectable = false;
         if (executionQueue.isEmpty()) {
             return NO_MORE_NODES_TO_START;
@@ -743,10 +750,15 @@ public NodeSelection selectNext() {
         }
     }
 
-    private boolean attemptToStart(Node node, List<ResourceLock> resources) {
+    /**
+     * Attempts to start the given node. When the node cannot be started, the given queued node is parked until whatever prevents the node from starting changes.
+     */
+    private boolean attemptToStart(Node node, Node queuedNode, List<ResourceLock> resources) {
         resources.clear();
-        if (!tryAcquireLocksForNode(node, resources)) {
+        ResourceLock unavailableLock = tryAcquireLocksForNode(node, resources);
+        if (unavailableLock != null) {
             releaseLocks(resources);
+            executionQueue.waitForLock(queuedNode, unavailableLock);
             return false;
         }
 
@@ -754,6 +766,7 @@ private boolean attemptToStart(Node node, List<ResourceLock> resources) {
 
         if (conflictsWithOtherNodes(node, mutations)) {
             releaseLocks(resources);
+            executionQueue.waitForRunningNodes(queuedNode);
             return false;
         }
 
@@ -770,15 +783,22 @@ private void releaseLocks(List<ResourceLock> resources) {
         }
     }
 
-    private boolean tryAcquireLocksForNode(Node node, List<ResourceLock> resources) {
-        if (!tryLockProjectFor(node, resources)) {
+    /**
+     * Returns the lock that could not be acquired, or null when all locks for the node were acquired.
+     */
+    @Nullable
+    private ResourceLock tryAcquireLocksForNode(Node node, List<ResourceLock> resources) {
+        ResourceLock unavailableLock = tryLockProjectFor(node, resources);
+        if (unavailableLock != null) {
             LOGGER.debug("Cannot acquire project lock for node {}", node);
-            return false;
-        } else if (!tryLockSharedResourceFor(node, resources)) {
+            return unavailableLock;
+        }
+        unavailableLock = tryLockSharedResourceFor(node, resources);
+        if (unavailableLock != null) {
             LOGGER.debug("Cannot acquire shared resource lock for node {}", node);
-            return false;
+            return unavailableLock;
         }
-        return true;
+        return null;
     }
 
     private boolean conflictsWithOtherNodes(Node node, MutationInfo mutations) {
@@ -794,19 +814,22 @@ private boolean conflictsWithOtherNodes(Node node, MutationInfo mutations) {
 
     private void updateAllDependenciesCompleteForPredecessors(Node node) {
         for (Node predecessor : node.getAllPredecessors()) {
-            maybeNodesReady(predecessor.updateAllDependenciesComplete() && predecessor.isReady());
+            if (predecessor.updateAllDependenciesComplete()) {
+                maybeNodeReady(predecessor);
+            }
         }
     }
 
-    private boolean tryLockProjectFor(Node node, List<ResourceLock> resources) {
+    @Nullable
+    private ResourceLock tryLockProjectFor(Node node, List<ResourceLock> resources) {
         ResourceLock toLock = node.getProjectToLock();
         if (toLock == null) {
-            return true;
+            return null;
         } else if (toLock.tryLock()) {
             resources.add(toLock);
-            return true;
+            return null;
         } else {
-            return false;
+            return toLock;
         }
     }
 
@@ -817,14 +840,15 @@ private void unlockProjectFor(Node node) {
         }
     }
 
-    private boolean tryLockSharedResourceFor(Node node, List<ResourceLock> resources) {
+    @Nullable
+    private ResourceLock tryLockSharedResourceFor(Node node, List<ResourceLock> resources) {
         for (ResourceLock resource : node.getResourcesToLock()) {
             if (!resource.tryLock()) {
-                return false;
+                return resource;
             }
             resources.add(resource);
         }
-        return true;
+        return null;
     }
 
     private void unlockSharedResourcesFor(Node node) {
@@ -935,6 +959,8 @@ private void recordNodeCompleted(Node node) {
             MutationInfo producerMutations = producer.getMutationInfo();
             if (producerMutations.consumingNodes.remove(node) && producerMutations.consumingNodes.isEmpty()) {
                 producedButNotYetConsumed.remove(producer);
+                // A destroyer may be waiting for the output of the producer to be consumed
+                maybeWaitingNodesReady();
             }
         }
 
@@ -951,7 +977,9 @@ private void recordNodeCompleted(Node node) {
 
     private void monitoredNodeReady(Node node) {
         lockCoordinator.assertHasStateLock();
-        maybeNodesReady(true);
+        if (executionQueue.nodeReady(node)) {
+            maybeNodesSelectable = true;
+        }
     }
 
     @Override
@@ -961,9 +989,6 @@ public void finishedExecuting(Node node) {
             throw new IllegalStateException(String.format("Cannot finish executing %s as it is in an unexpected state.", node));
         }
         try {
-            if (maybeNodesReady) {
-                maybeNodesSelectable = true;
-            }
             enforceFinalizers(node);
             runningNodes.remove(node);
             node.finishExecution(this::recordNodeCompleted);
@@ -977,12 +1002,22 @@ public void finishedExecuting(Node node) {
             unlockProjectFor(node);
             unlockSharedResourcesFor(node);
             invalidNodeRunning = false;
+            maybeWaitingNodesReady();
+            if (runningNodes.isEmpty()) {
+                // Nothing else is running, so give the nodes that remain in the queue another look
+                maybeNodesSelectable = true;
+            }
+        }
+    }
+
+    private void maybeNodeReady(Node node) {
+        if (node.isReady() && node.allDependenciesComplete() && executionQueue.nodeReady(node)) {
+            maybeNodesSelectable = true;
         }
     }
 
-    private void maybeNodesReady(boolean ready) {
-        if (ready) {
-            maybeNodesReady = true;
+    private void maybeWaitingNodesReady() {
+        if (executionQueue.runningNodeCompleted()) {
             maybeNodesSelectable = true;
         }
     }
@@ -1009,8 +1044,8 @@ private void enforceWithDependencies(Node node) {
                 candidates.addAll(candidate.getDependencySuccessors());
 
                 if (candidate.isMustNotRun() || candidate.isRequired()) {
-                    maybeNodesReady(true);
                     candidate.enforceRun();
+                    maybeNodeReady(candidate);
                     // Completed changed from true to false - inform all nodes depending on this one.
                     for (Node predecessor : candidate.getAllPredecessors()) {
                         predecessor.forceAllDependenciesCompleteUpdate();
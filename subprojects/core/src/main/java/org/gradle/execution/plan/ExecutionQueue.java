@@ -0,0 +1,249 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.internal.resources.DefaultLease;
+import org.gradle.internal.resources.ProjectLock;
+import org.gradle.internal.resources.ResourceLock;
+import org.gradle.internal.resources.TaskExecutionLock;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+/**
+ * The nodes of an execution plan that are yet to be started, in plan order.
+ *
+ * <p>In addition to the queue itself, this keeps an index of the nodes that may be ready to start, so that selecting the next node
+ * does not need to scan the whole queue. A ready node that cannot be started is parked until the resource lock it is waiting for is
+ * released, or until some running node completes. Callers are responsible for marking nodes as ready when their dependencies complete.</p>
+ *
+ * <p>The index is conservative: a node returned by {@link #pollReadyNode()} may no longer be ready, and callers need to check this.</p>
+ */
+class ExecutionQueue implements Iterable<Node> {
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<Node, Integer> positions = new IdentityHashMap<>();
+    private final BitSet queued = new BitSet();
+    private final NavigableSet<Integer> readyNodes = new TreeSet<>();
+    private final Map<Object, List<Integer>> waitingForLock = new IdentityHashMap<>();
+    private final List<Integer> waitingForRunningNodes = new ArrayList<>();
+    private int size;
+
+    public void addAll(Collection<? extends Node> toAdd) {
+        for (Node node : toAdd) {
+            int position = nodes.size();
+            nodes.add(node);
+            positions.put(node, position);
+            queued.set(position);
+        }
+        size += toAdd.size();
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        nodes.clear();
+        positions.clear();
+        queued.clear();
+        readyNodes.clear();
+        waitingForLock.clear();
+        waitingForRunningNodes.clear();
+        size = 0;
+    }
+
+    /**
+     * Removes the given node from the queue, when it has been started or will not run.
+     */
+    public void remove(Node node) {
+        Integer position = positions.get(node);
+        if (position != null && queued.get(position)) {
+            removeAt(position);
+        }
+    }
+
+    /**
+     * Marks the given node as possibly ready to start. Does nothing if the node is not queued.
+     *
+     * @return true if the node was not already known to be ready.
+     */
+    public boolean nodeReady(Node node) {
+        Integer position = positions.get(node);
+        if (position == null || !queued.get(position)) {
+            return false;
+        }
+        return readyNodes.add(position);
+    }
+
+    /**
+     * Removes and returns the first node in plan order that may be ready to start, or null when there are no such nodes.
+     */
+    @Nullable
+    public Node pollReadyNode() {
+        Integer position = readyNodes.pollFirst();
+        return position == null ? null : nodes.get(position);
+    }
+
+    /**
+     * Parks the given ready node until the given lock is released.
+     */
+    public void waitForLock(Node node, ResourceLock lock) {
+        Integer position = positions.get(node);
+        if (position != null) {
+            waitingForLock.computeIfAbsent(lockKey(lock), key -> new ArrayList<>()).add(position);
+        }
+    }
+
+    /**
+     * Parks the given ready node until some running node completes.
+     */
+    public void waitForRunningNodes(Node node) {
+        Integer position = positions.get(node);
+        if (position != null) {
+            waitingForRunningNodes.add(position);
+        }
+    }
+
+    /**
+     * Makes the nodes waiting for the given lock ready again.
+     *
+     * @return true if some queued node was waiting for the lock.
+     */
+    public boolean lockReleased(ResourceLock lock) {
+        if (lock instanceof DefaultLease || lock instanceof ProjectLock || lock instanceof TaskExecutionLock) {
+            List<Integer> waiting = waitingForLock.remove(lockKey(lock));
+            return waiting != null && makeReady(waiting);
+        }
+        // Some other lock, such as the lock on all projects of a build, which can prevent the locks the nodes wait for from being acquired
+        boolean readied = false;
+        for (List<Integer> waiting : waitingForLock.values()) {
+            readied |= makeReady(waiting);
+        }
+        waitingForLock.clear();
+        return readied;
+    }
+
+    /**
+     * Makes the nodes waiting for running nodes to complete ready again.
+     *
+     * @return true if some queued node was waiting.
+     */
+    public boolean runningNodeCompleted() {
+        if (waitingForRunningNodes.isEmpty()) {
+            return false;
+        }
+        boolean readied = makeReady(waitingForRunningNodes);
+        waitingForRunningNodes.clear();
+        return readied;
+    }
+
+    /**
+     * Discards the ready index and rebuilds it from the current state of every queued node.
+     *
+     * @return true if some queued node is not ready and not complete, that is, some node is waiting for its dependencies or for some external event.
+     */
+    public boolean rebuildReadyNodes() {
+        readyNodes.clear();
+        waitingForLock.clear();
+        waitingForRunningNodes.clear();
+        boolean foundNotReadyNode = false;
+        for (int position = queued.nextSetBit(0); position >= 0; position = queued.nextSetBit(position + 1)) {
+            Node node = nodes.get(position);
+            if (node.isReady() && node.allDependenciesComplete()) {
+                readyNodes.add(position);
+            } else if (!node.isComplete()) {
+                foundNotReadyNode = true;
+            }
+        }
+        return foundNotReadyNode;
+    }
+
+    /**
+     * Returns the lock whose release may allow the given lock to be acquired.
+     * Each node gets its own lease of a shared resource, so the key of a lease is the resource it is taken from.
+     * The execution lock of a project can only be acquired along with the state lock of the project, and is always released with it.
+     */
+    private static Object lockKey(ResourceLock lock) {
+        if (lock instanceof DefaultLease) {
+            return ((DefaultLease) lock).getLeaseHolder();
+        }
+        if (lock instanceof TaskExecutionLock) {
+            return ((TaskExecutionLock) lock).getStateLock();
+        }
+        return lock;
+    }
+
+    private boolean makeReady(List<Integer> waiting) {
+        boolean readied = false;
+        for (Integer position : waiting) {
+            if (queued.get(position)) {
+                readyNodes.add(position);
+                readied = true;
+            }
+        }
+        return readied;
+    }
+
+    private void removeAt(int position) {
+        queued.clear(position);
+        readyNodes.remove(position);
+        size--;
+    }
+
+    @Override
+    public Iterator<Node> iterator() {
+        return new Iterator<Node>() {
+            private int current = -1;
+
+            @Override
+            public boolean hasNext() {
+                return queued.nextSetBit(current + 1) >= 0;
+            }
+
+            @Override
+            public Node next() {
+                int next = queued.nextSetBit(current + 1);
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                current = next;
+                return nodes.get(current);
+            }
+
+            @Override
+            public void remove() {
+                if (current < 0 || !queued.get(current)) {
+                    throw new IllegalStateException();
+                }
+                removeAt(current);
+            }
+        };
+    }
+}
@@ -51,6 +51,7 @@ public class LocalTaskNode extends TaskNode {
     private boolean isolated;
     private List<? extends ResourceLock> resourceLocks;
     private TaskProperties taskProperties;
+    private Runnable stateLoader;
 
     public LocalTaskNode(TaskInternal task, NodeValidator nodeValidator, WorkValidationContext workValidationContext) {
         this.task = task;
@@ -65,6 +66,22 @@ public void isolated() {
         isolated = true;
     }
 
+    /**
+     * Indicates that the state of this task has not been loaded yet, and has to be loaded using the given action before the task is executed.
+     */
+    public void loadStateBeforeExecution(Runnable stateLoader) {
+        this.stateLoader = stateLoader;
+    }
+
+    private synchronized void ensureStateLoaded() {
+        Runnable loader = stateLoader;
+        if (loader != null) {
+            loader.run();
+            // Only discard the loader once the state has been loaded, so that a failure to load the state is not ignored on the next attempt
+            stateLoader = null;
+        }
+    }
+
     public WorkValidationContext getValidationContext() {
         return validationContext;
     }
@@ -90,6 +107,7 @@ public ProjectInternal getOwningProject() {
     @Override
     public List<? extends ResourceLock> getResourcesToLock() {
         if (resourceLocks == null) {
+            ensureStateLoaded();
             resourceLocks = task.getSharedResources();
         }
         return resourceLocks;
@@ -233,6 +251,7 @@ public void resolveMutations() {
         final FileCollectionFactory fileCollectionFactory = serviceRegistry.get(FileCollectionFactory.class);
         PropertyWalker propertyWalker = serviceRegistry.get(PropertyWalker.class);
         try {
+            ensureStateLoaded();
             taskProperties = DefaultTaskProperties.resolve(propertyWalker, fileCollectionFactory, task);
 
             addOutputFilesToMutations(taskProperties.getOutputFileProperties());
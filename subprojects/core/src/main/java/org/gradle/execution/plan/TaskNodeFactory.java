@@ -39,7 +39,6 @@
 import java.io.File;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -47,7 +46,7 @@
 
 @ServiceScope(Scopes.Build.class)
 public class TaskNodeFactory {
-    private final Map<Task, TaskNode> nodes = new HashMap<>();
+    private final Map<Task, TaskNode> nodes = Maps.newConcurrentMap();
     private final BuildTreeWorkGraphController workGraphController;
     private final NodeValidator nodeValidator;
     private final GradleInternal thisBuild;
@@ -76,19 +75,29 @@ public TaskNode getNode(Task task) {
         return nodes.get(task);
     }
 
+    /**
+     * Can be called concurrently, as tasks are decoded concurrently when loading from the configuration cache.
+     */
     public TaskNode getOrCreateNode(Task task) {
         TaskNode node = nodes.get(task);
         if (node == null) {
-            if (task.getProject().getGradle() == thisBuild) {
-                node = new LocalTaskNode((TaskInternal) task, nodeValidator, new DefaultWorkValidationContext(documentationRegistry, typeOriginInspectorFactory.forTask(task)));
-            } else {
-                node = TaskInAnotherBuild.of((TaskInternal) task, workGraphController);
+            TaskNode newNode = createNode(task);
+            node = nodes.putIfAbsent(task, newNode);
+            if (node == null) {
+                node = newNode;
             }
-            nodes.put(task, node);
         }
         return node;
     }
 
+    private TaskNode createNode(Task task) {
+        if (task.getProject().getGradle() == thisBuild) {
+            return new LocalTaskNode((TaskInternal) task, nodeValidator, new DefaultWorkValidationContext(documentationRegistry, typeOriginInspectorFactory.forTask(task)));
+        } else {
+            return TaskInAnotherBuild.of((TaskInternal) task, workGraphController);
+        }
+    }
+
     public void clear() {
         nodes.clear();
     }
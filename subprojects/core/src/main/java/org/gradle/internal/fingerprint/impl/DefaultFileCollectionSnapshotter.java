@@ -16,33 +16,67 @@
 
 package org.gradle.internal.fingerprint.impl;
 
+import com.google.common.collect.ImmutableList;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.internal.file.FileCollectionInternal;
 import org.gradle.api.internal.file.FileCollectionStructureVisitor;
 import org.gradle.api.internal.file.FileTreeInternal;
 import org.gradle.api.internal.file.collections.FileSystemMirroringFileTree;
 import org.gradle.api.tasks.util.PatternSet;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.execution.fingerprint.FileCollectionSnapshotter;
 import org.gradle.internal.file.FileType;
 import org.gradle.internal.file.Stat;
 import org.gradle.internal.fingerprint.GenericFileTreeSnapshotter;
 import org.gradle.internal.snapshot.CompositeFileSystemSnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.gradle.internal.vfs.FileSystemAccess;
 
+import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
-public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshotter {
+public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshotter, Closeable {
     private final FileSystemAccess fileSystemAccess;
     private final GenericFileTreeSnapshotter genericFileTreeSnapshotter;
     private final Stat stat;
+    @Nullable
+    private final ManagedExecutor executor;
+    private final int parallelism;
 
     public DefaultFileCollectionSnapshotter(FileSystemAccess fileSystemAccess, GenericFileTreeSnapshotter genericFileTreeSnapshotter, Stat stat) {
         this.fileSystemAccess = fileSystemAccess;
         this.genericFileTreeSnapshotter = genericFileTreeSnapshotter;
         this.stat = stat;
+        this.executor = null;
+        this.parallelism = 1;
+    }
+
+    /**
+     * Creates a snapshotter that reads the files of a collection concurrently, using up to {@code parallelism} threads including the calling thread.
+     */
+    public DefaultFileCollectionSnapshotter(FileSystemAccess fileSystemAccess, GenericFileTreeSnapshotter genericFileTreeSnapshotter, Stat stat, ExecutorFactory executorFactory, int parallelism) {
+        this.fileSystemAccess = fileSystemAccess;
+        this.genericFileTreeSnapshotter = genericFileTreeSnapshotter;
+        this.stat = stat;
+        this.executor = parallelism > 1 ? executorFactory.create("File collection snapshotting", parallelism - 1) : null;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public void close() {
+        CompositeStoppable.stoppable(executor).stop();
     }
 
     @Override
@@ -77,12 +111,66 @@ private class SnapshottingVisitor implements FileCollectionStructureVisitor {
 
         @Override
         public void visitCollection(FileCollectionInternal.Source source, Iterable<File> contents) {
-            for (File file : contents) {
-                fileSystemAccess.read(file.getAbsolutePath(), roots::add);
+            if (executor == null) {
+                for (File file : contents) {
+                    fileSystemAccess.read(file.getAbsolutePath(), roots::add);
+                }
+            } else {
+                readConcurrently(ImmutableList.copyOf(contents), executor);
             }
             fileTreeOnly = false;
         }
 
+        /**
+         * Reads the given files on the calling thread and on helper threads, keeping the snapshots in the order of the files.
+         * Snapshots already known to the file system access are cheap to read, so the calling thread does not wait for helpers to start.
+         */
+        private void readConcurrently(List<File> files, ManagedExecutor executor) {
+            FileSystemLocationSnapshot[] snapshots = new FileSystemLocationSnapshot[files.size()];
+            AtomicInteger nextFile = new AtomicInteger();
+            Runnable reader = () -> {
+                int index;
+                while ((index = nextFile.getAndIncrement()) < snapshots.length) {
+                    try {
+                        snapshots[index] = fileSystemAccess.read(files.get(index).getAbsolutePath(), Function.identity());
+                    } catch (RuntimeException | Error e) {
+                        // Stop the other readers
+                        nextFile.set(snapshots.length);
+                        throw e;
+                    }
+                }
+            };
+            List<Future<?>> helpers = new ArrayList<>();
+            for (int i = 1; i < Math.min(parallelism, files.size()); i++) {
+                helpers.add(executor.submit(reader));
+            }
+            Throwable failure = null;
+            try {
+                reader.run();
+            } catch (Throwable t) {
+                failure = t;
+            }
+            for (Future<?> helper : helpers) {
+                // Helpers that have not started yet have nothing left to do
+                if (helper.cancel(false)) {
+                    continue;
+                }
+                try {
+                    helper.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+            if (failure != null) {
+                throw UncheckedException.throwAsUncheckedException(failure);
+            }
+            Collections.addAll(roots, snapshots);
+        }
+
         @Override
         public void visitGenericFileTree(FileTreeInternal fileTree, FileSystemMirroringFileTree sourceTree) {
             roots.add(genericFileTreeSnapshotter.snapshotFileTree(fileTree));
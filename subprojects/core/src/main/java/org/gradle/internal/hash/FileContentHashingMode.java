@@ -0,0 +1,105 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.internal.service.scopes.ServiceScope;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * The hash function used to hash the content of files when fingerprinting inputs and outputs.
+ *
+ * <p>File content hashes are only ever compared with other hashes produced by the same Gradle user home,
+ * so they do not need to be cryptographically strong. The mode is recorded in everything that persists
+ * such hashes, so that switching modes does not mix hashes produced by different functions.</p>
+ */
+@ServiceScope(Scopes.UserHome.class)
+public enum FileContentHashingMode {
+    /**
+     * Uses {@link Hashing#defaultFunction()}.
+     */
+    DEFAULT("default", Hashing.defaultFunction()),
+
+    /**
+     * Uses the non-cryptographic {@link Hashing#murmur3()}, which is considerably cheaper for large files.
+     */
+    FAST("fast", Hashing.murmur3());
+
+    /**
+     * System property to select the mode, either {@code default} or {@code fast}.
+     *
+     * <p>The property is read at the start of each build, for example when passed with {@code -D} on the command line. The mode applies to all file content
+     * hashes of a Gradle user home, it cannot be selected for each cache separately.</p>
+     */
+    public static final String FILE_CONTENT_HASHING_PROPERTY = "org.gradle.internal.hashing.file-content";
+
+    private final String id;
+    private final HashFunction hashFunction;
+
+    FileContentHashingMode(String id, HashFunction hashFunction) {
+        this.id = id;
+        this.hashFunction = hashFunction;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * Returns the stream hasher to use for this mode, reusing the given default hasher when possible.
+     */
+    public StreamHasher streamHasher(StreamHasher defaultStreamHasher) {
+        return this == DEFAULT
+            ? defaultStreamHasher
+            : new DefaultStreamHasher(hashFunction);
+    }
+
+    /**
+     * Returns the name of the persistent cache to use for file hashes produced in this mode.
+     */
+    public String cacheName(String baseName) {
+        return this == DEFAULT
+            ? baseName
+            : baseName + "-" + id;
+    }
+
+    public static FileContentHashingMode fromSystemProperty() {
+        return parse(System.getProperty(FILE_CONTENT_HASHING_PROPERTY));
+    }
+
+    public static FileContentHashingMode parse(@Nullable String value) {
+        if (value == null || value.isEmpty()) {
+            return DEFAULT;
+        }
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        for (FileContentHashingMode mode : values()) {
+            if (mode.id.equals(normalized)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown file content hashing mode '%s' set via system property '%s'. Supported values are %s.",
+            value, FILE_CONTENT_HASHING_PROPERTY, Arrays.stream(values()).map(mode -> "'" + mode.id + "'").collect(Collectors.joining(", "))));
+    }
+}
@@ -18,6 +18,7 @@
 
 import org.gradle.initialization.GradleUserHomeDirProvider;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.hash.FileContentHashingMode;
 import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.internal.service.ServiceRegistryBuilder;
 
@@ -31,6 +32,9 @@
 
 /**
  * Reuses the services for the most recent Gradle user home dir. Could instead cache several most recent and clean these up on memory pressure, however in practise there is only a single user home dir associated with a given build process.
+ *
+ * <p>The {@link FileContentHashingMode} is read from the system properties of each build. Services which are not in use are recreated when the mode has changed
+ * since they have been created, since they keep the file hashes produced in that mode in memory.</p>
  */
 public class DefaultGradleUserHomeScopeServiceRegistry implements GradleUserHomeScopeServiceRegistry, Closeable {
     public static final String REUSE_USER_HOME_SERVICES = "org.gradle.internal.reuse.user.home.services";
@@ -65,9 +69,16 @@ public void close() {
 
     @Override
     public ServiceRegistry getServicesFor(final File gradleUserHomeDir) {
+        FileContentHashingMode fileContentHashingMode = FileContentHashingMode.fromSystemProperty();
         lock.lock();
         try {
             Services services = servicesForHomeDir.get(gradleUserHomeDir);
+            if (services != null && services.fileContentHashingMode != fileContentHashingMode && services.count == 0) {
+                // Hashing mode changed since the last use, clean up the services
+                CompositeStoppable.stoppable(services.registry).stop();
+                servicesForHomeDir.remove(gradleUserHomeDir);
+                services = null;
+            }
             if (services == null) {
                 if (servicesForHomeDir.size() == 1) {
                     Services otherServices = servicesForHomeDir.values().iterator().next();
@@ -87,7 +98,7 @@ GradleUserHomeDirProvider createGradleUserHomeDirProvider() {
                     })
                     .provider(provider)
                     .build();
-                services = new Services(userHomeServices);
+                services = new Services(userHomeServices, fileContentHashingMode);
                 servicesForHomeDir.put(gradleUserHomeDir, services);
             }
             services.count++;
@@ -136,10 +147,12 @@ public void release(ServiceRegistry registry) {
 
     private static class Services {
         private final ServiceRegistry registry;
+        private final FileContentHashingMode fileContentHashingMode;
         private int count;
 
-        public Services(ServiceRegistry registry) {
+        public Services(ServiceRegistry registry, FileContentHashingMode fileContentHashingMode) {
             this.registry = registry;
+            this.fileContentHashingMode = fileContentHashingMode;
         }
     }
 }
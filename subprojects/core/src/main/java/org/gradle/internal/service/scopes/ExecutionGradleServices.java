@@ -24,6 +24,7 @@
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
 import org.gradle.cache.scopes.BuildScopedCache;
 import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.caching.internal.packaging.impl.BuildCacheEntryCompression;
 import org.gradle.initialization.BuildCancellationToken;
 import org.gradle.internal.enterprise.core.GradleEnterprisePluginManager;
 import org.gradle.internal.event.ListenerManager;
@@ -68,11 +69,13 @@
 import org.gradle.internal.execution.timeout.TimeoutHandler;
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+import org.gradle.internal.hash.FileContentHashingMode;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.CurrentBuildOperationRef;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.resources.SharedResourceLeaseRegistry;
 import org.gradle.internal.scopeids.id.BuildInvocationScopeId;
+import org.gradle.internal.vfs.FileChangeJournal;
 import org.gradle.internal.vfs.VirtualFileSystem;
 import org.gradle.util.GradleVersion;
 
@@ -82,8 +85,8 @@
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class ExecutionGradleServices {
-    ExecutionHistoryCacheAccess createCacheAccess(BuildScopedCache cacheRepository) {
-        return new DefaultExecutionHistoryCacheAccess(cacheRepository);
+    ExecutionHistoryCacheAccess createCacheAccess(BuildScopedCache cacheRepository, FileContentHashingMode fileContentHashingMode) {
+        return new DefaultExecutionHistoryCacheAccess(cacheRepository, fileContentHashingMode);
     }
 
     ExecutionHistoryStore createExecutionHistoryStore(
@@ -117,6 +120,7 @@ OutputChangeListener createOutputChangeListener(ListenerManager listenerManager)
 
     public ExecutionEngine createExecutionEngine(
         BuildCacheController buildCacheController,
+        BuildCacheEntryCompression buildCacheEntryCompression,
         BuildCancellationToken cancellationToken,
         BuildInvocationScopeId buildInvocationScopeId,
         BuildOperationExecutor buildOperationExecutor,
@@ -126,6 +130,8 @@ public ExecutionEngine createExecutionEngine(
         CurrentBuildOperationRef currentBuildOperationRef,
         Deleter deleter,
         ExecutionStateChangeDetector changeDetector,
+        FileChangeJournal fileChangeJournal,
+        FileContentHashingMode fileContentHashingMode,
         OutputChangeListener outputChangeListener,
         WorkInputListeners workInputListeners, OutputFilesRepository outputFilesRepository,
         OutputSnapshotter outputSnapshotter,
@@ -147,7 +153,7 @@ public ExecutionEngine createExecutionEngine(
             new SkipEmptyWorkStep(outputChangeListener, workInputListeners, skipEmptyWorkOutputsCleanerSupplier,
             new CaptureStateBeforeExecutionStep<>(buildOperationExecutor, classLoaderHierarchyHasher, outputSnapshotter, overlappingOutputDetector,
             new ValidateStep<>(virtualFileSystem, validationWarningRecorder,
-            new ResolveCachingStateStep<>(buildCacheController, gradleEnterprisePluginManager.isPresent(),
+            new ResolveCachingStateStep<>(buildCacheController, gradleEnterprisePluginManager.isPresent(), fileContentHashingMode.getHashFunction(), buildCacheEntryCompression.isLoadableByAllVersions() ? null : buildCacheEntryCompression.getId(),
             new MarkSnapshottingInputsFinishedStep<>(
             new ResolveChangesStep<>(changeDetector,
             new SkipUpToDateStep<>(
@@ -155,7 +161,7 @@ public ExecutionEngine createExecutionEngine(
             new StoreExecutionStateStep<>(
             new BuildCacheStep(buildCacheController, deleter, outputChangeListener,
             new BroadcastChangingOutputsStep<>(outputChangeListener,
-            new CaptureStateAfterExecutionStep<>(buildOperationExecutor, buildInvocationScopeId.getId(), outputSnapshotter,
+            new CaptureStateAfterExecutionStep<>(buildOperationExecutor, buildInvocationScopeId.getId(), outputSnapshotter, fileChangeJournal,
             new CreateOutputsStep<>(
             new TimeoutStep<>(timeoutHandler, currentBuildOperationRef,
             new CancelExecutionStep<>(cancellationToken,
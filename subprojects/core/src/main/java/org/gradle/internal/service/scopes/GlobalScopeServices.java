@@ -82,6 +82,7 @@
 import org.gradle.internal.service.DefaultServiceLocator;
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.service.ServiceRegistry;
+import org.gradle.internal.session.BuildSessionLifecycleListener;
 import org.gradle.internal.time.Clock;
 import org.gradle.model.internal.inspect.MethodModelRuleExtractor;
 import org.gradle.model.internal.inspect.MethodModelRuleExtractors;
@@ -173,8 +174,15 @@ InstanceGenerator createInstantiator(InstantiatorFactory instantiatorFactory) {
         return instantiatorFactory.decorateLenient();
     }
 
-    InMemoryCacheDecoratorFactory createInMemoryTaskArtifactCache(CrossBuildInMemoryCacheFactory cacheFactory) {
-        return new CleaningInMemoryCacheDecoratorFactory(environment.isLongLivingProcess(), cacheFactory);
+    InMemoryCacheDecoratorFactory createInMemoryTaskArtifactCache(CrossBuildInMemoryCacheFactory cacheFactory, ListenerManager listenerManager) {
+        CleaningInMemoryCacheDecoratorFactory decoratorFactory = new CleaningInMemoryCacheDecoratorFactory(environment.isLongLivingProcess(), cacheFactory);
+        listenerManager.addListener(new BuildSessionLifecycleListener() {
+            @Override
+            public void beforeComplete() {
+                decoratorFactory.reportStatistics();
+            }
+        });
+        return decoratorFactory;
     }
 
     ModelRuleExtractor createModelRuleInspector(List<MethodModelRuleExtractor> extractors, ModelSchemaStore modelSchemaStore, StructBindingsStore structBindingsStore, ManagedProxyFactory managedProxyFactory) {
@@ -29,6 +29,7 @@
 import org.gradle.api.internal.changedetection.state.CachingFileHasher;
 import org.gradle.api.internal.changedetection.state.CrossBuildFileHashCache;
 import org.gradle.api.internal.changedetection.state.DefaultResourceSnapshotterCacheService;
+import org.gradle.api.internal.changedetection.state.DefaultVirtualFileSystemStateStore;
 import org.gradle.api.internal.changedetection.state.FileHasherStatistics;
 import org.gradle.api.internal.changedetection.state.GradleUserHomeScopeFileTimeStampInspector;
 import org.gradle.api.internal.changedetection.state.PropertiesFileFilter;
@@ -49,6 +50,7 @@
 import org.gradle.initialization.RootBuildLifecycleListener;
 import org.gradle.internal.build.BuildAddedListener;
 import org.gradle.internal.classloader.ClasspathHasher;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.OutputChangeListener;
 import org.gradle.internal.execution.OutputSnapshotter;
@@ -67,6 +69,7 @@
 import org.gradle.internal.fingerprint.impl.DefaultGenericFileTreeSnapshotter;
 import org.gradle.internal.fingerprint.impl.FileCollectionFingerprinterRegistrations;
 import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.FileContentHashingMode;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.StreamHasher;
@@ -89,6 +92,7 @@
 import org.gradle.internal.watch.registry.impl.WindowsFileWatcherRegistryFactory;
 import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem;
 import org.gradle.internal.watch.vfs.FileChangeListeners;
+import org.gradle.internal.watch.vfs.VirtualFileSystemStateStore;
 import org.gradle.internal.watch.vfs.WatchableFileSystemDetector;
 import org.gradle.internal.watch.vfs.impl.DefaultWatchableFileSystemDetector;
 import org.gradle.internal.watch.vfs.impl.LocationsWrittenByCurrentBuild;
@@ -99,6 +103,7 @@
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Predicate;
@@ -119,8 +124,15 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
 
     public static final String MAX_HIERARCHIES_TO_WATCH_PROPERTY = "org.gradle.vfs.watch.hierarchies.max";
 
+    /**
+     * When file system watching is enabled, this daemon JVM system property can be used to keep the watched
+     * state of the VFS across daemon restarts. The stored state is validated against the file system when it is restored.
+     */
+    public static final String VFS_PERSIST_PROPERTY = "org.gradle.vfs.persist";
+
     private static final int DEFAULT_MAX_HIERARCHIES_TO_WATCH = 50;
     private static final int FILE_HASHER_MEMORY_CACHE_SIZE = 400000;
+    private static final long FILE_HASHER_MEMORY_MAPPING_THRESHOLD = 1024 * 1024;
 
     public static boolean isDropVfs(StartParameter startParameter) {
         String dropVfs = getSystemProperty(VFS_DROP_PROPERTY, startParameter.getSystemPropertiesArgs());
@@ -134,6 +146,13 @@ public static int getMaximumNumberOfWatchedHierarchies(StartParameter startParam
             : DEFAULT_MAX_HIERARCHIES_TO_WATCH;
     }
 
+    private static long fileHasherMemoryMappingThreshold() {
+        // Files cannot be deleted on Windows while they are mapped, and mappings are only released on garbage collection
+        return OperatingSystem.current().isWindows()
+            ? DefaultFileHasher.NEVER_MEMORY_MAP
+            : FILE_HASHER_MEMORY_MAPPING_THRESHOLD;
+    }
+
     @Nullable
     private static String getSystemProperty(String systemProperty, Map<String, String> systemPropertiesArgs) {
         return systemPropertiesArgs.getOrDefault(systemProperty, System.getProperty(systemProperty));
@@ -167,6 +186,10 @@ DirectorySnapshotterStatistics.Collector createDirectorySnapshotterStatisticsCol
     @VisibleForTesting
     static class GradleUserHomeServices {
 
+        FileContentHashingMode createFileContentHashingMode() {
+            return FileContentHashingMode.fromSystemProperty();
+        }
+
         CrossBuildFileHashCache createCrossBuildFileHashCache(GlobalScopedCache scopedCache, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
             return new CrossBuildFileHashCache(scopedCache, inMemoryCacheDecoratorFactory, CrossBuildFileHashCache.Kind.FILE_HASHES);
         }
@@ -177,9 +200,10 @@ FileHasher createCachingFileHasher(
             FileSystem fileSystem,
             GradleUserHomeScopeFileTimeStampInspector fileTimeStampInspector,
             StreamHasher streamHasher,
+            FileContentHashingMode fileContentHashingMode,
             StringInterner stringInterner
         ) {
-            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(fileContentHashingMode.streamHasher(streamHasher), fileHasherMemoryMappingThreshold()), fileStore, stringInterner, fileTimeStampInspector, fileContentHashingMode.cacheName("fileHashes"), fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
             fileTimeStampInspector.attach(fileHasher);
             return fileHasher;
         }
@@ -212,13 +236,26 @@ BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
             FileChangeListeners fileChangeListeners,
             FileSystem fileSystem,
             GlobalCacheLocations globalCacheLocations,
-            WatchableFileSystemDetector watchableFileSystemDetector
+            WatchableFileSystemDetector watchableFileSystemDetector,
+            GlobalScopedCache globalScopedCache,
+            FileContentHashingMode fileContentHashingMode,
+            StringInterner stringInterner,
+            Stat stat
         ) {
             CaseSensitivity caseSensitivity = fileSystem.isCaseSensitive() ? CASE_SENSITIVE : CASE_INSENSITIVE;
             VfsRootReference rootReference = new VfsRootReference(DefaultSnapshotHierarchy.empty(caseSensitivity));
             // All the changes in global caches should be done by Gradle itself, so in order
             // to minimize the number of watches we don't watch anything within the global caches.
             Predicate<String> watchFilter = path -> !globalCacheLocations.isInsideGlobalCache(path);
+            VirtualFileSystemStateStore stateStore = Boolean.getBoolean(VFS_PERSIST_PROPERTY)
+                ? new DefaultVirtualFileSystemStateStore(
+                    globalScopedCache.baseDirForCache("vfs-state"),
+                    fileContentHashingMode,
+                    stringInterner,
+                    stat,
+                    () -> Arrays.asList(DirectoryScanner.getDefaultExcludes()),
+                    globalCacheLocations)
+                : VirtualFileSystemStateStore.NONE;
 
             BuildLifecycleAwareVirtualFileSystem virtualFileSystem = determineWatcherRegistryFactory(
                 OperatingSystem.current(),
@@ -230,7 +267,8 @@ BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
                     sectionId -> documentationRegistry.getDocumentationFor("gradle_daemon", sectionId),
                     locationsWrittenByCurrentBuild,
                     watchableFileSystemDetector,
-                    fileChangeListeners
+                    fileChangeListeners,
+                    stateStore
                 ))
                 .orElse(new WatchingNotSupportedVirtualFileSystem(rootReference));
             listenerManager.addListener((BuildAddedListener) buildState -> {
@@ -311,8 +349,8 @@ GenericFileTreeSnapshotter createGenericFileTreeSnapshotter(FileHasher hasher, S
             return new DefaultGenericFileTreeSnapshotter(hasher, stringInterner);
         }
 
-        FileCollectionSnapshotter createFileCollectionSnapshotter(FileSystemAccess fileSystemAccess, GenericFileTreeSnapshotter genericFileTreeSnapshotter, Stat stat) {
-            return new DefaultFileCollectionSnapshotter(fileSystemAccess, genericFileTreeSnapshotter, stat);
+        FileCollectionSnapshotter createFileCollectionSnapshotter(FileSystemAccess fileSystemAccess, GenericFileTreeSnapshotter genericFileTreeSnapshotter, Stat stat, ExecutorFactory executorFactory) {
+            return new DefaultFileCollectionSnapshotter(fileSystemAccess, genericFileTreeSnapshotter, stat, executorFactory, Runtime.getRuntime().availableProcessors());
         }
 
         ResourceSnapshotterCacheService createResourceSnapshotterCacheService(CrossBuildFileHashCache store) {
@@ -350,10 +388,11 @@ FileHasher createFileHasher(
             FileHasher globalHasher,
             FileSystem fileSystem,
             StreamHasher streamHasher,
+            FileContentHashingMode fileContentHashingMode,
             StringInterner stringInterner,
             FileHasherStatistics.Collector statisticsCollector
         ) {
-            CachingFileHasher localHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), cacheAccess, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+            CachingFileHasher localHasher = new CachingFileHasher(new DefaultFileHasher(fileContentHashingMode.streamHasher(streamHasher), fileHasherMemoryMappingThreshold()), cacheAccess, stringInterner, fileTimeStampInspector, fileContentHashingMode.cacheName("fileHashes"), fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
             return new SplitFileHasher(globalHasher, localHasher, globalCacheLocations);
         }
 
@@ -387,12 +426,12 @@ GenericFileTreeSnapshotter createGenericFileTreeSnapshotter(FileHasher hasher, S
             return new DefaultGenericFileTreeSnapshotter(hasher, stringInterner);
         }
 
-        FileCollectionSnapshotter createFileCollectionSnapshotter(FileSystemAccess fileSystemAccess, GenericFileTreeSnapshotter genericFileTreeSnapshotter, Stat stat) {
-            return new DefaultFileCollectionSnapshotter(fileSystemAccess, genericFileTreeSnapshotter, stat);
+        FileCollectionSnapshotter createFileCollectionSnapshotter(FileSystemAccess fileSystemAccess, GenericFileTreeSnapshotter genericFileTreeSnapshotter, Stat stat, ExecutorFactory executorFactory) {
+            return new DefaultFileCollectionSnapshotter(fileSystemAccess, genericFileTreeSnapshotter, stat, executorFactory, Runtime.getRuntime().availableProcessors());
         }
 
-        OutputSnapshotter createOutputSnapshotter(FileCollectionSnapshotter fileCollectionSnapshotter) {
-            return new DefaultOutputSnapshotter(fileCollectionSnapshotter);
+        OutputSnapshotter createOutputSnapshotter(FileCollectionSnapshotter fileCollectionSnapshotter, FileSystemAccess fileSystemAccess) {
+            return new DefaultOutputSnapshotter(fileCollectionSnapshotter, fileSystemAccess);
         }
 
         FileCollectionFingerprinterRegistrations createFileCollectionFingerprinterRegistrations(
@@ -21,6 +21,7 @@ import org.gradle.cache.FileLockManager
 import org.gradle.cache.PersistentCache
 import org.gradle.cache.internal.filelock.LockOptionsBuilder
 import org.gradle.cache.scopes.BuildScopedCache
+import org.gradle.internal.hash.FileContentHashingMode
 import spock.lang.Specification
 
 class DefaultPreviousExecutionCacheAccessTest extends Specification {
@@ -31,11 +32,12 @@ class DefaultPreviousExecutionCacheAccessTest extends Specification {
         PersistentCache backingCache = Mock()
 
         when:
-        new DefaultExecutionHistoryCacheAccess(cacheRepository)
+        new DefaultExecutionHistoryCacheAccess(cacheRepository, FileContentHashingMode.DEFAULT)
 
         then:
         1 * cacheRepository.cache("executionHistory") >> cacheBuilder
         1 * cacheBuilder.withDisplayName(_) >> cacheBuilder
+        1 * cacheBuilder.withProperties([fileContentHashing: "default"]) >> cacheBuilder
         1 * cacheBuilder.withLockOptions(LockOptionsBuilder.mode(FileLockManager.LockMode.OnDemand)) >> cacheBuilder
         1 * cacheBuilder.open() >> backingCache
         0 * _._
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.cache.GlobalCacheLocations
+import org.gradle.internal.hash.FileContentHashingMode
+import org.gradle.internal.hash.TestFileHasher
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.impl.DirectorySnapshotter
+import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics
+import org.gradle.internal.watch.vfs.VirtualFileSystemStateStore
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicBoolean
+
+@UsesNativeServices
+@CleanupTestDirectory(fieldName = "tmpDir")
+class DefaultVirtualFileSystemStateStoreTest extends Specification {
+    @Rule
+    public final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def defaultExcludes = ["**/.git/**", "**/.git"]
+    def stateDir = tmpDir.file("state")
+    def globalCacheDir = tmpDir.createDir("global-cache")
+    def globalCacheLocations = Stub(GlobalCacheLocations) {
+        isInsideGlobalCache(_) >> { String path -> path.startsWith(globalCacheDir.absolutePath) }
+    }
+    def directorySnapshotter = new DirectorySnapshotter(new TestFileHasher(), new StringInterner(), defaultExcludes, Stub(DirectorySnapshotterStatistics.Collector))
+
+    def rootDir = tmpDir.createDir("root")
+
+    def "loads the stored snapshots"() {
+        createFile(rootDir.file("a/b.txt"), "b")
+        createFile(rootDir.file("c.txt"), "c")
+        def rootSnapshot = snapshot(rootDir)
+        def fileSnapshot = snapshot(createFile(tmpDir.file("file.txt"), "file"))
+
+        when:
+        stateStore().store([rootSnapshot, fileSnapshot])
+        def storedState = stateStore().load()
+
+        then:
+        storedState.snapshots*.absolutePath == [rootSnapshot.absolutePath, fileSnapshot.absolutePath]
+        storedState.snapshots*.hash == [rootSnapshot.hash, fileSnapshot.hash]
+        storedState.snapshots.every { storedState.findChangedLocations(it).empty }
+    }
+
+    def "finds the locations changed since the snapshots have been stored"() {
+        def modified = createFile(rootDir.file("a/b.txt"), "b")
+        createFile(rootDir.file("c.txt"), "c")
+        def rootSnapshot = snapshot(rootDir)
+        stateStore().store([rootSnapshot])
+
+        when:
+        modified.text = "changed"
+        modified.lastModified = modified.lastModified() - 10000
+        def storedState = stateStore().load()
+
+        then:
+        storedState.findChangedLocations(storedState.snapshots[0]) == [modified.absolutePath]
+    }
+
+    def "does not store snapshots inside the global caches"() {
+        def rootSnapshot = snapshot(createFile(rootDir.file("a.txt"), "a"))
+        def globalCacheSnapshot = snapshot(createFile(globalCacheDir.file("cached.jar"), "cached"))
+
+        when:
+        stateStore().store([rootSnapshot, globalCacheSnapshot])
+
+        then:
+        stateStore().load().snapshots*.absolutePath == [rootSnapshot.absolutePath]
+    }
+
+    def "drops the stored state when it has been stored with a different file content hashing mode"() {
+        stateStore(FileContentHashingMode.FAST).store([snapshot(createFile(rootDir.file("a.txt"), "a"))])
+
+        expect:
+        stateStore(FileContentHashingMode.FAST).load().snapshots.size() == 1
+        stateStore(FileContentHashingMode.DEFAULT).load() == VirtualFileSystemStateStore.StoredState.EMPTY
+    }
+
+    def "drops the stored state when it has been stored with different default excludes"() {
+        stateStore().store([snapshot(createFile(rootDir.file("a.txt"), "a"))])
+
+        expect:
+        stateStore(FileContentHashingMode.DEFAULT, defaultExcludes.reverse()).load().snapshots.size() == 1
+        stateStore(FileContentHashingMode.DEFAULT, defaultExcludes + "**/.svn").load() == VirtualFileSystemStateStore.StoredState.EMPTY
+    }
+
+    def "drops the stored state when it cannot be read"() {
+        stateStore().store([snapshot(createFile(rootDir.file("a.txt"), "a"))])
+        def stateFile = stateDir.file("vfs-state.bin")
+        stateFile.bytes = Arrays.copyOf(stateFile.bytes, stateFile.length() as int - 3)
+
+        expect:
+        stateStore().load() == VirtualFileSystemStateStore.StoredState.EMPTY
+    }
+
+    def "loads an empty state when nothing has been stored"() {
+        expect:
+        stateStore().load() == VirtualFileSystemStateStore.StoredState.EMPTY
+    }
+
+    private DefaultVirtualFileSystemStateStore stateStore(FileContentHashingMode hashingMode = FileContentHashingMode.DEFAULT, List<String> excludes = defaultExcludes) {
+        new DefaultVirtualFileSystemStateStore(stateDir, hashingMode, new StringInterner(), TestFiles.fileSystem(), { excludes }, globalCacheLocations)
+    }
+
+    private FileSystemLocationSnapshot snapshot(File location) {
+        directorySnapshotter.snapshot(location.absolutePath, null, new AtomicBoolean(), {})
+    }
+
+    /**
+     * Creates a file which has not been modified shortly before the state is stored, so it is not reported as changed when loading the state.
+     */
+    private static TestFile createFile(TestFile file, String text) {
+        file.text = text
+        file.lastModified = file.lastModified() - 10000
+        return file
+    }
+}
@@ -76,6 +76,7 @@ import org.gradle.internal.fingerprint.impl.AbsolutePathFileCollectionFingerprin
 import org.gradle.internal.fingerprint.impl.DefaultFileCollectionSnapshotter
 import org.gradle.internal.hash.ClassLoaderHierarchyHasher
 import org.gradle.internal.hash.HashCode
+import org.gradle.internal.hash.Hashing
 import org.gradle.internal.hash.TestHashCodes
 import org.gradle.internal.id.UniqueId
 import org.gradle.internal.logging.StandardOutputCapture
@@ -85,6 +86,7 @@ import org.gradle.internal.operations.RunnableBuildOperation
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.snapshot.impl.DefaultValueSnapshotter
 import org.gradle.internal.snapshot.impl.ImplementationSnapshot
+import org.gradle.internal.vfs.FileChangeJournal
 import org.gradle.internal.work.AsyncWorkTracker
 import spock.lang.Specification
 
@@ -132,7 +134,8 @@ class ExecuteActionsTaskExecuterTest extends Specification {
     def virtualFileSystem = virtualFileSystem()
     def fileSystemAccess = fileSystemAccess(virtualFileSystem)
     def fileCollectionSnapshotter = new DefaultFileCollectionSnapshotter(fileSystemAccess, genericFileTreeSnapshotter(), fileSystem())
-    def outputSnapshotter = new DefaultOutputSnapshotter(fileCollectionSnapshotter)
+    def outputSnapshotter = new DefaultOutputSnapshotter(fileCollectionSnapshotter, fileSystemAccess)
+    def fileChangeJournal = { locations -> FileChangeJournal.Recording.UNKNOWN_CHANGES } as FileChangeJournal
     def fingerprinter = new AbsolutePathFileCollectionFingerprinter(DirectorySensitivity.DEFAULT, fileCollectionSnapshotter, FileSystemLocationSnapshotHasher.DEFAULT)
     def fingerprinterRegistry = Stub(FileCollectionFingerprinterRegistry) {
         getFingerprinter(_) >> fingerprinter
@@ -174,11 +177,11 @@ class ExecuteActionsTaskExecuterTest extends Specification {
         new SkipEmptyWorkStep(outputChangeListener, inputListeners, outputsCleanerFactory,
         new CaptureStateBeforeExecutionStep<>(buildOperationExecutor, classloaderHierarchyHasher, outputSnapshotter, overlappingOutputDetector,
         new ValidateStep<>(virtualFileSystem, validationWarningReporter,
-        new ResolveCachingStateStep<>(buildCacheController, false,
+        new ResolveCachingStateStep<>(buildCacheController, false, Hashing.defaultFunction(), null,
         new ResolveChangesStep<>(changeDetector,
         new SkipUpToDateStep<>(
         new BroadcastChangingOutputsStep<>(outputChangeListener,
-        new CaptureStateAfterExecutionStep<>(buildOperationExecutor, buildId, outputSnapshotter,
+        new CaptureStateAfterExecutionStep<>(buildOperationExecutor, buildId, outputSnapshotter, fileChangeJournal,
         new CancelExecutionStep<>(cancellationToken,
         new ResolveInputChangesStep<>(
         new RemovePreviousOutputsStep<>(deleter, outputChangeListener,
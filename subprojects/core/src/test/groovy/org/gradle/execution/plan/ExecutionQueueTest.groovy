@@ -0,0 +1,177 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan
+
+import org.gradle.internal.resources.DefaultLease
+import org.gradle.internal.resources.LeaseHolder
+import org.gradle.internal.resources.ProjectLock
+import org.gradle.internal.resources.ResourceLock
+import org.gradle.internal.resources.ResourceLockContainer
+import org.gradle.internal.resources.ResourceLockCoordinationService
+import org.gradle.internal.resources.TaskExecutionLock
+import spock.lang.Specification
+
+class ExecutionQueueTest extends Specification {
+    def queue = new ExecutionQueue()
+    def a = node("a")
+    def b = node("b")
+    def c = node("c")
+
+    def setup() {
+        queue.addAll([a, b, c])
+    }
+
+    def "polls ready nodes in plan order"() {
+        when:
+        queue.nodeReady(c)
+        queue.nodeReady(a)
+
+        then:
+        queue.pollReadyNode() == a
+        queue.pollReadyNode() == c
+        queue.pollReadyNode() == null
+        queue.size() == 3
+    }
+
+    def "removed nodes are not ready and are not visited"() {
+        when:
+        queue.nodeReady(b)
+        queue.remove(b)
+
+        then:
+        !queue.nodeReady(b)
+        queue.pollReadyNode() == null
+        queue.toList() == [a, c]
+        queue.size() == 2
+    }
+
+    def "node waiting for lock becomes ready when the lock is released"() {
+        def lock = projectLock("project")
+        def otherLock = projectLock("other project")
+
+        when:
+        queue.waitForLock(a, lock)
+
+        then:
+        !queue.lockReleased(otherLock)
+        queue.pollReadyNode() == null
+
+        and:
+        queue.lockReleased(lock)
+        queue.pollReadyNode() == a
+        !queue.lockReleased(lock)
+    }
+
+    def "node waiting for the execution lock of a project becomes ready when the state lock of the project is released"() {
+        def stateLock = projectLock("project")
+        def executionLock = new TaskExecutionLock("execution of project", stateLock, Stub(ResourceLockCoordinationService), Stub(ResourceLockContainer))
+
+        when:
+        queue.waitForLock(a, executionLock)
+
+        then:
+        queue.lockReleased(stateLock)
+        queue.pollReadyNode() == a
+        !queue.lockReleased(executionLock)
+    }
+
+    def "node waiting for lease becomes ready when another lease of the same resource is released"() {
+        def resource = new LeaseHolder(1)
+        def lease = lease(resource)
+        def otherLease = lease(resource)
+        def otherResourceLease = lease(new LeaseHolder(1))
+
+        when:
+        queue.waitForLock(a, lease)
+
+        then:
+        !queue.lockReleased(otherResourceLease)
+        queue.pollReadyNode() == null
+
+        and:
+        queue.lockReleased(otherLease)
+        queue.pollReadyNode() == a
+        !queue.lockReleased(lease)
+    }
+
+    def "nodes waiting for locks become ready when some other kind of lock is released"() {
+        when:
+        queue.waitForLock(a, projectLock("project"))
+        queue.waitForLock(c, lease(new LeaseHolder(1)))
+
+        then:
+        queue.lockReleased(Stub(ResourceLock))
+        queue.pollReadyNode() == a
+        queue.pollReadyNode() == c
+        queue.pollReadyNode() == null
+    }
+
+    def "node waiting for running nodes becomes ready when a running node completes"() {
+        when:
+        queue.waitForRunningNodes(b)
+        queue.waitForRunningNodes(c)
+        queue.remove(c)
+
+        then:
+        queue.runningNodeCompleted()
+        queue.pollReadyNode() == b
+        queue.pollReadyNode() == null
+        !queue.runningNodeCompleted()
+    }
+
+    def "rebuilds ready nodes from node state"() {
+        _ * a.isReady() >> true
+        _ * a.allDependenciesComplete() >> true
+        _ * b.isReady() >> false
+        _ * b.isComplete() >> false
+        _ * c.isReady() >> false
+        _ * c.isComplete() >> true
+
+        when:
+        queue.waitForRunningNodes(c)
+        def foundNotReadyNode = queue.rebuildReadyNodes()
+
+        then:
+        foundNotReadyNode
+        !queue.runningNodeCompleted()
+        queue.pollReadyNode() == a
+        queue.pollReadyNode() == null
+    }
+
+    def "can remove nodes while iterating"() {
+        when:
+        def iterator = queue.iterator()
+        iterator.next()
+        iterator.remove()
+
+        then:
+        queue.toList() == [b, c]
+        queue.size() == 2
+    }
+
+    private Node node(String name) {
+        return Mock(Node, name: name)
+    }
+
+    private ProjectLock projectLock(String name) {
+        return new ProjectLock(name, Stub(ResourceLockCoordinationService), Stub(ResourceLockContainer), Stub(ResourceLock))
+    }
+
+    private DefaultLease lease(LeaseHolder resource) {
+        return new DefaultLease("lease", Stub(ResourceLockCoordinationService), Stub(ResourceLockContainer), resource)
+    }
+}
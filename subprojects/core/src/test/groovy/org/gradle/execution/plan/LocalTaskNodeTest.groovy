@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan
+
+import org.gradle.api.internal.TaskInternal
+import org.gradle.internal.execution.WorkValidationContext
+import spock.lang.Specification
+
+class LocalTaskNodeTest extends Specification {
+    def task = Mock(TaskInternal)
+    def node = new LocalTaskNode(task, Stub(NodeValidator), Stub(WorkValidationContext))
+
+    def "loads the state of the task once before it is used"() {
+        def loader = Mock(Runnable)
+        node.loadStateBeforeExecution(loader)
+
+        when:
+        node.resourcesToLock
+
+        then:
+        1 * loader.run()
+
+        then:
+        1 * task.sharedResources >> []
+
+        when:
+        node.resourcesToLock
+
+        then:
+        0 * loader.run()
+    }
+
+    def "attempts to load the state of the task again when loading failed"() {
+        def failure = new RuntimeException("broken")
+        def loader = Mock(Runnable)
+        node.loadStateBeforeExecution(loader)
+
+        when:
+        node.resourcesToLock
+
+        then:
+        1 * loader.run() >> { throw failure }
+        def e = thrown(RuntimeException)
+        e == failure
+
+        when:
+        node.resourcesToLock
+
+        then:
+        1 * loader.run() >> { throw failure }
+        def second = thrown(RuntimeException)
+        second == failure
+        0 * task.sharedResources
+    }
+}
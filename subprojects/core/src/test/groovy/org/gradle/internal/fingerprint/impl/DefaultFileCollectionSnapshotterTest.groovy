@@ -27,8 +27,12 @@ import org.gradle.api.resources.ResourceException
 import org.gradle.api.resources.internal.LocalResourceAdapter
 import org.gradle.api.tasks.util.PatternFilterable
 import org.gradle.internal.Factory
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
 import org.gradle.internal.snapshot.FileSystemSnapshot
+import org.gradle.internal.snapshot.FileSystemSnapshotHierarchyVisitor
 import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.internal.snapshot.SnapshotVisitResult
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
@@ -192,6 +196,25 @@ class DefaultFileCollectionSnapshotterTest extends Specification {
         assertEmptyTree(tree.matching { exclude file.name })
     }
 
+    def "snapshots the files of a collection concurrently in order"() {
+        given:
+        List<File> files = (1..50).collect { index -> tmpDir.file("file${index}.txt").setText("content ${index}") }
+        files << tmpDir.file("missing")
+        def fileCollection = TestFiles.fixed(files)
+        def concurrentSnapshotter = new DefaultFileCollectionSnapshotter(TestFiles.fileSystemAccess(), TestFiles.genericFileTreeSnapshotter(), TestFiles.fileSystem(), new DefaultExecutorFactory(), 4)
+
+        when:
+        def result = concurrentSnapshotter.snapshot(fileCollection)
+
+        then:
+        def snapshots = entries(result.snapshot)
+        snapshots*.absolutePath == files*.absolutePath
+        snapshots*.hash == entries(snapshotter.snapshot(fileCollection).snapshot)*.hash
+
+        cleanup:
+        concurrentSnapshotter?.close()
+    }
+
     private TemporaryFileProvider testFileProvider() {
         new TemporaryFileProvider() {
             @Override
@@ -211,6 +234,15 @@ class DefaultFileCollectionSnapshotterTest extends Specification {
         }
     }
 
+    private static List<FileSystemLocationSnapshot> entries(FileSystemSnapshot snapshot) {
+        def entries = []
+        snapshot.accept({ entry ->
+            entries << entry
+            SnapshotVisitResult.CONTINUE
+        } as FileSystemSnapshotHierarchyVisitor)
+        return entries
+    }
+
     void assertEmptyTree(FileCollection fileCollection) {
         def result = snapshotter.snapshot(fileCollection)
         assert result.snapshot == FileSystemSnapshot.EMPTY
@@ -17,10 +17,15 @@
 package org.gradle.internal.service.scopes
 
 import org.gradle.initialization.GradleUserHomeDirProvider
+import org.gradle.internal.hash.FileContentHashingMode
 import org.gradle.internal.service.DefaultServiceRegistry
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
 import spock.lang.Specification
 
 class DefaultGradleUserHomeScopeServiceRegistryTest extends Specification {
+    @Rule
+    SetSystemProperties systemProperties = new SetSystemProperties()
     def globalServices = DefaultServiceRegistry.create(new GlobalServiceProvider())
     def homeDirServices = new DefaultGradleUserHomeScopeServiceRegistry(globalServices, new HomeDirServiceProvider())
 
@@ -152,6 +157,39 @@ class DefaultGradleUserHomeScopeServiceRegistryTest extends Specification {
         !homeDir1Service.closed
     }
 
+    def "closes and recreates services when file content hashing mode is different to last use"() {
+        def dir = new File("home-dir")
+
+        given:
+        def servicesBefore = homeDirServices.getServicesFor(dir)
+        def homeDirService = servicesBefore.get(SomeHomeDirService)
+        homeDirServices.release(servicesBefore)
+
+        when:
+        System.setProperty(FileContentHashingMode.FILE_CONTENT_HASHING_PROPERTY, "fast")
+        def services = homeDirServices.getServicesFor(dir)
+
+        then:
+        !services.get(SomeHomeDirService).is(homeDirService)
+        homeDirService.closed
+    }
+
+    def "reuses services in use when file content hashing mode is different"() {
+        def dir = new File("home-dir")
+
+        given:
+        def servicesBefore = homeDirServices.getServicesFor(dir)
+        def homeDirService = servicesBefore.get(SomeHomeDirService)
+
+        when:
+        System.setProperty(FileContentHashingMode.FILE_CONTENT_HASHING_PROPERTY, "fast")
+        def services = homeDirServices.getServicesFor(dir)
+
+        then:
+        services.get(SomeHomeDirService).is(homeDirService)
+        !homeDirService.closed
+    }
+
     def "closes services when registry closed"() {
         def dir = new File("home-dir")
 
@@ -1,5 +1,6 @@
 plugins {
     id("gradlebuild.distribution.implementation-java")
+    id("gradlebuild.jmh")
 }
 
 description = """This project contains most of the dependency management logic of Gradle:
@@ -109,6 +110,12 @@ dependencies {
     integTestDistributionRuntimeOnly(project(":distributions-basics"))
     crossVersionTestDistributionRuntimeOnly(project(":distributions-core"))
     crossVersionTestImplementation(libs.jettyWebApp)
+
+    jmhImplementation(testFixtures(project(":core")))
+}
+
+jmh {
+    profilers.add("gc")
 }
 
 classycle {
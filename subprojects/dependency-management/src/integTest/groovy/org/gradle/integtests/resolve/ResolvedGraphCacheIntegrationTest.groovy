@@ -0,0 +1,135 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.integtests.resolve
+
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCache
+import org.gradle.integtests.fixtures.AbstractIntegrationSpec
+import org.gradle.integtests.fixtures.UnsupportedWithConfigurationCache
+
+@UnsupportedWithConfigurationCache(because = "the task resolves the configuration at execution time")
+class ResolvedGraphCacheIntegrationTest extends AbstractIntegrationSpec {
+    // Modules in local repositories are not cached, so a graph resolved from a repository where a module has been removed must come from the resolved graph cache
+    def otherRepo = maven("other-repo")
+
+    def setup() {
+        requireOwnGradleUserHomeDir()
+        def b = mavenRepo.module("org", "b", "1.0").publish()
+        mavenRepo.module("org", "a", "1.0").dependsOn(b).publish()
+        mavenRepo.module("org", "a", "2.0").publish()
+        def c = otherRepo.module("org", "c", "1.0").publish()
+        otherRepo.module("org", "a", "1.0").dependsOn(c).publish()
+
+        buildFile << """
+            repositories {
+                maven { url "\${providers.gradleProperty('repoUrl').getOrElse('${mavenRepo.uri}')}" }
+            }
+            configurations {
+                conf
+            }
+            dependencies {
+                conf "org:a:\${providers.gradleProperty('aVersion').getOrElse('1.0')}"
+            }
+            task components {
+                doLast {
+                    def ids = configurations.conf.incoming.resolutionResult.allComponents
+                        .collect { it.id }
+                        .findAll { it instanceof ModuleComponentIdentifier }
+                        .collect { it.displayName }
+                        .sort()
+                    println "components: \$ids"
+                }
+            }
+        """
+    }
+
+    def "reuses the resolved graph when nothing has changed"() {
+        when:
+        runWithGraphCache()
+
+        then:
+        outputContains("components: [org:a:1.0, org:b:1.0]")
+
+        when:
+        mavenRepo.module("org", "b", "1.0").moduleDir.deleteDir()
+        runWithGraphCache()
+
+        then:
+        outputContains("components: [org:a:1.0, org:b:1.0]")
+    }
+
+    def "resolves the graph again when the dependencies have changed"() {
+        when:
+        runWithGraphCache()
+
+        then:
+        outputContains("components: [org:a:1.0, org:b:1.0]")
+
+        when:
+        runWithGraphCache("-PaVersion=2.0")
+
+        then:
+        outputContains("components: [org:a:2.0]")
+    }
+
+    def "resolves the graph again when the repositories have changed"() {
+        when:
+        runWithGraphCache()
+
+        then:
+        outputContains("components: [org:a:1.0, org:b:1.0]")
+
+        when:
+        runWithGraphCache("-PrepoUrl=${otherRepo.uri}")
+
+        then:
+        outputContains("components: [org:a:1.0, org:c:1.0]")
+    }
+
+    def "resolves the graph again when dependencies are refreshed"() {
+        when:
+        runWithGraphCache()
+
+        then:
+        outputContains("components: [org:a:1.0, org:b:1.0]")
+
+        when:
+        def c = mavenRepo.module("org", "c", "1.0").publish()
+        mavenRepo.module("org", "a", "1.0").dependsOn(c).publish()
+        runWithGraphCache()
+
+        then:
+        outputContains("components: [org:a:1.0, org:b:1.0]")
+
+        when:
+        runWithGraphCache("--refresh-dependencies")
+
+        then:
+        outputContains("components: [org:a:1.0, org:c:1.0]")
+
+        when:
+        runWithGraphCache()
+
+        then:
+        outputContains("components: [org:a:1.0, org:c:1.0]")
+    }
+
+    private void runWithGraphCache(String... args) {
+        executer.withArguments(args)
+        executer.withArgument("-D${ResolvedGraphCache.ENABLED_PROPERTY}=true")
+        succeeds("components")
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ExcludeSpec;
+import org.gradle.internal.component.external.descriptor.DefaultExclude;
+import org.gradle.internal.component.model.ExcludeMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Merges and evaluates the exclude specs of the edges of a BOM-driven graph, where many modules declare
+ * the same excludes on logging and bytecode libraries, for several resolutions in a row.
+ *
+ * Compares sharing {@link ModuleExclusions} between the resolutions with creating it for each of them.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ModuleExclusionsBenchmark {
+    private static final String[] EXCLUDED_GROUPS = {"commons-logging", "log4j", "org.slf4j", "javax.servlet", "asm", "cglib", "xml-apis", "xerces"};
+    private static final String[] EXCLUDED_MODULES = {"commons-logging", "log4j", "slf4j-log4j12", "servlet-api", "asm", "cglib-nodep", "xml-apis", "xercesImpl"};
+    private static final int RESOLUTIONS = 10;
+    private static final int EDGES = 2000;
+    private static final int MODULES = 500;
+
+    @Param({"true", "false"})
+    boolean shared;
+
+    List<List<ExcludeMetadata>> edgeExcludes;
+    List<ModuleIdentifier> modules;
+    ModuleExclusions sharedExclusions;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        edgeExcludes = new ArrayList<>(EDGES);
+        for (int i = 0; i < EDGES; i++) {
+            int count = random.nextInt(4);
+            ImmutableList.Builder<ExcludeMetadata> excludes = ImmutableList.builder();
+            for (int j = 0; j < count; j++) {
+                int excluded = random.nextInt(EXCLUDED_GROUPS.length);
+                String module = random.nextBoolean() ? EXCLUDED_MODULES[excluded] : "*";
+                excludes.add(new DefaultExclude(DefaultModuleIdentifier.newId(EXCLUDED_GROUPS[excluded], module)));
+            }
+            edgeExcludes.add(excludes.build());
+        }
+        modules = new ArrayList<>(MODULES);
+        for (int i = 0; i < MODULES; i++) {
+            int group = random.nextInt(EXCLUDED_GROUPS.length * 4);
+            String groupName = group < EXCLUDED_GROUPS.length ? EXCLUDED_GROUPS[group] : "org.example" + group;
+            String moduleName = group < EXCLUDED_GROUPS.length ? EXCLUDED_MODULES[group] : "module" + i;
+            modules.add(DefaultModuleIdentifier.newId(groupName, moduleName));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() {
+        sharedExclusions = new ModuleExclusions();
+    }
+
+    @Benchmark
+    public void resolve(Blackhole blackhole) {
+        for (int resolution = 0; resolution < RESOLUTIONS; resolution++) {
+            ModuleExclusions exclusions = shared ? sharedExclusions : new ModuleExclusions();
+            // Like a path through the graph, each edge inheriting the exclusions of the previous one
+            ExcludeSpec inherited = exclusions.nothing();
+            for (int edge = 0; edge < EDGES; edge++) {
+                ExcludeSpec edgeExclusions = exclusions.excludeAny(edgeExcludes.get(edge));
+                ExcludeSpec merged = exclusions.excludeAny(inherited, edgeExclusions);
+                blackhole.consume(merged.excludes(modules.get(edge % MODULES)));
+                // Converging paths intersect their exclusions
+                inherited = edge % 7 == 0 ? exclusions.excludeAll(merged, edgeExclusions) : merged;
+            }
+        }
+    }
+}
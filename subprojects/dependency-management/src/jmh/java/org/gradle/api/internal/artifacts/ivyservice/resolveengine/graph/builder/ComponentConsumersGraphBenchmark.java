@@ -0,0 +1,143 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Sorts the components of a synthetic large dependency graph in consumer-first order, the way the result of a resolution is assembled.
+ *
+ * Compares the compact graph, with dense indices, primitive adjacency arrays and bit sets, to walking the component objects
+ * with a linked list and a visit state per component, like {@link DependencyGraphBuilder} did before.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ComponentConsumersGraphBenchmark {
+    private static final int CONSUMERS_PER_COMPONENT = 4;
+
+    @Param({"1000", "12000"})
+    int componentCount;
+
+    List<Component> components;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        components = new ArrayList<>(componentCount);
+        for (int i = 0; i < componentCount; i++) {
+            components.add(new Component());
+        }
+        // The first component is the root, every other component is consumed by components created before it, plus the odd cycle
+        for (int i = 1; i < componentCount; i++) {
+            Component component = components.get(i);
+            int consumers = 1 + random.nextInt(CONSUMERS_PER_COMPONENT * 2 - 1);
+            for (int j = 0; j < consumers; j++) {
+                component.consumers.add(components.get(random.nextInt(i)));
+            }
+            if (random.nextInt(100) == 0) {
+                components.get(random.nextInt(i)).consumers.add(component);
+            }
+        }
+    }
+
+    @Benchmark
+    public void compact(Blackhole blackhole) {
+        List<Component> indexed = new ArrayList<>(componentCount);
+        for (Component component : components) {
+            component.index = -1;
+        }
+        for (Component component : components) {
+            index(component, indexed);
+        }
+        ComponentConsumersGraph graph = new ComponentConsumersGraph(indexed.size());
+        for (int i = 0; i < indexed.size(); i++) {
+            for (Component consumer : indexed.get(i).consumers) {
+                graph.addConsumer(index(consumer, indexed));
+            }
+            graph.endComponent();
+        }
+        for (int index : graph.consumerFirstOrder(componentCount)) {
+            blackhole.consume(indexed.get(index));
+        }
+    }
+
+    @Benchmark
+    public void linkedList(Blackhole blackhole) {
+        for (Component component : components) {
+            component.visitState = VisitState.NotSeen;
+        }
+        LinkedList<Component> queue = new LinkedList<>(components);
+        while (!queue.isEmpty()) {
+            Component component = queue.peekFirst();
+            if (component.visitState == VisitState.NotSeen) {
+                component.visitState = VisitState.Visiting;
+                int pos = 0;
+                for (Component consumer : component.consumers) {
+                    if (consumer.visitState == VisitState.NotSeen) {
+                        queue.add(pos, consumer);
+                        pos++;
+                    }
+                }
+                if (pos == 0) {
+                    component.visitState = VisitState.Visited;
+                    queue.removeFirst();
+                    blackhole.consume(component);
+                }
+            } else if (component.visitState == VisitState.Visiting) {
+                component.visitState = VisitState.Visited;
+                queue.removeFirst();
+                blackhole.consume(component);
+            } else {
+                queue.removeFirst();
+            }
+        }
+    }
+
+    private static int index(Component component, List<Component> indexed) {
+        if (component.index < 0) {
+            component.index = indexed.size();
+            indexed.add(component);
+        }
+        return component.index;
+    }
+
+    private enum VisitState {
+        NotSeen, Visiting, Visited
+    }
+
+    private static class Component {
+        final List<Component> consumers = new ArrayList<>(CONSUMERS_PER_COMPONENT);
+        int index = -1;
+        VisitState visitState = VisitState.NotSeen;
+    }
+}
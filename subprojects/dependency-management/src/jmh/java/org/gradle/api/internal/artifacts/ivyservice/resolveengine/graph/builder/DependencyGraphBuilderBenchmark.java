@@ -0,0 +1,274 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import com.google.common.collect.ImmutableSet;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.internal.artifacts.ComponentSelectorConverter;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionSelector;
+import org.gradle.api.internal.artifacts.ResolveContext;
+import org.gradle.api.internal.artifacts.configurations.ConflictResolution;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
+import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DependencySubstitutionApplicator;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ConflictResolverFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultCapabilitiesConflictHandler;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultConflictHandler;
+import org.gradle.api.internal.attributes.EmptySchema;
+import org.gradle.api.internal.attributes.ImmutableAttributes;
+import org.gradle.api.specs.Specs;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector;
+import org.gradle.internal.component.external.model.ImmutableCapabilities;
+import org.gradle.internal.component.local.model.BuildableLocalConfigurationMetadata;
+import org.gradle.internal.component.local.model.DefaultLocalComponentMetadata;
+import org.gradle.internal.component.local.model.RootLocalComponentMetadata;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.LocalComponentDependencyMetadata;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.locking.NoOpDependencyLockingProvider;
+import org.gradle.internal.operations.TestBuildOperationExecutor;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+import org.gradle.util.AttributeTestUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Resolves a synthetic large dependency graph from in-memory metadata, so the measurement covers the traversal state,
+ * conflict resolution and the assembly of the result, but no metadata parsing or repository access.
+ *
+ * Run it with the GC profiler, configured for this project, and compare {@code gc.alloc.rate.norm} to measure the memory allocated by a single resolution.
+ * Metadata prefetching is disabled, as the metadata is already in memory.
+ */
+@Fork(value = 1, jvmArgsAppend = "-D" + MetadataPrefetcher.DEPTH_PROPERTY + "=0")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class DependencyGraphBuilderBenchmark {
+    private static final String GROUP = "org.test";
+    private static final int DEPENDENCIES_PER_COMPONENT = 4;
+    // Every tenth module is published in a second version, which some components depend on, so the graph has version conflicts
+    private static final int CONFLICTING_MODULE_INTERVAL = 10;
+
+    @Param({"1000", "12000"})
+    int componentCount;
+
+    private final Map<ModuleComponentIdentifier, ComponentResolveMetadata> components = new HashMap<>();
+    private DependencyGraphBuilder builder;
+    private ResolveContext resolveContext;
+    private DefaultExecutorFactory executorFactory;
+    private MetadataPrefetchExecutor metadataPrefetchExecutor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        RootLocalComponentMetadata root = new RootLocalComponentMetadata(DefaultModuleVersionIdentifier.newId(GROUP, "root", "1.0"), DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId(GROUP, "root"), "1.0"), "release", EmptySchema.INSTANCE, NoOpDependencyLockingProvider.getInstance());
+        SyntheticComponent rootComponent = new SyntheticComponent(root);
+
+        List<List<SyntheticComponent>> versions = new ArrayList<>(componentCount);
+        for (int i = 0; i < componentCount; i++) {
+            List<SyntheticComponent> moduleVersions = new ArrayList<>(2);
+            moduleVersions.add(addComponent(i, "1.0"));
+            if (i % CONFLICTING_MODULE_INTERVAL == 0) {
+                moduleVersions.add(addComponent(i, "2.0"));
+            }
+            versions.add(moduleVersions);
+        }
+
+        // Every module is reachable, through a dependency from a module created before it, plus a few dependencies on modules created after it
+        rootComponent.addDependency(0, "1.0");
+        for (int i = 1; i < componentCount; i++) {
+            addDependency(versions.get(random.nextInt(i)), i, random);
+        }
+        for (int i = 0; i < componentCount - 1; i++) {
+            for (int j = 0; j < DEPENDENCIES_PER_COMPONENT - 1; j++) {
+                addDependency(versions.get(i), i + 1 + random.nextInt(componentCount - i - 1), random);
+            }
+        }
+
+        ComponentMetaDataResolver metaDataResolver = new ComponentMetaDataResolver() {
+            @Override
+            public void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+                result.resolved(components.get((ModuleComponentIdentifier) identifier));
+            }
+
+            @Override
+            public boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+                return true;
+            }
+        };
+        DefaultVersionComparator versionComparator = new DefaultVersionComparator();
+        VersionParser versionParser = new VersionParser();
+        executorFactory = new DefaultExecutorFactory();
+        metadataPrefetchExecutor = new MetadataPrefetchExecutor(executorFactory, 8);
+        builder = new DependencyGraphBuilder(
+            (dependency, acceptor, rejector, result) -> {
+                ModuleComponentSelector selector = (ModuleComponentSelector) dependency.getSelector();
+                ModuleComponentIdentifier id = DefaultModuleComponentIdentifier.newId(selector.getModuleIdentifier(), selector.getVersion());
+                result.resolved(id, components.get(id).getModuleVersionId());
+            },
+            metaDataResolver,
+            (context, result) -> result.resolved(context.toRootComponentMetaData()),
+            new DefaultConflictHandler(new ConflictResolverFactory(versionComparator, versionParser).createConflictResolver(ConflictResolution.latest), ModuleReplacementsData.NO_OP),
+            new DefaultCapabilitiesConflictHandler(),
+            Specs.satisfyAll(),
+            EmptySchema.INSTANCE,
+            new ModuleExclusions(),
+            new TestBuildOperationExecutor(),
+            metadataPrefetchExecutor,
+            DependencySubstitutionApplicator.NO_OP,
+            new ModuleSelectorConverter(),
+            AttributeTestUtil.attributesFactory(),
+            new DefaultVersionSelectorScheme(versionComparator, versionParser),
+            versionComparator.asVersionComparator(),
+            versionParser
+        );
+        resolveContext = new SyntheticResolveContext(root);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        metadataPrefetchExecutor.stop();
+        executorFactory.stop();
+    }
+
+    @Benchmark
+    public void resolve() {
+        builder.resolve(resolveContext, DependencyGraphVisitor.NO_OP, false);
+    }
+
+    private SyntheticComponent addComponent(int index, String version) {
+        ModuleComponentIdentifier id = DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId(GROUP, "module" + index), version);
+        DefaultLocalComponentMetadata metadata = new DefaultLocalComponentMetadata(DefaultModuleVersionIdentifier.newId(id), id, "release", EmptySchema.INSTANCE);
+        components.put(id, metadata);
+        return new SyntheticComponent(metadata);
+    }
+
+    private static void addDependency(List<SyntheticComponent> fromVersions, int to, Random random) {
+        // Dependencies on a conflicting module pick either version, so both versions are part of the graph until the conflict is resolved
+        String version = to % CONFLICTING_MODULE_INTERVAL == 0 && random.nextBoolean() ? "2.0" : "1.0";
+        for (SyntheticComponent from : fromVersions) {
+            from.addDependency(to, version);
+        }
+    }
+
+    private static class SyntheticComponent {
+        private final ComponentIdentifier id;
+        private final BuildableLocalConfigurationMetadata configuration;
+
+        SyntheticComponent(DefaultLocalComponentMetadata metadata) {
+            this.id = metadata.getId();
+            this.configuration = metadata.addConfiguration("default", "default configuration", Collections.emptySet(), ImmutableSet.of("default"), true, true, ImmutableAttributes.EMPTY, true, null, true, ImmutableCapabilities.EMPTY, Collections::emptyList);
+        }
+
+        void addDependency(int to, String version) {
+            ComponentSelector selector = DefaultModuleComponentSelector.newSelector(DefaultModuleIdentifier.newId(GROUP, "module" + to), version);
+            configuration.addDependency(new LocalComponentDependencyMetadata(id, selector, "default", null, ImmutableAttributes.EMPTY, "default", Collections.emptyList(), Collections.emptyList(), false, false, true, false, false, null));
+        }
+    }
+
+    private static class ModuleSelectorConverter implements ComponentSelectorConverter {
+        @Override
+        public ModuleIdentifier getModule(ComponentSelector selector) {
+            return ((ModuleComponentSelector) selector).getModuleIdentifier();
+        }
+
+        @Override
+        public ModuleVersionSelector getSelector(ComponentSelector selector) {
+            return DefaultModuleVersionSelector.newSelector((ModuleComponentSelector) selector);
+        }
+    }
+
+    private static class SyntheticResolveContext implements ResolveContext {
+        private final RootLocalComponentMetadata root;
+        // Only the conflict resolution and the strictness of the resolution strategy are used when building the graph
+        private final ResolutionStrategyInternal resolutionStrategy = (ResolutionStrategyInternal) Proxy.newProxyInstance(
+            ResolutionStrategyInternal.class.getClassLoader(),
+            new Class<?>[]{ResolutionStrategyInternal.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getConflictResolution":
+                        return ConflictResolution.latest;
+                    case "isFailingOnDynamicVersions":
+                    case "isFailingOnChangingVersions":
+                        return false;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+
+        SyntheticResolveContext(RootLocalComponentMetadata root) {
+            this.root = root;
+        }
+
+        @Override
+        public String getName() {
+            return "default";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "synthetic configuration";
+        }
+
+        @Override
+        public ResolutionStrategyInternal getResolutionStrategy() {
+            return resolutionStrategy;
+        }
+
+        @Override
+        public ComponentResolveMetadata toRootComponentMetaData() {
+            return root;
+        }
+
+        @Override
+        public AttributeContainer getAttributes() {
+            return ImmutableAttributes.EMPTY;
+        }
+    }
+}
@@ -34,4 +34,9 @@ public interface ComponentMetadataProcessorFactory {
      * @return a {@code ComponentMetadataProcessor}
      */
     ComponentMetadataProcessor createComponentMetadataProcessor(MetadataResolutionContext resolutionContext);
+
+    /**
+     * Returns whether any component metadata rules are registered, so the processed metadata may differ from the published metadata.
+     */
+    boolean hasRules();
 }
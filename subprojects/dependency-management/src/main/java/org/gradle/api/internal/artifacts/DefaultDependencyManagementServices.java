@@ -66,6 +66,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.AttributeContainerSerializer;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectionDescriptorFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCache;
 import org.gradle.api.internal.artifacts.mvnsettings.LocalMavenRepositoryLocator;
 import org.gradle.api.internal.artifacts.query.ArtifactResolutionQueryFactory;
 import org.gradle.api.internal.artifacts.query.DefaultArtifactResolutionQueryFactory;
@@ -469,7 +470,17 @@ ArtifactHandler createArtifactHandler(Instantiator instantiator, ConfigurationCo
 
         ComponentMetadataProcessorFactory createComponentMetadataProcessorFactory(ComponentMetadataHandlerInternal componentMetadataHandler, DependencyResolutionManagementInternal dependencyResolutionManagement, DomainObjectContext context) {
             if (context.isScript()) {
-                return componentMetadataHandler::createComponentMetadataProcessor;
+                return new ComponentMetadataProcessorFactory() {
+                    @Override
+                    public ComponentMetadataProcessor createComponentMetadataProcessor(MetadataResolutionContext resolutionContext) {
+                        return componentMetadataHandler.createComponentMetadataProcessor(resolutionContext);
+                    }
+
+                    @Override
+                    public boolean hasRules() {
+                        return componentMetadataHandler.hasRules();
+                    }
+                };
             }
             return componentMetadataHandler.createFactory(dependencyResolutionManagement);
         }
@@ -495,7 +506,10 @@ ConfigurationResolver createDependencyResolver(ArtifactDependencyResolver artifa
                                                        BuildState currentBuild,
                                                        TransformedVariantFactory transformedVariantFactory,
                                                        DependencyVerificationOverride dependencyVerificationOverride,
-                                                       ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory) {
+                                                       ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory,
+                                                       ResolvedGraphCache resolvedGraphCache,
+                                                       VersionSelectorScheme versionSelectorScheme,
+                                                       ClassLoaderHierarchyHasher classLoaderHierarchyHasher) {
             return new ErrorHandlingConfigurationResolver(
                 new ShortCircuitEmptyConfigurationResolver(
                     new DefaultConfigurationResolver(
@@ -522,7 +536,10 @@ ConfigurationResolver createDependencyResolver(ArtifactDependencyResolver artifa
                         currentBuild.getBuildIdentifier(),
                         new AttributeDesugaring(attributesFactory),
                         dependencyVerificationOverride,
-                        componentSelectionDescriptorFactory),
+                        componentSelectionDescriptorFactory,
+                        resolvedGraphCache,
+                        versionSelectorScheme,
+                        classLoaderHierarchyHasher),
                     componentIdentifierFactory,
                     moduleIdentifierFactory,
                     currentBuild.getBuildIdentifier()));
@@ -89,9 +89,12 @@
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectPublicationRegistry;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.DefaultArtifactDependencyResolver;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder.MetadataPrefetchExecutor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.AttributeContainerSerializer;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectionDescriptorFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DesugaredAttributeContainerSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.DefaultResolvedGraphCache;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCache;
 import org.gradle.api.internal.artifacts.mvnsettings.DefaultLocalMavenRepositoryLocator;
 import org.gradle.api.internal.artifacts.mvnsettings.DefaultMavenFileLocations;
 import org.gradle.api.internal.artifacts.mvnsettings.DefaultMavenSettingsProvider;
@@ -134,6 +137,7 @@
 import org.gradle.cache.scopes.BuildScopedCache;
 import org.gradle.cache.scopes.GlobalScopedCache;
 import org.gradle.caching.internal.origin.OriginMetadata;
+import org.gradle.concurrent.ParallelismConfiguration;
 import org.gradle.configuration.internal.UserCodeApplicationContext;
 import org.gradle.initialization.DependenciesAccessors;
 import org.gradle.initialization.internal.InternalBuildFinishedListener;
@@ -145,6 +149,7 @@
 import org.gradle.internal.component.external.model.ModuleComponentArtifactMetadata;
 import org.gradle.internal.component.external.model.PreferJavaRuntimeVariant;
 import org.gradle.internal.component.model.PersistentModuleSource;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.ExecutionEngine;
 import org.gradle.internal.execution.ExecutionResult;
@@ -222,6 +227,7 @@
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.gradle.internal.snapshot.ValueSnapshotter;
 import org.gradle.internal.typeconversion.NotationParser;
+import org.gradle.internal.vfs.FileChangeJournal;
 import org.gradle.internal.vfs.VirtualFileSystem;
 import org.gradle.util.internal.BuildCommencedTimeProvider;
 import org.gradle.util.internal.SimpleMapInterner;
@@ -314,10 +320,6 @@ RuntimeShadedJarFactory createRuntimeShadedJarFactory(GeneratedGradleJarCache ja
         return new RuntimeShadedJarFactory(jarCache, progressLoggerFactory, classpathWalker, classpathBuilder, executor);
     }
 
-    ModuleExclusions createModuleExclusions() {
-        return new ModuleExclusions();
-    }
-
     MavenMutableModuleMetadataFactory createMutableMavenMetadataFactory(ImmutableModuleIdentifierFactory moduleIdentifierFactory,
                                                                         ImmutableAttributesFactory attributesFactory,
                                                                         NamedObjectInstantiator instantiator,
@@ -447,6 +449,13 @@ private ModuleRepositoryCaches prepareReadOnlyModuleRepositoryCaches(ArtifactCac
         );
     }
 
+    ResolvedGraphCache createResolvedGraphCache(ArtifactCachesProvider artifactCaches, StartParameter startParameter) {
+        if (!Boolean.getBoolean(ResolvedGraphCache.ENABLED_PROPERTY)) {
+            return ResolvedGraphCache.DISABLED;
+        }
+        return artifactCaches.withWritableCache((md, manager) -> new DefaultResolvedGraphCache(manager, startParameter.isRefreshDependencies()));
+    }
+
     FileStoreAndIndexProvider createFileStoreAndIndexProvider(
         BuildCommencedTimeProvider timeProvider,
         ArtifactCachesProvider artifactCaches,
@@ -588,7 +597,8 @@ ArtifactDependencyResolver createArtifactDependencyResolver(ResolveIvyFactory re
                                                                 ComponentMetadataSupplierRuleExecutor componentMetadataSupplierRuleExecutor,
                                                                 InstantiatorFactory instantiatorFactory,
                                                                 ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory,
-                                                                CalculatedValueContainerFactory calculatedValueContainerFactory) {
+                                                                CalculatedValueContainerFactory calculatedValueContainerFactory,
+                                                                MetadataPrefetchExecutor metadataPrefetchExecutor) {
         return new DefaultArtifactDependencyResolver(
             buildOperationExecutor,
             resolverFactories,
@@ -604,7 +614,12 @@ ArtifactDependencyResolver createArtifactDependencyResolver(ResolveIvyFactory re
             componentMetadataSupplierRuleExecutor,
             instantiatorFactory,
             componentSelectionDescriptorFactory,
-            calculatedValueContainerFactory);
+            calculatedValueContainerFactory,
+            metadataPrefetchExecutor);
+    }
+
+    MetadataPrefetchExecutor createMetadataPrefetchExecutor(ExecutorFactory executorFactory, ParallelismConfiguration parallelismConfiguration) {
+        return new MetadataPrefetchExecutor(executorFactory, parallelismConfiguration);
     }
 
     ProjectPublicationRegistry createProjectPublicationRegistry() {
@@ -713,6 +728,7 @@ ExecutionEngine createExecutionEngine(
         ClassLoaderHierarchyHasher classLoaderHierarchyHasher,
         Deleter deleter,
         ExecutionStateChangeDetector changeDetector,
+        FileChangeJournal fileChangeJournal,
         InputFingerprinter inputFingerprinter,
         ListenerManager listenerManager,
         OutputSnapshotter outputSnapshotter,
@@ -739,7 +755,7 @@ ExecutionEngine createExecutionEngine(
             new SkipUpToDateStep<>(
             new BroadcastChangingOutputsStep<>(outputChangeListener,
             new StoreExecutionStateStep<>(
-            new CaptureStateAfterExecutionStep<>(buildOperationExecutor, fixedUniqueId, outputSnapshotter,
+            new CaptureStateAfterExecutionStep<>(buildOperationExecutor, fixedUniqueId, outputSnapshotter, fileChangeJournal,
             new CreateOutputsStep<>(
             new TimeoutStep<>(timeoutHandler, currentBuildOperationRef,
             new ResolveInputChangesStep<>(
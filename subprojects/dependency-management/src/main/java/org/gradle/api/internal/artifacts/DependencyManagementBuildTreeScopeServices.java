@@ -18,6 +18,7 @@
 
 import org.gradle.StartParameter;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.StartParameterResolutionOverride;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory;
 import org.gradle.api.internal.file.temp.TemporaryFileProvider;
 import org.gradle.initialization.layout.BuildLayout;
@@ -42,4 +43,8 @@ StartParameterResolutionOverride createStartParameterResolutionOverride(StartPar
         File gradleDir = new File(rootDirectory, "gradle");
         return new StartParameterResolutionOverride(startParameter, gradleDir);
     }
+
+    ModuleExclusions createModuleExclusions() {
+        return new ModuleExclusions();
+    }
 }
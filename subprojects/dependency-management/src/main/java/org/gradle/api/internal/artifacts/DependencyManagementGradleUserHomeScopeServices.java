@@ -37,6 +37,7 @@
 import org.gradle.internal.execution.history.impl.DefaultExecutionHistoryStore;
 import org.gradle.internal.file.FileAccessTimeJournal;
 import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+import org.gradle.internal.hash.FileContentHashingMode;
 
 public class DependencyManagementGradleUserHomeScopeServices {
 
@@ -74,8 +75,8 @@ public void buildFinished(BuildResult result) {
         return artifactCachesProvider;
     }
 
-    ExecutionHistoryCacheAccess createExecutionHistoryCacheAccess(GlobalScopedCache cacheRepository) {
-        return new DefaultExecutionHistoryCacheAccess(cacheRepository);
+    ExecutionHistoryCacheAccess createExecutionHistoryCacheAccess(GlobalScopedCache cacheRepository, FileContentHashingMode fileContentHashingMode) {
+        return new DefaultExecutionHistoryCacheAccess(cacheRepository, fileContentHashingMode);
     }
 
     ExecutionHistoryStore createExecutionHistoryStore(
@@ -26,6 +26,7 @@
 
 public interface ComponentMetadataHandlerInternal {
     ComponentMetadataProcessor createComponentMetadataProcessor(MetadataResolutionContext resolutionContext);
+    boolean hasRules();
     void setVariantDerivationStrategy(VariantDerivationStrategy strategy);
     VariantDerivationStrategy getVariantDerivationStrategy();
     void onAddRule(Consumer<DisplayName> consumer);
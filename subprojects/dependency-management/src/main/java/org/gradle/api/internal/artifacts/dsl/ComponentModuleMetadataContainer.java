@@ -26,6 +26,7 @@
 import org.gradle.internal.typeconversion.NotationParserBuilder;
 
 import javax.annotation.Nullable;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -84,6 +85,11 @@ public boolean participatesInReplacements(ModuleIdentifier moduleId) {
         return targets.contains(moduleId) || replacements.containsKey(moduleId);
     }
 
+    @Override
+    public Set<ModuleIdentifier> getReplacedModules() {
+        return Collections.unmodifiableSet(replacements.keySet());
+    }
+
     private static void detectCycles(Map<ModuleIdentifier, Replacement> replacements, ModuleIdentifier source, ModuleIdentifier target) {
         if (source.equals(target)) {
             throw new InvalidUserDataException(String.format("Cannot declare module replacement that replaces self: %s->%s", source, target));
@@ -234,6 +234,11 @@ public ComponentMetadataProcessor createComponentMetadataProcessor(MetadataResol
         return new DefaultComponentMetadataProcessor(metadataRuleContainer, instantiator, dependencyMetadataNotationParser, dependencyConstraintMetadataNotationParser, componentIdentifierNotationParser, attributesFactory, ruleExecutor, platformSupport, resolutionContext);
     }
 
+    @Override
+    public boolean hasRules() {
+        return !metadataRuleContainer.isEmpty();
+    }
+
     @Override
     public void setVariantDerivationStrategy(VariantDerivationStrategy strategy) {
         metadataRuleContainer.setVariantDerivationStrategy(strategy);
@@ -269,7 +274,17 @@ public ComponentMetadataProcessorFactory createFactory(DependencyResolutionManag
             }
             return this;
         };
-        return resolutionContext -> actualHandler.get().createComponentMetadataProcessor(resolutionContext);
+        return new ComponentMetadataProcessorFactory() {
+            @Override
+            public ComponentMetadataProcessor createComponentMetadataProcessor(MetadataResolutionContext resolutionContext) {
+                return actualHandler.get().createComponentMetadataProcessor(resolutionContext);
+            }
+
+            @Override
+            public boolean hasRules() {
+                return actualHandler.get().hasRules();
+            }
+        };
     }
 
     static class ComponentMetadataDetailsMatchingSpec implements Spec<ComponentMetadataDetails> {
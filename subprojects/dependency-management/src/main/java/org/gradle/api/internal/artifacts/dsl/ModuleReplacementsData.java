@@ -19,6 +19,8 @@
 import org.gradle.api.artifacts.ModuleIdentifier;
 
 import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Set;
 
 public interface ModuleReplacementsData {
     ModuleReplacementsData NO_OP = new ModuleReplacementsData() {
@@ -32,12 +34,22 @@ public Replacement getReplacementFor(ModuleIdentifier sourceModule) {
         public boolean participatesInReplacements(ModuleIdentifier moduleId) {
             return false;
         }
+
+        @Override
+        public Set<ModuleIdentifier> getReplacedModules() {
+            return Collections.emptySet();
+        }
     };
 
     @Nullable Replacement getReplacementFor(ModuleIdentifier sourceModule);
 
     boolean participatesInReplacements(ModuleIdentifier moduleId);
 
+    /**
+     * Returns the modules which have a replacement.
+     */
+    Set<ModuleIdentifier> getReplacedModules();
+
     class Replacement {
         private final ModuleIdentifier target;
         private final String reason;
@@ -17,14 +17,22 @@
 package org.gradle.api.internal.artifacts.ivyservice;
 
 import com.google.common.collect.ImmutableList;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.LenientConfiguration;
 import org.gradle.api.artifacts.ProjectDependency;
+import org.gradle.api.artifacts.ResolveException;
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.ResolvedConfiguration;
+import org.gradle.api.artifacts.ResolvedDependency;
 import org.gradle.api.artifacts.UnresolvedDependency;
 import org.gradle.api.artifacts.component.BuildIdentifier;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
 import org.gradle.api.artifacts.component.ProjectComponentIdentifier;
 import org.gradle.api.artifacts.result.ResolvedComponentResult;
 import org.gradle.api.internal.artifacts.ArtifactDependencyResolver;
 import org.gradle.api.internal.artifacts.ComponentSelectorConverter;
 import org.gradle.api.internal.artifacts.ConfigurationResolver;
+import org.gradle.api.internal.artifacts.DefaultResolverResults;
 import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
 import org.gradle.api.internal.artifacts.RepositoriesSupplier;
@@ -32,10 +40,14 @@
 import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
 import org.gradle.api.internal.artifacts.configurations.ConflictResolution;
 import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.DependencyVerificationOverride;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ArtifactVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.BuildDependenciesOnlyVisitedArtifactSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DefaultResolvedArtifactsBuilder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DependencyArtifactsVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.SelectedArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactsResults;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedFileDependencyResults;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.CompositeDependencyArtifactsVisitor;
@@ -54,13 +66,17 @@
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectionDescriptorFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.FileDependencyCollectingGraphVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ByteArrayBinaryStore;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCache;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.StoreSet;
 import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
 import org.gradle.api.internal.artifacts.transform.ArtifactTransforms;
 import org.gradle.api.internal.artifacts.type.ArtifactTypeRegistry;
+import org.gradle.api.internal.attributes.AttributeContainerInternal;
 import org.gradle.api.internal.attributes.AttributeDesugaring;
 import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.api.internal.tasks.TaskDependencyResolveContext;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.specs.Specs;
 import org.gradle.cache.internal.BinaryStore;
@@ -68,9 +84,13 @@
 import org.gradle.internal.Cast;
 import org.gradle.internal.component.local.model.DslOriginDependencyMetadata;
 import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.locking.DependencyLockingArtifactVisitor;
 import org.gradle.internal.operations.BuildOperationExecutor;
 
+import javax.annotation.Nullable;
+import java.io.File;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -93,6 +113,9 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
     private final AttributeDesugaring attributeDesugaring;
     private final DependencyVerificationOverride dependencyVerificationOverride;
     private final ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory;
+    private final ResolvedGraphCache resolvedGraphCache;
+    private final ResolvedGraphFingerprinter graphFingerprinter;
+    private final VersionSelectorScheme versionSelectorScheme;
 
     public DefaultConfigurationResolver(ArtifactDependencyResolver resolver,
                                         RepositoriesSupplier repositoriesSupplier,
@@ -108,7 +131,10 @@ public DefaultConfigurationResolver(ArtifactDependencyResolver resolver,
                                         AttributeContainerSerializer attributeContainerSerializer,
                                         BuildIdentifier currentBuild, AttributeDesugaring attributeDesugaring,
                                         DependencyVerificationOverride dependencyVerificationOverride,
-                                        ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory) {
+                                        ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory,
+                                        ResolvedGraphCache resolvedGraphCache,
+                                        VersionSelectorScheme versionSelectorScheme,
+                                        ClassLoaderHierarchyHasher classLoaderHierarchyHasher) {
         this.resolver = resolver;
         this.repositoriesSupplier = repositoriesSupplier;
         this.metadataHandler = metadataHandler;
@@ -125,6 +151,9 @@ public DefaultConfigurationResolver(ArtifactDependencyResolver resolver,
         this.attributeDesugaring = attributeDesugaring;
         this.dependencyVerificationOverride = dependencyVerificationOverride;
         this.componentSelectionDescriptorFactory = componentSelectionDescriptorFactory;
+        this.resolvedGraphCache = resolvedGraphCache;
+        this.graphFingerprinter = new ResolvedGraphFingerprinter(attributeDesugaring, classLoaderHierarchyHasher);
+        this.versionSelectorScheme = versionSelectorScheme;
     }
 
     @Override
@@ -142,6 +171,36 @@ public void resolveBuildDependencies(ConfigurationInternal configuration, Resolv
     @Override
     public void resolveGraph(ConfigurationInternal configuration, ResolverResults results) {
         List<ResolutionAwareRepository> resolutionAwareRepositories = getRepositories();
+        // The task dependencies are calculated from the artifacts, which a stored graph does not provide
+        HashCode graphKey = resolvedGraphCache.isEnabled() && !configuration.getResolutionStrategy().resolveGraphToDetermineTaskDependencies()
+            ? graphFingerprinter.fingerprint(configuration, currentBuild, resolutionAwareRepositories, metadataHandler, attributesSchema)
+            : null;
+        if (graphKey != null) {
+            byte[] resolvedGraph = resolvedGraphCache.load(graphKey);
+            if (resolvedGraph != null) {
+                replayGraph(configuration, resolvedGraph, results);
+                return;
+            }
+        }
+        resolveGraph(configuration, resolutionAwareRepositories, graphKey, results);
+    }
+
+    /**
+     * Uses the new model of a graph resolved by an earlier build.
+     * The artifacts and the old model are only available from the component metadata, so the graph is only resolved again once they are actually queried.
+     * Consumers of the {@link org.gradle.api.artifacts.result.ResolutionResult} alone never resolve the graph.
+     */
+    private void replayGraph(ConfigurationInternal configuration, byte[] resolvedGraph, ResolverResults results) {
+        configuration.getResolutionStrategy().confirmUnlockedConfigurationResolved(configuration.getName());
+        StoreSet stores = storeFactory.createStoreSet();
+        StreamingResolutionResultBuilder newModelBuilder = new StreamingResolutionResultBuilder(new ByteArrayBinaryStore(resolvedGraph), stores.newModelCache(), moduleIdentifierFactory, attributeContainerSerializer, attributeDesugaring, componentSelectionDescriptorFactory, configuration.getReturnAllVariants());
+        ReplayedGraphState replayedGraphState = new ReplayedGraphState(configuration);
+        // Cached graphs contain no project components other than the root one
+        results.graphResolved(newModelBuilder.replay(configuration.getAttributes().asImmutable()), new ResolvedLocalComponentsResultGraphVisitor(currentBuild), replayedGraphState);
+        results.retainState(replayedGraphState);
+    }
+
+    private void resolveGraph(ConfigurationInternal configuration, List<ResolutionAwareRepository> resolutionAwareRepositories, @Nullable HashCode graphKey, ResolverResults results) {
         StoreSet stores = storeFactory.createStoreSet();
 
         BinaryStore oldModelStore = stores.nextBinaryStore();
@@ -150,7 +209,9 @@ public void resolveGraph(ConfigurationInternal configuration, ResolverResults re
         DefaultResolvedConfigurationBuilder oldModelBuilder = new DefaultResolvedConfigurationBuilder(oldTransientModelBuilder);
         ResolvedConfigurationDependencyGraphVisitor oldModelVisitor = new ResolvedConfigurationDependencyGraphVisitor(oldModelBuilder);
 
-        BinaryStore newModelStore = stores.nextBinaryStore();
+        // Graphs which may be cached are written to a separate store, as the shared store cannot be read back independently
+        ByteArrayBinaryStore cachedGraphStore = graphKey != null ? new ByteArrayBinaryStore() : null;
+        BinaryStore newModelStore = cachedGraphStore != null ? cachedGraphStore : stores.nextBinaryStore();
         Store<ResolvedComponentResult> newModelCache = stores.newModelCache();
         StreamingResolutionResultBuilder newModelBuilder = new StreamingResolutionResultBuilder(newModelStore, newModelCache, moduleIdentifierFactory, attributeContainerSerializer, attributeDesugaring, componentSelectionDescriptorFactory, configuration.getReturnAllVariants());
 
@@ -160,7 +221,10 @@ public void resolveGraph(ConfigurationInternal configuration, ResolverResults re
         DefaultResolvedArtifactsBuilder artifactsBuilder = new DefaultResolvedArtifactsBuilder(buildProjectDependencies, resolutionStrategy.getSortOrder());
         FileDependencyCollectingGraphVisitor fileDependencyVisitor = new FileDependencyCollectingGraphVisitor();
         ResolutionFailureCollector failureCollector = new ResolutionFailureCollector(componentSelectorConverter);
-        DependencyGraphVisitor graphVisitor = new CompositeDependencyGraphVisitor(newModelBuilder, localComponentsVisitor, failureCollector);
+        CacheableGraphVisitor cacheableGraphVisitor = new CacheableGraphVisitor(versionSelectorScheme);
+        DependencyGraphVisitor graphVisitor = cachedGraphStore != null
+            ? new CompositeDependencyGraphVisitor(newModelBuilder, localComponentsVisitor, failureCollector, cacheableGraphVisitor)
+            : new CompositeDependencyGraphVisitor(newModelBuilder, localComponentsVisitor, failureCollector);
 
         ImmutableList.Builder<DependencyArtifactsVisitor> visitors = new ImmutableList.Builder<>();
         visitors.add(oldModelVisitor);
@@ -200,6 +264,9 @@ public void resolveGraph(ConfigurationInternal configuration, ResolverResults re
         results.retainState(new ArtifactResolveState(graphResults, artifactsResults, fileDependencyResults, failures, oldTransientModelBuilder));
         if (!results.hasError() && failures.isEmpty()) {
             artifactsVisitor.complete();
+            if (cachedGraphStore != null && cacheableGraphVisitor.isCacheable()) {
+                resolvedGraphCache.store(graphKey, cachedGraphStore.getContents());
+            }
         }
     }
 
@@ -210,6 +277,11 @@ public List<ResolutionAwareRepository> getRepositories() {
 
     @Override
     public void resolveArtifacts(ConfigurationInternal configuration, ResolverResults results) {
+        if (results.getArtifactResolveState() instanceof ReplayedGraphState) {
+            ReplayedGraphState replayedGraphState = (ReplayedGraphState) results.getArtifactResolveState();
+            results.artifactsResolved(replayedGraphState, replayedGraphState);
+            return;
+        }
         ArtifactResolveState resolveState = (ArtifactResolveState) results.getArtifactResolveState();
         ResolvedGraphResults graphResults = resolveState.graphResults;
         VisitedArtifactsResults artifactResults = resolveState.artifactsResults;
@@ -237,4 +309,85 @@ private static class ArtifactResolveState {
         }
     }
 
+    /**
+     * The state of a graph taken from the {@link ResolvedGraphCache}, which resolves the full graph on demand.
+     */
+    private class ReplayedGraphState implements VisitedArtifactSet, ResolvedConfiguration {
+        private final ConfigurationInternal configuration;
+        private ResolverResults fullResults;
+
+        ReplayedGraphState(ConfigurationInternal configuration) {
+            this.configuration = configuration;
+        }
+
+        synchronized ResolverResults getFullResults() {
+            if (fullResults == null) {
+                ResolverResults results = new DefaultResolverResults();
+                resolveGraph(configuration, getRepositories(), null, results);
+                resolveArtifacts(configuration, results);
+                fullResults = results;
+            }
+            return fullResults;
+        }
+
+        @Override
+        public SelectedArtifactSet select(Spec<? super Dependency> dependencySpec, AttributeContainerInternal requestedAttributes, Spec<? super ComponentIdentifier> componentSpec, boolean allowNoMatchingVariant) {
+            return new SelectedArtifactSet() {
+                @Override
+                public void visitDependencies(TaskDependencyResolveContext context) {
+                    delegate().visitDependencies(context);
+                }
+
+                @Override
+                public void visitArtifacts(ArtifactVisitor visitor, boolean continueOnSelectionFailure) {
+                    delegate().visitArtifacts(visitor, continueOnSelectionFailure);
+                }
+
+                private SelectedArtifactSet delegate() {
+                    return getFullResults().getVisitedArtifacts().select(dependencySpec, requestedAttributes, componentSpec, allowNoMatchingVariant);
+                }
+            };
+        }
+
+        @Override
+        public boolean hasError() {
+            return getFullResults().getResolvedConfiguration().hasError();
+        }
+
+        @Override
+        public LenientConfiguration getLenientConfiguration() {
+            return getFullResults().getResolvedConfiguration().getLenientConfiguration();
+        }
+
+        @Override
+        public void rethrowFailure() throws ResolveException {
+            getFullResults().getResolvedConfiguration().rethrowFailure();
+        }
+
+        @Override
+        public Set<File> getFiles() throws ResolveException {
+            return getFullResults().getResolvedConfiguration().getFiles();
+        }
+
+        @Override
+        public Set<File> getFiles(Spec<? super Dependency> dependencySpec) throws ResolveException {
+            return getFullResults().getResolvedConfiguration().getFiles(dependencySpec);
+        }
+
+        @Override
+        public Set<ResolvedDependency> getFirstLevelModuleDependencies() throws ResolveException {
+            return getFullResults().getResolvedConfiguration().getFirstLevelModuleDependencies();
+        }
+
+        @Override
+        public Set<ResolvedDependency> getFirstLevelModuleDependencies(Spec<? super Dependency> dependencySpec) throws ResolveException {
+            return getFullResults().getResolvedConfiguration().getFirstLevelModuleDependencies(dependencySpec);
+        }
+
+        @Override
+        public Set<ResolvedArtifact> getResolvedArtifacts() throws ResolveException {
+            return getFullResults().getResolvedConfiguration().getResolvedArtifacts();
+        }
+    }
+
 }
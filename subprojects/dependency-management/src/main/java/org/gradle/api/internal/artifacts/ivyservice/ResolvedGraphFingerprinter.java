@@ -0,0 +1,342 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.api.Action;
+import org.gradle.api.artifacts.ClientModule;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.DependencyArtifact;
+import org.gradle.api.artifacts.DependencyConstraint;
+import org.gradle.api.artifacts.DependencySubstitution;
+import org.gradle.api.artifacts.ExcludeRule;
+import org.gradle.api.artifacts.ExternalModuleDependency;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.VersionConstraint;
+import org.gradle.api.artifacts.component.BuildIdentifier;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.attributes.AttributeMatchingStrategy;
+import org.gradle.api.capabilities.Capability;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.Module;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.dependencies.DefaultProjectDependencyConstraint;
+import org.gradle.api.internal.artifacts.dependencies.DependencyConstraintInternal;
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
+import org.gradle.api.internal.artifacts.repositories.AbstractArtifactRepository;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.api.internal.attributes.AttributeContainerInternal;
+import org.gradle.api.internal.attributes.AttributeDesugaring;
+import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.api.internal.attributes.DefaultCompatibilityRuleChain;
+import org.gradle.api.internal.attributes.DefaultDisambiguationRuleChain;
+import org.gradle.api.internal.attributes.DefaultOrderedCompatibilityRule;
+import org.gradle.api.internal.attributes.DefaultOrderedDisambiguationRule;
+import org.gradle.api.internal.attributes.ImmutableAttributes;
+import org.gradle.internal.Actions;
+import org.gradle.internal.action.ConfigurableRule;
+import org.gradle.internal.action.InstantiatingAction;
+import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
+import org.gradle.util.GradleVersion;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Calculates the key of a configuration in the {@link org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCache}.
+ *
+ * Only configurations whose resolution inputs are plain data are fingerprinted:
+ * configurations with project, file or changing dependencies, dependency substitution,
+ * component selection, component metadata or capability resolution rules, forced modules,
+ * dependency locking or consistent resolution are never cached. Neither are configurations resolved from
+ * repositories with a component metadata supplier or version lister, or from repositories of an unknown kind.
+ *
+ * Module replacements, the content filters of the repositories and the attribute compatibility and disambiguation rules are part of the fingerprint.
+ * Rules are identified by their implementation and parameters, so rules whose implementation cannot be identified
+ * prevent caching as well.
+ */
+class ResolvedGraphFingerprinter {
+    private static final String FORMAT_VERSION = "3";
+
+    private final AttributeDesugaring attributeDesugaring;
+    private final ClassLoaderHierarchyHasher classLoaderHierarchyHasher;
+
+    ResolvedGraphFingerprinter(AttributeDesugaring attributeDesugaring, ClassLoaderHierarchyHasher classLoaderHierarchyHasher) {
+        this.attributeDesugaring = attributeDesugaring;
+        this.classLoaderHierarchyHasher = classLoaderHierarchyHasher;
+    }
+
+    /**
+     * Returns the fingerprint of the inputs for resolving the graph of the given configuration, or {@code null} when the graph cannot be cached.
+     */
+    @Nullable
+    public HashCode fingerprint(ConfigurationInternal configuration, BuildIdentifier currentBuild, List<ResolutionAwareRepository> repositories, GlobalDependencyResolutionRules metadataHandler, AttributesSchemaInternal attributesSchema) {
+        ResolutionStrategyInternal resolutionStrategy = configuration.getResolutionStrategy();
+        if (resolutionStrategy.isDependencyLockingEnabled()
+            || configuration.getConsistentResolutionSource() != null
+            || resolutionStrategy.getDependencySubstitutionRule() != Actions.<DependencySubstitution>doNothing()
+            || !resolutionStrategy.getComponentSelection().getRules().isEmpty()
+            || resolutionStrategy.getCapabilitiesResolutionRules().hasRules()
+            || metadataHandler.getComponentMetadataProcessorFactory().hasRules()) {
+            return null;
+        }
+
+        Hasher hasher = Hashing.newHasher();
+        hasher.putString(FORMAT_VERSION);
+        hasher.putString(GradleVersion.current().getVersion());
+
+        hasher.putString(currentBuild.getName());
+        hasher.putString(configuration.getIdentityPath().getPath());
+        Module module = configuration.getModule();
+        putNullableString(hasher, module.getGroup());
+        putNullableString(hasher, module.getName());
+        putNullableString(hasher, module.getVersion());
+        putNullableString(hasher, module.getStatus());
+        hasher.putBoolean(configuration.isTransitive());
+        hasher.putBoolean(configuration.getReturnAllVariants());
+        putAttributes(hasher, configuration.getAttributes());
+
+        hasher.putString(resolutionStrategy.getConflictResolution().name());
+        hasher.putBoolean(resolutionStrategy.isFailingOnDynamicVersions());
+        hasher.putBoolean(resolutionStrategy.isFailingOnChangingVersions());
+
+        for (Dependency dependency : configuration.getAllDependencies()) {
+            if (!(dependency instanceof ExternalModuleDependency) || dependency instanceof ClientModule) {
+                return null;
+            }
+            ExternalModuleDependency moduleDependency = (ExternalModuleDependency) dependency;
+            if (moduleDependency.isChanging()) {
+                return null;
+            }
+            putDependency(hasher, moduleDependency);
+        }
+        for (DependencyConstraint constraint : configuration.getAllDependencyConstraints()) {
+            if (constraint instanceof DefaultProjectDependencyConstraint) {
+                return null;
+            }
+            putConstraint(hasher, constraint);
+        }
+        putExcludeRules(hasher, configuration.getAllExcludeRules());
+
+        hasher.putInt(repositories.size());
+        for (ResolutionAwareRepository repository : repositories) {
+            // Metadata suppliers and version listers can fetch anything from the repository, and other repositories may filter their content in unknown ways
+            if (!(repository instanceof AbstractArtifactRepository) || ((AbstractArtifactRepository) repository).hasMetadataSupplierOrVersionLister()) {
+                return null;
+            }
+            ((AbstractArtifactRepository) repository).appendContentFilterToHasher(hasher);
+            hasher.putString(repository.getDescriptor().name);
+            hasher.putString(repository.getDescriptor().getType().name());
+            Map<String, ?> properties = repository.getDescriptor().getProperties();
+            hasher.putInt(properties.size());
+            for (Map.Entry<String, ?> property : properties.entrySet()) {
+                hasher.putString(property.getKey());
+                hasher.putString(String.valueOf(property.getValue()));
+            }
+        }
+
+        putModuleReplacements(hasher, metadataHandler.getModuleMetadataProcessor().getModuleReplacements());
+
+        List<Attribute<?>> schemaAttributes = attributesSchema.getAttributes().stream()
+            .sorted(Comparator.comparing(Attribute::getName))
+            .collect(Collectors.toList());
+        hasher.putInt(schemaAttributes.size());
+        for (Attribute<?> attribute : schemaAttributes) {
+            hasher.putString(attribute.getName());
+            if (!putMatchingRules(hasher, attributesSchema.getMatchingStrategy(attribute))) {
+                return null;
+            }
+        }
+        putStrings(hasher, attributesSchema.getAttributeDisambiguationPrecedence().stream()
+            .map(Attribute::getName)
+            .collect(Collectors.toList()));
+
+        return hasher.hash();
+    }
+
+    private static void putModuleReplacements(Hasher hasher, ModuleReplacementsData moduleReplacements) {
+        List<ModuleIdentifier> replacedModules = moduleReplacements.getReplacedModules().stream()
+            .sorted(Comparator.comparing(ModuleIdentifier::getGroup).thenComparing(ModuleIdentifier::getName))
+            .collect(Collectors.toList());
+        hasher.putInt(replacedModules.size());
+        for (ModuleIdentifier replacedModule : replacedModules) {
+            ModuleReplacementsData.Replacement replacement = moduleReplacements.getReplacementFor(replacedModule);
+            hasher.putString(replacedModule.getGroup());
+            hasher.putString(replacedModule.getName());
+            hasher.putString(replacement.getTarget().getGroup());
+            hasher.putString(replacement.getTarget().getName());
+            putNullableString(hasher, replacement.getReason());
+        }
+    }
+
+    /**
+     * Adds the compatibility and disambiguation rules of an attribute, returning {@code false} when one of them cannot be identified.
+     */
+    private boolean putMatchingRules(Hasher hasher, AttributeMatchingStrategy<?> matchingStrategy) {
+        List<? extends Action<?>> compatibilityRules = ((DefaultCompatibilityRuleChain<?>) matchingStrategy.getCompatibilityRules()).getRules();
+        hasher.putInt(compatibilityRules.size());
+        for (Action<?> rule : compatibilityRules) {
+            if (rule instanceof DefaultOrderedCompatibilityRule) {
+                DefaultOrderedCompatibilityRule<?> orderedRule = (DefaultOrderedCompatibilityRule<?>) rule;
+                hasher.putBoolean(orderedRule.isReverse());
+                if (!putComparator(hasher, orderedRule.getComparator())) {
+                    return false;
+                }
+            } else if (!putRule(hasher, rule)) {
+                return false;
+            }
+        }
+        List<? extends Action<?>> disambiguationRules = ((DefaultDisambiguationRuleChain<?>) matchingStrategy.getDisambiguationRules()).getRules();
+        hasher.putInt(disambiguationRules.size());
+        for (Action<?> rule : disambiguationRules) {
+            if (rule instanceof DefaultOrderedDisambiguationRule) {
+                DefaultOrderedDisambiguationRule<?> orderedRule = (DefaultOrderedDisambiguationRule<?>) rule;
+                hasher.putBoolean(orderedRule.isPickFirst());
+                if (!putComparator(hasher, orderedRule.getComparator())) {
+                    return false;
+                }
+            } else if (!putRule(hasher, rule)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean putRule(Hasher hasher, Action<?> rule) {
+        if (!(rule instanceof InstantiatingAction)) {
+            return false;
+        }
+        for (ConfigurableRule<?> configurableRule : ((InstantiatingAction<?>) rule).getRules().getConfigurableRules()) {
+            if (!putImplementation(hasher, configurableRule.getRuleClass())) {
+                return false;
+            }
+            configurableRule.getRuleParams().appendToHasher(hasher);
+        }
+        return true;
+    }
+
+    /**
+     * Comparators have no declared parameters, so their string representation stands in for their state.
+     * Comparators without a custom {@code toString()} include their identity and are never matched in a later build.
+     */
+    private boolean putComparator(Hasher hasher, Comparator<?> comparator) {
+        if (!putImplementation(hasher, comparator.getClass())) {
+            return false;
+        }
+        hasher.putString(comparator.toString());
+        return true;
+    }
+
+    private boolean putImplementation(Hasher hasher, Class<?> implementation) {
+        ImplementationSnapshot implementationSnapshot = ImplementationSnapshot.of(implementation, classLoaderHierarchyHasher);
+        if (implementationSnapshot.isUnknown()) {
+            return false;
+        }
+        implementationSnapshot.appendToHasher(hasher);
+        return true;
+    }
+
+    private void putDependency(Hasher hasher, ExternalModuleDependency dependency) {
+        hasher.putString("dependency");
+        putNullableString(hasher, dependency.getGroup());
+        hasher.putString(dependency.getName());
+        putVersionConstraint(hasher, dependency.getVersionConstraint());
+        putNullableString(hasher, dependency.getTargetConfiguration());
+        putNullableString(hasher, dependency.getReason());
+        hasher.putBoolean(dependency.isTransitive());
+        hasher.putBoolean(dependency.isForce());
+        hasher.putBoolean(dependency.isEndorsingStrictVersions());
+        putAttributes(hasher, dependency.getAttributes());
+        putExcludeRules(hasher, dependency.getExcludeRules());
+        hasher.putInt(dependency.getArtifacts().size());
+        for (DependencyArtifact artifact : dependency.getArtifacts()) {
+            putNullableString(hasher, artifact.getName());
+            putNullableString(hasher, artifact.getType());
+            putNullableString(hasher, artifact.getExtension());
+            putNullableString(hasher, artifact.getClassifier());
+            putNullableString(hasher, artifact.getUrl());
+        }
+        hasher.putInt(dependency.getRequestedCapabilities().size());
+        for (Capability capability : dependency.getRequestedCapabilities()) {
+            hasher.putString(capability.getGroup());
+            hasher.putString(capability.getName());
+            putNullableString(hasher, capability.getVersion());
+        }
+    }
+
+    private void putConstraint(Hasher hasher, DependencyConstraint constraint) {
+        hasher.putString("constraint");
+        putNullableString(hasher, constraint.getGroup());
+        hasher.putString(constraint.getName());
+        putVersionConstraint(hasher, constraint.getVersionConstraint());
+        putNullableString(hasher, constraint.getReason());
+        hasher.putBoolean(constraint instanceof DependencyConstraintInternal && ((DependencyConstraintInternal) constraint).isForce());
+        putAttributes(hasher, constraint.getAttributes());
+    }
+
+    private static void putVersionConstraint(Hasher hasher, VersionConstraint versionConstraint) {
+        putNullableString(hasher, versionConstraint.getRequiredVersion());
+        putNullableString(hasher, versionConstraint.getPreferredVersion());
+        putNullableString(hasher, versionConstraint.getStrictVersion());
+        putNullableString(hasher, versionConstraint.getBranch());
+        putStrings(hasher, versionConstraint.getRejectedVersions());
+    }
+
+    private static void putExcludeRules(Hasher hasher, Collection<ExcludeRule> excludeRules) {
+        hasher.putInt(excludeRules.size());
+        for (ExcludeRule excludeRule : excludeRules) {
+            putNullableString(hasher, excludeRule.getGroup());
+            putNullableString(hasher, excludeRule.getModule());
+        }
+    }
+
+    private void putAttributes(Hasher hasher, AttributeContainer attributes) {
+        ImmutableAttributes desugared = attributeDesugaring.desugar(((AttributeContainerInternal) attributes).asImmutable());
+        List<Attribute<?>> keys = desugared.keySet().stream()
+            .sorted(Comparator.comparing(Attribute::getName))
+            .collect(Collectors.toList());
+        hasher.putInt(keys.size());
+        for (Attribute<?> key : keys) {
+            hasher.putString(key.getName());
+            hasher.putString(String.valueOf(desugared.getAttribute(key)));
+        }
+    }
+
+    private static void putStrings(Hasher hasher, Collection<String> values) {
+        hasher.putInt(values.size());
+        for (String value : values) {
+            hasher.putString(value);
+        }
+    }
+
+    private static void putNullableString(Hasher hasher, @Nullable String value) {
+        if (value == null) {
+            hasher.putNull();
+        } else {
+            hasher.putString(value);
+        }
+    }
+}
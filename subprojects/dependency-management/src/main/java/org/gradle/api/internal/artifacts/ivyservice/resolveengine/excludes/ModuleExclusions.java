@@ -19,6 +19,7 @@
 import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories.CachingExcludeFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories.ExcludeFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories.InterningExcludeFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories.LoggingExcludeFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories.NormalizingExcludeFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories.OptimizingExcludeFactory;
@@ -32,6 +33,10 @@
 import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Creates and merges the exclude specs of the graph edges. Shared by all the resolutions of the build tree,
+ * so that the canonical specs and the results of merge operations are reused between resolutions.
+ */
 public class ModuleExclusions {
     private final CachingExcludeFactory.MergeCaches mergeCaches = new CachingExcludeFactory.MergeCaches();
     // please keep the formatting below as it helps enabling or disabling stages
@@ -39,7 +44,9 @@ public class ModuleExclusions {
         new CachingExcludeFactory(// caches the result of TL operations
             LoggingExcludeFactory.maybeLog(new NormalizingExcludeFactory(// performs algebra
                 new CachingExcludeFactory(// caches the result of optimization operations
-                    new DefaultExcludeFactory(), // the end of the chain, mandatory
+                    new InterningExcludeFactory(// makes equal specs share the same instance
+                        new DefaultExcludeFactory() // the end of the chain, mandatory
+                    ),
                     mergeCaches // shares the same caches as the top level one as after reducing we can find already cached merge operations
                 )
             )),
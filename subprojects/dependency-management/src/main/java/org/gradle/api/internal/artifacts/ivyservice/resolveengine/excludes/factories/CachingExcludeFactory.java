@@ -15,11 +15,10 @@
  */
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories;
 
-import com.google.common.collect.Maps;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ExcludeSpec;
 
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 /**
@@ -142,7 +141,7 @@ public int hashCode() {
 
     /**
      * A shareable backing cache for different caching exclude factories.
-     * Synchronization is ad-hoc, since `computeIfAbsent` on a concurrent hash map
+     * Values are computed without holding a lock, since `computeIfAbsent` on a concurrent hash map
      * will not allow for recursion, which is the case for us whenever a cache is
      * found at different levels.
      */
@@ -170,22 +169,23 @@ ExcludeSpec getAllOf(ExcludesKey list, Function<ExcludesKey, ExcludeSpec> onMiss
     }
 
     private static class ConcurrentCache<K, V> {
-        private final Map<K, V> backingMap = Maps.newHashMap();
+        private final ConcurrentHashMap<K, V> backingMap = new ConcurrentHashMap<>();
 
         static <K, V> ConcurrentCache<K, V> of() {
             return new ConcurrentCache<>();
         }
 
+        /**
+         * Threads missing the same key concurrently may all compute the value, but they all return the value stored first.
+         */
         V computeIfAbsent(K key, Function<K, V> producer) {
-            synchronized (backingMap) {
-                V value = backingMap.get(key);
-                if (value != null) {
-                    return value;
-                }
-                value = producer.apply(key);
-                backingMap.put(key, value);
+            V value = backingMap.get(key);
+            if (value != null) {
                 return value;
             }
+            value = producer.apply(key);
+            V previous = backingMap.putIfAbsent(key, value);
+            return previous != null ? previous : value;
         }
     }
 }
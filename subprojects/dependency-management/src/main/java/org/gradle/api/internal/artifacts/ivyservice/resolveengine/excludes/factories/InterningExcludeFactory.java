@@ -0,0 +1,103 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ExcludeSpec;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.GroupExclude;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.GroupSetExclude;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ModuleExclude;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ModuleIdExclude;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ModuleIdSetExclude;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ModuleSetExclude;
+import org.gradle.internal.component.model.IvyArtifactName;
+
+import java.util.Set;
+
+/**
+ * This factory makes sure that equal exclude specs are represented by the same instance,
+ * so that they are compared by identity in the merge caches, and that the state they
+ * memoize is shared by all the edges, and all the resolutions, which use them.
+ */
+public class InterningExcludeFactory extends DelegatingExcludeFactory {
+    private final Interner<ExcludeSpec> interner = Interners.newWeakInterner();
+
+    public InterningExcludeFactory(ExcludeFactory delegate) {
+        super(delegate);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends ExcludeSpec> T intern(T spec) {
+        return (T) interner.intern(spec);
+    }
+
+    @Override
+    public GroupExclude group(String group) {
+        return intern(delegate.group(group));
+    }
+
+    @Override
+    public ModuleExclude module(String module) {
+        return intern(delegate.module(module));
+    }
+
+    @Override
+    public ModuleIdExclude moduleId(ModuleIdentifier id) {
+        return intern(delegate.moduleId(id));
+    }
+
+    @Override
+    public ExcludeSpec anyOf(ExcludeSpec one, ExcludeSpec two) {
+        return intern(delegate.anyOf(one, two));
+    }
+
+    @Override
+    public ExcludeSpec allOf(ExcludeSpec one, ExcludeSpec two) {
+        return intern(delegate.allOf(one, two));
+    }
+
+    @Override
+    public ExcludeSpec anyOf(Set<ExcludeSpec> specs) {
+        return intern(delegate.anyOf(specs));
+    }
+
+    @Override
+    public ExcludeSpec allOf(Set<ExcludeSpec> specs) {
+        return intern(delegate.allOf(specs));
+    }
+
+    @Override
+    public ExcludeSpec ivyPatternExclude(ModuleIdentifier moduleId, IvyArtifactName artifact, String matcher) {
+        return intern(delegate.ivyPatternExclude(moduleId, artifact, matcher));
+    }
+
+    @Override
+    public ModuleIdSetExclude moduleIdSet(Set<ModuleIdentifier> modules) {
+        return intern(delegate.moduleIdSet(modules));
+    }
+
+    @Override
+    public GroupSetExclude groupSet(Set<String> groups) {
+        return intern(delegate.groupSet(groups));
+    }
+
+    @Override
+    public ModuleSetExclude moduleSet(Set<String> modules) {
+        return intern(delegate.moduleSet(modules));
+    }
+}
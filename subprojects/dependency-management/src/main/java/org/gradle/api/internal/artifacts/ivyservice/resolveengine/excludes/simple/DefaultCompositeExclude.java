@@ -17,16 +17,23 @@
 
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableSet;
+import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.CompositeExclude;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ExcludeSpec;
 
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 abstract class DefaultCompositeExclude implements CompositeExclude {
+    // Bounds the memory used to memoize exclusions, as interned specs live as long as the build tree
+    private static final int MAX_MEMOIZED_MODULES = 1024;
+
     private final ImmutableSet<ExcludeSpec> components;
     private final int hashCode;
     private final int size;
+    private final Map<ModuleIdentifier, Boolean> excludedModules = new ConcurrentHashMap<>();
 
     DefaultCompositeExclude(ImmutableSet<ExcludeSpec> components) {
         this.components = components;
@@ -36,6 +43,23 @@ abstract class DefaultCompositeExclude implements CompositeExclude {
 
     abstract int mask();
 
+    @Override
+    public final boolean excludes(ModuleIdentifier module) {
+        Boolean excluded = excludedModules.get(module);
+        if (excluded == null) {
+            excluded = doExcludes(module);
+            if (excludedModules.size() < MAX_MEMOIZED_MODULES) {
+                excludedModules.put(module, excluded);
+            }
+        }
+        return excluded;
+    }
+
+    /**
+     * Determines if this exclude rule excludes the supplied module, without memoization.
+     */
+    abstract boolean doExcludes(ModuleIdentifier module);
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
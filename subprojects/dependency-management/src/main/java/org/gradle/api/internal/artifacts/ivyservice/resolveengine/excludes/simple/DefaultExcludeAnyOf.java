@@ -43,7 +43,7 @@ protected String getDisplayName() {
     }
 
     @Override
-    public boolean excludes(ModuleIdentifier module) {
+    boolean doExcludes(ModuleIdentifier module) {
         return components().anyMatch(e -> e.excludes(module));
     }
 
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The components of a resolved graph and the consumers of each of them, used to visit the edges of the graph in consumer-first order.
+ *
+ * Components are identified by a dense index, assigned in the order they are added. The consumers of all components are kept
+ * in a single primitive array, with the consumers of a component stored between two offsets.
+ */
+class ComponentConsumersGraph {
+    private int[] offsets;
+    private int[] consumers;
+    private int componentCount;
+    private int consumerCount;
+
+    ComponentConsumersGraph(int expectedComponents) {
+        offsets = new int[Math.max(expectedComponents, 16) + 1];
+        consumers = new int[Math.max(expectedComponents, 16) * 2];
+    }
+
+    /**
+     * Adds a consumer to the component currently being added, which is the component with index {@link #getComponentCount()}.
+     */
+    public void addConsumer(int consumer) {
+        if (consumerCount == consumers.length) {
+            consumers = Arrays.copyOf(consumers, consumers.length * 2);
+        }
+        consumers[consumerCount++] = consumer;
+    }
+
+    /**
+     * Completes the component currently being added, with the consumers added since the previous component was completed.
+     */
+    public void endComponent() {
+        if (componentCount + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        componentCount++;
+        offsets[componentCount] = consumerCount;
+    }
+
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * Returns the indices of the components, ordered so that the consumers of a component come before it.
+     *
+     * Starts from the first {@code startCount} components, in order. The consumers of a component are visited in the order they were added.
+     * When the graph contains a cycle, the component through which the cycle was entered is ordered after the other components of the cycle.
+     * Components which cannot be reached from the start components are not included.
+     */
+    public int[] consumerFirstOrder(int startCount) {
+        BitSet seen = new BitSet(componentCount);
+        BitSet visited = new BitSet(componentCount);
+        // Each component is expanded at most once, so every consumer is pushed at most once
+        int[] stack = new int[startCount + consumerCount];
+        int top = 0;
+        for (int i = startCount - 1; i >= 0; i--) {
+            stack[top++] = i;
+        }
+        int[] order = new int[componentCount];
+        int visitedCount = 0;
+        while (top > 0) {
+            int component = stack[top - 1];
+            if (!seen.get(component)) {
+                seen.set(component);
+                int pushed = 0;
+                // Push in reverse, so the first consumer is visited first
+                for (int i = offsets[component + 1] - 1; i >= offsets[component]; i--) {
+                    int consumer = consumers[i];
+                    if (!seen.get(consumer)) {
+                        stack[top++] = consumer;
+                        pushed++;
+                    }
+                }
+                if (pushed == 0) {
+                    // have visited all consumers
+                    visited.set(component);
+                    top--;
+                    order[visitedCount++] = component;
+                }
+            } else if (!visited.get(component)) {
+                // have visited all consumers, or the component is part of a cycle
+                visited.set(component);
+                top--;
+                order[visitedCount++] = component;
+            } else {
+                // already visited previously
+                top--;
+            }
+        }
+        return visitedCount == order.length ? order : Arrays.copyOf(order, visitedCount);
+    }
+}
@@ -74,7 +74,8 @@ public class ComponentState implements ComponentResolutionState, DependencyGraph
     private ComponentSelectionState state = ComponentSelectionState.Selectable;
     private ModuleVersionResolveException metadataResolveFailure;
     private ModuleSelectors<SelectorState> selectors;
-    private DependencyGraphBuilder.VisitState visitState = DependencyGraphBuilder.VisitState.NotSeen;
+    // The dense index of this component when assembling the result, -1 when not yet indexed
+    private int resultIndex = -1;
 
     private boolean rejected;
     private boolean root;
@@ -128,12 +129,12 @@ public ModuleVersionResolveException getMetadataResolveFailure() {
         return metadataResolveFailure;
     }
 
-    public DependencyGraphBuilder.VisitState getVisitState() {
-        return visitState;
+    int getResultIndex() {
+        return resultIndex;
     }
 
-    public void setVisitState(DependencyGraphBuilder.VisitState visitState) {
-        this.visitState = visitState;
+    void setResultIndex(int resultIndex) {
+        this.resultIndex = resultIndex;
     }
 
     public List<NodeState> getNodes() {
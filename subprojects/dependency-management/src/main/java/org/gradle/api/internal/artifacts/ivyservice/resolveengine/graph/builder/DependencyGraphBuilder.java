@@ -72,7 +72,6 @@
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -89,6 +88,7 @@ public class DependencyGraphBuilder {
     private final AttributesSchemaInternal attributesSchema;
     private final ModuleExclusions moduleExclusions;
     private final BuildOperationExecutor buildOperationExecutor;
+    private final MetadataPrefetchExecutor metadataPrefetchExecutor;
     private final ComponentSelectorConverter componentSelectorConverter;
     private final DependencySubstitutionApplicator dependencySubstitutionApplicator;
     private final ImmutableAttributesFactory attributesFactory;
@@ -110,6 +110,7 @@ public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolve
                                   AttributesSchemaInternal attributesSchema,
                                   ModuleExclusions moduleExclusions,
                                   BuildOperationExecutor buildOperationExecutor,
+                                  MetadataPrefetchExecutor metadataPrefetchExecutor,
                                   DependencySubstitutionApplicator dependencySubstitutionApplicator,
                                   ComponentSelectorConverter componentSelectorConverter,
                                   ImmutableAttributesFactory attributesFactory,
@@ -124,6 +125,7 @@ public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolve
         this.attributesSchema = attributesSchema;
         this.moduleExclusions = moduleExclusions;
         this.buildOperationExecutor = buildOperationExecutor;
+        this.metadataPrefetchExecutor = metadataPrefetchExecutor;
         this.dependencySubstitutionApplicator = dependencySubstitutionApplicator;
         this.componentSelectorConverter = componentSelectorConverter;
         this.attributesFactory = attributesFactory;
@@ -145,10 +147,18 @@ public void resolve(final ResolveContext resolveContext, final DependencyGraphVi
 
         List<? extends DependencyMetadata> syntheticDependencies = includeSyntheticDependencies ? syntheticDependenciesOf(rootModule, resolveContext.getName()) : Collections.emptyList();
 
-        final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, metaDataResolver, edgeFilter, attributesSchema, moduleExclusions, componentSelectorConverter, attributesFactory, dependencySubstitutionApplicator, versionSelectorScheme, versionComparator, versionParser, moduleConflictHandler.getResolver(), graphSize, resolveContext.getResolutionStrategy().getConflictResolution(), syntheticDependencies, conflictTracker);
+        MetadataPrefetcher prefetcher = MetadataPrefetcher.create(metaDataResolver, versionSelectorScheme, buildOperationExecutor, metadataPrefetchExecutor);
+        ComponentMetaDataResolver componentMetaDataResolver = prefetcher != null ? prefetcher : metaDataResolver;
+        final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, componentMetaDataResolver, edgeFilter, attributesSchema, moduleExclusions, componentSelectorConverter, attributesFactory, dependencySubstitutionApplicator, versionSelectorScheme, versionComparator, versionParser, moduleConflictHandler.getResolver(), graphSize, resolveContext.getResolutionStrategy().getConflictResolution(), syntheticDependencies, conflictTracker);
 
         Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache = Maps.newHashMapWithExpectedSize(graphSize / 2);
-        traverseGraph(resolveState, componentIdentifierCache);
+        try {
+            traverseGraph(resolveState, componentIdentifierCache, prefetcher);
+        } finally {
+            if (prefetcher != null) {
+                prefetcher.stop();
+            }
+        }
 
         validateGraph(resolveState, resolutionStrategy.isFailingOnDynamicVersions(), resolutionStrategy.isFailingOnChangingVersions());
 
@@ -180,7 +190,7 @@ private static int estimateSize(ResolveContext resolveContext) {
     /**
      * Traverses the dependency graph, resolving conflicts and building the paths from the root configuration.
      */
-    private void traverseGraph(final ResolveState resolveState, final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+    private void traverseGraph(final ResolveState resolveState, final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, @Nullable MetadataPrefetcher prefetcher) {
         resolveState.onMoreSelected(resolveState.getRoot());
         final List<EdgeState> dependencies = Lists.newArrayList();
 
@@ -195,9 +205,9 @@ private void traverseGraph(final ResolveState resolveState, final Map<ModuleVers
                 // Initialize and collect any new outgoing edges of this node
                 dependencies.clear();
                 node.visitOutgoingDependencies(dependencies);
-                boolean edgeWasProcessed = resolveEdges(node, dependencies, ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC, false, resolveState, componentIdentifierCache);
+                boolean edgeWasProcessed = resolveEdges(node, dependencies, ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC, false, resolveState, componentIdentifierCache, prefetcher);
                 node.collectEndorsedStrictVersions(dependencies);
-                resolveEdges(node, dependencies, NOT_ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC, edgeWasProcessed, resolveState, componentIdentifierCache);
+                resolveEdges(node, dependencies, NOT_ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC, edgeWasProcessed, resolveState, componentIdentifierCache, prefetcher);
             } else {
                 // We have some batched up conflicts. Resolve the first, and continue traversing the graph
                 if (moduleConflictHandler.hasConflicts()) {
@@ -254,12 +264,13 @@ private boolean resolveEdges(final NodeState node,
                                  final Spec<EdgeState> dependencyFilter,
                                  final boolean recomputeSelectors,
                                  final ResolveState resolveState,
-                                 final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+                                 final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache,
+                                 @Nullable final MetadataPrefetcher prefetcher) {
         if (dependencies.isEmpty()) {
             return false;
         }
         if (performSelectionSerially(dependencies, dependencyFilter, resolveState, recomputeSelectors)) {
-            maybeDownloadMetadataInParallel(node, componentIdentifierCache, dependencies, dependencyFilter);
+            maybeDownloadMetadataInParallel(node, componentIdentifierCache, dependencies, dependencyFilter, prefetcher);
             attachToTargetRevisionsSerially(dependencies, dependencyFilter);
             return true;
         } else {
@@ -333,15 +344,19 @@ private void checkForModuleConflicts(ResolveState resolveState, ModuleResolveSta
      * Prepares the resolution of edges, either serially or concurrently.
      * It uses a simple heuristic to determine if we should perform concurrent resolution, based on the number of edges, and whether they have unresolved metadata.
      */
-    private void maybeDownloadMetadataInParallel(NodeState node, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, List<EdgeState> dependencies, Spec<EdgeState> dependencyFilter) {
+    private void maybeDownloadMetadataInParallel(NodeState node, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, List<EdgeState> dependencies, Spec<EdgeState> dependencyFilter, @Nullable MetadataPrefetcher prefetcher) {
+        ComponentMetaDataResolver componentMetaDataResolver = prefetcher != null ? prefetcher : metaDataResolver;
         List<ComponentState> requiringDownload = null;
         for (EdgeState dependency : dependencies) {
             if (!dependencyFilter.isSatisfiedBy(dependency)) {
                 continue;
             }
             ComponentState targetComponent = dependency.getTargetComponent();
+            if (targetComponent != null && targetComponent.isSelected() && prefetcher != null) {
+                prefetcher.selected(targetComponent.getId());
+            }
             if (targetComponent != null && targetComponent.isSelected() && !targetComponent.alreadyResolved()) {
-                if (!metaDataResolver.isFetchingMetadataCheap(toComponentId(targetComponent.getId(), componentIdentifierCache))) {
+                if (!componentMetaDataResolver.isFetchingMetadataCheap(toComponentId(targetComponent.getId(), componentIdentifierCache))) {
                     // Avoid initializing the list if there are no components requiring download (a common case)
                     if (requiringDownload == null) {
                         requiringDownload = Lists.newArrayList();
@@ -606,62 +621,50 @@ private void assembleResult(ResolveState resolveState, DependencyGraphVisitor vi
             }
         }
 
-        // Collect the components to sort in consumer-first order
-        LinkedList<ComponentState> queue = Lists.newLinkedList();
+        // Index the components and their consumers, to sort them in consumer-first order
+        List<ComponentState> components = Lists.newArrayList();
         for (ModuleResolveState module : resolveState.getModules()) {
             if (module.getSelected() != null && !module.isVirtualPlatform()) {
-                queue.add(module.getSelected());
+                indexComponent(module.getSelected(), components);
             }
         }
-
-        // Visit the edges after sorting the components in consumer-first order
-        while (!queue.isEmpty()) {
-            ComponentState component = queue.peekFirst();
-            if (component.getVisitState() == VisitState.NotSeen) {
-                component.setVisitState(VisitState.Visiting);
-                int pos = 0;
-                for (NodeState node : component.getNodes()) {
-                    if (!node.isSelected()) {
-                        continue;
-                    }
-                    for (EdgeState edge : node.getIncomingEdges()) {
-                        ComponentState owner = edge.getFrom().getOwner();
-                        if (owner.getVisitState() == VisitState.NotSeen && !owner.getModule().isVirtualPlatform()) {
-                            queue.add(pos, owner);
-                            pos++;
-                        } // else, already visited or currently visiting (which means a cycle), skip
-                    }
+        int selectedCount = components.size();
+        ComponentConsumersGraph consumersGraph = new ComponentConsumersGraph(selectedCount);
+        for (int i = 0; i < components.size(); i++) {
+            for (NodeState node : components.get(i).getNodes()) {
+                if (!node.isSelected()) {
+                    continue;
                 }
-                if (pos == 0) {
-                    // have visited all consumers, so visit this node
-                    component.setVisitState(VisitState.Visited);
-                    queue.removeFirst();
-                    for (NodeState node : component.getNodes()) {
-                        if (node.isSelected()) {
-                            visitor.visitEdges(node);
-                        }
+                for (EdgeState edge : node.getIncomingEdges()) {
+                    ComponentState owner = edge.getFrom().getOwner();
+                    if (!owner.getModule().isVirtualPlatform()) {
+                        consumersGraph.addConsumer(indexComponent(owner, components));
                     }
                 }
-            } else if (component.getVisitState() == VisitState.Visiting) {
-                // have visited all consumers, so visit this node
-                component.setVisitState(VisitState.Visited);
-                queue.removeFirst();
-                for (NodeState node : component.getNodes()) {
-                    if (node.isSelected()) {
-                        visitor.visitEdges(node);
-                    }
+            }
+            consumersGraph.endComponent();
+        }
+
+        // Visit the edges after sorting the components in consumer-first order
+        for (int index : consumersGraph.consumerFirstOrder(selectedCount)) {
+            for (NodeState node : components.get(index).getNodes()) {
+                if (node.isSelected()) {
+                    visitor.visitEdges(node);
                 }
-            } else {
-                // else, already visited previously, skip
-                queue.removeFirst();
             }
         }
 
         visitor.finish(resolveState.getRoot());
     }
 
-    enum VisitState {
-        NotSeen, Visiting, Visited
+    private static int indexComponent(ComponentState component, List<ComponentState> components) {
+        int index = component.getResultIndex();
+        if (index < 0) {
+            index = components.size();
+            component.setResultIndex(index);
+            components.add(component);
+        }
+        return index;
     }
 
 }
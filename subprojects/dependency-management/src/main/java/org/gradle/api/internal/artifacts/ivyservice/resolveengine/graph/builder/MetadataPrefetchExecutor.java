@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import org.gradle.concurrent.ParallelismConfiguration;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Runs the metadata prefetches of all the resolutions of a build, limiting the number of prefetch requests in flight across resolutions.
+ *
+ * The prefetches do not hold a worker lease, so the limit defaults to the maximum number of workers, and is never more than 8.
+ * The limit applies to all repositories together, since the repository serving a component is only known once it has been resolved.
+ */
+public class MetadataPrefetchExecutor implements Stoppable {
+    /**
+     * The maximum number of prefetch requests in flight for a build, 0 disables prefetching.
+     */
+    static final String MAX_CONCURRENT_REQUESTS_PROPERTY = "org.gradle.internal.resolution.metadata-prefetch.max-concurrent-requests";
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 8;
+
+    private final ExecutorFactory executorFactory;
+    private final int maxConcurrentRequests;
+    private final Deque<Runnable> waiting = new ArrayDeque<>();
+    private ManagedExecutor executor;
+    private int running;
+    private boolean stopped;
+
+    public MetadataPrefetchExecutor(ExecutorFactory executorFactory, ParallelismConfiguration parallelismConfiguration) {
+        this(executorFactory, Integer.getInteger(MAX_CONCURRENT_REQUESTS_PROPERTY, Math.min(DEFAULT_MAX_CONCURRENT_REQUESTS, parallelismConfiguration.getMaxWorkerCount())));
+    }
+
+    MetadataPrefetchExecutor(ExecutorFactory executorFactory, int maxConcurrentRequests) {
+        this.executorFactory = executorFactory;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    boolean isEnabled() {
+        return maxConcurrentRequests > 0;
+    }
+
+    /**
+     * Runs the given prefetch once fewer than the maximum number of prefetches are running. Returns false when the executor has been stopped.
+     */
+    synchronized boolean execute(Runnable prefetch) {
+        if (stopped) {
+            return false;
+        }
+        if (running >= maxConcurrentRequests) {
+            waiting.add(prefetch);
+            return true;
+        }
+        running++;
+        if (executor == null) {
+            executor = executorFactory.create("Metadata prefetch", maxConcurrentRequests);
+        }
+        executor.execute(() -> runAll(prefetch));
+        return true;
+    }
+
+    private void runAll(Runnable first) {
+        Runnable next = first;
+        while (next != null) {
+            try {
+                next.run();
+            } finally {
+                next = takeNext();
+            }
+        }
+    }
+
+    private synchronized Runnable takeNext() {
+        Runnable next = stopped ? null : waiting.poll();
+        if (next == null) {
+            running--;
+        }
+        return next;
+    }
+
+    /**
+     * Discards the prefetches which have not started, and waits for the running ones.
+     */
+    @Override
+    public void stop() {
+        ManagedExecutor executor;
+        synchronized (this) {
+            stopped = true;
+            waiting.clear();
+            executor = this.executor;
+        }
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+}
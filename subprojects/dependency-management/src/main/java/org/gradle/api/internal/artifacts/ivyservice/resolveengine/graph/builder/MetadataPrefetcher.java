@@ -0,0 +1,312 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.VersionConstraint;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationRef;
+import org.gradle.internal.operations.CurrentBuildOperationRef;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Speculatively resolves the metadata of components below the ones being resolved, so that the traversal of the graph
+ * does not need a round-trip to the repositories for every level of the graph.
+ *
+ * The dependencies to prefetch are taken from the metadata of the resolved components, before any variant has been selected,
+ * so some of them may never become part of the graph. Only dependencies on fixed versions are prefetched. The prefetched metadata
+ * is handed out once, when the graph resolves the same component. Prefetched metadata for versions other than the one selected
+ * for a module is discarded, and no further versions of such a module are prefetched.
+ *
+ * Prefetch operations run on the {@link MetadataPrefetchExecutor} of the build, so the traversal never waits for them unless it needs the component
+ * being prefetched. A component whose prefetch has not started yet is resolved by the traversal directly. Once the traversal is done, the prefetches
+ * which have not started are discarded and the running ones are abandoned.
+ */
+class MetadataPrefetcher implements ComponentMetaDataResolver, Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetadataPrefetcher.class);
+
+    /**
+     * The number of levels below the resolved components to prefetch, 0 disables prefetching.
+     */
+    static final String DEPTH_PROPERTY = "org.gradle.internal.resolution.metadata-prefetch.depth";
+    private static final int DEFAULT_DEPTH = 2;
+
+    private final ComponentMetaDataResolver delegate;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final int depth;
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final MetadataPrefetchExecutor executor;
+    private final BuildOperationRef parentOperation;
+
+    private final Map<ModuleIdentifier, Map<String, PrefetchMetadataOperation>> prefetched = new ConcurrentHashMap<>();
+    private final Set<ModuleComponentIdentifier> requested = ConcurrentHashMap.newKeySet();
+    private final Map<ModuleIdentifier, String> selectedVersions = new ConcurrentHashMap<>();
+
+    private volatile boolean stopped;
+
+    MetadataPrefetcher(ComponentMetaDataResolver delegate, VersionSelectorScheme versionSelectorScheme, int depth, BuildOperationExecutor buildOperationExecutor, MetadataPrefetchExecutor executor) {
+        this.delegate = delegate;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.depth = depth;
+        this.buildOperationExecutor = buildOperationExecutor;
+        this.executor = executor;
+        this.parentOperation = buildOperationExecutor.getCurrentOperation();
+    }
+
+    /**
+     * Creates a prefetcher configured by the system properties, or returns {@code null} when prefetching is disabled.
+     */
+    @Nullable
+    static MetadataPrefetcher create(ComponentMetaDataResolver delegate, VersionSelectorScheme versionSelectorScheme, BuildOperationExecutor buildOperationExecutor, MetadataPrefetchExecutor executor) {
+        int depth = Integer.getInteger(DEPTH_PROPERTY, DEFAULT_DEPTH);
+        if (depth <= 0 || !executor.isEnabled()) {
+            return null;
+        }
+        return new MetadataPrefetcher(delegate, versionSelectorScheme, depth, buildOperationExecutor, executor);
+    }
+
+    @Override
+    public void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+        if (componentOverrideMetadata == DefaultComponentOverrideMetadata.EMPTY && identifier instanceof ModuleComponentIdentifier) {
+            ComponentResolveMetadata metadata = takePrefetched((ModuleComponentIdentifier) identifier);
+            if (metadata != null) {
+                result.resolved(metadata);
+                prefetchDependenciesOf(metadata, 1);
+                return;
+            }
+        }
+        delegate.resolve(identifier, componentOverrideMetadata, result);
+        if (identifier instanceof ModuleComponentIdentifier && result.hasResult() && result.getFailure() == null) {
+            prefetchDependenciesOf(result.getMetadata(), 1);
+        }
+    }
+
+    @Override
+    public boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+        if (identifier instanceof ModuleComponentIdentifier) {
+            ModuleComponentIdentifier id = (ModuleComponentIdentifier) identifier;
+            Map<String, PrefetchMetadataOperation> versions = prefetched.get(id.getModuleIdentifier());
+            PrefetchMetadataOperation operation = versions == null ? null : versions.get(id.getVersion());
+            if (operation != null && operation.hasPrefetched()) {
+                return true;
+            }
+        }
+        return delegate.isFetchingMetadataCheap(identifier);
+    }
+
+    /**
+     * Records the version selected for a module by the graph traversal, discarding the metadata prefetched for other versions of the module.
+     */
+    void selected(ModuleVersionIdentifier id) {
+        String version = id.getVersion();
+        String previous = selectedVersions.put(id.getModule(), version);
+        if (!version.equals(previous)) {
+            Map<String, PrefetchMetadataOperation> versions = prefetched.get(id.getModule());
+            if (versions != null) {
+                versions.entrySet().removeIf(entry -> {
+                    if (entry.getKey().equals(version)) {
+                        return false;
+                    }
+                    entry.getValue().cancel();
+                    return true;
+                });
+            }
+        }
+    }
+
+    /**
+     * Discards the prefetch operations which have not started yet. The running ones are abandoned rather than waited for,
+     * since the graph traversal does not need their result anymore.
+     */
+    @Override
+    public void stop() {
+        stopped = true;
+        for (Map<String, PrefetchMetadataOperation> versions : prefetched.values()) {
+            for (PrefetchMetadataOperation operation : versions.values()) {
+                operation.cancel();
+            }
+        }
+        prefetched.clear();
+    }
+
+    private void prefetchDependenciesOf(ComponentResolveMetadata metadata, int level) {
+        if (level > depth || stopped) {
+            return;
+        }
+        for (ModuleComponentIdentifier id : fixedVersionDependenciesOf(metadata)) {
+            if (!isLosingVersion(id) && requested.add(id)) {
+                PrefetchMetadataOperation operation = new PrefetchMetadataOperation(id, level);
+                prefetched.computeIfAbsent(id.getModuleIdentifier(), module -> new ConcurrentHashMap<>()).put(id.getVersion(), operation);
+                if (stopped || !executor.execute(operation)) {
+                    operation.cancel();
+                }
+            }
+        }
+    }
+
+    private List<ModuleComponentIdentifier> fixedVersionDependenciesOf(ComponentResolveMetadata metadata) {
+        Optional<ImmutableList<? extends ConfigurationMetadata>> variants = metadata.getVariantsForGraphTraversal();
+        List<? extends ConfigurationMetadata> configurations;
+        if (variants.isPresent() && !variants.get().isEmpty()) {
+            configurations = variants.get();
+        } else {
+            ConfigurationMetadata defaultConfiguration = metadata.getConfiguration(Dependency.DEFAULT_CONFIGURATION);
+            configurations = defaultConfiguration == null ? Collections.emptyList() : Collections.singletonList(defaultConfiguration);
+        }
+        List<ModuleComponentIdentifier> ids = new ArrayList<>();
+        for (ConfigurationMetadata configuration : configurations) {
+            for (DependencyMetadata dependency : configuration.getDependencies()) {
+                if (dependency.isConstraint() || dependency.isChanging() || !dependency.getArtifacts().isEmpty() || !(dependency.getSelector() instanceof ModuleComponentSelector)) {
+                    continue;
+                }
+                ModuleComponentSelector selector = (ModuleComponentSelector) dependency.getSelector();
+                String version = fixedVersionOf(selector.getVersionConstraint());
+                if (version != null) {
+                    ids.add(DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId(selector.getGroup(), selector.getModule()), version));
+                }
+            }
+        }
+        return ids;
+    }
+
+    @Nullable
+    private String fixedVersionOf(VersionConstraint versionConstraint) {
+        if (versionConstraint.getBranch() != null) {
+            return null;
+        }
+        String version = versionConstraint.getStrictVersion().isEmpty() ? versionConstraint.getRequiredVersion() : versionConstraint.getStrictVersion();
+        if (version.isEmpty() || versionSelectorScheme.parseSelector(version).isDynamic()) {
+            return null;
+        }
+        return version;
+    }
+
+    private boolean isLosingVersion(ModuleComponentIdentifier id) {
+        String selectedVersion = selectedVersions.get(id.getModuleIdentifier());
+        return selectedVersion != null && !selectedVersion.equals(id.getVersion());
+    }
+
+    /**
+     * Takes the metadata prefetched for the given component, waiting for the prefetch to complete when it is running.
+     * Returns {@code null} when the component has not been prefetched, or the prefetch has not started yet.
+     */
+    @Nullable
+    private ComponentResolveMetadata takePrefetched(ModuleComponentIdentifier id) {
+        Map<String, PrefetchMetadataOperation> versions = prefetched.get(id.getModuleIdentifier());
+        PrefetchMetadataOperation operation = versions == null ? null : versions.remove(id.getVersion());
+        if (operation == null || operation.cancel()) {
+            return null;
+        }
+        return operation.result.join();
+    }
+
+    private class PrefetchMetadataOperation implements RunnableBuildOperation, Runnable {
+        private final ModuleComponentIdentifier id;
+        private final int level;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<ComponentResolveMetadata> result = new CompletableFuture<>();
+
+        PrefetchMetadataOperation(ModuleComponentIdentifier id, int level) {
+            this.id = id;
+            this.level = level;
+        }
+
+        /**
+         * Prevents the prefetch from running, returning false when it has already started.
+         */
+        boolean cancel() {
+            if (claimed.compareAndSet(false, true)) {
+                result.complete(null);
+                return true;
+            }
+            return false;
+        }
+
+        boolean hasPrefetched() {
+            return result.isDone() && result.join() != null;
+        }
+
+        @Override
+        public void run() {
+            if (claimed.compareAndSet(false, true)) {
+                CurrentBuildOperationRef.instance().set(parentOperation);
+                try {
+                    buildOperationExecutor.run(this);
+                } finally {
+                    CurrentBuildOperationRef.instance().set(null);
+                }
+            }
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            ComponentResolveMetadata metadata = null;
+            try {
+                if (!isLosingVersion(id)) {
+                    DefaultBuildableComponentResolveResult resolveResult = new DefaultBuildableComponentResolveResult();
+                    delegate.resolve(id, DefaultComponentOverrideMetadata.EMPTY, resolveResult);
+                    if (resolveResult.hasResult() && resolveResult.getFailure() == null && !isLosingVersion(id)) {
+                        metadata = resolveResult.getMetadata();
+                        prefetchDependenciesOf(metadata, level + 1);
+                    }
+                }
+            } catch (Exception e) {
+                // Prefetching is speculative, so the graph traversal reports the failure if the component is needed
+                LOGGER.debug("Could not prefetch metadata for {}", id, e);
+            } finally {
+                result.complete(metadata);
+            }
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Prefetch metadata of " + id.getDisplayName());
+        }
+    }
+}
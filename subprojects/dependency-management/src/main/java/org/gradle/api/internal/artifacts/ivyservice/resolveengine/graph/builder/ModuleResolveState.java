@@ -64,7 +64,8 @@ class ModuleResolveState implements CandidateModule {
     private final IdGenerator<Long> idGenerator;
     private final ModuleIdentifier id;
     private final List<EdgeState> unattachedDependencies = new LinkedList<>();
-    private final Map<ModuleVersionIdentifier, ComponentState> versions = new LinkedHashMap<>();
+    // Keyed by version only, as all versions belong to this module
+    private final Map<String, ComponentState> versions = new LinkedHashMap<>();
     private final ModuleSelectors<SelectorState> selectors;
     private final ConflictResolution conflictResolution;
     private final AttributeDesugaring attributeDesugaring;
@@ -302,10 +303,10 @@ public void removeUnattachedDependency(EdgeState edge) {
     }
 
     public ComponentState getVersion(ModuleVersionIdentifier id, ComponentIdentifier componentIdentifier) {
-        ComponentState moduleRevision = versions.get(id);
+        ComponentState moduleRevision = versions.get(id.getVersion());
         if (moduleRevision == null) {
             moduleRevision = new ComponentState(idGenerator.generateId(), this, id, componentIdentifier, metaDataResolver, attributeDesugaring);
-            versions.put(id, moduleRevision);
+            versions.put(id.getVersion(), moduleRevision);
         }
         return moduleRevision;
     }
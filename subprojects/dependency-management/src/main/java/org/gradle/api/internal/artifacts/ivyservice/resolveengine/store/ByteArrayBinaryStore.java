@@ -0,0 +1,121 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.cache.internal.BinaryStore;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.kryo.StringDeduplicatingKryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.StringDeduplicatingKryoBackedEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A binary store which keeps a single stream of data in memory.
+ *
+ * Unlike {@link DefaultBinaryStore}, the contents are self-contained, so they can be kept after the build and read by a later store.
+ */
+public class ByteArrayBinaryStore implements BinaryStore {
+    private ByteArrayOutputStream output;
+    private StringDeduplicatingKryoBackedEncoder encoder;
+    private byte[] contents;
+
+    public ByteArrayBinaryStore() {
+        this.output = new ByteArrayOutputStream();
+    }
+
+    /**
+     * Creates a store containing the given contents, which have been written by another store.
+     */
+    public ByteArrayBinaryStore(byte[] contents) {
+        this.contents = contents;
+    }
+
+    @Override
+    public void write(WriteAction write) {
+        if (output == null) {
+            throw new IllegalStateException("Cannot write to " + this + " after it has been completed.");
+        }
+        if (encoder == null) {
+            encoder = new StringDeduplicatingKryoBackedEncoder(output);
+        }
+        try {
+            write.write(encoder);
+        } catch (Exception e) {
+            throw new RuntimeException("Problems writing to " + this, e);
+        }
+    }
+
+    @Override
+    public BinaryData done() {
+        if (output != null) {
+            if (encoder != null) {
+                encoder.done();
+                encoder.flush();
+            }
+            contents = output.toByteArray();
+            output = null;
+            encoder = null;
+        }
+        return new ByteArrayBinaryData(contents);
+    }
+
+    /**
+     * Returns the contents of this store, once it has been completed.
+     */
+    public byte[] getContents() {
+        if (contents == null) {
+            throw new IllegalStateException("Cannot query the contents of " + this + " before it has been completed.");
+        }
+        return contents;
+    }
+
+    @Override
+    public String toString() {
+        return "In-memory binary store";
+    }
+
+    private static class ByteArrayBinaryData implements BinaryData {
+        private final byte[] contents;
+        private Decoder decoder;
+
+        ByteArrayBinaryData(byte[] contents) {
+            this.contents = contents;
+        }
+
+        @Override
+        public <T> T read(ReadAction<T> readAction) {
+            try {
+                if (decoder == null) {
+                    decoder = new StringDeduplicatingKryoBackedDecoder(new ByteArrayInputStream(contents));
+                }
+                return readAction.read(decoder);
+            } catch (Exception e) {
+                throw new RuntimeException("Problems reading data from " + this, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            decoder = null;
+        }
+
+        @Override
+        public String toString() {
+            return "In-memory binary data (" + contents.length + " bytes)";
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheLockingManager;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.HashCodeSerializer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Stores the resolved graphs next to the module metadata in the dependency cache.
+ */
+public class DefaultResolvedGraphCache implements ResolvedGraphCache {
+    private final ArtifactCacheLockingManager artifactCacheLockingManager;
+    private final boolean refresh;
+    private PersistentIndexedCache<HashCode, byte[]> cache;
+
+    /**
+     * @param refresh when true, stored graphs are not used, but replaced with the newly resolved ones.
+     */
+    public DefaultResolvedGraphCache(ArtifactCacheLockingManager artifactCacheLockingManager, boolean refresh) {
+        this.artifactCacheLockingManager = artifactCacheLockingManager;
+        this.refresh = refresh;
+    }
+
+    private synchronized PersistentIndexedCache<HashCode, byte[]> getCache() {
+        if (cache == null) {
+            cache = artifactCacheLockingManager.createCache("resolved-graphs", new HashCodeSerializer(), BaseSerializerFactory.BYTE_ARRAY_SERIALIZER);
+        }
+        return cache;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public byte[] load(HashCode key) {
+        if (refresh) {
+            return null;
+        }
+        return getCache().getIfPresent(key);
+    }
+
+    @Override
+    public void store(HashCode key, byte[] resolvedGraph) {
+        getCache().put(key, resolvedGraph);
+    }
+}
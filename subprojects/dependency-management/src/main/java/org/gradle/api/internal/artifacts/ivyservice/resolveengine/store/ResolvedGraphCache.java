@@ -0,0 +1,65 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.internal.hash.HashCode;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps the serialized resolution results of dependency graphs across builds, keyed by a fingerprint of the resolution inputs.
+ */
+public interface ResolvedGraphCache {
+    /**
+     * Enables the cache.
+     *
+     * Configurations whose graph depends on inputs which cannot be fingerprinted, like component metadata rules or
+     * metadata suppliers of repositories, are never cached. The metadata of the modules in a cached graph is assumed
+     * not to change, so builds which depend on a republished module need to run with {@code --refresh-dependencies} once.
+     *
+     * Only consumers of the resolution result of a configuration benefit from the cache. The cache is bypassed when the graph
+     * is resolved to determine the task dependencies of the configuration, and a graph loaded from the cache is resolved again
+     * as soon as its files or artifacts are queried. Configurations used as classpaths by tasks are therefore resolved as before.
+     */
+    String ENABLED_PROPERTY = "org.gradle.unsafe.resolved-graph-cache";
+
+    ResolvedGraphCache DISABLED = new ResolvedGraphCache() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Nullable
+        @Override
+        public byte[] load(HashCode key) {
+            return null;
+        }
+
+        @Override
+        public void store(HashCode key, byte[] resolvedGraph) {
+        }
+    };
+
+    boolean isEnabled();
+
+    /**
+     * Returns the contents of the {@link ByteArrayBinaryStore} stored for the given key, or {@code null} when there are none.
+     */
+    @Nullable
+    byte[] load(HashCode key);
+
+    void store(HashCode key, byte[] resolvedGraph);
+}
@@ -36,6 +36,7 @@
 import org.gradle.internal.action.DefaultConfigurableRule;
 import org.gradle.internal.action.DefaultConfigurableRules;
 import org.gradle.internal.action.InstantiatingAction;
+import org.gradle.internal.hash.Hasher;
 import org.gradle.internal.instantiation.InstantiatorFactory;
 import org.gradle.internal.isolation.IsolatableFactory;
 import org.gradle.internal.reflect.Instantiator;
@@ -132,6 +133,20 @@ public void content(Action<? super RepositoryContentDescriptor> configureAction)
         configureAction.execute(repositoryContentDescriptor.get());
     }
 
+    /**
+     * Adds the definition of the content filter of this repository to the given hasher.
+     */
+    public void appendContentFilterToHasher(Hasher hasher) {
+        repositoryContentDescriptor.get().appendToHasher(hasher);
+    }
+
+    /**
+     * Returns whether a component metadata supplier or version lister rule is used to resolve components from this repository.
+     */
+    public boolean hasMetadataSupplierOrVersionLister() {
+        return componentMetadataSupplierRuleClass != null || componentMetadataListerRuleClass != null;
+    }
+
     @Nullable
     InstantiatingAction<ComponentMetadataSupplierDetails> createComponentMetadataSupplierFactory(Instantiator instantiator, IsolatableFactory isolatableFactory) {
         if (componentMetadataSupplierRuleClass != null) {
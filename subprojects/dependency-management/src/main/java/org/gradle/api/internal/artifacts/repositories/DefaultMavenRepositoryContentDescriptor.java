@@ -20,6 +20,7 @@
 import org.gradle.api.Action;
 import org.gradle.api.artifacts.repositories.MavenRepositoryContentDescriptor;
 import org.gradle.internal.Actions;
+import org.gradle.internal.hash.Hasher;
 
 import java.util.function.Supplier;
 
@@ -67,6 +68,13 @@ public Action<? super ArtifactResolutionDetails> toContentFilter() {
         return filter;
     }
 
+    @Override
+    public void appendToHasher(Hasher hasher) {
+        super.appendToHasher(hasher);
+        hasher.putBoolean(snapshots);
+        hasher.putBoolean(releases);
+    }
+
     @Override
     public RepositoryContentDescriptorInternal asMutableCopy() {
         DefaultMavenRepositoryContentDescriptor copy = new DefaultMavenRepositoryContentDescriptor(getRepositoryNameSupplier());
@@ -32,14 +32,19 @@
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
 import org.gradle.internal.Actions;
 import org.gradle.internal.Cast;
+import org.gradle.internal.hash.Hasher;
 
 import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 class DefaultRepositoryContentDescriptor implements RepositoryContentDescriptorInternal {
     private Set<String> includedConfigurations;
@@ -106,6 +111,50 @@ public RepositoryContentDescriptorInternal asMutableCopy() {
         return copy;
     }
 
+    @Override
+    public void appendToHasher(Hasher hasher) {
+        putStrings(hasher, includedConfigurations);
+        putStrings(hasher, excludedConfigurations);
+        putSpecs(hasher, includeSpecs);
+        putSpecs(hasher, excludeSpecs);
+        if (requiredAttributes == null) {
+            hasher.putNull();
+        } else {
+            List<Attribute<Object>> attributes = requiredAttributes.keySet().stream()
+                .sorted(Comparator.comparing(Attribute::getName))
+                .collect(Collectors.toList());
+            hasher.putInt(attributes.size());
+            for (Attribute<Object> attribute : attributes) {
+                hasher.putString(attribute.getName());
+                putStrings(hasher, requiredAttributes.get(attribute).stream().map(String::valueOf).collect(Collectors.toList()));
+            }
+        }
+    }
+
+    private static void putStrings(Hasher hasher, @Nullable Collection<String> values) {
+        if (values == null) {
+            hasher.putNull();
+            return;
+        }
+        List<String> sortedValues = values.stream().sorted().collect(Collectors.toList());
+        hasher.putInt(sortedValues.size());
+        for (String value : sortedValues) {
+            hasher.putString(value);
+        }
+    }
+
+    private static void putSpecs(Hasher hasher, @Nullable Set<ContentSpec> specs) {
+        if (specs == null) {
+            hasher.putNull();
+            return;
+        }
+        List<ContentSpec> sortedSpecs = specs.stream().sorted(ContentSpec.ORDER).collect(Collectors.toList());
+        hasher.putInt(sortedSpecs.size());
+        for (ContentSpec spec : sortedSpecs) {
+            spec.appendToHasher(hasher);
+        }
+    }
+
     @Nullable
     private static ImmutableList<SpecMatcher> createSpecMatchers(@Nullable Set<ContentSpec> specs) {
         ImmutableList<SpecMatcher> matchers = null;
@@ -300,6 +349,11 @@ void setRequiredAttributes(@Nullable Map<Attribute<Object>, Set<Object>> require
     }
 
     private static class ContentSpec {
+        private static final Comparator<ContentSpec> ORDER = Comparator.<ContentSpec, Boolean>comparing(spec -> spec.regex)
+            .thenComparing(spec -> spec.group)
+            .thenComparing(spec -> spec.module, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(spec -> spec.version, Comparator.nullsFirst(Comparator.naturalOrder()));
+
         private final boolean regex;
         private final String group;
         private final String module;
@@ -342,6 +396,22 @@ public int hashCode() {
             return hashCode;
         }
 
+        void appendToHasher(Hasher hasher) {
+            hasher.putBoolean(regex);
+            hasher.putString(group);
+            putNullableString(hasher, module);
+            putNullableString(hasher, version);
+            hasher.putBoolean(inclusive);
+        }
+
+        private static void putNullableString(Hasher hasher, @Nullable String value) {
+            if (value == null) {
+                hasher.putNull();
+            } else {
+                hasher.putString(value);
+            }
+        }
+
         SpecMatcher toMatcher() {
             if (regex) {
                 return new PatternSpecMatcher(group, module, version, inclusive);
@@ -17,8 +17,14 @@
 
 import org.gradle.api.Action;
 import org.gradle.api.artifacts.repositories.RepositoryContentDescriptor;
+import org.gradle.internal.hash.Hasher;
 
 public interface RepositoryContentDescriptorInternal extends RepositoryContentDescriptor {
     Action<? super ArtifactResolutionDetails> toContentFilter();
     RepositoryContentDescriptorInternal asMutableCopy();
+
+    /**
+     * Adds the definition of the content filter to the given hasher, so that descriptors filtering the same content have the same hash.
+     */
+    void appendToHasher(Hasher hasher);
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories
+
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.simple.DefaultExcludeFactory
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ExcludeSpec
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.function.Supplier
+
+class CachingExcludeFactoryTest extends Specification {
+    def specs = new DefaultExcludeFactory()
+    def one = specs.group("org")
+    def two = specs.module("foo")
+    def three = specs.group("com")
+    def delegate = Mock(ExcludeFactory)
+    def caches = new CachingExcludeFactory.MergeCaches()
+    def factory = new CachingExcludeFactory(delegate, caches)
+
+    def "merges a pair of specs once"() {
+        def merged = specs.anyOf(one, two)
+
+        when:
+        def first = factory.anyOf(one, two)
+        def second = factory.anyOf(one, two)
+
+        then:
+        1 * delegate.anyOf(one, two) >> merged
+        0 * delegate._
+        first.is(merged)
+        second.is(merged)
+    }
+
+    def "shares merged specs between factories using the same caches"() {
+        def merged = specs.allOf(one, two)
+        def other = new CachingExcludeFactory(Mock(ExcludeFactory), caches)
+
+        when:
+        factory.allOf(one, two)
+        def result = other.allOf(one, two)
+
+        then:
+        1 * delegate.allOf(one, two) >> merged
+        result.is(merged)
+    }
+
+    def "delegate can merge specs through the caches while merging"() {
+        def inner = specs.allOf(two, three)
+        def merged = specs.anyOf(one, inner)
+
+        when:
+        def result = factory.anyOf(one, two)
+
+        then:
+        1 * delegate.anyOf(one, two) >> { factory.anyOf(one, factory.allOf(two, three)) }
+        1 * delegate.allOf(two, three) >> inner
+        1 * delegate.anyOf(one, inner) >> merged
+        result.is(merged)
+
+        when:
+        def cachedInner = factory.allOf(two, three)
+
+        then:
+        0 * delegate._
+        cachedInner.is(inner)
+    }
+
+    @Timeout(10)
+    def "does not hold a lock while merging and returns the first stored spec to concurrent callers"() {
+        def merging = new CountDownLatch(2)
+        def delegate = Stub(ExcludeFactory) {
+            anyOf(one, two) >> {
+                merging.countDown()
+                // Both callers merge at the same time
+                merging.await()
+                specs.anyOf(one, specs.moduleSet(["foo"] as Set))
+            }
+        }
+        def factory = new CachingExcludeFactory(delegate, caches)
+
+        when:
+        def first = CompletableFuture.supplyAsync({ factory.anyOf(one, two) } as Supplier<ExcludeSpec>)
+        def second = CompletableFuture.supplyAsync({ factory.anyOf(one, two) } as Supplier<ExcludeSpec>)
+
+        then:
+        first.get().is(second.get())
+        factory.anyOf(one, two).is(first.get())
+    }
+}
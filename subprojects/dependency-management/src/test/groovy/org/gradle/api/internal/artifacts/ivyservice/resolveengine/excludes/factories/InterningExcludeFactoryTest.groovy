@@ -0,0 +1,60 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories
+
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.simple.DefaultExcludeFactory
+import spock.lang.Specification
+
+import static org.gradle.api.internal.artifacts.DefaultModuleIdentifier.newId
+
+class InterningExcludeFactoryTest extends Specification {
+    def factory = new InterningExcludeFactory(new DefaultExcludeFactory())
+
+    def "equal specs are the same instance"() {
+        expect:
+        factory.group("org").is(factory.group("org"))
+        factory.module("foo").is(factory.module("foo"))
+        factory.moduleId(newId("org", "foo")).is(factory.moduleId(newId("org", "foo")))
+        factory.moduleIdSet([newId("org", "foo"), newId("org", "bar")] as Set).is(factory.moduleIdSet([newId("org", "bar"), newId("org", "foo")] as Set))
+        factory.groupSet(["org", "com"] as Set).is(factory.groupSet(["com", "org"] as Set))
+        factory.moduleSet(["foo", "bar"] as Set).is(factory.moduleSet(["bar", "foo"] as Set))
+        factory.anyOf(factory.group("org"), factory.module("foo")).is(factory.anyOf([factory.module("foo"), factory.group("org")] as Set))
+        factory.allOf(factory.group("org"), factory.module("foo")).is(factory.allOf([factory.module("foo"), factory.group("org")] as Set))
+    }
+
+    def "different specs are different instances"() {
+        expect:
+        !factory.group("org").is(factory.group("com"))
+        !factory.anyOf(factory.group("org"), factory.module("foo")).is(factory.allOf(factory.group("org"), factory.module("foo")))
+    }
+
+    def "interned composite specs exclude the same modules as their components"() {
+        def spec = factory.allOf(
+            factory.anyOf(factory.group("org"), factory.module("foo")),
+            factory.anyOf(factory.moduleId(newId("org", "bar")), factory.moduleId(newId("com", "foo")))
+        )
+
+        expect:
+        // twice, as composite specs memoize their results
+        2.times {
+            assert spec.excludes(newId("org", "bar"))
+            assert spec.excludes(newId("com", "foo"))
+            assert !spec.excludes(newId("org", "baz"))
+            assert !spec.excludes(newId("com", "bar"))
+        }
+    }
+}
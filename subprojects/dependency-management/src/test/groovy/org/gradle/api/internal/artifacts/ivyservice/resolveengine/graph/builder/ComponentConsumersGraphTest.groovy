@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder
+
+import spock.lang.Specification
+
+class ComponentConsumersGraphTest extends Specification {
+
+    def "orders consumers before the components they consume"() {
+        // 0 consumes 1 and 2, 1 consumes 2
+        def graph = graph([[], [0], [1, 0]])
+
+        expect:
+        graph.consumerFirstOrder(3) as List == [0, 1, 2]
+    }
+
+    def "visits start components in order"() {
+        def graph = graph([[], [], [1], [0]])
+
+        expect:
+        graph.consumerFirstOrder(4) as List == [0, 1, 2, 3]
+    }
+
+    def "visits consumers of a component in the order they were added"() {
+        // 3 consumes 0, 0 consumes 1 and 2, which both consume 3
+        def graph = graph([[3], [0], [0], [2, 1]])
+
+        expect:
+        graph.consumerFirstOrder(1) as List == [2, 1, 3, 0]
+    }
+
+    def "orders the component through which a cycle is entered last"() {
+        // 0 consumes 1, which consumes 2, which consumes 1
+        def graph = graph([[], [0, 2], [1]])
+
+        expect:
+        graph.consumerFirstOrder(3) as List == [0, 2, 1]
+    }
+
+    def "includes consumers which are not start components"() {
+        def graph = graph([[1], [], [0, 1]])
+
+        expect:
+        graph.consumerFirstOrder(1) as List == [1, 0]
+    }
+
+    def "grows beyond the expected number of components"() {
+        def consumers = (0..<100).collect { it == 0 ? [] : [it - 1] }
+        def graph = graph(consumers, 1)
+
+        expect:
+        graph.componentCount == 100
+        graph.consumerFirstOrder(100) as List == (0..<100).toList()
+    }
+
+    private static ComponentConsumersGraph graph(List<List<Integer>> consumers, int expectedComponents = consumers.size()) {
+        def graph = new ComponentConsumersGraph(expectedComponents)
+        consumers.each { componentConsumers ->
+            componentConsumers.each { graph.addConsumer(it) }
+            graph.endComponent()
+        }
+        return graph
+    }
+}
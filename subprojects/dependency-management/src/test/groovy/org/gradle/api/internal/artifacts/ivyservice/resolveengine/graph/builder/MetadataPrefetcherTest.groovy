@@ -0,0 +1,375 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder
+
+import com.google.common.base.Optional
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.dependencies.DefaultMutableVersionConstraint
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.model.ComponentResolveMetadata
+import org.gradle.internal.component.model.ConfigurationMetadata
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata
+import org.gradle.internal.component.model.DependencyMetadata
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.ManagedExecutor
+import org.gradle.internal.operations.BuildOperationContext
+import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.util.concurrent.CountDownLatch
+
+class MetadataPrefetcherTest extends Specification {
+    def delegate = Mock(ComponentMetaDataResolver)
+    def versionSelectorScheme = new DefaultVersionSelectorScheme(new DefaultVersionComparator(), new VersionParser())
+    def buildOperationExecutor = Stub(BuildOperationExecutor) {
+        run(_) >> { args -> args[0].run(Stub(BuildOperationContext)) }
+    }
+    def executor = Stub(ManagedExecutor) {
+        execute(_) >> { args -> args[0].run() }
+    }
+    def deferred = []
+    def deferredExecutor = Mock(ManagedExecutor) {
+        _ * execute(_) >> { args -> deferred << args[0] }
+    }
+
+    def "prefetches dependencies of resolved components up to the configured depth"() {
+        def prefetcher = prefetcher(2, 4)
+        def c = component("c", "1.0")
+        def b = component("b", "1.0", c)
+        def a = component("a", "1.0", b)
+
+        when:
+        def result = resolve(prefetcher, id("a", "1.0"))
+
+        then:
+        result.metadata.is(a)
+        1 * delegate.resolve(id("a", "1.0"), DefaultComponentOverrideMetadata.EMPTY, _) >> { args -> args[2].resolved(a) }
+        1 * delegate.resolve(id("b", "1.0"), DefaultComponentOverrideMetadata.EMPTY, _) >> { args -> args[2].resolved(b) }
+        1 * delegate.resolve(id("c", "1.0"), DefaultComponentOverrideMetadata.EMPTY, _) >> { args -> args[2].resolved(c) }
+        0 * delegate._
+
+        when:
+        result = resolve(prefetcher, id("b", "1.0"))
+
+        then:
+        result.metadata.is(b)
+        prefetcher.isFetchingMetadataCheap(id("c", "1.0"))
+        0 * delegate.resolve(_, _, _)
+    }
+
+    def "prefetches further levels as prefetched components are used"() {
+        def prefetcher = prefetcher(1, 4)
+        def c = component("c", "1.0")
+        def b = component("b", "1.0", c)
+        def a = component("a", "1.0", b)
+
+        when:
+        resolve(prefetcher, id("a", "1.0"))
+
+        then:
+        1 * delegate.resolve(id("a", "1.0"), _, _) >> { args -> args[2].resolved(a) }
+        1 * delegate.resolve(id("b", "1.0"), _, _) >> { args -> args[2].resolved(b) }
+        0 * delegate._
+
+        when:
+        resolve(prefetcher, id("b", "1.0"))
+
+        then:
+        1 * delegate.resolve(id("c", "1.0"), _, _) >> { args -> args[2].resolved(c) }
+        0 * delegate._
+    }
+
+    def "prefetched metadata is used once"() {
+        def prefetcher = prefetcher(1, 4)
+        def b = component("b", "1.0")
+        def a = component("a", "1.0", b)
+        1 * delegate.resolve(id("a", "1.0"), _, _) >> { args -> args[2].resolved(a) }
+        1 * delegate.resolve(id("b", "1.0"), _, _) >> { args -> args[2].resolved(b) }
+        resolve(prefetcher, id("a", "1.0"))
+        resolve(prefetcher, id("b", "1.0"))
+
+        when:
+        resolve(prefetcher, id("b", "1.0"))
+
+        then:
+        1 * delegate.resolve(id("b", "1.0"), _, _) >> { args -> args[2].resolved(b) }
+    }
+
+    def "does not prefetch dynamic versions"() {
+        def prefetcher = prefetcher(2, 4)
+        def a = component("a", "1.0", dependency("b", "1.+"), dependency("c", "[1.0,2.0)"), dependency("d", "latest.release"))
+
+        when:
+        resolve(prefetcher, id("a", "1.0"))
+
+        then:
+        1 * delegate.resolve(id("a", "1.0"), _, _) >> { args -> args[2].resolved(a) }
+        0 * delegate._
+    }
+
+    def "discards prefetched metadata for versions which are not selected"() {
+        def prefetcher = prefetcher(1, 4)
+        def b1 = component("b", "1.0")
+        def b2 = component("b", "2.0")
+        def a = component("a", "1.0", b1, b2)
+        1 * delegate.resolve(id("a", "1.0"), _, _) >> { args -> args[2].resolved(a) }
+        1 * delegate.resolve(id("b", "1.0"), _, _) >> { args -> args[2].resolved(b1) }
+        1 * delegate.resolve(id("b", "2.0"), _, _) >> { args -> args[2].resolved(b2) }
+        resolve(prefetcher, id("a", "1.0"))
+
+        when:
+        prefetcher.selected(b2.moduleVersionId)
+        def result = resolve(prefetcher, id("b", "2.0"))
+
+        then:
+        result.metadata.is(b2)
+        !prefetcher.isFetchingMetadataCheap(id("b", "1.0"))
+        0 * delegate.resolve(_, _, _)
+    }
+
+    def "does not prefetch versions of modules for which another version has been selected"() {
+        def prefetcher = prefetcher(1, 4)
+        def b1 = component("b", "1.0")
+        def a = component("a", "1.0", b1)
+        prefetcher.selected(component("b", "2.0").moduleVersionId)
+
+        when:
+        resolve(prefetcher, id("a", "1.0"))
+
+        then:
+        1 * delegate.resolve(id("a", "1.0"), _, _) >> { args -> args[2].resolved(a) }
+        0 * delegate._
+    }
+
+    def "limits the number of concurrent requests"() {
+        def prefetcher = prefetcher(1, 2, deferredExecutor)
+        def dependencies = (1..5).collect { component("b$it", "1.0") }
+        def a = component("a", "1.0", *dependencies)
+        def leaf = component("leaf", "1.0")
+
+        when:
+        resolve(prefetcher, id("a", "1.0"))
+
+        then:
+        1 * delegate.resolve(id("a", "1.0"), _, _) >> { args -> args[2].resolved(a) }
+        deferred.size() == 2
+
+        when:
+        while (!deferred.empty) {
+            deferred.remove(0).run()
+        }
+
+        then:
+        5 * delegate.resolve(_, _, _) >> { args -> args[2].resolved(leaf) }
+    }
+
+    def "resolves a component whose prefetch has not started without waiting for it"() {
+        def prefetcher = prefetcher(1, 1, deferredExecutor)
+        def b = component("b", "1.0")
+        def c = component("c", "1.0")
+        def a = component("a", "1.0", b, c)
+        1 * delegate.resolve(id("a", "1.0"), _, _) >> { args -> args[2].resolved(a) }
+        resolve(prefetcher, id("a", "1.0"))
+
+        when:
+        def result = resolve(prefetcher, id("c", "1.0"))
+
+        then:
+        result.metadata.is(c)
+        1 * delegate.resolve(id("c", "1.0"), _, _) >> { args -> args[2].resolved(c) }
+        0 * delegate._
+
+        when:
+        while (!deferred.empty) {
+            deferred.remove(0).run()
+        }
+
+        then:
+        1 * delegate.resolve(id("b", "1.0"), _, _) >> { args -> args[2].resolved(b) }
+        0 * delegate._
+    }
+
+    def "discards the prefetches which have not started when stopped"() {
+        def prefetcher = prefetcher(1, 1, deferredExecutor)
+        def b = component("b", "1.0")
+        def c = component("c", "1.0")
+        def a = component("a", "1.0", b, c)
+        1 * delegate.resolve(id("a", "1.0"), _, _) >> { args -> args[2].resolved(a) }
+        resolve(prefetcher, id("a", "1.0"))
+
+        when:
+        prefetcher.stop()
+
+        then:
+        0 * deferredExecutor.stop()
+
+        when:
+        while (!deferred.empty) {
+            deferred.remove(0).run()
+        }
+
+        then:
+        0 * delegate._
+    }
+
+    @Timeout(10)
+    def "does not wait for running prefetches when stopped"() {
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def threads = []
+        def threadExecutor = Stub(ManagedExecutor) {
+            execute(_) >> { args ->
+                def thread = new Thread(args[0] as Runnable)
+                threads << thread
+                thread.start()
+            }
+        }
+        def prefetcher = prefetcher(2, 4, threadExecutor)
+        def c = component("c", "1.0")
+        def b = component("b", "1.0", c)
+        def a = component("a", "1.0", b)
+        1 * delegate.resolve(id("a", "1.0"), _, _) >> { args -> args[2].resolved(a) }
+        1 * delegate.resolve(id("b", "1.0"), _, _) >> { args ->
+            started.countDown()
+            release.await()
+            args[2].resolved(b)
+        }
+        resolve(prefetcher, id("a", "1.0"))
+        started.await()
+
+        when:
+        prefetcher.stop()
+        release.countDown()
+        threads.each { it.join() }
+
+        then:
+        0 * delegate._
+    }
+
+    def "limits the number of concurrent requests across the prefetchers of a build"() {
+        def prefetchExecutor = prefetchExecutor(1, deferredExecutor)
+        def first = new MetadataPrefetcher(delegate, versionSelectorScheme, 1, buildOperationExecutor, prefetchExecutor)
+        def second = new MetadataPrefetcher(delegate, versionSelectorScheme, 1, buildOperationExecutor, prefetchExecutor)
+        def b = component("b", "1.0")
+        def c = component("c", "1.0")
+        def a = component("a", "1.0", b)
+        def d = component("d", "1.0", c)
+        1 * delegate.resolve(id("a", "1.0"), _, _) >> { args -> args[2].resolved(a) }
+        1 * delegate.resolve(id("d", "1.0"), _, _) >> { args -> args[2].resolved(d) }
+
+        when:
+        resolve(first, id("a", "1.0"))
+        resolve(second, id("d", "1.0"))
+
+        then:
+        deferred.size() == 1
+
+        when:
+        deferred.remove(0).run()
+
+        then:
+        1 * delegate.resolve(id("b", "1.0"), _, _) >> { args -> args[2].resolved(b) }
+        1 * delegate.resolve(id("c", "1.0"), _, _) >> { args -> args[2].resolved(c) }
+        0 * delegate._
+    }
+
+    def "does not prefetch once the build has completed"() {
+        def prefetchExecutor = prefetchExecutor(4, deferredExecutor)
+        def prefetcher = new MetadataPrefetcher(delegate, versionSelectorScheme, 1, buildOperationExecutor, prefetchExecutor)
+        def b = component("b", "1.0")
+        def a = component("a", "1.0", b)
+
+        when:
+        prefetchExecutor.stop()
+        resolve(prefetcher, id("a", "1.0"))
+        def result = resolve(prefetcher, id("b", "1.0"))
+
+        then:
+        result.metadata.is(b)
+        deferred.empty
+        1 * delegate.resolve(id("a", "1.0"), _, _) >> { args -> args[2].resolved(a) }
+        1 * delegate.resolve(id("b", "1.0"), _, _) >> { args -> args[2].resolved(b) }
+        0 * delegate._
+    }
+
+    def "ignores failures to prefetch metadata"() {
+        def prefetcher = prefetcher(1, 4)
+        def b = component("b", "1.0")
+        def a = component("a", "1.0", b)
+
+        when:
+        resolve(prefetcher, id("a", "1.0"))
+        resolve(prefetcher, id("b", "1.0"))
+
+        then:
+        1 * delegate.resolve(id("a", "1.0"), _, _) >> { args -> args[2].resolved(a) }
+        1 * delegate.resolve(id("b", "1.0"), _, _) >> { throw new RuntimeException("broken") }
+
+        then:
+        1 * delegate.resolve(id("b", "1.0"), _, _) >> { args -> args[2].resolved(b) }
+    }
+
+    private MetadataPrefetcher prefetcher(int depth, int maxConcurrentRequests, ManagedExecutor executor = this.executor) {
+        new MetadataPrefetcher(delegate, versionSelectorScheme, depth, buildOperationExecutor, prefetchExecutor(maxConcurrentRequests, executor))
+    }
+
+    private MetadataPrefetchExecutor prefetchExecutor(int maxConcurrentRequests, ManagedExecutor executor) {
+        new MetadataPrefetchExecutor(Stub(ExecutorFactory) {
+            create(_, _) >> executor
+        }, maxConcurrentRequests)
+    }
+
+    private static BuildableComponentResolveResult resolve(MetadataPrefetcher prefetcher, ModuleComponentIdentifier id) {
+        def result = new DefaultBuildableComponentResolveResult()
+        prefetcher.resolve(id, DefaultComponentOverrideMetadata.EMPTY, result)
+        return result
+    }
+
+    private static ModuleComponentIdentifier id(String name, String version) {
+        DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("group", name), version)
+    }
+
+    private DependencyMetadata dependency(String name, String version) {
+        Stub(DependencyMetadata) {
+            getSelector() >> DefaultModuleComponentSelector.newSelector(DefaultModuleIdentifier.newId("group", name), new DefaultMutableVersionConstraint(version))
+            getArtifacts() >> []
+        }
+    }
+
+    private ComponentResolveMetadata component(String name, String version, Object... dependencies) {
+        def dependencyMetadata = dependencies.collect {
+            it instanceof ComponentResolveMetadata ? dependency(it.moduleVersionId.name, it.moduleVersionId.version) : it
+        }
+        def defaultConfiguration = Stub(ConfigurationMetadata) {
+            getDependencies() >> dependencyMetadata
+        }
+        Stub(ComponentResolveMetadata) {
+            getModuleVersionId() >> DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("group", name), version).moduleVersionIdentifier
+            getVariantsForGraphTraversal() >> Optional.absent()
+            getConfiguration("default") >> defaultConfiguration
+        }
+    }
+}
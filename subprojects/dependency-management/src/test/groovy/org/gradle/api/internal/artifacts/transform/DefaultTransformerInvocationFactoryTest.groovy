@@ -34,6 +34,7 @@ import org.gradle.api.internal.tasks.TaskDependencyResolveContext
 import org.gradle.api.provider.Provider
 import org.gradle.api.tasks.FileNormalizer
 import org.gradle.caching.internal.controller.BuildCacheController
+import org.gradle.caching.internal.packaging.impl.BuildCacheEntryCompression
 import org.gradle.initialization.DefaultBuildCancellationToken
 import org.gradle.internal.Try
 import org.gradle.internal.component.local.model.ComponentFileArtifactIdentifier
@@ -59,6 +60,7 @@ import org.gradle.internal.fingerprint.hashing.FileSystemLocationSnapshotHasher
 import org.gradle.internal.fingerprint.impl.AbsolutePathFileCollectionFingerprinter
 import org.gradle.internal.fingerprint.impl.DefaultFileCollectionSnapshotter
 import org.gradle.internal.hash.ClassLoaderHierarchyHasher
+import org.gradle.internal.hash.FileContentHashingMode
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.hash.TestHashCodes
 import org.gradle.internal.id.UniqueId
@@ -68,6 +70,7 @@ import org.gradle.internal.scopeids.id.BuildInvocationScopeId
 import org.gradle.internal.service.ServiceRegistry
 import org.gradle.internal.service.scopes.ExecutionGradleServices
 import org.gradle.internal.snapshot.impl.DefaultValueSnapshotter
+import org.gradle.internal.vfs.FileChangeJournal
 import org.gradle.test.fixtures.AbstractProjectBuilderSpec
 import org.gradle.util.Path
 import org.gradle.work.InputChanges
@@ -128,10 +131,11 @@ class DefaultTransformerInvocationFactoryTest extends AbstractProjectBuilderSpec
     }
     def workInputListeners = Stub(WorkInputListeners)
     def buildOutputCleanupRegistry = Mock(BuildOutputCleanupRegistry)
-    def outputSnapshotter = new DefaultOutputSnapshotter(fileCollectionSnapshotter)
+    def outputSnapshotter = new DefaultOutputSnapshotter(fileCollectionSnapshotter, fileSystemAccess)
     def deleter = TestFiles.deleter()
     def executionEngine = new ExecutionGradleServices().createExecutionEngine(
         buildCacheController,
+        BuildCacheEntryCompression.GZIP,
         cancellationToken,
         buildInvocationScopeId,
         buildOperationExecutor,
@@ -141,6 +145,8 @@ class DefaultTransformerInvocationFactoryTest extends AbstractProjectBuilderSpec
         new CurrentBuildOperationRef(),
         deleter,
         new DefaultExecutionStateChangeDetector(),
+        { locations -> FileChangeJournal.Recording.UNKNOWN_CHANGES } as FileChangeJournal,
+        FileContentHashingMode.DEFAULT,
         outputChangeListener,
         workInputListeners,
         outputFilesRepository,
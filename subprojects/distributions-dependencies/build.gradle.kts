@@ -154,6 +154,7 @@ dependencies {
         api(libs.jacksonKotlin)         { version { strictly("2.9.2") }}
         api(libs.javaParser)            { version { strictly("3.17.0") }}
         api(libs.jetty)                 { version { strictly(jettyVersion) }}
+        api(libs.jettyHttp2Server)      { version { strictly(jettyVersion) }}
         api(libs.jettySecurity)         { version { strictly(jettyVersion) }}
         api(libs.jettyWebApp)           { version { strictly(jettyVersion) }}
         api(libs.jsoup)                 { version { strictly("1.11.3") }}
@@ -38,6 +38,21 @@ public interface Details {
          */
         long getArchiveSize();
 
+        /**
+         * Whether the entry is stored in the background, some time after the work producing it has completed.
+         *
+         * @since 7.5
+         */
+        boolean isDeferred();
+
+        /**
+         * How long the entry waited to be stored after the work producing it has completed, in milliseconds.
+         * Always 0 when the entry is not {@link #isDeferred() deferred}.
+         *
+         * @since 7.5
+         */
+        long getDeferredByMillis();
+
     }
 
     public interface Result {
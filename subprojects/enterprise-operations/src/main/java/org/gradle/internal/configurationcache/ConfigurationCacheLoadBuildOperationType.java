@@ -29,6 +29,28 @@ public interface Details {
     }
 
     public interface Result {
+
+        /**
+         * The number of objects decoded while loading the state.
+         *
+         * @since 7.5
+         */
+        long getDecodedObjectCount();
+
+        /**
+         * The number of tasks whose state is only decoded when they are about to be executed.
+         *
+         * @since 7.5
+         */
+        long getDeferredTaskCount();
+
+        /**
+         * The growth of the used heap while loading the state, in bytes.
+         * This is an approximation, which can be negative when garbage has been collected in the meantime.
+         *
+         * @since 7.5
+         */
+        long getHeapGrowth();
     }
 
 }
@@ -18,6 +18,7 @@
 
 import com.google.common.collect.ImmutableSortedMap;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.gradle.internal.vfs.FileChangeJournal;
 
 import java.io.File;
 
@@ -28,6 +29,19 @@ public interface OutputSnapshotter {
     ImmutableSortedMap<String, FileSystemSnapshot> snapshotOutputs(UnitOfWork work, File workspace)
         throws OutputFileSnapshottingException;
 
+    /**
+     * Takes a snapshot of the outputs of a work, updating the snapshots of the output directories taken before the work executed
+     * with the changes made since, instead of visiting the unchanged locations in the output directories again.
+     *
+     * The outputs which can't be updated are snapshotted again.
+     */
+    ImmutableSortedMap<String, FileSystemSnapshot> snapshotOutputs(
+        UnitOfWork work,
+        File workspace,
+        ImmutableSortedMap<String, FileSystemSnapshot> outputSnapshotsBeforeExecution,
+        FileChangeJournal.RecordedChanges changesSinceBeforeExecution
+    ) throws OutputFileSnapshottingException;
+
     class OutputFileSnapshottingException extends RuntimeException {
         private final String propertyName;
 
@@ -23,21 +23,46 @@
 import org.gradle.internal.execution.caching.CachingStateFactory;
 import org.gradle.internal.execution.history.BeforeExecutionState;
 import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.HashFunction;
 import org.gradle.internal.hash.Hasher;
 import org.gradle.internal.hash.Hashing;
 import org.slf4j.Logger;
 
+import javax.annotation.Nullable;
+
 public class DefaultCachingStateFactory implements CachingStateFactory {
     private final Logger logger;
+    private final HashFunction fileContentHashFunction;
+    private final String buildCacheEntryFormat;
 
-    public DefaultCachingStateFactory(Logger logger) {
+    /**
+     * @param buildCacheEntryFormat the format of the stored entries, or {@code null} when entries are stored in the format all Gradle versions can load.
+     */
+    public DefaultCachingStateFactory(Logger logger, HashFunction fileContentHashFunction, @Nullable String buildCacheEntryFormat) {
         this.logger = logger;
+        this.fileContentHashFunction = fileContentHashFunction;
+        this.buildCacheEntryFormat = buildCacheEntryFormat;
     }
 
     @Override
     public final CachingState createCachingState(BeforeExecutionState beforeExecutionState, ImmutableList<CachingDisabledReason> cachingDisabledReasons) {
         Hasher cacheKeyHasher = Hashing.newHasher();
 
+        // File fingerprints hashed with a different function must never produce a matching key,
+        // keys for the default function are kept unchanged
+        if (fileContentHashFunction != Hashing.defaultFunction()) {
+            logger.warn("Appending file content hash function to build cache key: {}",
+                fileContentHashFunction.getAlgorithm());
+            cacheKeyHasher.putString(fileContentHashFunction.getAlgorithm());
+        }
+
+        // Entries stored in another format must not be found by clients that cannot load them
+        if (buildCacheEntryFormat != null) {
+            logger.warn("Appending build cache entry format to build cache key: {}",
+                buildCacheEntryFormat);
+            cacheKeyHasher.putString(buildCacheEntryFormat);
+        }
+
         logger.warn("Appending implementation to build cache key: {}",
             beforeExecutionState.getImplementation());
         beforeExecutionState.getImplementation().appendToHasher(cacheKeyHasher);
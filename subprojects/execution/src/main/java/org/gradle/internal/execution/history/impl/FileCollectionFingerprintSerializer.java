@@ -26,10 +26,20 @@
 import org.gradle.internal.serialize.Encoder;
 import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.ByteBufferDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 
+/**
+ * Serializes the fingerprints of a file collection, as written by {@link FingerprintMapSerializer}, as a single binary value.
+ * The fingerprints are only decoded when they are first accessed, for example when comparing them with the fingerprints of the current execution,
+ * so loading the execution history of a unit of work whose fingerprints are not compared is cheap.
+ */
 public class FileCollectionFingerprintSerializer implements Serializer<FileCollectionFingerprint> {
 
     private final FingerprintMapSerializer fingerprintMapSerializer;
@@ -44,13 +54,22 @@ public FileCollectionFingerprintSerializer(Interner<String> stringInterner) {
 
     @Override
     public FileCollectionFingerprint read(Decoder decoder) throws IOException {
-        Map<String, FileSystemLocationFingerprint> fingerprints = fingerprintMapSerializer.read(decoder);
-        if (fingerprints.isEmpty()) {
+        int fingerprintCount = decoder.readSmallInt();
+        if (fingerprintCount == 0) {
             return FileCollectionFingerprint.EMPTY;
         }
+        byte[] encodedFingerprints = decoder.readBinary();
         ImmutableMultimap<String, HashCode> rootHashes = readRootHashes(decoder);
         HashCode strategyConfigurationHash = hashCodeSerializer.read(decoder);
-        return new SerializableFileCollectionFingerprint(fingerprints, rootHashes, strategyConfigurationHash);
+        return new SerializableFileCollectionFingerprint(() -> decodeFingerprints(encodedFingerprints), rootHashes, strategyConfigurationHash);
+    }
+
+    private Map<String, FileSystemLocationFingerprint> decodeFingerprints(byte[] encodedFingerprints) {
+        try {
+            return fingerprintMapSerializer.read(new ByteBufferDecoder(ByteBuffer.wrap(encodedFingerprints)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     private ImmutableMultimap<String, HashCode> readRootHashes(Decoder decoder) throws IOException {
@@ -69,13 +88,23 @@ private ImmutableMultimap<String, HashCode> readRootHashes(Decoder decoder) thro
 
     @Override
     public void write(Encoder encoder, FileCollectionFingerprint value) throws Exception {
-        fingerprintMapSerializer.write(encoder, value.getFingerprints());
-        if (!value.getFingerprints().isEmpty()) {
+        Map<String, FileSystemLocationFingerprint> fingerprints = value.getFingerprints();
+        encoder.writeSmallInt(fingerprints.size());
+        if (!fingerprints.isEmpty()) {
+            encoder.writeBinary(encodeFingerprints(fingerprints));
             writeRootHashes(encoder, value.getRootHashes());
             hashCodeSerializer.write(encoder, ((SerializableFileCollectionFingerprint) value).getStrategyConfigurationHash());
         }
     }
 
+    private byte[] encodeFingerprints(Map<String, FileSystemLocationFingerprint> fingerprints) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+        fingerprintMapSerializer.write(encoder, fingerprints);
+        encoder.flush();
+        return outputStream.toByteArray();
+    }
+
     private void writeRootHashes(Encoder encoder, ImmutableMultimap<String, HashCode> rootHashes) throws IOException {
         encoder.writeSmallInt(rootHashes.size());
         for (Map.Entry<String, HashCode> entry : rootHashes.entries()) {
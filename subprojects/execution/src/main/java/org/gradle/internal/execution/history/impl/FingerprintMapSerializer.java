@@ -16,7 +16,6 @@
 
 package org.gradle.internal.execution.history.impl;
 
-import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Interner;
 import org.gradle.internal.file.FileType;
@@ -27,20 +26,36 @@
 import org.gradle.internal.serialize.AbstractSerializer;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
-import org.gradle.internal.serialize.HashCodeSerializer;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Writes the fingerprints of a file collection column by column, in the order of the map.
+ *
+ * <ul>
+ *     <li>The absolute paths are written as an index into a dictionary of their parent directories, followed by their file name.
+ *     Each parent directory is written once, as the length of the prefix it shares with the preceding one, followed by the rest of it.</li>
+ *     <li>The file types are written as one byte per fingerprint.</li>
+ *     <li>The normalized paths are written as the length of the suffix of the absolute path they are equal to, when they are.</li>
+ *     <li>The content hashes of regular files are written back to back with a fixed width, when they all have the same length.</li>
+ * </ul>
+ */
 public class FingerprintMapSerializer extends AbstractSerializer<Map<String, FileSystemLocationFingerprint>> {
-    private static final byte DEFAULT_NORMALIZATION = 1;
-    private static final byte IGNORED_PATH_NORMALIZATION = 2;
+    private static final byte IGNORED_PATH_NORMALIZATION = 0;
+    private static final byte SUFFIX_OF_ABSOLUTE_PATH_NORMALIZATION = 1;
+    private static final byte DEFAULT_NORMALIZATION = 2;
 
     private static final byte DIR_FINGERPRINT = 1;
     private static final byte MISSING_FILE_FINGERPRINT = 2;
     private static final byte REGULAR_FILE_FINGERPRINT = 3;
 
-    private final HashCodeSerializer hashCodeSerializer = new HashCodeSerializer();
+    private static final int VARIABLE_HASH_LENGTH = 0;
+
     private final Interner<String> stringInterner;
 
     public FingerprintMapSerializer(Interner<String> stringInterner) {
@@ -50,45 +65,85 @@ public FingerprintMapSerializer(Interner<String> stringInterner) {
     @Override
     public Map<String, FileSystemLocationFingerprint> read(Decoder decoder) throws IOException {
         int fingerprintCount = decoder.readSmallInt();
+        String[] absolutePaths = readAbsolutePaths(decoder, fingerprintCount);
+        FileType[] fileTypes = readFileTypes(decoder, fingerprintCount);
+        HashCode[] contentHashes = readContentHashes(decoder, fileTypes);
         ImmutableMap.Builder<String, FileSystemLocationFingerprint> fingerprints = ImmutableMap.builderWithExpectedSize(fingerprintCount);
         for (int i = 0; i < fingerprintCount; i++) {
-            String absolutePath = stringInterner.intern(decoder.readString());
-            FileSystemLocationFingerprint fingerprint = readFingerprint(decoder);
-            fingerprints.put(absolutePath, fingerprint);
+            String absolutePath = absolutePaths[i];
+            fingerprints.put(absolutePath, readFingerprint(decoder, absolutePath, fileTypes[i], contentHashes[i]));
         }
         return fingerprints.build();
     }
 
-    private FileSystemLocationFingerprint readFingerprint(Decoder decoder) throws IOException {
-        FileType fileType = readFileType(decoder);
-        HashCode contentHash = readContentHash(fileType, decoder);
+    private String[] readAbsolutePaths(Decoder decoder, int fingerprintCount) throws IOException {
+        String[] parents = new String[decoder.readSmallInt()];
+        String previousParent = "";
+        for (int i = 0; i < parents.length; i++) {
+            int sharedPrefixLength = decoder.readSmallInt();
+            previousParent = previousParent.substring(0, sharedPrefixLength) + decoder.readString();
+            parents[i] = previousParent;
+        }
+        String[] absolutePaths = new String[fingerprintCount];
+        for (int i = 0; i < fingerprintCount; i++) {
+            String parent = parents[decoder.readSmallInt()];
+            absolutePaths[i] = stringInterner.intern(parent + decoder.readString());
+        }
+        return absolutePaths;
+    }
+
+    private static FileType[] readFileTypes(Decoder decoder, int fingerprintCount) throws IOException {
+        FileType[] fileTypes = new FileType[fingerprintCount];
+        for (int i = 0; i < fingerprintCount; i++) {
+            fileTypes[i] = readFileType(decoder);
+        }
+        return fileTypes;
+    }
 
+    private static HashCode[] readContentHashes(Decoder decoder, FileType[] fileTypes) throws IOException {
+        HashCode[] contentHashes = new HashCode[fileTypes.length];
+        int hashLength = decoder.readSmallInt();
+        for (int i = 0; i < fileTypes.length; i++) {
+            switch (fileTypes[i]) {
+                case Directory:
+                    contentHashes[i] = FileSystemLocationFingerprint.DIR_SIGNATURE;
+                    break;
+                case Missing:
+                    contentHashes[i] = FileSystemLocationFingerprint.MISSING_FILE_SIGNATURE;
+                    break;
+                case RegularFile:
+                    if (hashLength == VARIABLE_HASH_LENGTH) {
+                        contentHashes[i] = HashCode.fromBytes(decoder.readBinary());
+                    } else {
+                        byte[] hash = new byte[hashLength];
+                        decoder.readBytes(hash);
+                        contentHashes[i] = HashCode.fromBytes(hash);
+                    }
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+        }
+        return contentHashes;
+    }
+
+    private FileSystemLocationFingerprint readFingerprint(Decoder decoder, String absolutePath, FileType fileType, HashCode contentHash) throws IOException {
         byte fingerprintKind = decoder.readByte();
         switch (fingerprintKind) {
-            case DEFAULT_NORMALIZATION:
-                String normalizedPath = decoder.readString();
-                return new DefaultFileSystemLocationFingerprint(stringInterner.intern(normalizedPath), fileType, contentHash);
             case IGNORED_PATH_NORMALIZATION:
                 return IgnoredPathFileSystemLocationFingerprint.create(fileType, contentHash);
+            case SUFFIX_OF_ABSOLUTE_PATH_NORMALIZATION:
+                int suffixLength = decoder.readSmallInt();
+                String normalizedPath = absolutePath.substring(absolutePath.length() - suffixLength);
+                return new DefaultFileSystemLocationFingerprint(stringInterner.intern(normalizedPath), fileType, contentHash);
+            case DEFAULT_NORMALIZATION:
+                return new DefaultFileSystemLocationFingerprint(stringInterner.intern(decoder.readString()), fileType, contentHash);
             default:
                 throw new RuntimeException("Unable to read serialized file fingerprint. Unrecognized value found in the data stream.");
         }
     }
 
-    private HashCode readContentHash(FileType fileType, Decoder decoder) throws IOException {
-        switch (fileType) {
-            case Directory:
-                return FileSystemLocationFingerprint.DIR_SIGNATURE;
-            case Missing:
-                return FileSystemLocationFingerprint.MISSING_FILE_SIGNATURE;
-            case RegularFile:
-                return hashCodeSerializer.read(decoder);
-            default:
-                throw new RuntimeException("Unable to read serialized file fingerprint. Unrecognized value found in the data stream.");
-        }
-    }
-
-    private FileType readFileType(Decoder decoder) throws IOException {
+    private static FileType readFileType(Decoder decoder) throws IOException {
         byte fileKind = decoder.readByte();
         switch (fileKind) {
             case DIR_FINGERPRINT:
@@ -105,30 +160,50 @@ private FileType readFileType(Decoder decoder) throws IOException {
     @Override
     public void write(Encoder encoder, Map<String, FileSystemLocationFingerprint> value) throws Exception {
         encoder.writeSmallInt(value.size());
-        for (String key : value.keySet()) {
-            encoder.writeString(key);
-            FileSystemLocationFingerprint fingerprint = value.get(key);
-            writeFingerprint(encoder, fingerprint);
+        writeAbsolutePaths(encoder, value.keySet());
+        for (FileSystemLocationFingerprint fingerprint : value.values()) {
+            writeFileType(encoder, fingerprint.getType());
+        }
+        writeContentHashes(encoder, value.values());
+        for (Map.Entry<String, FileSystemLocationFingerprint> entry : value.entrySet()) {
+            writeNormalizedPath(encoder, entry.getKey(), entry.getValue());
         }
     }
 
-    @Override
-    public boolean equals(Object obj) {
-        if (!super.equals(obj)) {
-            return false;
+    private static void writeAbsolutePaths(Encoder encoder, Iterable<String> absolutePaths) throws IOException {
+        Map<String, Integer> parentIndexes = new HashMap<>();
+        List<String> parents = new ArrayList<>();
+        List<Integer> fileParentIndexes = new ArrayList<>();
+        List<String> fileNames = new ArrayList<>();
+        for (String absolutePath : absolutePaths) {
+            int nameStart = absolutePath.lastIndexOf(File.separatorChar) + 1;
+            String parent = absolutePath.substring(0, nameStart);
+            Integer parentIndex = parentIndexes.get(parent);
+            if (parentIndex == null) {
+                parentIndex = parents.size();
+                parentIndexes.put(parent, parentIndex);
+                parents.add(parent);
+            }
+            fileParentIndexes.add(parentIndex);
+            fileNames.add(absolutePath.substring(nameStart));
         }
 
-        FingerprintMapSerializer rhs = (FingerprintMapSerializer) obj;
-        return Objects.equal(hashCodeSerializer, rhs.hashCodeSerializer);
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hashCode(super.hashCode(), hashCodeSerializer);
+        encoder.writeSmallInt(parents.size());
+        String previousParent = "";
+        for (String parent : parents) {
+            int sharedPrefixLength = sharedPrefixLength(previousParent, parent);
+            encoder.writeSmallInt(sharedPrefixLength);
+            encoder.writeString(parent.substring(sharedPrefixLength));
+            previousParent = parent;
+        }
+        for (int i = 0; i < fileNames.size(); i++) {
+            encoder.writeSmallInt(fileParentIndexes.get(i));
+            encoder.writeString(fileNames.get(i));
+        }
     }
 
-    private void writeFingerprint(Encoder encoder, FileSystemLocationFingerprint value) throws IOException {
-        switch (value.getType()) {
+    private static void writeFileType(Encoder encoder, FileType fileType) throws IOException {
+        switch (fileType) {
             case Directory:
                 encoder.writeByte(DIR_FINGERPRINT);
                 break;
@@ -137,19 +212,68 @@ private void writeFingerprint(Encoder encoder, FileSystemLocationFingerprint val
                 break;
             case RegularFile:
                 encoder.writeByte(REGULAR_FILE_FINGERPRINT);
-                hashCodeSerializer.write(encoder, value.getNormalizedContentHash());
                 break;
             default:
                 throw new AssertionError();
         }
+    }
+
+    private static void writeContentHashes(Encoder encoder, Iterable<FileSystemLocationFingerprint> fingerprints) throws IOException {
+        int hashLength = fixedHashLengthOf(fingerprints);
+        encoder.writeSmallInt(hashLength);
+        for (FileSystemLocationFingerprint fingerprint : fingerprints) {
+            if (fingerprint.getType() == FileType.RegularFile) {
+                byte[] hash = fingerprint.getNormalizedContentHash().toByteArray();
+                if (hashLength == VARIABLE_HASH_LENGTH) {
+                    encoder.writeBinary(hash);
+                } else {
+                    encoder.writeBytes(hash);
+                }
+            }
+        }
+    }
 
-        if (value instanceof DefaultFileSystemLocationFingerprint) {
-            encoder.writeByte(DEFAULT_NORMALIZATION);
-            encoder.writeString(value.getNormalizedPath());
-        } else if (value instanceof IgnoredPathFileSystemLocationFingerprint) {
+    /**
+     * Returns the length shared by the content hashes of all regular files, or {@link #VARIABLE_HASH_LENGTH} when their lengths differ.
+     */
+    private static int fixedHashLengthOf(Iterable<FileSystemLocationFingerprint> fingerprints) {
+        int hashLength = VARIABLE_HASH_LENGTH;
+        for (FileSystemLocationFingerprint fingerprint : fingerprints) {
+            if (fingerprint.getType() == FileType.RegularFile) {
+                int length = fingerprint.getNormalizedContentHash().length();
+                if (hashLength == VARIABLE_HASH_LENGTH) {
+                    hashLength = length;
+                } else if (hashLength != length) {
+                    return VARIABLE_HASH_LENGTH;
+                }
+            }
+        }
+        return hashLength;
+    }
+
+    private static void writeNormalizedPath(Encoder encoder, String absolutePath, FileSystemLocationFingerprint fingerprint) throws IOException {
+        if (fingerprint instanceof DefaultFileSystemLocationFingerprint) {
+            String normalizedPath = fingerprint.getNormalizedPath();
+            if (absolutePath.endsWith(normalizedPath)) {
+                encoder.writeByte(SUFFIX_OF_ABSOLUTE_PATH_NORMALIZATION);
+                encoder.writeSmallInt(normalizedPath.length());
+            } else {
+                encoder.writeByte(DEFAULT_NORMALIZATION);
+                encoder.writeString(normalizedPath);
+            }
+        } else if (fingerprint instanceof IgnoredPathFileSystemLocationFingerprint) {
             encoder.writeByte(IGNORED_PATH_NORMALIZATION);
         } else {
             throw new AssertionError();
         }
     }
+
+    private static int sharedPrefixLength(String previous, String current) {
+        int maxLength = Math.min(previous.length(), current.length());
+        int length = 0;
+        while (length < maxLength && previous.charAt(length) == current.charAt(length)) {
+            length++;
+        }
+        return length;
+    }
 }
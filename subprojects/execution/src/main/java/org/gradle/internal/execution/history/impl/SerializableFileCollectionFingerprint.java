@@ -16,6 +16,8 @@
 
 package org.gradle.internal.execution.history.impl;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableMultimap;
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
 import org.gradle.internal.fingerprint.FileSystemLocationFingerprint;
@@ -26,19 +28,26 @@
 
 public class SerializableFileCollectionFingerprint implements FileCollectionFingerprint {
 
-    private final Map<String, FileSystemLocationFingerprint> fingerprints;
+    private final Supplier<Map<String, FileSystemLocationFingerprint>> fingerprints;
     private final ImmutableMultimap<String, HashCode> rootHashes;
     private final HashCode strategyConfigurationHash;
 
     public SerializableFileCollectionFingerprint(Map<String, FileSystemLocationFingerprint> fingerprints, ImmutableMultimap<String, HashCode> rootHashes, HashCode strategyConfigurationHash) {
-        this.fingerprints = fingerprints;
+        this(Suppliers.ofInstance(fingerprints), rootHashes, strategyConfigurationHash);
+    }
+
+    /**
+     * Creates a fingerprint whose file fingerprints are only decoded by the given supplier when they are first accessed.
+     */
+    public SerializableFileCollectionFingerprint(Supplier<Map<String, FileSystemLocationFingerprint>> fingerprints, ImmutableMultimap<String, HashCode> rootHashes, HashCode strategyConfigurationHash) {
+        this.fingerprints = Suppliers.memoize(fingerprints);
         this.rootHashes = rootHashes;
         this.strategyConfigurationHash = strategyConfigurationHash;
     }
 
     @Override
     public Map<String, FileSystemLocationFingerprint> getFingerprints() {
-        return fingerprints;
+        return fingerprints.get();
     }
 
     @Override
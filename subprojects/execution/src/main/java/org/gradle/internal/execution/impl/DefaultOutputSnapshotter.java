@@ -22,26 +22,64 @@
 import org.gradle.internal.execution.UnitOfWork;
 import org.gradle.internal.execution.fingerprint.FileCollectionSnapshotter;
 import org.gradle.internal.file.TreeType;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.gradle.internal.vfs.FileChangeJournal;
+import org.gradle.internal.vfs.FileSystemAccess;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Optional;
 
 public class DefaultOutputSnapshotter implements OutputSnapshotter {
     private final FileCollectionSnapshotter fileCollectionSnapshotter;
+    private final FileSystemAccess fileSystemAccess;
 
-    public DefaultOutputSnapshotter(FileCollectionSnapshotter fileCollectionSnapshotter) {
+    public DefaultOutputSnapshotter(FileCollectionSnapshotter fileCollectionSnapshotter, FileSystemAccess fileSystemAccess) {
         this.fileCollectionSnapshotter = fileCollectionSnapshotter;
+        this.fileSystemAccess = fileSystemAccess;
     }
 
     @Override
     public ImmutableSortedMap<String, FileSystemSnapshot> snapshotOutputs(UnitOfWork work, File workspace) {
+        return snapshotOutputs(work, workspace, (propertyName, type, root, contents) ->
+            fileCollectionSnapshotter.snapshot(contents).getSnapshot());
+    }
+
+    @Override
+    public ImmutableSortedMap<String, FileSystemSnapshot> snapshotOutputs(
+        UnitOfWork work,
+        File workspace,
+        ImmutableSortedMap<String, FileSystemSnapshot> outputSnapshotsBeforeExecution,
+        FileChangeJournal.RecordedChanges changesSinceBeforeExecution
+    ) {
+        return snapshotOutputs(work, workspace, (propertyName, type, root, contents) ->
+            updateSnapshot(type, root, outputSnapshotsBeforeExecution.get(propertyName), changesSinceBeforeExecution)
+                .<FileSystemSnapshot>map(snapshot -> snapshot)
+                .orElseGet(() -> fileCollectionSnapshotter.snapshot(contents).getSnapshot()));
+    }
+
+    private Optional<FileSystemLocationSnapshot> updateSnapshot(TreeType type, File root, @Nullable FileSystemSnapshot snapshotBeforeExecution, FileChangeJournal.RecordedChanges changes) {
+        // Only directory outputs snapshotted as a whole can be updated
+        if (type != TreeType.DIRECTORY || !(snapshotBeforeExecution instanceof DirectorySnapshot)) {
+            return Optional.empty();
+        }
+        DirectorySnapshot directorySnapshot = (DirectorySnapshot) snapshotBeforeExecution;
+        if (!directorySnapshot.getAbsolutePath().equals(root.getAbsolutePath())) {
+            return Optional.empty();
+        }
+        return fileSystemAccess.update(directorySnapshot, changes);
+    }
+
+    private static ImmutableSortedMap<String, FileSystemSnapshot> snapshotOutputs(UnitOfWork work, File workspace, PropertySnapshotter propertySnapshotter) {
         ImmutableSortedMap.Builder<String, FileSystemSnapshot> builder = ImmutableSortedMap.naturalOrder();
         work.visitOutputs(workspace, new UnitOfWork.OutputVisitor() {
             @Override
             public void visitOutputProperty(String propertyName, TreeType type, File root, FileCollection contents) {
                 FileSystemSnapshot snapshot;
                 try {
-                    snapshot = fileCollectionSnapshotter.snapshot(contents).getSnapshot();
+                    snapshot = propertySnapshotter.snapshot(propertyName, type, root, contents);
                 } catch (Exception ex) {
                     throw new OutputFileSnapshottingException(propertyName, ex);
                 }
@@ -50,4 +88,8 @@ public void visitOutputProperty(String propertyName, TreeType type, File root, F
         });
         return builder.build();
     }
+
+    private interface PropertySnapshotter {
+        FileSystemSnapshot snapshot(String propertyName, TreeType type, File root, FileCollection contents);
+    }
 }
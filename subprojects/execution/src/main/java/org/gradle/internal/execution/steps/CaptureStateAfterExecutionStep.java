@@ -16,6 +16,7 @@
 
 package org.gradle.internal.execution.steps;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedMap;
 import org.gradle.caching.internal.origin.OriginMetadata;
 import org.gradle.internal.Try;
@@ -30,9 +31,11 @@
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.BuildOperationType;
+import org.gradle.internal.snapshot.DirectorySnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.gradle.internal.time.Time;
 import org.gradle.internal.time.Timer;
+import org.gradle.internal.vfs.FileChangeJournal;
 
 import java.time.Duration;
 import java.util.Optional;
@@ -42,26 +45,38 @@
 public class CaptureStateAfterExecutionStep<C extends BeforeExecutionContext> extends BuildOperationStep<C, AfterExecutionResult> {
     private final UniqueId buildInvocationScopeId;
     private final OutputSnapshotter outputSnapshotter;
+    private final FileChangeJournal fileChangeJournal;
     private final Step<? super C, ? extends Result> delegate;
 
     public CaptureStateAfterExecutionStep(
         BuildOperationExecutor buildOperationExecutor,
         UniqueId buildInvocationScopeId,
         OutputSnapshotter outputSnapshotter,
+        FileChangeJournal fileChangeJournal,
         Step<? super C, ? extends Result> delegate
     ) {
         super(buildOperationExecutor);
         this.buildInvocationScopeId = buildInvocationScopeId;
         this.outputSnapshotter = outputSnapshotter;
+        this.fileChangeJournal = fileChangeJournal;
         this.delegate = delegate;
     }
 
     @Override
     public AfterExecutionResult execute(UnitOfWork work, C context) {
-        Result result = delegate.execute(work, context);
+        FileChangeJournal.Recording outputChanges = context.getBeforeExecutionState()
+            .map(this::startRecordingOutputChanges)
+            .orElse(FileChangeJournal.Recording.UNKNOWN_CHANGES);
+        Result result;
+        Optional<FileChangeJournal.RecordedChanges> recordedOutputChanges;
+        try {
+            result = delegate.execute(work, context);
+        } finally {
+            recordedOutputChanges = outputChanges.stop();
+        }
         final Duration duration = result.getDuration();
         Optional<AfterExecutionState> afterExecutionState = context.getBeforeExecutionState()
-            .flatMap(beforeExecutionState -> captureStateAfterExecution(work, context, beforeExecutionState, duration));
+            .flatMap(beforeExecutionState -> captureStateAfterExecution(work, context, beforeExecutionState, recordedOutputChanges, duration));
 
         return new AfterExecutionResult() {
             @Override
@@ -81,12 +96,28 @@ public Duration getDuration() {
         };
     }
 
-    private Optional<AfterExecutionState> captureStateAfterExecution(UnitOfWork work, BeforeExecutionContext context, BeforeExecutionState beforeExecutionState, Duration duration) {
+    /**
+     * Records the changes to the output directories while the work executes, so their snapshots taken before execution
+     * can be updated with the changes afterwards, instead of snapshotting the whole directories again.
+     *
+     * Nothing writes to the outputs between taking the snapshots before execution and executing the work.
+     */
+    private FileChangeJournal.Recording startRecordingOutputChanges(BeforeExecutionState beforeExecutionState) {
+        ImmutableList<String> outputDirectories = beforeExecutionState.getOutputFileLocationSnapshots().values().stream()
+            .filter(DirectorySnapshot.class::isInstance)
+            .map(snapshot -> ((DirectorySnapshot) snapshot).getAbsolutePath())
+            .collect(ImmutableList.toImmutableList());
+        return outputDirectories.isEmpty()
+            ? FileChangeJournal.Recording.UNKNOWN_CHANGES
+            : fileChangeJournal.startRecording(outputDirectories);
+    }
+
+    private Optional<AfterExecutionState> captureStateAfterExecution(UnitOfWork work, BeforeExecutionContext context, BeforeExecutionState beforeExecutionState, Optional<FileChangeJournal.RecordedChanges> recordedOutputChanges, Duration duration) {
         return operation(
             operationContext -> {
                 try {
                     Timer timer = Time.startTimer();
-                    ImmutableSortedMap<String, FileSystemSnapshot> outputsProducedByWork = captureOutputs(work, context, beforeExecutionState);
+                    ImmutableSortedMap<String, FileSystemSnapshot> outputsProducedByWork = captureOutputs(work, context, beforeExecutionState, recordedOutputChanges);
                     long snapshotOutputDuration = timer.getElapsedMillis();
 
                     // The origin execution time is recorded as “work duration” + “output snapshotting duration”,
@@ -109,8 +140,10 @@ private Optional<AfterExecutionState> captureStateAfterExecution(UnitOfWork work
         );
     }
 
-    private ImmutableSortedMap<String, FileSystemSnapshot> captureOutputs(UnitOfWork work, BeforeExecutionContext context, BeforeExecutionState beforeExecutionState) {
-        ImmutableSortedMap<String, FileSystemSnapshot> unfilteredOutputSnapshotsAfterExecution = outputSnapshotter.snapshotOutputs(work, context.getWorkspace());
+    private ImmutableSortedMap<String, FileSystemSnapshot> captureOutputs(UnitOfWork work, BeforeExecutionContext context, BeforeExecutionState beforeExecutionState, Optional<FileChangeJournal.RecordedChanges> recordedOutputChanges) {
+        ImmutableSortedMap<String, FileSystemSnapshot> unfilteredOutputSnapshotsAfterExecution = recordedOutputChanges
+            .map(changes -> outputSnapshotter.snapshotOutputs(work, context.getWorkspace(), beforeExecutionState.getOutputFileLocationSnapshots(), changes))
+            .orElseGet(() -> outputSnapshotter.snapshotOutputs(work, context.getWorkspace()));
 
         if (beforeExecutionState.getDetectedOverlappingOutputs().isPresent()) {
             ImmutableSortedMap<String, FileSystemSnapshot> previousExecutionOutputSnapshots = context.getPreviousExecutionState()
@@ -36,11 +36,13 @@
 import org.gradle.internal.execution.history.OverlappingOutputs;
 import org.gradle.internal.execution.history.PreviousExecutionState;
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
+import org.gradle.internal.hash.HashFunction;
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.helpers.NOPLogger;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.time.Duration;
 import java.util.Formatter;
@@ -56,15 +58,21 @@
 
     private final BuildCacheController buildCache;
     private final boolean buildScansEnabled;
+    private final HashFunction fileContentHashFunction;
+    private final String buildCacheEntryFormat;
     private final Step<? super CachingContext, ? extends UpToDateResult> delegate;
 
     public ResolveCachingStateStep(
         BuildCacheController buildCache,
         boolean buildScansEnabled,
+        HashFunction fileContentHashFunction,
+        @Nullable String buildCacheEntryFormat,
         Step<? super CachingContext, ? extends UpToDateResult> delegate
     ) {
         this.buildCache = buildCache;
         this.buildScansEnabled = buildScansEnabled;
+        this.fileContentHashFunction = fileContentHashFunction;
+        this.buildCacheEntryFormat = buildCacheEntryFormat;
         this.delegate = delegate;
     }
 
@@ -179,7 +187,7 @@ private CachingState calculateCachingState(UnitOfWork work, BeforeExecutionState
         Logger logger = buildCache.isEmitDebugLogging()
             ? LOGGER
             : NOPLogger.NOP_LOGGER;
-        CachingStateFactory cachingStateFactory = new DefaultCachingStateFactory(logger);
+        CachingStateFactory cachingStateFactory = new DefaultCachingStateFactory(logger, fileContentHashFunction, buildCacheEntryFormat);
 
         ImmutableList.Builder<CachingDisabledReason> cachingDisabledReasonsBuilder = ImmutableList.builder();
         if (!buildCache.isEnabled()) {
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.caching.impl
+
+import com.google.common.collect.ImmutableList
+import com.google.common.collect.ImmutableSortedMap
+import org.gradle.internal.execution.history.BeforeExecutionState
+import org.gradle.internal.hash.HashFunction
+import org.gradle.internal.hash.Hashing
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot
+import org.slf4j.helpers.NOPLogger
+import spock.lang.Specification
+
+class DefaultCachingStateFactoryTest extends Specification {
+    def beforeExecutionState = Stub(BeforeExecutionState) {
+        getImplementation() >> ImplementationSnapshot.of("org.gradle.WorkType", Hashing.hashString("class loader"))
+        getAdditionalImplementations() >> ImmutableList.of()
+        getInputProperties() >> ImmutableSortedMap.of()
+        getInputFileProperties() >> ImmutableSortedMap.of()
+        getOutputFileLocationSnapshots() >> ImmutableSortedMap.of()
+    }
+
+    def "build cache key changes when entries are stored in another format"() {
+        expect:
+        cacheKey(Hashing.defaultFunction(), null) == cacheKey(Hashing.defaultFunction(), null)
+        cacheKey(Hashing.defaultFunction(), "lz4") != cacheKey(Hashing.defaultFunction(), null)
+        cacheKey(Hashing.defaultFunction(), "lz4") == cacheKey(Hashing.defaultFunction(), "lz4")
+    }
+
+    def "build cache key changes when file contents are hashed with another function"() {
+        expect:
+        cacheKey(Hashing.murmur3(), null) != cacheKey(Hashing.defaultFunction(), null)
+        cacheKey(Hashing.murmur3(), "lz4") != cacheKey(Hashing.defaultFunction(), "lz4")
+    }
+
+    private String cacheKey(HashFunction fileContentHashFunction, String buildCacheEntryFormat) {
+        new DefaultCachingStateFactory(NOPLogger.NOP_LOGGER, fileContentHashFunction, buildCacheEntryFormat)
+            .createCachingState(beforeExecutionState, ImmutableList.of())
+            .whenEnabled().get().key.hashCode
+    }
+}
@@ -17,12 +17,14 @@
 package org.gradle.internal.execution.history.impl
 
 import com.google.common.collect.ImmutableMultimap
+import com.google.common.collect.Interner
 import org.gradle.api.internal.cache.StringInterner
 import org.gradle.internal.file.FileType
 import org.gradle.internal.fingerprint.FileCollectionFingerprint
 import org.gradle.internal.fingerprint.FileSystemLocationFingerprint
 import org.gradle.internal.fingerprint.impl.DefaultFileSystemLocationFingerprint
 import org.gradle.internal.fingerprint.impl.IgnoredPathFileSystemLocationFingerprint
+import org.gradle.internal.hash.HashCode
 import org.gradle.internal.hash.TestHashCodes
 import org.gradle.internal.serialize.SerializerSpec
 
@@ -93,4 +95,47 @@ class FileCollectionFingerprintSerializerTest extends SerializerSpec {
         out.fingerprints.keySet() as List == ["/3", "/2", "/1"]
         out.rootHashes.keySet() as List == ["/3", "/2", "/1"]
     }
+
+    def "reads and writes paths sharing parent directories and content hashes of different lengths"() {
+        def shortHash = HashCode.fromString("0123456789abcdef01234567")
+        def longHash = TestHashCodes.hashCodeFrom(1234)
+
+        when:
+        def out = serialize(new SerializableFileCollectionFingerprint(
+            "/root": new DefaultFileSystemLocationFingerprint('', FileType.Directory, FileSystemLocationFingerprint.DIR_SIGNATURE),
+            "/root/a/file.txt": new DefaultFileSystemLocationFingerprint('a/file.txt', FileType.RegularFile, shortHash),
+            "/root/a/other.txt": new DefaultFileSystemLocationFingerprint('other', FileType.RegularFile, longHash),
+            "/root/ab/file.txt": IgnoredPathFileSystemLocationFingerprint.create(FileType.RegularFile, longHash),
+            ImmutableMultimap.of("/root", TestHashCodes.hashCodeFrom(5678)),
+            TestHashCodes.hashCodeFrom(5432)
+        ), serializer)
+
+        then:
+        out.fingerprints.keySet() as List == ["/root", "/root/a/file.txt", "/root/a/other.txt", "/root/ab/file.txt"]
+        out.fingerprints.values()*.normalizedPath == ["", "a/file.txt", "other", ""]
+        out.fingerprints.values()*.normalizedContentHash == [FileSystemLocationFingerprint.DIR_SIGNATURE, shortHash, longHash, longHash]
+    }
+
+    def "decodes fingerprints when they are first accessed"() {
+        def interner = Mock(Interner)
+        def lazySerializer = new FileCollectionFingerprintSerializer(interner)
+
+        when:
+        def out = serialize(new SerializableFileCollectionFingerprint(
+            "/root/file.txt": new DefaultFileSystemLocationFingerprint('file.txt', FileType.RegularFile, TestHashCodes.hashCodeFrom(1234)),
+            ImmutableMultimap.of("/root/file.txt", TestHashCodes.hashCodeFrom(1234)),
+            TestHashCodes.hashCodeFrom(5432)
+        ), lazySerializer)
+
+        then:
+        1 * interner.intern("/root/file.txt") >> "/root/file.txt"
+        0 * interner._
+
+        when:
+        def fingerprints = out.fingerprints
+
+        then:
+        fingerprints.keySet() as List == ["/root/file.txt"]
+        2 * interner.intern(_) >> { String value -> value }
+    }
 }
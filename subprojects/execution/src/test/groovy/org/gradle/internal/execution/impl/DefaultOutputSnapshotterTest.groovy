@@ -16,12 +16,17 @@
 
 package org.gradle.internal.execution.impl
 
+import com.google.common.collect.ImmutableSortedMap
 import org.gradle.api.file.FileCollection
 import org.gradle.internal.execution.OutputSnapshotter
 import org.gradle.internal.execution.UnitOfWork
 import org.gradle.internal.execution.fingerprint.FileCollectionSnapshotter
 import org.gradle.internal.file.TreeType
+import org.gradle.internal.snapshot.DirectorySnapshot
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
 import org.gradle.internal.snapshot.FileSystemSnapshot
+import org.gradle.internal.vfs.FileChangeJournal
+import org.gradle.internal.vfs.FileSystemAccess
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
 import spock.lang.Specification
@@ -29,7 +34,8 @@ import spock.lang.Specification
 class DefaultOutputSnapshotterTest extends Specification {
     def work = Mock(UnitOfWork)
     def fileCollectionSnapshotter = Mock(FileCollectionSnapshotter)
-    def outputSnapshotter = new DefaultOutputSnapshotter(fileCollectionSnapshotter)
+    def fileSystemAccess = Mock(FileSystemAccess)
+    def outputSnapshotter = new DefaultOutputSnapshotter(fileCollectionSnapshotter, fileSystemAccess)
 
     @Rule
     TestNameTestDirectoryProvider tempDir = new TestNameTestDirectoryProvider(getClass())
@@ -75,4 +81,69 @@ class DefaultOutputSnapshotterTest extends Specification {
         ex.propertyName == "output"
         ex.cause == failure
     }
+
+    def "updates snapshot of output directory with recorded changes"() {
+        def snapshotBeforeExecution = Stub(DirectorySnapshot) {
+            absolutePath >> root.absolutePath
+        }
+        def updatedSnapshot = Mock(FileSystemLocationSnapshot)
+        def changes = Stub(FileChangeJournal.RecordedChanges)
+
+        when:
+        def result = outputSnapshotter.snapshotOutputs(work, workspace, ImmutableSortedMap.<String, FileSystemSnapshot>of("output", snapshotBeforeExecution), changes)
+
+        then:
+        1 * work.visitOutputs(workspace, _ as UnitOfWork.OutputVisitor) >> { File workspace, UnitOfWork.OutputVisitor outputVisitor ->
+            outputVisitor.visitOutputProperty("output", TreeType.DIRECTORY, root, contents)
+        }
+        1 * fileSystemAccess.update(snapshotBeforeExecution, changes) >> Optional.of(updatedSnapshot)
+        0 * _
+
+        then:
+        result as Map == ["output": updatedSnapshot]
+    }
+
+    def "snapshots output directory when recorded changes cannot be applied"() {
+        def snapshotBeforeExecution = Stub(DirectorySnapshot) {
+            absolutePath >> root.absolutePath
+        }
+        def outputSnapshot = Mock(FileSystemSnapshot)
+        def changes = Stub(FileChangeJournal.RecordedChanges)
+
+        when:
+        def result = outputSnapshotter.snapshotOutputs(work, workspace, ImmutableSortedMap.<String, FileSystemSnapshot>of("output", snapshotBeforeExecution), changes)
+
+        then:
+        1 * work.visitOutputs(workspace, _ as UnitOfWork.OutputVisitor) >> { File workspace, UnitOfWork.OutputVisitor outputVisitor ->
+            outputVisitor.visitOutputProperty("output", TreeType.DIRECTORY, root, contents)
+        }
+        1 * fileSystemAccess.update(snapshotBeforeExecution, changes) >> Optional.empty()
+        1 * fileCollectionSnapshotter.snapshot(contents) >> Stub(FileCollectionSnapshotter.Result) {
+            snapshot >> outputSnapshot
+        }
+        0 * _
+
+        then:
+        result as Map == ["output": outputSnapshot]
+    }
+
+    def "snapshots output files without applying recorded changes"() {
+        def outputSnapshot = Mock(FileSystemSnapshot)
+        def changes = Stub(FileChangeJournal.RecordedChanges)
+
+        when:
+        def result = outputSnapshotter.snapshotOutputs(work, workspace, ImmutableSortedMap.<String, FileSystemSnapshot>of("output", Stub(DirectorySnapshot)), changes)
+
+        then:
+        1 * work.visitOutputs(workspace, _ as UnitOfWork.OutputVisitor) >> { File workspace, UnitOfWork.OutputVisitor outputVisitor ->
+            outputVisitor.visitOutputProperty("output", TreeType.FILE, root, contents)
+        }
+        1 * fileCollectionSnapshotter.snapshot(contents) >> Stub(FileCollectionSnapshotter.Result) {
+            snapshot >> outputSnapshot
+        }
+        0 * _
+
+        then:
+        result as Map == ["output": outputSnapshot]
+    }
 }
@@ -30,6 +30,7 @@ import org.gradle.internal.snapshot.FileSystemLocationSnapshot
 import org.gradle.internal.snapshot.FileSystemSnapshot
 import org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder
 import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.internal.vfs.FileChangeJournal
 
 import java.time.Duration
 
@@ -39,9 +40,10 @@ class CaptureStateAfterExecutionStepTest extends StepSpec<BeforeExecutionContext
 
     def buildInvocationScopeId = UniqueId.generate()
     def outputSnapshotter = Mock(OutputSnapshotter)
+    def fileChangeJournal = Mock(FileChangeJournal)
     def delegateResult = Mock(Result)
 
-    def step = new CaptureStateAfterExecutionStep(buildOperationExecutor, buildInvocationScopeId, outputSnapshotter, delegate)
+    def step = new CaptureStateAfterExecutionStep(buildOperationExecutor, buildInvocationScopeId, outputSnapshotter, fileChangeJournal, delegate)
 
     @Override
     protected ValidationFinishedContext createContext() {
@@ -81,6 +83,7 @@ class CaptureStateAfterExecutionStepTest extends StepSpec<BeforeExecutionContext
         1 * delegateResult.duration >> delegateDuration
         _ * context.beforeExecutionState >> Optional.of(Mock(BeforeExecutionState) {
             _ * detectedOverlappingOutputs >> Optional.empty()
+            _ * outputFileLocationSnapshots >> ImmutableSortedMap.of()
         })
         1 * outputSnapshotter.snapshotOutputs(work, _) >> { throw failure }
         assertOperation()
@@ -104,6 +107,7 @@ class CaptureStateAfterExecutionStepTest extends StepSpec<BeforeExecutionContext
         1 * delegateResult.duration >> delegateDuration
         _ * context.beforeExecutionState >> Optional.of(Mock(BeforeExecutionState) {
             _ * detectedOverlappingOutputs >> Optional.empty()
+            _ * outputFileLocationSnapshots >> ImmutableSortedMap.of()
         })
         1 * outputSnapshotter.snapshotOutputs(work, _) >> outputSnapshots
         assertOperation()
@@ -153,11 +157,63 @@ class CaptureStateAfterExecutionStepTest extends StepSpec<BeforeExecutionContext
         _ * context.previousExecutionState >> Optional.of(Stub(PreviousExecutionState) {
             outputFilesProducedByWork >> previousOutputs
         })
+        1 * fileChangeJournal.startRecording(["/absolute"]) >> FileChangeJournal.Recording.UNKNOWN_CHANGES
         1 * outputSnapshotter.snapshotOutputs(work, _) >> outputsAfterExecution
         assertOperation()
         0 * _
     }
 
+    def "output directories are updated with the changes recorded during execution"() {
+        def delegateDuration = Duration.ofMillis(123)
+        def outputsBeforeExecution = ImmutableSortedMap.<String, FileSystemSnapshot> of(
+            "outputDir", directorySnapshot(fileSnapshot("stale", TestHashCodes.hashCodeFrom(123)))
+        )
+        def outputsAfterExecution = ImmutableSortedMap.<String, FileSystemSnapshot> of(
+            "outputDir", directorySnapshot(fileSnapshot("output", TestHashCodes.hashCodeFrom(345)))
+        )
+        def recording = Mock(FileChangeJournal.Recording)
+        def recordedChanges = Stub(FileChangeJournal.RecordedChanges)
+
+        when:
+        def result = step.execute(work, context)
+        then:
+        result.afterExecutionState.get().outputFilesProducedByWork == outputsAfterExecution
+        result.duration == delegateDuration
+
+        1 * fileChangeJournal.startRecording(["/absolute"]) >> recording
+        1 * delegate.execute(work, context) >> delegateResult
+        1 * delegateResult.duration >> delegateDuration
+        _ * context.beforeExecutionState >> Optional.of(Stub(BeforeExecutionState) {
+            detectedOverlappingOutputs >> Optional.empty()
+            outputFileLocationSnapshots >> outputsBeforeExecution
+        })
+        1 * recording.stop() >> Optional.of(recordedChanges)
+        1 * outputSnapshotter.snapshotOutputs(work, _, outputsBeforeExecution, recordedChanges) >> outputsAfterExecution
+        assertOperation()
+        0 * _
+    }
+
+    def "recording is stopped when execution fails with #failure"() {
+        def recording = Mock(FileChangeJournal.Recording)
+
+        when:
+        step.execute(work, context)
+        then:
+        def ex = thrown Throwable
+        ex == failure
+
+        _ * context.beforeExecutionState >> Optional.of(Stub(BeforeExecutionState) {
+            outputFileLocationSnapshots >> ImmutableSortedMap.<String, FileSystemSnapshot> of("outputDir", directorySnapshot())
+        })
+        1 * fileChangeJournal.startRecording(["/absolute"]) >> recording
+        1 * delegate.execute(work, context) >> { throw failure }
+        1 * recording.stop() >> Optional.empty()
+        0 * _
+
+        where:
+        failure << [new RuntimeException("Failure"), new StackOverflowError()]
+    }
+
     private void assertOperation(Throwable expectedFailure = null) {
         if (expectedFailure == null) {
             assertSuccessfulOperation(CaptureStateAfterExecutionStep.Operation, "Snapshot outputs after executing job ':test'", CaptureStateAfterExecutionStep.Operation.Result.INSTANCE)
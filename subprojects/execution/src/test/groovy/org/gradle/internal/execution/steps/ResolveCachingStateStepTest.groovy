@@ -20,11 +20,12 @@ import com.google.common.collect.ImmutableList
 import org.gradle.caching.internal.controller.BuildCacheController
 import org.gradle.internal.execution.caching.CachingDisabledReason
 import org.gradle.internal.execution.caching.CachingDisabledReasonCategory
+import org.gradle.internal.hash.Hashing
 
 class ResolveCachingStateStepTest extends StepSpec<ValidationFinishedContext> {
 
     def buildCache = Mock(BuildCacheController)
-    def step = new ResolveCachingStateStep(buildCache, true, delegate)
+    def step = new ResolveCachingStateStep(buildCache, true, Hashing.defaultFunction(), null, delegate)
 
     @Override
     protected ValidationFinishedContext createContext() {
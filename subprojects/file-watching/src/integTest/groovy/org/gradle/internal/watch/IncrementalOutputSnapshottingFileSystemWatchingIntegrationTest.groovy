@@ -0,0 +1,176 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch
+
+import org.gradle.integtests.fixtures.DirectoryBuildCacheFixture
+
+class IncrementalOutputSnapshottingFileSystemWatchingIntegrationTest extends AbstractFileSystemWatchingIntegrationTest implements DirectoryBuildCacheFixture {
+
+    def setup() {
+        buildFile << """
+            apply plugin: 'base'
+
+            abstract class Producer extends DefaultTask {
+                @InputFile
+                abstract RegularFileProperty getSpec()
+
+                @OutputDirectory
+                abstract DirectoryProperty getOutputDir()
+
+                @TaskAction
+                void produce() {
+                    def outputDir = outputDir.get().asFile
+                    // Keep the files of the previous execution which are still specified, so only some of the output directory changes
+                    def specified = spec.get().asFile.readLines().findAll { !it.empty }.collectEntries {
+                        def (path, content) = it.split("=")
+                        [(path): content]
+                    }
+                    outputDir.eachFileRecurse(groovy.io.FileType.FILES) { file ->
+                        def path = outputDir.toPath().relativize(file.toPath()).toString().replace(File.separator, "/")
+                        if (!specified.containsKey(path)) {
+                            file.delete()
+                        }
+                    }
+                    specified.each { path, content ->
+                        def file = new File(outputDir, path)
+                        file.parentFile.mkdirs()
+                        if (!file.file || file.text != content) {
+                            file.text = content
+                        }
+                    }
+                }
+            }
+
+            abstract class Consumer extends DefaultTask {
+                @InputDirectory
+                abstract DirectoryProperty getInputDir()
+
+                @OutputFile
+                abstract RegularFileProperty getOutputFile()
+
+                @TaskAction
+                void consume() {
+                    def inputDir = inputDir.get().asFile
+                    def lines = []
+                    inputDir.eachFileRecurse(groovy.io.FileType.FILES) { file ->
+                        lines << inputDir.toPath().relativize(file.toPath()).toString().replace(File.separator, "/") + "=" + file.text
+                    }
+                    outputFile.get().asFile.text = lines.sort().join("\\n")
+                }
+            }
+
+            task producer(type: Producer) {
+                outputs.cacheIf { true }
+                spec = file("spec.txt")
+                outputDir = file("build/output")
+            }
+
+            task consumer(type: Consumer) {
+                inputDir = producer.outputDir
+                outputFile = file("build/consumer.txt")
+            }
+        """
+    }
+
+    def "snapshots the outputs changed by the work"() {
+        def consumerOutput = file("build/consumer.txt")
+        def spec = file("spec.txt")
+
+        when:
+        spec.text = entries("a.txt=a", "sub/b.txt=b", "sub/deep/c.txt=c")
+        withWatchFs().run ":consumer"
+        then:
+        executedAndNotSkipped(":producer", ":consumer")
+        consumerOutput.text == entries("a.txt=a", "sub/b.txt=b", "sub/deep/c.txt=c")
+
+        when:
+        spec.text = entries("a.txt=changed", "sub/b.txt=b", "sub/new.txt=new", "other/d.txt=d")
+        waitForChangesToBePickedUp()
+        withWatchFs().run ":consumer"
+        then:
+        executedAndNotSkipped(":producer", ":consumer")
+        consumerOutput.text == entries("a.txt=changed", "other/d.txt=d", "sub/b.txt=b", "sub/new.txt=new")
+
+        when:
+        withWatchFs().run ":consumer"
+        then:
+        skipped(":producer", ":consumer")
+    }
+
+    def "detects changes to the outputs after the work has been executed incrementally"() {
+        def spec = file("spec.txt")
+        def outputDir = file("build/output")
+
+        when:
+        spec.text = entries("a.txt=a", "sub/b.txt=b")
+        withWatchFs().run ":producer"
+        spec.text = entries("a.txt=changed", "sub/b.txt=b", "sub/c.txt=c")
+        waitForChangesToBePickedUp()
+        withWatchFs().run ":producer"
+        then:
+        executedAndNotSkipped(":producer")
+
+        when:
+        outputDir.file("sub/b.txt").text = "modified"
+        waitForChangesToBePickedUp()
+        withWatchFs().run ":producer"
+        then:
+        executedAndNotSkipped(":producer")
+        outputDir.file("sub/b.txt").text == "b"
+
+        when:
+        outputDir.file("sub/c.txt").delete()
+        waitForChangesToBePickedUp()
+        withWatchFs().run ":producer"
+        then:
+        executedAndNotSkipped(":producer")
+        outputDir.file("sub/c.txt").text == "c"
+
+        when:
+        withWatchFs().run ":producer"
+        then:
+        skipped(":producer")
+    }
+
+    def "stores the outputs changed by the work in the build cache"() {
+        def consumerOutput = file("build/consumer.txt")
+        def spec = file("spec.txt")
+
+        when:
+        spec.text = entries("a.txt=a", "sub/b.txt=b")
+        withWatchFs().withBuildCache().run ":consumer"
+        spec.text = entries("a.txt=changed", "sub/c.txt=c", "other/d.txt=d")
+        waitForChangesToBePickedUp()
+        withWatchFs().withBuildCache().run ":consumer"
+        then:
+        executedAndNotSkipped(":producer", ":consumer")
+        consumerOutput.text == entries("a.txt=changed", "other/d.txt=d", "sub/c.txt=c")
+
+        when:
+        withWatchFs().withBuildCache().run "clean"
+        withWatchFs().withBuildCache().run ":consumer"
+        then:
+        skipped(":producer")
+        executedAndNotSkipped(":consumer")
+        file("build/output").assertHasDescendants("a.txt", "sub/c.txt", "other/d.txt")
+        consumerOutput.text == entries("a.txt=changed", "other/d.txt=d", "sub/c.txt=c")
+    }
+
+    private static String entries(String... entries) {
+        entries.join("\n")
+    }
+}
@@ -17,6 +17,7 @@
 package org.gradle.internal.watch.registry;
 
 import java.io.File;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 /**
@@ -53,4 +54,9 @@ public interface FileWatcherProbeRegistry {
     void triggerWatchProbe(String path);
 
     File getProbeDirectory(File hierarchy);
+
+    /**
+     * Returns the probe directory of the hierarchy, or {@link Optional#empty()} when no probe is registered for it any more.
+     */
+    Optional<File> findProbeDirectory(File hierarchy);
 }
@@ -28,6 +28,7 @@
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 public interface FileWatcherRegistry extends Closeable {
 
@@ -82,6 +83,19 @@ enum Type {
     @CheckReturnValue
     SnapshotHierarchy updateVfsOnBuildFinished(SnapshotHierarchy root, WatchMode watchMode, int maximumNumberOfWatchedHierarchies, List<File> unsupportedFileSystems);
 
+    /**
+     * Whether the changes to the location and all its descendants are reported to the {@link ChangeHandler}.
+     */
+    boolean isWatchingHierarchyOf(String location);
+
+    /**
+     * Waits until the changes made so far to the location and its descendants have been reported to the {@link ChangeHandler}.
+     *
+     * @return whether the changes have been reported before the timeout.
+     * Always {@code false} when the changes to the location and all its descendants are not reported.
+     */
+    boolean awaitChangesReported(String location, long timeout, TimeUnit unit);
+
     /**
      * Get statistics about the received changes.
      */
@@ -24,6 +24,7 @@
 import java.io.File;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * <p>
@@ -106,6 +107,21 @@ public interface FileWatcherUpdater {
     @CheckReturnValue
     SnapshotHierarchy updateVfsOnBuildFinished(SnapshotHierarchy root, WatchMode watchMode, int maximumNumberOfWatchedHierarchies, List<File> unsupportedFileSystems);
 
+    /**
+     * Returns the watched hierarchy containing the location, when the changes to the location and all its descendants are reported.
+     *
+     * Only watchers which receive hierarchical file system events report the changes to all the descendants of a watched hierarchy.
+     */
+    Optional<File> findWatchedHierarchyContaining(String location);
+
+    /**
+     * Returns the directory of the probe for the watchable hierarchy,
+     * or {@link Optional#empty()} when the hierarchy has been unregistered in the meantime.
+     *
+     * @see FileWatcherProbeRegistry#findProbeDirectory(File)
+     */
+    Optional<File> findProbeDirectory(File watchableHierarchy);
+
     /**
      * The files actually being watched right now.
      *
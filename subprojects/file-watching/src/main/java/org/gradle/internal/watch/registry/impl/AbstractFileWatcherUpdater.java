@@ -33,6 +33,7 @@
 import java.io.File;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 public abstract class AbstractFileWatcherUpdater implements FileWatcherUpdater {
@@ -113,6 +114,11 @@ public FileHierarchySet getWatchedFiles() {
         return watchedFiles;
     }
 
+    @Override
+    public Optional<File> findProbeDirectory(File watchableHierarchy) {
+        return probeRegistry.findProbeDirectory(watchableHierarchy);
+    }
+
     @Override
     public void triggerWatchProbe(String path) {
         probeRegistry.triggerWatchProbe(path);
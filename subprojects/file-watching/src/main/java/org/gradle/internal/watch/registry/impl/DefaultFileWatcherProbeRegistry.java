@@ -25,6 +25,7 @@
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Stream;
@@ -99,11 +100,15 @@ public void triggerWatchProbe(String path) {
 
     @Override
     public File getProbeDirectory(File hierarchy) {
+        return findProbeDirectory(hierarchy)
+            .orElseThrow(() -> new IllegalStateException("Cannot find probe for hierarchy: " + hierarchy));
+    }
+
+    @Override
+    public Optional<File> findProbeDirectory(File hierarchy) {
         WatchProbe watchProbe = watchProbesByHierarchy.get(hierarchy);
-        if (watchProbe == null) {
-            throw new IllegalStateException("Cannot find probe for hierarchy: " + hierarchy);
-        }
-        return watchProbe.getProbeFile().getParentFile();
+        return Optional.ofNullable(watchProbe)
+            .map(probe -> probe.getProbeFile().getParentFile());
     }
 
     private static class WatchProbe {
@@ -35,8 +35,12 @@
 import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
@@ -49,12 +53,14 @@
 
 public class DefaultFileWatcherRegistry implements FileWatcherRegistry {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultFileWatcherRegistry.class);
+    private static final String SYNC_FILE_PREFIX = "file-system.sync-";
 
     private final AbstractFileEventFunctions<?> fileEventFunctions;
     private final FileWatcher watcher;
     private final BlockingQueue<FileWatchEvent> fileEvents;
     private final Thread eventConsumerThread;
     private final FileWatcherUpdater fileWatcherUpdater;
+    private final Map<String, CountDownLatch> pendingSyncs = new ConcurrentHashMap<>();
 
     private volatile MutableFileWatchingStatistics fileWatchingStatistics = new MutableFileWatchingStatistics();
     private volatile boolean consumeEvents = true;
@@ -87,6 +93,10 @@ public void handleChangeEvent(FileWatchEvent.ChangeType type, String absolutePat
                                 fileWatchingStatistics.eventReceived();
                                 fileWatcherUpdater.triggerWatchProbe(absolutePath);
                                 handler.handleChange(convertType(type), Paths.get(absolutePath));
+                                CountDownLatch pendingSync = pendingSyncs.remove(absolutePath);
+                                if (pendingSync != null) {
+                                    pendingSync.countDown();
+                                }
                             }
 
                             @Override
@@ -143,6 +153,50 @@ public boolean isWatchingAnyLocations() {
         return !fileWatcherUpdater.getWatchedFiles().isEmpty();
     }
 
+    @Override
+    public boolean isWatchingHierarchyOf(String location) {
+        return fileWatcherUpdater.findWatchedHierarchyContaining(location).isPresent();
+    }
+
+    /**
+     * Creates a file next to the watch probe of the watched hierarchy containing the location,
+     * and waits for the change to the file to be reported.
+     *
+     * The changes to a watched hierarchy are reported in the order they happen,
+     * so all the changes made to the location before creating the file have been reported by then.
+     */
+    @Override
+    public boolean awaitChangesReported(String location, long timeout, TimeUnit unit) {
+        // The probe is gone when the hierarchy has been unregistered concurrently, in which case changes may have been missed
+        Optional<File> foundProbeDirectory = fileWatcherUpdater.findWatchedHierarchyContaining(location)
+            .flatMap(fileWatcherUpdater::findProbeDirectory);
+        if (!foundProbeDirectory.isPresent()) {
+            return false;
+        }
+        File probeDirectory = foundProbeDirectory.get();
+        File syncFile = new File(probeDirectory, SYNC_FILE_PREFIX + UUID.randomUUID());
+        CountDownLatch changeReported = new CountDownLatch(1);
+        pendingSyncs.put(syncFile.getAbsolutePath(), changeReported);
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            probeDirectory.mkdirs();
+            if (!syncFile.createNewFile()) {
+                return false;
+            }
+            return changeReported.await(timeout, unit);
+        } catch (IOException e) {
+            LOGGER.debug("Could not create file to wait for the changes to {}", location, e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            pendingSyncs.remove(syncFile.getAbsolutePath());
+            //noinspection ResultOfMethodCallIgnored
+            syncFile.delete();
+        }
+    }
+
     @Override
     public void registerWatchableHierarchy(File watchableHierarchy, SnapshotHierarchy root) {
         fileWatcherUpdater.registerWatchableHierarchy(watchableHierarchy, root);
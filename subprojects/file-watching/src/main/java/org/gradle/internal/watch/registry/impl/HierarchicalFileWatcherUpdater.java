@@ -31,6 +31,7 @@
 import java.io.File;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Updater for hierarchical file watchers.
@@ -60,7 +61,7 @@ public class HierarchicalFileWatcherUpdater extends AbstractFileWatcherUpdater {
 
     private final FileWatcher fileWatcher;
     private final FileSystemLocationToWatchValidator locationToWatchValidator;
-    private ImmutableSet<File> watchedHierarchies = ImmutableSet.of();
+    private volatile ImmutableSet<File> watchedHierarchies = ImmutableSet.of();
 
     public HierarchicalFileWatcherUpdater(
         FileWatcher fileWatcher,
@@ -125,6 +126,18 @@ protected void updateWatchesOnChangedWatchedFiles(FileHierarchySet newWatchedFil
         LOGGER.info("Watching {} directory hierarchies to track changes", watchedHierarchies.size());
     }
 
+    @Override
+    public Optional<File> findWatchedHierarchyContaining(String location) {
+        return watchedHierarchies.stream()
+            .filter(watchedHierarchy -> isInHierarchy(location, watchedHierarchy.getAbsolutePath()))
+            .findFirst();
+    }
+
+    private static boolean isInHierarchy(String location, String hierarchy) {
+        return location.startsWith(hierarchy)
+            && (location.length() == hierarchy.length() || location.charAt(hierarchy.length()) == File.separatorChar);
+    }
+
     @Override
     protected void startWatchingProbeDirectory(File probeDirectory) {
         // We already started watching the hierarchy.
@@ -41,6 +41,7 @@
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
 
@@ -108,6 +109,12 @@ protected void updateWatchesOnChangedWatchedFiles(FileHierarchySet newWatchedFil
         }
     }
 
+    @Override
+    public Optional<File> findWatchedHierarchyContaining(String location) {
+        // Only the directories of the snapshots in the virtual file system are watched
+        return Optional.empty();
+    }
+
     @Override
     protected WatchableHierarchies.Invalidator createInvalidator() {
         return (location, currentRoot) -> {
@@ -19,6 +19,7 @@
 import org.gradle.internal.operations.BuildOperationRunner;
 import org.gradle.internal.service.scopes.Scopes;
 import org.gradle.internal.service.scopes.ServiceScope;
+import org.gradle.internal.vfs.FileChangeJournal;
 import org.gradle.internal.vfs.VirtualFileSystem;
 import org.gradle.internal.watch.registry.WatchMode;
 
@@ -28,7 +29,7 @@
  * Controls the lifecycle and book-keeping for file system watching.
  */
 @ServiceScope(Scopes.UserHome.class)
-public interface BuildLifecycleAwareVirtualFileSystem extends VirtualFileSystem, FileSystemWatchingInformation {
+public interface BuildLifecycleAwareVirtualFileSystem extends VirtualFileSystem, FileChangeJournal, FileSystemWatchingInformation {
 
     /**
      * Called when the build is started.
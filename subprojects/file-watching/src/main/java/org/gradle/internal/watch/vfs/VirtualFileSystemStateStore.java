@@ -0,0 +1,73 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs;
+
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the watched contents of the virtual file system across daemon restarts.
+ */
+public interface VirtualFileSystemStateStore {
+    VirtualFileSystemStateStore NONE = new VirtualFileSystemStateStore() {
+        @Override
+        public StoredState load() {
+            return StoredState.EMPTY;
+        }
+
+        @Override
+        public void store(Collection<FileSystemLocationSnapshot> snapshots) {
+        }
+    };
+
+    /**
+     * Loads the snapshots stored by a previous daemon.
+     */
+    StoredState load();
+
+    /**
+     * Stores the snapshots, replacing the snapshots stored before.
+     */
+    void store(Collection<FileSystemLocationSnapshot> snapshots);
+
+    interface StoredState {
+        StoredState EMPTY = new StoredState() {
+            @Override
+            public List<FileSystemLocationSnapshot> getSnapshots() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public List<String> findChangedLocations(FileSystemLocationSnapshot snapshot) {
+                return Collections.emptyList();
+            }
+        };
+
+        /**
+         * The stored snapshots, which may not reflect the file system any more.
+         */
+        List<FileSystemLocationSnapshot> getSnapshots();
+
+        /**
+         * Returns the locations in one of the stored snapshots which may have changed since the snapshot has been stored.
+         */
+        List<String> findChangedLocations(FileSystemLocationSnapshot snapshot);
+    }
+}
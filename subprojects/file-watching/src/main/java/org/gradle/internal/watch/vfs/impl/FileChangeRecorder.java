@@ -0,0 +1,176 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.gradle.internal.vfs.FileChangeJournal;
+import org.gradle.internal.watch.registry.FileWatcherRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the changes reported by the file watcher to the locations of the active {@link FileChangeJournal.Recording}s.
+ *
+ * The recorder receives the changes before they are filtered by {@link LocationsWrittenByCurrentBuild},
+ * so it also sees the changes to the outputs of the current build, which are not propagated to the virtual file system.
+ *
+ * A recording only knows about all the changes when its locations are watched hierarchically during the whole recording,
+ * and the watcher reports the changes in time when the recording stops.
+ * Once the watcher failed to report the changes in time, recordings are not trusted any more until the next build starts.
+ */
+class FileChangeRecorder implements FileWatcherRegistry.ChangeHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileChangeRecorder.class);
+    private static final long CHANGES_REPORTED_TIMEOUT_MILLIS = 1000;
+
+    private final Set<ActiveRecording> activeRecordings = ConcurrentHashMap.newKeySet();
+    private volatile boolean changesReportedInTime = true;
+
+    public FileChangeJournal.Recording startRecording(FileWatcherRegistry watchRegistry, Iterable<String> locations) {
+        ImmutableList<String> locationsToRecord = ImmutableList.copyOf(locations);
+        if (!changesReportedInTime || !locationsToRecord.stream().allMatch(watchRegistry::isWatchingHierarchyOf)) {
+            return FileChangeJournal.Recording.UNKNOWN_CHANGES;
+        }
+        ActiveRecording recording = new ActiveRecording(watchRegistry, locationsToRecord);
+        activeRecordings.add(recording);
+        return recording;
+    }
+
+    @Override
+    public void handleChange(FileWatcherRegistry.Type type, Path path) {
+        if (!activeRecordings.isEmpty()) {
+            String absolutePath = path.toString();
+            activeRecordings.forEach(recording -> recording.changed(type, absolutePath));
+        }
+    }
+
+    @Override
+    public void stopWatchingAfterError() {
+        stopRecording();
+    }
+
+    /**
+     * Drops the recordings whose locations are not watched hierarchically any more, since changes may have been missed.
+     */
+    public void watchedHierarchiesChanged(FileWatcherRegistry watchRegistry) {
+        activeRecordings.forEach(recording -> recording.checkStillWatched(watchRegistry));
+    }
+
+    /**
+     * Trusts the watcher to report changes in time again.
+     */
+    public void buildStarted() {
+        changesReportedInTime = true;
+    }
+
+    /**
+     * Drops all the active recordings, for example since the watcher stopped.
+     */
+    public void stopRecording() {
+        activeRecordings.forEach(ActiveRecording::changesMissed);
+        activeRecordings.clear();
+    }
+
+    private class ActiveRecording implements FileChangeJournal.Recording {
+        private final FileWatcherRegistry watchRegistry;
+        private final ImmutableList<String> locations;
+        private final Set<String> replacedLocations = new HashSet<>();
+        private final Set<String> modifiedLocations = new HashSet<>();
+        private boolean changesMissed;
+
+        public ActiveRecording(FileWatcherRegistry watchRegistry, ImmutableList<String> locations) {
+            this.watchRegistry = watchRegistry;
+            this.locations = locations;
+        }
+
+        public synchronized void changed(FileWatcherRegistry.Type type, String path) {
+            for (String location : locations) {
+                if (isInHierarchy(path, location)) {
+                    if (type == FileWatcherRegistry.Type.MODIFIED) {
+                        modifiedLocations.add(path);
+                    } else {
+                        // Invalidated and overflowing locations may have changed in any way
+                        replacedLocations.add(path);
+                    }
+                } else if (isInHierarchy(location, path) && type != FileWatcherRegistry.Type.MODIFIED) {
+                    replacedLocations.add(location);
+                }
+            }
+        }
+
+        public void checkStillWatched(FileWatcherRegistry currentWatchRegistry) {
+            if (currentWatchRegistry != watchRegistry || !locations.stream().allMatch(currentWatchRegistry::isWatchingHierarchyOf)) {
+                changesMissed();
+            }
+        }
+
+        public synchronized void changesMissed() {
+            changesMissed = true;
+        }
+
+        @Override
+        public Optional<FileChangeJournal.RecordedChanges> stop() {
+            try {
+                for (String location : locations) {
+                    if (!changesReportedInTime) {
+                        return Optional.empty();
+                    }
+                    if (!watchRegistry.awaitChangesReported(location, CHANGES_REPORTED_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        LOGGER.debug("Changes to {} have not been reported in time, not recording changes any more during this build", location);
+                        changesReportedInTime = false;
+                        return Optional.empty();
+                    }
+                }
+                return recordedChanges();
+            } finally {
+                activeRecordings.remove(this);
+            }
+        }
+
+        private synchronized Optional<FileChangeJournal.RecordedChanges> recordedChanges() {
+            if (changesMissed) {
+                return Optional.empty();
+            }
+            ImmutableSet<String> replaced = ImmutableSet.copyOf(replacedLocations);
+            ImmutableSet<String> modified = ImmutableSet.copyOf(modifiedLocations);
+            return Optional.of(new FileChangeJournal.RecordedChanges() {
+                @Override
+                public Set<String> getReplacedLocations() {
+                    return replaced;
+                }
+
+                @Override
+                public Set<String> getModifiedLocations() {
+                    return modified;
+                }
+            });
+        }
+    }
+
+    private static boolean isInHierarchy(String location, String hierarchy) {
+        return location.startsWith(hierarchy)
+            && (location.length() == hierarchy.length() || location.charAt(hierarchy.length()) == File.separatorChar);
+    }
+}
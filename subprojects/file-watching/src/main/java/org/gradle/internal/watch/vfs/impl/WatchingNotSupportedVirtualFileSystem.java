@@ -105,6 +105,11 @@ public BuildOperationDescriptor.Builder description() {
         }));
     }
 
+    @Override
+    public Recording startRecording(Iterable<String> locations) {
+        return Recording.UNKNOWN_CHANGES;
+    }
+
     @Override
     public boolean isWatchingAnyLocations() {
         return false;
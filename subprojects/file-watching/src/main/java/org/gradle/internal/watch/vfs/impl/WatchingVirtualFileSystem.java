@@ -24,7 +24,9 @@
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationRunner;
 import org.gradle.internal.operations.CallableBuildOperation;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemNode;
+import org.gradle.internal.snapshot.MetadataSnapshot;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.vfs.impl.AbstractVirtualFileSystem;
 import org.gradle.internal.vfs.impl.VfsRootReference;
@@ -41,6 +43,7 @@
 import org.gradle.internal.watch.vfs.FileSystemWatchingInformation;
 import org.gradle.internal.watch.vfs.FileSystemWatchingStatistics;
 import org.gradle.internal.watch.vfs.VfsLogging;
+import org.gradle.internal.watch.vfs.VirtualFileSystemStateStore;
 import org.gradle.internal.watch.vfs.WatchLogging;
 import org.gradle.internal.watch.vfs.WatchableFileSystemDetector;
 import org.slf4j.Logger;
@@ -53,10 +56,16 @@
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem implements BuildLifecycleAwareVirtualFileSystem, FileSystemWatchingInformation, Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(WatchingVirtualFileSystem.class);
@@ -68,6 +77,8 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
     private final LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild;
     private final WatchableFileSystemDetector watchableFileSystemDetector;
     private final FileChangeListeners fileChangeListeners;
+    private final VirtualFileSystemStateStore stateStore;
+    private final FileChangeRecorder fileChangeRecorder = new FileChangeRecorder();
     private final List<File> unsupportedFileSystems = new ArrayList<>();
     private Logger warningLogger = LOGGER;
 
@@ -76,6 +87,23 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
      */
     private final Set<File> watchableHierarchiesRegisteredEarly = new LinkedHashSet<>();
 
+    /**
+     * The state stored by a previous daemon, loaded when starting to watch for the first time.
+     */
+    private volatile VirtualFileSystemStateStore.StoredState storedState;
+
+    /**
+     * Stored snapshots which have not been restored yet, since their watchable hierarchy has not been registered.
+     */
+    private final List<FileSystemLocationSnapshot> snapshotsToRestore = new ArrayList<>();
+
+    /**
+     * Stored snapshots in registered watchable hierarchies, which are validated and restored when they are first read.
+     *
+     * Only updated while holding the update lock of the root, and invalidated together with the root.
+     */
+    private volatile SnapshotHierarchy restorableSnapshots;
+
     private FileWatcherRegistry watchRegistry;
     private Exception reasonForNotWatchingFiles;
     private boolean stateInvalidatedAtStartOfBuild;
@@ -86,7 +114,8 @@ public WatchingVirtualFileSystem(
         DaemonDocumentationIndex daemonDocumentationIndex,
         LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild,
         WatchableFileSystemDetector watchableFileSystemDetector,
-        FileChangeListeners fileChangeListeners
+        FileChangeListeners fileChangeListeners,
+        VirtualFileSystemStateStore stateStore
     ) {
         super(rootReference);
         this.watcherRegistryFactory = watcherRegistryFactory;
@@ -94,6 +123,26 @@ public WatchingVirtualFileSystem(
         this.locationsWrittenByCurrentBuild = locationsWrittenByCurrentBuild;
         this.watchableFileSystemDetector = watchableFileSystemDetector;
         this.fileChangeListeners = fileChangeListeners;
+        this.stateStore = stateStore;
+        this.restorableSnapshots = rootReference.getRoot().empty();
+    }
+
+    @Override
+    public Optional<FileSystemLocationSnapshot> findSnapshot(String absolutePath) {
+        Optional<FileSystemLocationSnapshot> snapshot = super.findSnapshot(absolutePath);
+        if (!snapshot.isPresent() && restoreStoredSnapshot(absolutePath)) {
+            return super.findSnapshot(absolutePath);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public Optional<MetadataSnapshot> findMetadata(String absolutePath) {
+        Optional<MetadataSnapshot> metadata = super.findMetadata(absolutePath);
+        if (!metadata.isPresent() && restoreStoredSnapshot(absolutePath)) {
+            return super.findMetadata(absolutePath);
+        }
+        return metadata;
     }
 
     @Override
@@ -103,9 +152,10 @@ protected SnapshotHierarchy updateNotifyingListeners(UpdateFunction updateFuncti
         } else {
             SnapshotCollectingDiffListener diffListener = new SnapshotCollectingDiffListener();
             SnapshotHierarchy newRoot = updateFunction.update(diffListener);
-            return withWatcherChangeErrorHandling(newRoot, () -> diffListener.publishSnapshotDiff((removedSnapshots, addedSnapshots) ->
-                watchRegistry.virtualFileSystemContentsChanged(removedSnapshots, addedSnapshots, newRoot)
-            ));
+            return withWatcherChangeErrorHandling(newRoot, () -> diffListener.publishSnapshotDiff((removedSnapshots, addedSnapshots) -> {
+                watchRegistry.virtualFileSystemContentsChanged(removedSnapshots, addedSnapshots, newRoot);
+                fileChangeRecorder.watchedHierarchiesChanged(watchRegistry);
+            }));
         }
     }
 
@@ -119,6 +169,7 @@ public boolean afterBuildStarted(
         warningLogger = watchMode.loggerForWarnings(LOGGER);
         stateInvalidatedAtStartOfBuild = false;
         reasonForNotWatchingFiles = null;
+        fileChangeRecorder.buildStarted();
         rootReference.update(currentRoot -> buildOperationRunner.call(new CallableBuildOperation<SnapshotHierarchy>() {
             @Override
             public SnapshotHierarchy call(BuildOperationContext context) {
@@ -212,7 +263,10 @@ public void registerWatchableHierarchy(File watchableHierarchy) {
             }
             return withWatcherChangeErrorHandling(
                 currentRoot,
-                () -> watchRegistry.registerWatchableHierarchy(watchableHierarchy, currentRoot)
+                () -> {
+                    watchRegistry.registerWatchableHierarchy(watchableHierarchy, currentRoot);
+                    makeStoredSnapshotsRestorable(watchableHierarchy);
+                }
             );
         });
     }
@@ -309,13 +363,22 @@ public BuildOperationDescriptor.Builder description() {
     @CheckReturnValue
     private SnapshotHierarchy startWatching(SnapshotHierarchy currentRoot, WatchMode watchMode, List<File> unsupportedFileSystems) {
         try {
-            watchRegistry = watcherRegistryFactory.createFileWatcherRegistry(new FilterChangesToOutputsChangesHandler(locationsWrittenByCurrentBuild,
-                new CompositeChangeHandler(
-                    new InvalidateVfsChangeHandler(),
-                    new BroadcastingChangeHandler()
-                )));
+            watchRegistry = watcherRegistryFactory.createFileWatcherRegistry(new CompositeChangeHandler(
+                fileChangeRecorder,
+                new FilterChangesToOutputsChangesHandler(locationsWrittenByCurrentBuild,
+                    new CompositeChangeHandler(
+                        new InvalidateVfsChangeHandler(),
+                        new BroadcastingChangeHandler()
+                    ))));
             SnapshotHierarchy newRoot = watchRegistry.updateVfsOnBuildStarted(currentRoot.empty(), watchMode, unsupportedFileSystems);
-            watchableHierarchiesRegisteredEarly.forEach(watchableHierarchy -> watchRegistry.registerWatchableHierarchy(watchableHierarchy, newRoot));
+            if (storedState == null) {
+                storedState = stateStore.load();
+                snapshotsToRestore.addAll(storedState.getSnapshots());
+            }
+            for (File watchableHierarchy : watchableHierarchiesRegisteredEarly) {
+                watchRegistry.registerWatchableHierarchy(watchableHierarchy, newRoot);
+                makeStoredSnapshotsRestorable(watchableHierarchy);
+            }
             watchableHierarchiesRegisteredEarly.clear();
             return newRoot;
         } catch (Exception ex) {
@@ -325,6 +388,86 @@ private SnapshotHierarchy startWatching(SnapshotHierarchy currentRoot, WatchMode
         }
     }
 
+    /**
+     * Makes the stored snapshots in a watchable hierarchy which has just been registered available for restoring.
+     *
+     * The snapshots are not validated here, since that requires listing and checking the metadata of all the files in them,
+     * and this happens while holding the update lock of the root.
+     */
+    private void makeStoredSnapshotsRestorable(File watchableHierarchy) {
+        List<FileSystemLocationSnapshot> storedSnapshots = takeSnapshotsToRestore(watchableHierarchy.getAbsolutePath());
+        if (storedSnapshots.isEmpty()) {
+            return;
+        }
+        SnapshotHierarchy newRestorableSnapshots = restorableSnapshots;
+        for (FileSystemLocationSnapshot snapshot : storedSnapshots) {
+            newRestorableSnapshots = newRestorableSnapshots.store(snapshot.getAbsolutePath(), snapshot, SnapshotHierarchy.NodeDiffListener.NOOP);
+        }
+        restorableSnapshots = newRestorableSnapshots;
+        LOGGER.info("Restoring {} snapshots in {} stored by a previous daemon when they are read", storedSnapshots.size(), watchableHierarchy);
+    }
+
+    /**
+     * Validates the stored snapshot of a location which is not in the virtual file system, and adds the unchanged parts of it.
+     *
+     * Like snapshotting the location, the validation happens without holding the update lock of the root.
+     * The validated snapshot is dropped when the location has been invalidated or restored by another thread in the meantime.
+     * Once added, the snapshot is watched, so later changes are reported by the watcher.
+     *
+     * @return whether the virtual file system has been updated.
+     */
+    private boolean restoreStoredSnapshot(String location) {
+        Optional<FileSystemLocationSnapshot> restorableSnapshot = restorableSnapshots.findSnapshot(location);
+        if (!restorableSnapshot.isPresent()) {
+            return false;
+        }
+        FileSystemLocationSnapshot storedSnapshot = restorableSnapshot.get();
+        List<String> changedLocations = storedState.findChangedLocations(storedSnapshot);
+        AtomicBoolean restored = new AtomicBoolean();
+        rootReference.update(currentRoot -> {
+            if (restorableSnapshots.findSnapshot(location).orElse(null) != storedSnapshot) {
+                return currentRoot;
+            }
+            restorableSnapshots = restorableSnapshots.invalidate(location, SnapshotHierarchy.NodeDiffListener.NOOP);
+            if (watchRegistry == null || currentRoot.findMetadata(location).isPresent()) {
+                return currentRoot;
+            }
+            SnapshotHierarchy newRoot = updateNotifyingListeners(diffListener -> currentRoot.store(location, storedSnapshot, diffListener));
+            for (String changedLocation : changedLocations) {
+                SnapshotHierarchy rootBeforeInvalidation = newRoot;
+                newRoot = updateNotifyingListeners(diffListener -> rootBeforeInvalidation.invalidate(changedLocation, diffListener));
+            }
+            LOGGER.debug("Restored snapshot of {} stored by a previous daemon, invalidated {} changed locations", location, changedLocations.size());
+            restored.set(true);
+            return newRoot;
+        });
+        return restored.get();
+    }
+
+    private List<FileSystemLocationSnapshot> takeSnapshotsToRestore(String watchableHierarchy) {
+        List<FileSystemLocationSnapshot> snapshots = new ArrayList<>();
+        Iterator<FileSystemLocationSnapshot> iterator = snapshotsToRestore.iterator();
+        while (iterator.hasNext()) {
+            FileSystemLocationSnapshot snapshot = iterator.next();
+            String location = snapshot.getAbsolutePath();
+            if (location.startsWith(watchableHierarchy)
+                && (location.length() == watchableHierarchy.length() || location.charAt(watchableHierarchy.length()) == File.separatorChar)) {
+                snapshots.add(snapshot);
+                iterator.remove();
+            }
+        }
+        return snapshots;
+    }
+
+    @Override
+    public Recording startRecording(Iterable<String> locations) {
+        FileWatcherRegistry watchRegistry = this.watchRegistry;
+        if (watchRegistry == null) {
+            return Recording.UNKNOWN_CHANGES;
+        }
+        return fileChangeRecorder.startRecording(watchRegistry, locations);
+    }
+
     @Override
     public boolean isWatchingAnyLocations() {
         FileWatcherRegistry watchRegistry = this.watchRegistry;
@@ -359,9 +502,12 @@ public void stopWatchingAfterError() {
     private class InvalidateVfsChangeHandler implements FileWatcherRegistry.ChangeHandler {
         @Override
         public void handleChange(FileWatcherRegistry.Type type, Path path) {
-            rootReference.update(root -> updateNotifyingListeners(
-                diffListener -> root.invalidate(path.toString(), new VfsChangeLoggingNodeDiffListener(type, path, diffListener))
-            ));
+            rootReference.updateInBatch(root -> {
+                restorableSnapshots = restorableSnapshots.invalidate(path.toString(), SnapshotHierarchy.NodeDiffListener.NOOP);
+                return updateNotifyingListeners(
+                    diffListener -> root.invalidate(path.toString(), new VfsChangeLoggingNodeDiffListener(type, path, diffListener))
+                );
+            });
         }
 
         @Override
@@ -479,6 +625,7 @@ private SnapshotHierarchy stopWatchingAndInvalidateHierarchyAfterError(SnapshotH
     }
 
     private SnapshotHierarchy stopWatchingAndInvalidateHierarchy(SnapshotHierarchy currentRoot) {
+        fileChangeRecorder.stopRecording();
         if (watchRegistry != null) {
             try {
                 FileWatcherRegistry toBeClosed = watchRegistry;
@@ -503,13 +650,48 @@ private boolean hasDroppedStateBecauseOfErrorsReceivedWhileWatching(FileWatcherR
         return false;
     }
 
+    @Override
+    public void invalidate(Iterable<String> locations) {
+        rootReference.updateInBatch(currentRoot -> {
+            SnapshotHierarchy newRestorableSnapshots = restorableSnapshots;
+            for (String location : locations) {
+                newRestorableSnapshots = newRestorableSnapshots.invalidate(location, SnapshotHierarchy.NodeDiffListener.NOOP);
+            }
+            restorableSnapshots = newRestorableSnapshots;
+            return currentRoot;
+        });
+        super.invalidate(locations);
+    }
+
+    @Override
+    public void invalidateAll() {
+        rootReference.update(currentRoot -> {
+            snapshotsToRestore.clear();
+            restorableSnapshots = restorableSnapshots.empty();
+            return currentRoot;
+        });
+        super.invalidateAll();
+    }
+
     @Override
     public void close() {
         LOGGER.debug("Closing VFS, dropping state");
+        AtomicReference<List<FileSystemLocationSnapshot>> snapshotsToStore = new AtomicReference<>();
         rootReference.update(currentRoot -> {
+            if (watchRegistry != null) {
+                // Only the state of a watched file system is known to be up-to-date.
+                // Snapshots which have not been restored are validated when they are restored by the next daemon,
+                // and are stored first, so the snapshots from the virtual file system replace them.
+                snapshotsToStore.set(Stream.concat(restorableSnapshots.rootSnapshots(), currentRoot.rootSnapshots()).collect(Collectors.toList()));
+            }
+            restorableSnapshots = restorableSnapshots.empty();
             closeUnderLock();
             return currentRoot.empty();
         });
+        List<FileSystemLocationSnapshot> snapshots = snapshotsToStore.get();
+        if (snapshots != null) {
+            stateStore.store(snapshots);
+        }
     }
 
     private void closeUnderLock() {
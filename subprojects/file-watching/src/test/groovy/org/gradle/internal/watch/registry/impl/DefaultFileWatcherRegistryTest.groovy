@@ -0,0 +1,152 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.registry.impl
+
+import net.rubygrapefruit.platform.file.FileWatchEvent
+import net.rubygrapefruit.platform.file.FileWatcher
+import org.gradle.internal.watch.registry.FileWatcherRegistry
+import org.gradle.internal.watch.registry.FileWatcherUpdater
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Timeout
+import spock.util.concurrent.PollingConditions
+
+import java.nio.file.Paths
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.function.Supplier
+
+@CleanupTestDirectory
+@Timeout(30)
+class DefaultFileWatcherRegistryTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def watcher = Stub(FileWatcher) {
+        awaitTermination(_, _) >> true
+    }
+    def changeHandler = Mock(FileWatcherRegistry.ChangeHandler)
+    def fileWatcherUpdater = Mock(FileWatcherUpdater)
+    def fileEvents = new LinkedBlockingQueue<FileWatchEvent>()
+    def registry = new DefaultFileWatcherRegistry(null, watcher, changeHandler, fileWatcherUpdater, fileEvents)
+
+    def watchedHierarchy = temporaryFolder.createDir("watched")
+    def probeDirectory = watchedHierarchy.file(".gradle")
+    def location = watchedHierarchy.file("output").absolutePath
+
+    def cleanup() {
+        registry.close()
+    }
+
+    def "waits until the changes made before have been reported"() {
+        def changedFile = watchedHierarchy.file("output/changed.txt").absolutePath
+        fileWatcherUpdater.findWatchedHierarchyContaining(location) >> Optional.of(watchedHierarchy)
+        fileWatcherUpdater.findProbeDirectory(watchedHierarchy) >> Optional.of(probeDirectory)
+
+        when:
+        def changesReported = CompletableFuture.supplyAsync({ registry.awaitChangesReported(location, 20, TimeUnit.SECONDS) } as Supplier<Boolean>)
+        def syncFile = awaitSyncFile()
+        then:
+        !changesReported.done
+
+        when:
+        fileEvents.put(changeEvent(FileWatchEvent.ChangeType.MODIFIED, changedFile))
+        fileEvents.put(changeEvent(FileWatchEvent.ChangeType.CREATED, syncFile.absolutePath))
+        def reported = changesReported.get()
+        then:
+        reported
+        1 * changeHandler.handleChange(FileWatcherRegistry.Type.MODIFIED, Paths.get(changedFile))
+        1 * changeHandler.handleChange(FileWatcherRegistry.Type.CREATED, syncFile.toPath())
+
+        and:
+        !syncFile.exists()
+    }
+
+    def "does not wait for the changes to other sync files"() {
+        fileWatcherUpdater.findWatchedHierarchyContaining(location) >> Optional.of(watchedHierarchy)
+        fileWatcherUpdater.findProbeDirectory(watchedHierarchy) >> Optional.of(probeDirectory)
+
+        when:
+        def changesReported = CompletableFuture.supplyAsync({ registry.awaitChangesReported(location, 20, TimeUnit.SECONDS) } as Supplier<Boolean>)
+        def syncFile = awaitSyncFile()
+        fileEvents.put(changeEvent(FileWatchEvent.ChangeType.CREATED, new File(probeDirectory, "file-system.sync-other").absolutePath))
+        fileEvents.put(changeEvent(FileWatchEvent.ChangeType.MODIFIED, syncFile.absolutePath))
+        def reported = changesReported.get()
+        then:
+        reported
+    }
+
+    def "returns false when the changes have not been reported in time"() {
+        fileWatcherUpdater.findWatchedHierarchyContaining(location) >> Optional.of(watchedHierarchy)
+        fileWatcherUpdater.findProbeDirectory(watchedHierarchy) >> Optional.of(probeDirectory)
+
+        when:
+        def changesReported = registry.awaitChangesReported(location, 50, TimeUnit.MILLISECONDS)
+        then:
+        !changesReported
+        probeDirectory.list() as List == []
+    }
+
+    def "returns false without creating a sync file when the location is not watched hierarchically"() {
+        when:
+        def changesReported = registry.awaitChangesReported(location, 20, TimeUnit.SECONDS)
+        then:
+        !changesReported
+        1 * fileWatcherUpdater.findWatchedHierarchyContaining(location) >> Optional.empty()
+        0 * fileWatcherUpdater.findProbeDirectory(_)
+        !probeDirectory.exists()
+    }
+
+    def "returns false without creating a sync file when the probe of the watched hierarchy has been unregistered"() {
+        when:
+        def changesReported = registry.awaitChangesReported(location, 20, TimeUnit.SECONDS)
+        then:
+        !changesReported
+        1 * fileWatcherUpdater.findWatchedHierarchyContaining(location) >> Optional.of(watchedHierarchy)
+        1 * fileWatcherUpdater.findProbeDirectory(watchedHierarchy) >> Optional.empty()
+        !probeDirectory.exists()
+    }
+
+    def "returns false when the sync file cannot be created"() {
+        probeDirectory.createFile()
+        fileWatcherUpdater.findWatchedHierarchyContaining(location) >> Optional.of(watchedHierarchy)
+        fileWatcherUpdater.findProbeDirectory(watchedHierarchy) >> Optional.of(probeDirectory)
+
+        when:
+        def changesReported = registry.awaitChangesReported(location, 20, TimeUnit.SECONDS)
+        then:
+        !changesReported
+    }
+
+    private File awaitSyncFile() {
+        File syncFile = null
+        new PollingConditions(timeout: 10).eventually {
+            def files = probeDirectory.listFiles()
+            assert files != null && files.length == 1
+            syncFile = files[0]
+        }
+        assert syncFile.name.startsWith("file-system.sync-")
+        return syncFile
+    }
+
+    private static FileWatchEvent changeEvent(FileWatchEvent.ChangeType type, String absolutePath) {
+        return { FileWatchEvent.Handler handler -> handler.handleChangeEvent(type, absolutePath) } as FileWatchEvent
+    }
+}
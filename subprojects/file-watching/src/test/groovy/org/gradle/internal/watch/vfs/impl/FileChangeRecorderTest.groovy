@@ -0,0 +1,219 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl
+
+import org.gradle.internal.vfs.FileChangeJournal
+import org.gradle.internal.watch.registry.FileWatcherRegistry
+import spock.lang.Specification
+
+import java.nio.file.Paths
+import java.util.concurrent.TimeUnit
+
+import static org.gradle.internal.watch.registry.FileWatcherRegistry.Type.CREATED
+import static org.gradle.internal.watch.registry.FileWatcherRegistry.Type.INVALIDATED
+import static org.gradle.internal.watch.registry.FileWatcherRegistry.Type.MODIFIED
+import static org.gradle.internal.watch.registry.FileWatcherRegistry.Type.OVERFLOW
+import static org.gradle.internal.watch.registry.FileWatcherRegistry.Type.REMOVED
+
+class FileChangeRecorderTest extends Specification {
+    def root = new File("root").absoluteFile
+    def output = location("output")
+    def watchedHierarchies = [output] as Set<String>
+    def watchRegistry = Mock(FileWatcherRegistry) {
+        _ * isWatchingHierarchyOf(_) >> { String location -> watchedHierarchies.contains(location) }
+    }
+    def recorder = new FileChangeRecorder()
+
+    def "does not record changes to locations which are not watched hierarchically"() {
+        watchedHierarchies.clear()
+
+        when:
+        def recording = recorder.startRecording(watchRegistry, [output])
+        then:
+        recording == FileChangeJournal.Recording.UNKNOWN_CHANGES
+        !recording.stop().present
+    }
+
+    def "records the changes to the locations and their descendants"() {
+        def recording = recorder.startRecording(watchRegistry, [output])
+
+        when:
+        change(CREATED, "output/created.txt")
+        change(MODIFIED, "output/modified.txt")
+        change(REMOVED, "output/sub/removed.txt")
+        change(INVALIDATED, "output/invalidated")
+        change(OVERFLOW, "output/overflown")
+        change(MODIFIED, "output")
+        change(CREATED, "output-sibling/created.txt")
+        change(MODIFIED, "other/modified.txt")
+        def changes = recording.stop()
+
+        then:
+        1 * watchRegistry.awaitChangesReported(output, _, TimeUnit.MILLISECONDS) >> true
+        changes.get().replacedLocations == [
+            location("output/created.txt"),
+            location("output/sub/removed.txt"),
+            location("output/invalidated"),
+            location("output/overflown")
+        ] as Set
+        changes.get().modifiedLocations == [
+            location("output/modified.txt"),
+            output
+        ] as Set
+    }
+
+    def "records the location as replaced when its ancestor is reported as #type"() {
+        def recording = recorder.startRecording(watchRegistry, [output])
+
+        when:
+        change(type, "")
+        def changes = recording.stop()
+
+        then:
+        1 * watchRegistry.awaitChangesReported(output, _, _) >> true
+        changes.get().replacedLocations == expectedReplacedLocations.collect { location(it) } as Set
+        changes.get().modifiedLocations.empty
+
+        where:
+        type        | expectedReplacedLocations
+        CREATED     | ["output"]
+        REMOVED     | ["output"]
+        INVALIDATED | ["output"]
+        OVERFLOW    | ["output"]
+        MODIFIED    | []
+    }
+
+    def "records changes for each active recording"() {
+        def other = location("other")
+        watchedHierarchies.add(other)
+        def outputRecording = recorder.startRecording(watchRegistry, [output])
+        def otherRecording = recorder.startRecording(watchRegistry, [other])
+
+        when:
+        change(CREATED, "output/created.txt")
+        def outputChanges = outputRecording.stop()
+        change(CREATED, "other/created.txt")
+        def otherChanges = otherRecording.stop()
+
+        then:
+        1 * watchRegistry.awaitChangesReported(output, _, _) >> true
+        1 * watchRegistry.awaitChangesReported(other, _, _) >> true
+        outputChanges.get().replacedLocations == [location("output/created.txt")] as Set
+        otherChanges.get().replacedLocations == [location("other/created.txt")] as Set
+    }
+
+    def "drops the recording when the changes have not been reported in time"() {
+        def recording = recorder.startRecording(watchRegistry, [output])
+
+        when:
+        change(CREATED, "output/created.txt")
+        def changes = recording.stop()
+        then:
+        1 * watchRegistry.awaitChangesReported(output, _, _) >> false
+        !changes.present
+
+        when:
+        def recordingAfterTimeout = recorder.startRecording(watchRegistry, [output])
+        then:
+        recordingAfterTimeout == FileChangeJournal.Recording.UNKNOWN_CHANGES
+
+        when:
+        recorder.buildStarted()
+        def recordingInNextBuild = recorder.startRecording(watchRegistry, [output])
+        change(CREATED, "output/created.txt")
+        def changesInNextBuild = recordingInNextBuild.stop()
+        then:
+        1 * watchRegistry.awaitChangesReported(output, _, _) >> true
+        changesInNextBuild.get().replacedLocations == [location("output/created.txt")] as Set
+    }
+
+    def "does not wait for further locations once the changes to one of them have not been reported in time"() {
+        def other = location("other")
+        watchedHierarchies.add(other)
+        def recording = recorder.startRecording(watchRegistry, [output, other])
+
+        when:
+        def changes = recording.stop()
+        then:
+        1 * watchRegistry.awaitChangesReported(output, _, _) >> false
+        0 * watchRegistry.awaitChangesReported(other, _, _)
+        !changes.present
+    }
+
+    def "drops active recordings when the watcher fails"() {
+        def recording = recorder.startRecording(watchRegistry, [output])
+
+        when:
+        change(CREATED, "output/created.txt")
+        recorder.stopWatchingAfterError()
+        def changes = recording.stop()
+        then:
+        _ * watchRegistry.awaitChangesReported(output, _, _) >> true
+        !changes.present
+    }
+
+    def "drops active recordings when recording is stopped"() {
+        def recording = recorder.startRecording(watchRegistry, [output])
+
+        when:
+        recorder.stopRecording()
+        def changes = recording.stop()
+        then:
+        _ * watchRegistry.awaitChangesReported(output, _, _) >> true
+        !changes.present
+    }
+
+    def "drops active recordings when their locations are not watched hierarchically any more"() {
+        def other = location("other")
+        watchedHierarchies.add(other)
+        def outputRecording = recorder.startRecording(watchRegistry, [output])
+        def otherRecording = recorder.startRecording(watchRegistry, [other])
+
+        when:
+        watchedHierarchies.remove(output)
+        recorder.watchedHierarchiesChanged(watchRegistry)
+        def outputChanges = outputRecording.stop()
+        def otherChanges = otherRecording.stop()
+        then:
+        _ * watchRegistry.awaitChangesReported(output, _, _) >> true
+        1 * watchRegistry.awaitChangesReported(other, _, _) >> true
+        !outputChanges.present
+        otherChanges.present
+    }
+
+    def "drops active recordings when the watcher has been replaced"() {
+        def recording = recorder.startRecording(watchRegistry, [output])
+        def newWatchRegistry = Stub(FileWatcherRegistry) {
+            isWatchingHierarchyOf(_) >> true
+        }
+
+        when:
+        recorder.watchedHierarchiesChanged(newWatchRegistry)
+        def changes = recording.stop()
+        then:
+        _ * watchRegistry.awaitChangesReported(output, _, _) >> true
+        !changes.present
+    }
+
+    private void change(FileWatcherRegistry.Type type, String relativePath) {
+        recorder.handleChange(type, Paths.get(location(relativePath)))
+    }
+
+    private String location(String relativePath) {
+        relativePath.empty ? root.absolutePath : new File(root, relativePath).absolutePath
+    }
+}
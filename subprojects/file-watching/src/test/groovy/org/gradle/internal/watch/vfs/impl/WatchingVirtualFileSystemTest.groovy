@@ -17,8 +17,13 @@
 package org.gradle.internal.watch.vfs.impl
 
 import net.rubygrapefruit.platform.NativeException
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.TestHashCodes
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.RegularFileSnapshot
 import org.gradle.internal.snapshot.SnapshotHierarchy
 import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
 import org.gradle.internal.vfs.impl.VfsRootReference
@@ -28,6 +33,7 @@ import org.gradle.internal.watch.registry.WatchMode
 import org.gradle.internal.watch.registry.impl.DaemonDocumentationIndex
 import org.gradle.internal.watch.vfs.FileChangeListeners
 import org.gradle.internal.watch.vfs.VfsLogging
+import org.gradle.internal.watch.vfs.VirtualFileSystemStateStore
 import org.gradle.internal.watch.vfs.WatchLogging
 import org.gradle.internal.watch.vfs.WatchableFileSystemDetector
 import spock.lang.Specification
@@ -51,7 +57,8 @@ class WatchingVirtualFileSystemTest extends Specification {
         daemonDocumentationIndex,
         locationsUpdatedByCurrentBuild,
         watchableFileSystemDetector,
-        fileChangeListeners
+        fileChangeListeners,
+        VirtualFileSystemStateStore.NONE
     )
 
     def "invalidates the virtual file system before and after the build when watching is disabled"() {
@@ -230,4 +237,125 @@ class WatchingVirtualFileSystemTest extends Specification {
         1 * watcherRegistry.close()
         0 * _
     }
+
+    def "restores the stored snapshots in registered watchable hierarchies when they are read and stores the watched snapshots on close"() {
+        def watchableHierarchy = new File("watchable").absoluteFile
+        def restored = regularFile(new File(watchableHierarchy, "restored.txt"))
+        def changed = regularFile(new File(watchableHierarchy, "changed.txt"))
+        def notRead = regularFile(new File(watchableHierarchy, "notRead.txt"))
+        def outsideOfHierarchy = regularFile(new File("other/file.txt").absoluteFile)
+        def validatedLocations = []
+        def storedState = Stub(VirtualFileSystemStateStore.StoredState) {
+            getSnapshots() >> [restored, changed, notRead, outsideOfHierarchy]
+            findChangedLocations(_) >> { FileSystemLocationSnapshot snapshot ->
+                validatedLocations << snapshot.absolutePath
+                snapshot.absolutePath == changed.absolutePath ? [changed.absolutePath] : []
+            }
+        }
+        def stateStore = Mock(VirtualFileSystemStateStore)
+        def watchingVirtualFileSystem = new WatchingVirtualFileSystem(
+            watcherRegistryFactory,
+            rootReference,
+            daemonDocumentationIndex,
+            locationsUpdatedByCurrentBuild,
+            watchableFileSystemDetector,
+            fileChangeListeners,
+            stateStore
+        )
+
+        when:
+        watchingVirtualFileSystem.registerWatchableHierarchy(watchableHierarchy)
+        watchingVirtualFileSystem.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        then:
+        1 * watcherRegistryFactory.createFileWatcherRegistry(_) >> watcherRegistry
+        1 * stateStore.load() >> storedState
+        1 * watcherRegistry.updateVfsOnBuildStarted(_, _, []) >> emptySnapshotHierarchy
+        1 * watcherRegistry.registerWatchableHierarchy(watchableHierarchy, _)
+        1 * watcherRegistry.setDebugLoggingEnabled(false)
+        0 * _
+
+        validatedLocations.empty
+        rootReference.root.rootSnapshots().count() == 0
+
+        when:
+        def restoredSnapshot = watchingVirtualFileSystem.findSnapshot(restored.absolutePath)
+        then:
+        1 * watcherRegistry.virtualFileSystemContentsChanged([], { it*.absolutePath == [restored.absolutePath] }, _)
+        0 * _
+
+        validatedLocations == [restored.absolutePath]
+        restoredSnapshot.get().absolutePath == restored.absolutePath
+        rootReference.root.findSnapshot(restored.absolutePath).present
+
+        when:
+        def changedSnapshot = watchingVirtualFileSystem.findSnapshot(changed.absolutePath)
+        then:
+        1 * watcherRegistry.virtualFileSystemContentsChanged([], { it*.absolutePath == [changed.absolutePath] }, _)
+        1 * watcherRegistry.virtualFileSystemContentsChanged({ it*.absolutePath == [changed.absolutePath] }, [], _)
+        0 * _
+
+        validatedLocations == [restored.absolutePath, changed.absolutePath]
+        !changedSnapshot.present
+        !rootReference.root.findSnapshot(changed.absolutePath).present
+
+        when:
+        def changedSnapshotReadAgain = watchingVirtualFileSystem.findSnapshot(changed.absolutePath)
+        def outsideOfHierarchySnapshot = watchingVirtualFileSystem.findSnapshot(outsideOfHierarchy.absolutePath)
+        then:
+        0 * _
+
+        validatedLocations == [restored.absolutePath, changed.absolutePath]
+        !changedSnapshotReadAgain.present
+        !outsideOfHierarchySnapshot.present
+
+        when:
+        watchingVirtualFileSystem.close()
+        then:
+        1 * watcherRegistry.close()
+        1 * stateStore.store({ it*.absolutePath == [notRead.absolutePath, restored.absolutePath] })
+        0 * _
+    }
+
+    def "does not restore stored snapshots which have been invalidated before they are read"() {
+        def watchableHierarchy = new File("watchable").absoluteFile
+        def invalidated = regularFile(new File(watchableHierarchy, "invalidated.txt"))
+        def validatedLocations = []
+        def storedState = Stub(VirtualFileSystemStateStore.StoredState) {
+            getSnapshots() >> [invalidated]
+            findChangedLocations(_) >> { FileSystemLocationSnapshot snapshot ->
+                validatedLocations << snapshot.absolutePath
+                []
+            }
+        }
+        def stateStore = Stub(VirtualFileSystemStateStore) {
+            load() >> storedState
+        }
+        def watchingVirtualFileSystem = new WatchingVirtualFileSystem(
+            watcherRegistryFactory,
+            rootReference,
+            daemonDocumentationIndex,
+            locationsUpdatedByCurrentBuild,
+            watchableFileSystemDetector,
+            fileChangeListeners,
+            stateStore
+        )
+
+        when:
+        watchingVirtualFileSystem.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        watchingVirtualFileSystem.registerWatchableHierarchy(watchableHierarchy)
+        watchingVirtualFileSystem.invalidate([invalidated.absolutePath])
+        def snapshot = watchingVirtualFileSystem.findSnapshot(invalidated.absolutePath)
+        then:
+        1 * watcherRegistryFactory.createFileWatcherRegistry(_) >> watcherRegistry
+        1 * watcherRegistry.updateVfsOnBuildStarted(_, _, []) >> emptySnapshotHierarchy
+        1 * watcherRegistry.registerWatchableHierarchy(watchableHierarchy, _)
+        1 * watcherRegistry.setDebugLoggingEnabled(false)
+
+        validatedLocations.empty
+        !snapshot.present
+    }
+
+    private static RegularFileSnapshot regularFile(File file) {
+        new RegularFileSnapshot(file.absolutePath, file.name, TestHashCodes.hashCodeFrom(1234), DefaultFileMetadata.file(1, 1, AccessType.DIRECT))
+    }
 }
@@ -21,21 +21,53 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 
 public class DefaultFileHasher implements FileHasher {
+    /**
+     * Disables hashing files via memory mapping.
+     */
+    public static final long NEVER_MEMORY_MAP = Long.MAX_VALUE;
+
     private final StreamHasher streamHasher;
+    private final long memoryMappingThreshold;
 
     public DefaultFileHasher(StreamHasher streamHasher) {
+        this(streamHasher, NEVER_MEMORY_MAP);
+    }
+
+    /**
+     * Creates a hasher that maps files of at least {@code memoryMappingThreshold} bytes into memory instead of reading them through a buffer.
+     * Both ways produce the same hash.
+     */
+    public DefaultFileHasher(StreamHasher streamHasher, long memoryMappingThreshold) {
         this.streamHasher = streamHasher;
+        this.memoryMappingThreshold = memoryMappingThreshold;
     }
 
     @Override
     public HashCode hash(File file) {
+        if (memoryMappingThreshold != NEVER_MEMORY_MAP && file.length() >= memoryMappingThreshold) {
+            return hashMapped(file);
+        }
+        return hashStream(file);
+    }
+
+    @Override
+    public HashCode hash(File file, long length, long lastModified) {
+        return length >= memoryMappingThreshold
+            ? hashMapped(file)
+            : hashStream(file);
+    }
+
+    private HashCode hashStream(File file) {
         InputStream inputStream;
         try {
             inputStream = new FileInputStream(file);
         } catch (FileNotFoundException e) {
-            throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s' as it does not exist.", file), e);
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s' as it does not exist.", streamHasher.getAlgorithm(), file), e);
         }
         try {
             return streamHasher.hash(inputStream);
@@ -48,8 +80,25 @@ public HashCode hash(File file) {
         }
     }
 
-    @Override
-    public HashCode hash(File file, long length, long lastModified) {
-        return hash(file);
+    private HashCode hashMapped(File file) {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s' as it does not exist.", streamHasher.getAlgorithm(), file), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s'.", streamHasher.getAlgorithm(), file), e);
+        }
+        try {
+            return streamHasher.hash(channel);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s'.", streamHasher.getAlgorithm(), file), e);
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Ignored
+            }
+        }
     }
 }
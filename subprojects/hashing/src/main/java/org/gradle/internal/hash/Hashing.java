@@ -47,6 +47,8 @@ private Hashing() {
 
     private static final HashFunction SHA512 = MessageDigestHashFunction.of("SHA-512");
 
+    private static final HashFunction MURMUR3 = new Murmur3HashFunction();
+
     private static final HashFunction DEFAULT = MD5;
 
     /**
@@ -143,6 +145,16 @@ public static HashFunction sha512() {
         return SHA512;
     }
 
+    /**
+     * 128-bit Murmur3 (x64 variant) hashing function.
+     *
+     * <p>This function is not cryptographic, but is considerably faster than MD5 when hashing large amounts of content,
+     * and produces the same hash codes as Guava's {@code Hashing.murmur3_128()}.</p>
+     */
+    public static HashFunction murmur3() {
+        return MURMUR3;
+    }
+
     private static abstract class MessageDigestHashFunction implements HashFunction {
         private final int hexDigits;
 
@@ -298,6 +310,11 @@ public void putBytes(byte[] bytes, int off, int len) {
             getDigest().update(bytes, off, len);
         }
 
+        @Override
+        public void putBytes(ByteBuffer bytes) {
+            getDigest().update(bytes);
+        }
+
         private void update(int length) {
             getDigest().update(buffer.array(), 0, length);
             castBuffer(buffer).clear();
@@ -353,6 +370,253 @@ public HashCode hash() {
         }
     }
 
+    private static class Murmur3HashFunction implements HashFunction {
+        @Override
+        public String getAlgorithm() {
+            return "MURMUR3-128";
+        }
+
+        @Override
+        public PrimitiveHasher newPrimitiveHasher() {
+            return new Murmur3Hasher();
+        }
+
+        @Override
+        public Hasher newHasher() {
+            return new DefaultHasher(newPrimitiveHasher());
+        }
+
+        @Override
+        public HashCode hashBytes(byte[] bytes) {
+            PrimitiveHasher hasher = newPrimitiveHasher();
+            hasher.putBytes(bytes);
+            return hasher.hash();
+        }
+
+        @Override
+        public HashCode hashString(CharSequence string) {
+            PrimitiveHasher hasher = newPrimitiveHasher();
+            hasher.putString(string);
+            return hasher.hash();
+        }
+
+        @Override
+        public HashCode hashStream(InputStream stream) throws IOException {
+            HashingOutputStream hashingOutputStream = new HashingOutputStream(this, ByteStreams.nullOutputStream());
+            ByteStreams.copy(stream, hashingOutputStream);
+            return hashingOutputStream.hash();
+        }
+
+        @Override
+        public HashCode hashFile(File file) throws IOException {
+            HashingOutputStream hashingOutputStream = new HashingOutputStream(this, ByteStreams.nullOutputStream());
+            Files.copy(file, hashingOutputStream);
+            return hashingOutputStream.hash();
+        }
+
+        @Override
+        public int getHexDigits() {
+            return 32;
+        }
+
+        @Override
+        public String toString() {
+            return getAlgorithm();
+        }
+    }
+
+    /**
+     * Streaming implementation of MurmurHash3_x64_128 with a seed of 0.
+     */
+    private static class Murmur3Hasher implements PrimitiveHasher {
+        private static final int CHUNK_SIZE = 16;
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private final byte[] pending = new byte[CHUNK_SIZE];
+        private int pendingLength;
+        private long length;
+        private long h1;
+        private long h2;
+        private boolean done;
+
+        private void checkNotDone() {
+            if (done) {
+                throw new IllegalStateException("Cannot reuse hasher!");
+            }
+        }
+
+        @Override
+        public void putByte(byte value) {
+            checkNotDone();
+            pending[pendingLength++] = value;
+            if (pendingLength == CHUNK_SIZE) {
+                processChunk(pending, 0);
+                pendingLength = 0;
+            }
+        }
+
+        @Override
+        public void putBytes(byte[] bytes) {
+            putBytes(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void putBytes(byte[] bytes, int off, int len) {
+            checkNotDone();
+            int end = off + len;
+            if (pendingLength > 0) {
+                int toCopy = Math.min(CHUNK_SIZE - pendingLength, len);
+                System.arraycopy(bytes, off, pending, pendingLength, toCopy);
+                pendingLength += toCopy;
+                off += toCopy;
+                if (pendingLength < CHUNK_SIZE) {
+                    return;
+                }
+                processChunk(pending, 0);
+                pendingLength = 0;
+            }
+            while (end - off >= CHUNK_SIZE) {
+                processChunk(bytes, off);
+                off += CHUNK_SIZE;
+            }
+            pendingLength = end - off;
+            System.arraycopy(bytes, off, pending, 0, pendingLength);
+        }
+
+        @Override
+        public void putBytes(ByteBuffer bytes) {
+            checkNotDone();
+            ByteBuffer input = bytes.slice().order(ByteOrder.LITTLE_ENDIAN);
+            while (pendingLength > 0 && input.hasRemaining()) {
+                putByte(input.get());
+            }
+            while (input.remaining() >= CHUNK_SIZE) {
+                processChunk(input.getLong(), input.getLong());
+            }
+            while (input.hasRemaining()) {
+                putByte(input.get());
+            }
+            ((Buffer) bytes).position(bytes.limit());
+        }
+
+        @Override
+        public void putInt(int value) {
+            for (int i = 0; i < 4; i++) {
+                putByte((byte) (value >>> (8 * i)));
+            }
+        }
+
+        @Override
+        public void putLong(long value) {
+            for (int i = 0; i < 8; i++) {
+                putByte((byte) (value >>> (8 * i)));
+            }
+        }
+
+        @Override
+        public void putDouble(double value) {
+            putLong(Double.doubleToRawLongBits(value));
+        }
+
+        @Override
+        public void putBoolean(boolean value) {
+            putByte((byte) (value ? 1 : 0));
+        }
+
+        @Override
+        public void putString(CharSequence value) {
+            putBytes(value.toString().getBytes(Charsets.UTF_8));
+        }
+
+        @Override
+        public void putHash(HashCode hashCode) {
+            hashCode.appendToHasher(this);
+        }
+
+        @Override
+        public HashCode hash() {
+            checkNotDone();
+            done = true;
+            processRemaining();
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+            return new HashCode.HashCode128(h1, h2);
+        }
+
+        private void processChunk(byte[] bytes, int off) {
+            processChunk(getLongLittleEndian(bytes, off), getLongLittleEndian(bytes, off + 8));
+        }
+
+        private void processChunk(long k1, long k2) {
+            length += CHUNK_SIZE;
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        private void processRemaining() {
+            long k1 = 0;
+            long k2 = 0;
+            for (int i = pendingLength - 1; i >= 8; i--) {
+                k2 ^= (pending[i] & 0xFFL) << (8 * (i - 8));
+            }
+            for (int i = Math.min(pendingLength, 8) - 1; i >= 0; i--) {
+                k1 ^= (pending[i] & 0xFFL) << (8 * i);
+            }
+            length += pendingLength;
+            h1 ^= mixK1(k1);
+            h2 ^= mixK2(k2);
+        }
+
+        private static long getLongLittleEndian(byte[] bytes, int off) {
+            return (bytes[off] & 0xFFL)
+                | ((bytes[off + 1] & 0xFFL) << 8)
+                | ((bytes[off + 2] & 0xFFL) << 16)
+                | ((bytes[off + 3] & 0xFFL) << 24)
+                | ((bytes[off + 4] & 0xFFL) << 32)
+                | ((bytes[off + 5] & 0xFFL) << 40)
+                | ((bytes[off + 6] & 0xFFL) << 48)
+                | ((bytes[off + 7] & 0xFFL) << 56);
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            return k1;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            return k2;
+        }
+    }
+
     private static class DefaultHasher implements Hasher {
         private final PrimitiveHasher hasher;
 
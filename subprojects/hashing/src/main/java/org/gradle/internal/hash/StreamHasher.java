@@ -18,8 +18,14 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 public interface StreamHasher {
+    /**
+     * Returns the algorithm of the hashes produced by this hasher.
+     */
+    String getAlgorithm();
+
     /**
      * Returns the hash of the given input stream. The stream will not be closed by the method.
      */
@@ -30,4 +36,12 @@ public interface StreamHasher {
      * The method will not close either stream.
      */
     HashCode hashCopy(InputStream inputStream, OutputStream outputStream) throws IOException;
+
+    /**
+     * Returns the hash of the content of the given file channel, mapping the file into memory instead of copying it through a buffer.
+     * The result is the same as hashing the same content as a stream. The method will not close the channel.
+     *
+     * @throws IOException when the file cannot be read, including when it is truncated while it is being hashed
+     */
+    HashCode hash(FileChannel channel) throws IOException;
 }
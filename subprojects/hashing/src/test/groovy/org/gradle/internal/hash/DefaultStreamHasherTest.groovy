@@ -18,6 +18,10 @@ package org.gradle.internal.hash
 
 import spock.lang.Specification
 
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
 class DefaultStreamHasherTest extends Specification {
     def "can hash input"() {
         def input = new ByteArrayInputStream("hello".bytes)
@@ -36,4 +40,74 @@ class DefaultStreamHasherTest extends Specification {
         hash.toString() == "af67a92e9f73b51572e9b94e343d2840"
         output.toByteArray() == "hello".bytes
     }
+
+    def "hashes mapped file content like streamed content for #size bytes"() {
+        given:
+        def bytes = new byte[size]
+        new Random(size).nextBytes(bytes)
+        def file = File.createTempFile("hashing", ".bin")
+        file.deleteOnExit()
+        file.bytes = bytes
+        def hasher = new DefaultStreamHasher(hashFunction)
+
+        when:
+        def mapped = FileChannel.open(file.toPath(), StandardOpenOption.READ).withCloseable { hasher.hash(it) }
+
+        then:
+        mapped == hasher.hash(new ByteArrayInputStream(bytes))
+
+        where:
+        [size, hashFunction] << [[0, 5, 8191, 8192, 100_000], [Hashing.md5(), Hashing.murmur3()]].combinations()
+    }
+
+    def "file hasher produces the same hash with and without memory mapping"() {
+        given:
+        def file = File.createTempFile("hashing", ".bin")
+        file.deleteOnExit()
+        file.text = "hello" * 1000
+        def streamHasher = new DefaultStreamHasher()
+
+        expect:
+        new DefaultFileHasher(streamHasher, 0).hash(file) == new DefaultFileHasher(streamHasher).hash(file)
+        new DefaultFileHasher(streamHasher, 0).hash(file, file.length(), file.lastModified()) == new DefaultFileHasher(streamHasher).hash(file)
+    }
+
+    def "file hasher reports the algorithm of the stream hasher when the file does not exist"() {
+        given:
+        def file = new File(File.createTempDir(), "missing.bin")
+        def fileHasher = new DefaultFileHasher(new DefaultStreamHasher(hashFunction), memoryMappingThreshold)
+
+        when:
+        fileHasher.hash(file, 1, 0)
+
+        then:
+        def e = thrown(UncheckedIOException)
+        e.message == "Failed to create ${hashFunction.algorithm} hash for file '${file}' as it does not exist."
+
+        where:
+        [hashFunction, memoryMappingThreshold] << [[Hashing.md5(), Hashing.murmur3()], [0, DefaultFileHasher.NEVER_MEMORY_MAP]].combinations()
+    }
+
+    def "file hasher reports a file changing while it is mapped like a failure to read it"() {
+        given:
+        def file = File.createTempFile("hashing", ".bin")
+        file.deleteOnExit()
+        file.text = "hello"
+        def hashFunction = Stub(HashFunction) {
+            getAlgorithm() >> "MD5"
+            newPrimitiveHasher() >> Stub(PrimitiveHasher) {
+                putBytes(_ as ByteBuffer) >> { throw new InternalError("a fault occurred in an unsafe memory access operation") }
+            }
+        }
+        def fileHasher = new DefaultFileHasher(new DefaultStreamHasher(hashFunction), 0)
+
+        when:
+        fileHasher.hash(file)
+
+        then:
+        def e = thrown(UncheckedIOException)
+        e.message == "Failed to create MD5 hash for file '${file}'."
+        e.cause.message == "File content changed while it was being hashed."
+        e.cause.cause instanceof InternalError
+    }
 }
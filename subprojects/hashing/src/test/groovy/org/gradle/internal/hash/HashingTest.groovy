@@ -18,6 +18,8 @@ package org.gradle.internal.hash
 
 import spock.lang.Specification
 
+import java.nio.ByteBuffer
+
 import static java.lang.Thread.currentThread
 import static java.util.concurrent.CompletableFuture.supplyAsync
 import static java.util.concurrent.Executors.newFixedThreadPool
@@ -109,6 +111,55 @@ class HashingTest extends Specification {
         hashStrings(["abc", "de"]) != hashStrings(["ab", "cde"])
     }
 
+    def 'murmur3 matches reference implementation for #length bytes fed in chunks of #chunkSize'() {
+        given:
+        def bytes = new byte[length]
+        new Random(length).nextBytes(bytes)
+
+        when:
+        def hasher = Hashing.murmur3().newPrimitiveHasher()
+        for (int off = 0; off < length; off += chunkSize) {
+            hasher.putBytes(bytes, off, Math.min(chunkSize, length - off))
+        }
+
+        then:
+        hasher.hash().toByteArray() == com.google.common.hash.Hashing.murmur3_128().hashBytes(bytes).asBytes()
+
+        where:
+        [length, chunkSize] << [[0, 1, 15, 16, 17, 31, 100, 8192], [1, 7, 16, 1000]].combinations()
+    }
+
+    def 'murmur3 hashes byte buffers like byte arrays'() {
+        given:
+        def bytes = new byte[100]
+        new Random(100).nextBytes(bytes)
+        def buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes)
+        buffer.flip()
+
+        when:
+        def hasher = Hashing.murmur3().newPrimitiveHasher()
+        hasher.putBytes(bytes, 0, 3)
+        hasher.putBytes(buffer.position(3) as ByteBuffer)
+
+        then:
+        hasher.hash() == Hashing.murmur3().hashBytes(bytes)
+        !buffer.hasRemaining()
+    }
+
+    def 'murmur3 can hash files and streams'() {
+        given:
+        def bytes = ('a'..'z').join().getBytes("UTF-8")
+        def file = File.createTempFile("murmur3", ".txt")
+        file.deleteOnExit()
+        file.bytes = bytes
+
+        expect:
+        def expected = Hashing.murmur3().hashBytes(bytes)
+        Hashing.murmur3().hashFile(file) == expected
+        Hashing.murmur3().hashStream(new ByteArrayInputStream(bytes)) == expected
+        expected.toString().length() == Hashing.murmur3().hexDigits
+    }
+
     def hashStrings(List<String> strings) {
         def hasher = Hashing.newHasher()
         strings.each { hasher.putString(it) }
@@ -18,6 +18,7 @@ package org.gradle.integtests.fixtures
 
 import org.gradle.caching.local.internal.BuildCacheTempFileStore
 import org.gradle.caching.local.internal.DirectoryBuildCacheServiceFactory
+import org.gradle.caching.local.internal.DirectoryBuildCacheShards
 import org.gradle.internal.hash.Hashing
 import org.gradle.test.fixtures.file.TestFile
 
@@ -63,11 +64,15 @@ class TestBuildCache {
     }
 
     List<TestFile> listCacheFailedFiles() {
-        cacheDir.listFiles().findAll { it.name.endsWith(DirectoryBuildCacheServiceFactory.FAILED_READ_SUFFIX) }.sort()
+        listShardFiles().findAll { it.name.endsWith(DirectoryBuildCacheServiceFactory.FAILED_READ_SUFFIX) }.sort()
     }
 
     List<TestFile> listCacheFiles() {
-        cacheDir.listFiles().findAll { it.name ==~ /\p{XDigit}{${Hashing.defaultFunction().hexDigits}}/ }.sort()
+        listShardFiles().findAll { it.name ==~ /\p{XDigit}{${Hashing.defaultFunction().hexDigits}}/ }.sort()
+    }
+
+    private List<TestFile> listShardFiles() {
+        cacheDir.listFiles().findAll { DirectoryBuildCacheShards.isShardDirectory(it) }.collectMany { it.listFiles() as List }
     }
 
     boolean isEmpty() {
@@ -75,6 +80,6 @@ class TestBuildCache {
     }
 
     TestFile cacheArtifact(String cacheKey) {
-        new TestFile(cacheDir, cacheKey)
+        new TestFile(new DirectoryBuildCacheShards(cacheDir).entryFile(cacheKey))
     }
 }
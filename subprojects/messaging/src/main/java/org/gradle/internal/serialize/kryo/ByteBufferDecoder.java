@@ -0,0 +1,277 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.serialize.kryo;
+
+import org.gradle.internal.serialize.AbstractDecoder;
+import org.gradle.internal.serialize.Decoder;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the data encoded by a {@link KryoBackedEncoder} from a {@link ByteBuffer}, such as a memory-mapped file.
+ *
+ * <p>Unlike {@link KryoBackedDecoder}, this decoder does not copy the data into a buffer of its own, and can
+ * hand out slices of the underlying buffer through {@link #readSlice(int)}.
+ * The decoder reads exactly the bytes it decodes, so it can be used to decode part of a buffer.</p>
+ */
+public class ByteBufferDecoder extends AbstractDecoder implements Decoder {
+    private final ByteBuffer buffer;
+    private char[] chars = new char[32];
+
+    /**
+     * Creates a decoder that reads from the current position of the given buffer.
+     * The buffer is not modified, but its content is expected not to change while it is being decoded.
+     */
+    public ByteBufferDecoder(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+    }
+
+    /**
+     * Returns a buffer holding the next {@code length} bytes of this decoder, without copying them, and skips these bytes.
+     */
+    public ByteBuffer readSlice(int length) throws EOFException {
+        require(length);
+        ByteBuffer slice = buffer.slice();
+        slice.limit(length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    /**
+     * Returns the number of bytes consumed by this decoder.
+     */
+    public int getReadPosition() {
+        return buffer.position();
+    }
+
+    @Override
+    protected int maybeReadBytes(byte[] bytes, int offset, int count) {
+        if (count == 0) {
+            return 0;
+        }
+        int available = Math.min(count, buffer.remaining());
+        if (available == 0) {
+            return -1;
+        }
+        buffer.get(bytes, offset, available);
+        return available;
+    }
+
+    @Override
+    protected long maybeSkip(long count) {
+        int skipped = (int) Math.min(count, buffer.remaining());
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public byte readByte() throws EOFException {
+        require(1);
+        return buffer.get();
+    }
+
+    @Override
+    public void readBytes(byte[] bytes, int offset, int count) throws EOFException {
+        require(count);
+        buffer.get(bytes, offset, count);
+    }
+
+    @Override
+    public long readLong() throws EOFException {
+        require(8);
+        return buffer.getLong();
+    }
+
+    @Override
+    public long readSmallLong() throws EOFException {
+        int b = readByte();
+        long result = b & 0x7F;
+        for (int shift = 7; shift < 56 && (b & 0x80) != 0; shift += 7) {
+            b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+        }
+        if ((b & 0x80) != 0) {
+            // The 9th byte holds all of its 8 bits
+            result |= (long) readByte() << 56;
+        }
+        return result;
+    }
+
+    @Override
+    public int readInt() throws EOFException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    @Override
+    public int readSmallInt() throws EOFException {
+        int b = readByte();
+        int result = b & 0x7F;
+        for (int shift = 7; shift <= 28 && (b & 0x80) != 0; shift += 7) {
+            b = readByte();
+            result |= (b & 0x7F) << shift;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean readBoolean() throws EOFException {
+        return readByte() == 1;
+    }
+
+    @Override
+    public String readString() throws EOFException {
+        return readNullableString();
+    }
+
+    @Nullable
+    @Override
+    public String readNullableString() throws EOFException {
+        int b = readByte();
+        if ((b & 0x80) == 0) {
+            return readAscii();
+        }
+        int charCount = readUtf8Length(b);
+        switch (charCount) {
+            case 0:
+                return null;
+            case 1:
+                return "";
+            default:
+                return readUtf8(charCount - 1);
+        }
+    }
+
+    /**
+     * Reads a string of ASCII characters, whose last character has its high bit set. The first character has already been read.
+     */
+    private String readAscii() throws EOFException {
+        int start = buffer.position() - 1;
+        int b;
+        do {
+            b = readByte();
+        } while ((b & 0x80) == 0);
+        int length = buffer.position() - start;
+        char[] chars = charsFor(length);
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (buffer.get(start + i) & 0x7F);
+        }
+        return new String(chars, 0, length);
+    }
+
+    private int readUtf8Length(int b) throws EOFException {
+        int result = b & 0x3F;
+        if ((b & 0x40) != 0) {
+            for (int shift = 6; shift <= 27; shift += 7) {
+                b = readByte();
+                result |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private String readUtf8(int charCount) throws EOFException {
+        char[] chars = charsFor(charCount);
+        int charIndex = 0;
+        if (buffer.hasArray() && buffer.remaining() >= charCount) {
+            // Fast path for the leading ASCII characters
+            byte[] bytes = buffer.array();
+            int offset = buffer.arrayOffset() + buffer.position();
+            while (charIndex < charCount && bytes[offset + charIndex] >= 0) {
+                chars[charIndex] = (char) bytes[offset + charIndex];
+                charIndex++;
+            }
+            buffer.position(buffer.position() + charIndex);
+        }
+        for (; charIndex < charCount; charIndex++) {
+            int b = readByte() & 0xFF;
+            switch (b >> 4) {
+                case 0:
+                case 1:
+                case 2:
+                case 3:
+                case 4:
+                case 5:
+                case 6:
+                case 7:
+                    chars[charIndex] = (char) b;
+                    break;
+                case 12:
+                case 13:
+                    chars[charIndex] = (char) ((b & 0x1F) << 6 | readByte() & 0x3F);
+                    break;
+                case 14:
+                    chars[charIndex] = (char) ((b & 0x0F) << 12 | (readByte() & 0x3F) << 6 | readByte() & 0x3F);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected character encoding.");
+            }
+        }
+        return new String(chars, 0, charCount);
+    }
+
+    private char[] charsFor(int length) {
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        return chars;
+    }
+
+    @Override
+    public void skipChunked() throws EOFException {
+        while (true) {
+            int count = readSmallInt();
+            if (count == 0) {
+                break;
+            }
+            require(count);
+            buffer.position(buffer.position() + count);
+        }
+    }
+
+    @Override
+    public <T> T decodeChunked(DecodeAction<Decoder, T> decodeAction) throws Exception {
+        ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        while (true) {
+            int count = readSmallInt();
+            if (count == 0) {
+                break;
+            }
+            ByteBuffer chunk = readSlice(count);
+            if (chunk.hasArray()) {
+                chunks.write(chunk.array(), chunk.arrayOffset(), count);
+            } else {
+                byte[] bytes = new byte[count];
+                chunk.get(bytes);
+                chunks.write(bytes, 0, count);
+            }
+        }
+        return decodeAction.read(new ByteBufferDecoder(ByteBuffer.wrap(chunks.toByteArray())));
+    }
+
+    private void require(int count) throws EOFException {
+        if (buffer.remaining() < count) {
+            throw new EOFException();
+        }
+    }
+}
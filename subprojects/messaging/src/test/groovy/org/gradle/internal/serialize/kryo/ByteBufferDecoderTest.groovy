@@ -0,0 +1,143 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.serialize.kryo
+
+import com.esotericsoftware.kryo.io.Output
+import org.gradle.internal.serialize.AbstractCodecTest
+import org.gradle.internal.serialize.Decoder
+import org.gradle.internal.serialize.Encoder
+
+import java.nio.ByteBuffer
+
+class ByteBufferDecoderTest extends AbstractCodecTest {
+    @Override
+    void encodeTo(OutputStream outputStream, Closure<Encoder> closure) {
+        def encoder = new KryoBackedEncoder(outputStream, 10)
+        closure.call(encoder)
+        encoder.flush()
+    }
+
+    @Override
+    void decodeFrom(InputStream inputStream, Closure<Decoder> closure) {
+        // The decoder reads from a buffer rather than from a stream
+        decode(inputStream instanceof ByteArrayInputStream ? inputStream.bytes : new byte[0], closure)
+    }
+
+    @Override
+    void decode(byte[] bytes, Closure<Decoder> closure) {
+        closure.call(new ByteBufferDecoder(ByteBuffer.wrap(bytes)))
+    }
+
+    def "can decode strings from a direct buffer"() {
+        when:
+        def bytes = encode { Encoder encoder ->
+            encoder.writeString("")
+            encoder.writeString("a")
+            encoder.writeString("some string")
+            encoder.writeString("été 世界")
+            encoder.writeNullableString(null)
+            encoder.writeString("x" * 1000)
+        }
+        def buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes)
+        buffer.flip()
+
+        then:
+        def decoder = new ByteBufferDecoder(buffer)
+        decoder.readString() == ""
+        decoder.readString() == "a"
+        decoder.readString() == "some string"
+        decoder.readString() == "été 世界"
+        decoder.readNullableString() == null
+        decoder.readString() == "x" * 1000
+        decoder.readPosition == bytes.length
+    }
+
+    def "can decode strings written by Kryo"() {
+        def output = new Output(100)
+        output.writeString("ab")
+        output.writeString("some ascii string")
+        output.writeString("été")
+
+        expect:
+        def decoder = new ByteBufferDecoder(ByteBuffer.wrap(output.toBytes()))
+        decoder.readString() == "ab"
+        decoder.readString() == "some ascii string"
+        decoder.readString() == "été"
+    }
+
+    def "can slice bytes without copying them"() {
+        when:
+        def bytes = encode { Encoder encoder ->
+            encoder.writeSmallInt(3)
+            encoder.writeBytes([1, 2, 3] as byte[])
+            encoder.writeString("done")
+        }
+        def buffer = ByteBuffer.wrap(bytes)
+
+        then:
+        def decoder = new ByteBufferDecoder(buffer)
+        def length = decoder.readSmallInt()
+        def slice = decoder.readSlice(length)
+        slice.remaining() == 3
+        slice.array().is(bytes)
+        slice.get(0) == 1 as byte
+        slice.get(2) == 3 as byte
+        decoder.readString() == "done"
+    }
+
+    def "decodes from the position of the buffer"() {
+        when:
+        def bytes = encode { Encoder encoder ->
+            encoder.writeInt(12)
+            encoder.writeString("value")
+        }
+        def buffer = ByteBuffer.wrap(bytes)
+        buffer.position(4)
+
+        then:
+        def decoder = new ByteBufferDecoder(buffer)
+        decoder.readString() == "value"
+        decoder.readPosition == bytes.length - 4
+        buffer.position() == 4
+    }
+
+    def "can decode and skip byte streams"() {
+        when:
+        def bytes = encode { Encoder encoder ->
+            encoder.encodeChunked { Encoder nested ->
+                nested.writeSmallInt(12)
+                nested.writeString("chunked")
+            }
+            encoder.encodeChunked {}
+            encoder.encodeChunked { Encoder nested ->
+                nested.writeString("skipped")
+            }
+            encoder.writeString("done")
+        }
+
+        then:
+        decode(bytes) { Decoder decoder ->
+            decoder.decodeChunked { Decoder nested ->
+                assert nested.readSmallInt() == 12
+                assert nested.readString() == "chunked"
+            }
+            decoder.decodeChunked {}
+            decoder.skipChunked()
+            assert decoder.readString() == "done"
+        }
+    }
+}
@@ -282,7 +282,7 @@ public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final Persis
             if (entry == null) {
                 File cacheFile = findCacheFile(parameters);
                 LOG.debug("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters);
 
                 MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
                 CacheDecorator decorator = parameters.getCacheDecorator();
@@ -315,8 +315,8 @@ public <K, V> boolean cacheExists(PersistentIndexedCacheParameters<K, V> paramet
         return findCacheFile(parameters).exists();
     }
 
-    <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
-        return new BTreePersistentIndexedCache<>(cacheFile, keySerializer, valueSerializer);
+    <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, PersistentIndexedCacheParameters<K, V> parameters) {
+        return new BTreePersistentIndexedCache<>(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer(), parameters.isMemoryMapped());
     }
 
     /**
@@ -482,6 +482,7 @@ void assertCompatibleCacheParameters(PersistentIndexedCacheParameters<K, V> para
             checkCompatibleKeySerializer(faultMessages, parameters.getKeySerializer());
             checkCompatibleValueSerializer(faultMessages, parameters.getValueSerializer());
             checkCompatibleCacheDecorator(faultMessages, parameters.getCacheDecorator());
+            checkMemoryMappingMatch(faultMessages, parameters.isMemoryMapped());
 
             if (!faultMessages.isEmpty()) {
                 String lineSeparator = SystemProperties.getInstance().getLineSeparator();
@@ -524,6 +525,14 @@ private void checkCompatibleCacheDecorator(Collection<String> faultMessages, Cac
                         cacheDecorator, parameters.getCacheDecorator()));
             }
         }
+
+        private void checkMemoryMappingMatch(Collection<String> faultMessages, boolean memoryMapped) {
+            if (memoryMapped != parameters.isMemoryMapped()) {
+                faultMessages.add(
+                    String.format(" * Requested memory mapping (%s) doesn't match current cache memory mapping (%s)",
+                        memoryMapped, parameters.isMemoryMapped()));
+            }
+        }
     }
 
     @VisibleForTesting
@@ -18,6 +18,8 @@
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
 import org.gradle.cache.AsyncCacheAccess;
 import org.gradle.cache.CacheDecorator;
 import org.gradle.cache.CrossProcessCacheAccess;
@@ -26,6 +28,10 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -33,12 +39,17 @@
  * The in-memory cache is invalidated when the backing cache is changed by another process.
  *
  * Also decorates each cache so that updates to the backing cache are made asynchronously.
+ *
+ * The in-memory caches are kept across builds in a long living process, sized in proportion to the heap by a {@link HeapProportionalCacheSizer}.
+ * Their hit rates can be reported with {@link #reportStatistics()}.
  */
 public class DefaultInMemoryCacheDecoratorFactory implements InMemoryCacheDecoratorFactory {
     private final static Logger LOG = LoggerFactory.getLogger(DefaultInMemoryCacheDecoratorFactory.class);
     private final boolean longLivingProcess;
     private final HeapProportionalCacheSizer cacheSizer = new HeapProportionalCacheSizer();
     private final CrossBuildInMemoryCache<String, CacheDetails> caches;
+    // The in-memory caches that have been created, which are otherwise only softly referenced once they have not been used for a while
+    private final Map<String, WeakReference<CacheDetails>> createdCaches = new ConcurrentHashMap<>();
 
     public DefaultInMemoryCacheDecoratorFactory(boolean longLivingProcess, CrossBuildInMemoryCacheFactory cacheFactory) {
         this.longLivingProcess = longLivingProcess;
@@ -66,6 +77,7 @@ private CacheDetails getCache(final String cacheId, final int maxSize) {
             Cache<Object, Object> entries = createInMemoryCache(cacheId, maxSize);
             CacheDetails details = new CacheDetails(cacheId, maxSize, entries, new AtomicReference<>(null));
             LOG.debug("Creating in-memory store for cache {} (max size: {})", cacheId, maxSize);
+            createdCaches.put(cacheId, new WeakReference<>(details));
             return details;
         });
         if (cacheDetails.maxEntries != maxSize) {
@@ -74,6 +86,34 @@ private CacheDetails getCache(final String cacheId, final int maxSize) {
         return cacheDetails;
     }
 
+    /**
+     * Returns the statistics of each in-memory cache that has been used since the previous call, by cache id.
+     */
+    public Map<String, CacheStats> collectStatistics() {
+        ImmutableMap.Builder<String, CacheStats> statistics = ImmutableMap.builder();
+        for (Iterator<WeakReference<CacheDetails>> iterator = createdCaches.values().iterator(); iterator.hasNext(); ) {
+            CacheDetails cacheDetails = iterator.next().get();
+            if (cacheDetails == null) {
+                iterator.remove();
+                continue;
+            }
+            CacheStats sincePreviousCall = cacheDetails.statisticsSincePreviousCall();
+            if (sincePreviousCall.requestCount() > 0) {
+                statistics.put(cacheDetails.cacheId, sincePreviousCall);
+            }
+        }
+        return statistics.build();
+    }
+
+    /**
+     * Logs the hit rate of each in-memory cache that has been used since the previous report.
+     */
+    public void reportStatistics() {
+        collectStatistics().forEach((cacheId, stats) ->
+            LOG.info("In-memory cache of {}: {} hits, {} misses, hit rate {}%, {} evictions", cacheId, stats.hitCount(), stats.missCount(), Math.round(stats.hitRate() * 100), stats.evictionCount())
+        );
+    }
+
     private Cache<Object, Object> createInMemoryCache(String cacheId, int maxSize) {
         LoggingEvictionListener evictionListener = new LoggingEvictionListener(cacheId, maxSize);
         final CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().removalListener(evictionListener);
@@ -121,6 +161,7 @@ private static class CacheDetails {
         private final int maxEntries;
         private final Cache<Object, Object> entries;
         private final AtomicReference<FileLock.State> lockState;
+        private CacheStats previousStatistics = new CacheStats(0, 0, 0, 0, 0, 0);
 
         CacheDetails(String cacheId, int maxEntries, Cache<Object, Object> entries, AtomicReference<FileLock.State> lockState) {
             this.cacheId = cacheId;
@@ -128,5 +169,12 @@ private static class CacheDetails {
             this.entries = entries;
             this.lockState = lockState;
         }
+
+        synchronized CacheStats statisticsSincePreviousCall() {
+            CacheStats statistics = entries.stats();
+            CacheStats sincePreviousCall = statistics.minus(previousStatistics);
+            previousStatistics = statistics;
+            return sincePreviousCall;
+        }
     }
 }
@@ -58,17 +58,30 @@
     private HeaderBlock header;
 
     public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
-        this(cacheFile, keySerializer, valueSerializer, (short) 512, 512);
+        this(cacheFile, keySerializer, valueSerializer, false);
+    }
+
+    public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, boolean memoryMapped) {
+        this(cacheFile, keySerializer, valueSerializer, (short) 512, 512, memoryMapped);
     }
 
     public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer,
                                        short maxChildIndexEntries, int maxFreeListEntries) {
+        this(cacheFile, keySerializer, valueSerializer, maxChildIndexEntries, maxFreeListEntries, false);
+    }
+
+    /**
+     * @param memoryMapped when true, the cache file is accessed through a {@link MemoryMappedBlockStore} rather than a {@link FileBackedBlockStore}. Both use the same file format.
+     */
+    public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                                       short maxChildIndexEntries, int maxFreeListEntries, boolean memoryMapped) {
         this.cacheFile = cacheFile;
         this.keyHasher = new KeyHasher<K>(keySerializer);
         this.serializer = valueSerializer;
         this.maxChildIndexEntries = maxChildIndexEntries;
         this.minIndexChildNodes = maxChildIndexEntries / 2;
-        BlockStore cachingStore = new CachingBlockStore(new FileBackedBlockStore(cacheFile), ImmutableSet.of(IndexBlock.class, FreeListBlockStore.FreeListBlock.class));
+        BlockStore backingStore = memoryMapped ? new MemoryMappedBlockStore(cacheFile) : new FileBackedBlockStore(cacheFile);
+        BlockStore cachingStore = new CachingBlockStore(backingStore, ImmutableSet.of(IndexBlock.class, FreeListBlockStore.FreeListBlock.class));
         this.store = new StateCheckBlockStore(new FreeListBlockStore(cachingStore, maxFreeListEntries));
         try {
             open();
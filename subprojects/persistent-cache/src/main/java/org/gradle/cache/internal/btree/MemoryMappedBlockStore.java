@@ -0,0 +1,418 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.gradle.api.UncheckedIOException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link BlockStore} that reads and writes blocks through memory-mapped regions of the cache file, using the same file format as {@link FileBackedBlockStore}.
+ *
+ * <p>The file is mapped in fixed size regions, and grows one region at a time. Blocks are read directly from the mapped regions, without copying
+ * them into an intermediate buffer. A block is written by first serializing its payload, then copying the body and the trailing byte count into the
+ * mapped region and finally writing the block header, so that a block that is only partially written when the process stops does not appear to be valid.
+ * This ordering only holds in memory: the mapped regions are not forced to disk before the store is closed, so after an operating system crash or power loss
+ * the blocks may reach the disk in any order, and the file may be inconsistent. This is the same as for {@link FileBackedBlockStore}, which does not sync either.</p>
+ *
+ * <p>Since the file grows in whole regions, it is truncated to the end of the last block when the store is closed. Should the process stop before this
+ * happens, the unused space at the end of the file is simply never allocated.</p>
+ */
+public class MemoryMappedBlockStore implements BlockStore {
+    static final int DEFAULT_REGION_SIZE = 4 * 1024 * 1024;
+
+    private final File cacheFile;
+    private final int regionSize;
+    private final List<MappedByteBuffer> regions = new ArrayList<MappedByteBuffer>();
+    private final BlockOutput output = new BlockOutput();
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private boolean readOnly;
+    private long nextBlock;
+    private Factory factory;
+    private long currentFileSize;
+
+    public MemoryMappedBlockStore(File cacheFile) {
+        this(cacheFile, DEFAULT_REGION_SIZE);
+    }
+
+    MemoryMappedBlockStore(File cacheFile, int regionSize) {
+        this.cacheFile = cacheFile;
+        this.regionSize = regionSize;
+    }
+
+    @Override
+    public String toString() {
+        return "cache '" + cacheFile + "'";
+    }
+
+    @Override
+    public void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            cacheFile.getParentFile().mkdirs();
+            file = openRandomAccessFile();
+            channel = file.getChannel();
+            currentFileSize = file.length();
+            nextBlock = currentFileSize;
+            if (currentFileSize == 0) {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private RandomAccessFile openRandomAccessFile() throws FileNotFoundException {
+        try {
+            readOnly = false;
+            return new RandomAccessFile(cacheFile, "rw");
+        } catch (FileNotFoundException e) {
+            readOnly = true;
+            return new RandomAccessFile(cacheFile, "r");
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            try {
+                if (!readOnly) {
+                    for (MappedByteBuffer region : regions) {
+                        region.force();
+                    }
+                    // Discard the mapped regions before truncating, they must not be accessed past the end of the file
+                    regions.clear();
+                    file.setLength(currentFileSize);
+                }
+            } finally {
+                regions.clear();
+                file.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            regions.clear();
+            file.setLength(0);
+            currentFileSize = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        nextBlock = 0;
+    }
+
+    @Override
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    @Override
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(BlockPointer.pos(0), payloadType);
+    }
+
+    @Override
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void write(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        try {
+            blockImpl.write();
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long alloc(long length) {
+        long pos = nextBlock;
+        nextBlock += length;
+        return pos;
+    }
+
+    /**
+     * Returns the mapped region containing the given position, mapping further regions as required.
+     * When the store is writable, mapping a region past the end of the file grows the file to the end of that region.
+     */
+    private MappedByteBuffer region(long pos) throws IOException {
+        int index = (int) (pos / regionSize);
+        while (regions.size() <= index) {
+            long start = (long) regions.size() * regionSize;
+            if (readOnly) {
+                long size = Math.min(regionSize, channel.size() - start);
+                if (size <= 0) {
+                    throw new IOException("Cannot map " + cacheFile + " past its end at " + start + ".");
+                }
+                regions.add(channel.map(FileChannel.MapMode.READ_ONLY, start, size));
+            } else {
+                regions.add(channel.map(FileChannel.MapMode.READ_WRITE, start, regionSize));
+            }
+        }
+        return regions.get(index);
+    }
+
+    private void put(long pos, byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            ByteBuffer region = region(pos).duplicate();
+            int regionOffset = (int) (pos % regionSize);
+            int count = Math.min(length, regionSize - regionOffset);
+            ((Buffer) region).position(regionOffset);
+            region.put(bytes, offset, count);
+            pos += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    private void putInt(long pos, int value) throws IOException {
+        byte[] bytes = {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        put(pos, bytes, 0, bytes.length);
+    }
+
+    private final class BlockImpl extends Block {
+        private static final int HEADER_SIZE = 1 + INT_SIZE; // type, payload size
+        private static final int TAIL_SIZE = INT_SIZE;
+
+        private BlockPointer pos;
+        private int payloadSize;
+
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(payload);
+            pos = null;
+            payloadSize = -1;
+        }
+
+        @Override
+        public boolean hasPos() {
+            return pos != null;
+        }
+
+        @Override
+        public BlockPointer getPos() {
+            if (pos == null) {
+                pos = BlockPointer.pos(alloc(getSize()));
+            }
+            return pos;
+        }
+
+        @Override
+        public void setPos(BlockPointer pos) {
+            assert this.pos == null && !pos.isNull();
+            this.pos = pos;
+        }
+
+        @Override
+        public int getSize() {
+            if (payloadSize < 0) {
+                payloadSize = getPayload().getSize();
+            }
+            return payloadSize + HEADER_SIZE + TAIL_SIZE;
+        }
+
+        @Override
+        public void setSize(int size) {
+            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+            assert newPayloadSize >= payloadSize;
+            payloadSize = newPayloadSize;
+        }
+
+        public void write() throws Exception {
+            long pos = getPos().getPos();
+            BlockPayload payload = getPayload();
+
+            // Serialize body, so that nothing is written when the payload cannot be serialized
+            DataOutputStream outputStream = output.start();
+            payload.write(outputStream);
+            outputStream.flush();
+
+            // Same count as written by FileBackedBlockStore, which includes the header
+            long bytesWritten = HEADER_SIZE + (long) output.size();
+            if (bytesWritten > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Block payload exceeds maximum size");
+            }
+            long finalSize = pos + HEADER_SIZE + TAIL_SIZE + payloadSize;
+
+            // Write body and count
+            put(pos + HEADER_SIZE, output.buffer(), 0, output.size());
+            putInt(pos + bytesWritten, (int) bytesWritten);
+
+            // Write header last
+            putInt(pos + 1, payloadSize);
+            put(pos, new byte[]{payload.getType()}, 0, 1);
+            output.done();
+
+            if (currentFileSize < finalSize) {
+                currentFileSize = finalSize;
+            }
+        }
+
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            if (pos + HEADER_SIZE >= currentFileSize) {
+                throw blockCorruptedException();
+            }
+
+            BlockInput input = new BlockInput(pos);
+            DataInputStream inputStream = new DataInputStream(input);
+
+            BlockPayload payload = getPayload();
+
+            // Read header
+            byte type = inputStream.readByte();
+            if (type != payload.getType()) {
+                throw blockCorruptedException();
+            }
+
+            // Read body
+            payloadSize = inputStream.readInt();
+            if (pos + HEADER_SIZE + TAIL_SIZE + payloadSize > currentFileSize) {
+                throw blockCorruptedException();
+            }
+            payload.read(inputStream);
+
+            // Read and verify count
+            long actualCount = input.getBytesRead();
+            long count = inputStream.readInt();
+            if (actualCount != count) {
+                throw blockCorruptedException();
+            }
+        }
+
+        @Override
+        public RuntimeException blockCorruptedException() {
+            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
+                    MemoryMappedBlockStore.this));
+        }
+    }
+
+    /**
+     * Reads bytes directly from the mapped regions, starting at some position.
+     */
+    private class BlockInput extends InputStream {
+        private final long start;
+        private long pos;
+
+        BlockInput(long start) {
+            this.start = start;
+            this.pos = start;
+        }
+
+        long getBytesRead() {
+            return pos - start;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos >= currentFileSize) {
+                return -1;
+            }
+            int value = region(pos).get((int) (pos % regionSize)) & 0xff;
+            pos++;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (pos >= currentFileSize) {
+                return -1;
+            }
+            ByteBuffer region = region(pos).duplicate();
+            int regionOffset = (int) (pos % regionSize);
+            int count = (int) Math.min(Math.min(length, region.limit() - regionOffset), currentFileSize - pos);
+            ((Buffer) region).position(regionOffset);
+            region.get(bytes, offset, count);
+            pos += count;
+            return count;
+        }
+    }
+
+    /**
+     * Collects the serialized body of a block. The buffer is reused between blocks.
+     */
+    private static class BlockOutput extends ByteArrayOutputStream {
+        private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+        DataOutputStream start() {
+            reset();
+            return new DataOutputStream(this);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        void done() {
+            if (buf.length > MAX_RETAINED_SIZE) {
+                buf = new byte[32];
+            }
+            reset();
+        }
+    }
+}
@@ -28,7 +28,6 @@ import org.gradle.cache.PersistentIndexedCacheParameters
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache
 import org.gradle.internal.Factory
 import org.gradle.internal.serialize.BaseSerializerFactory
-import org.gradle.internal.serialize.Serializer
 import org.gradle.test.fixtures.concurrent.ConcurrentSpec
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
@@ -54,7 +53,7 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
     private DefaultCacheAccess newAccess(FileLockManager.LockMode lockMode) {
         new DefaultCacheAccess("<display-name>", lockFile, mode(lockMode), cacheDir, lockManager, initializationAction, cleanupAction, executorFactory) {
             @Override
-            <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+            <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, PersistentIndexedCacheParameters<K, V> parameters) {
                 return backingCache
             }
         }
@@ -66,6 +66,39 @@ class InMemoryCacheDecoratorFactoryTest extends Specification {
         0 * target._
     }
 
+    def "collects statistics of in-memory caches used since previous collection"() {
+        given:
+        def cache = cacheFactory.decorator(100, true).decorate("path/fileSnapshots.bin", "fileSnapshots", target, crossProcessCacheAccess, asyncCacheAccess)
+        crossProcessCacheAccess.withFileLock(_) >> { Factory task -> task.create() }
+        asyncCacheAccess.read(_) >> { Factory task -> task.create() }
+        target.getIfPresent("key") >> "result"
+
+        when:
+        cache.getIfPresent("key")
+        cache.getIfPresent("key")
+        cache.getIfPresent("key")
+        def statistics = cacheFactory.collectStatistics()
+
+        then:
+        statistics.keySet() == ["path/fileSnapshots.bin"] as Set
+        statistics["path/fileSnapshots.bin"].hitCount() == 2
+        statistics["path/fileSnapshots.bin"].missCount() == 1
+
+        when:
+        cache.getIfPresent("key")
+        statistics = cacheFactory.collectStatistics()
+
+        then:
+        statistics["path/fileSnapshots.bin"].hitCount() == 1
+        statistics["path/fileSnapshots.bin"].missCount() == 0
+
+        when:
+        statistics = cacheFactory.collectStatistics()
+
+        then:
+        statistics.isEmpty()
+    }
+
     def "does not cache result when not long running process"() {
         given:
         def cache = cacheFactory.decorator(100, false).decorate("path/fileSnapshots.bin", "fileSnapshots", target, crossProcessCacheAccess, asyncCacheAccess)
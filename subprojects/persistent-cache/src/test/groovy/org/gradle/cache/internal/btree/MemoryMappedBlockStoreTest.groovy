@@ -0,0 +1,178 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree
+
+import org.gradle.internal.serialize.DefaultSerializer
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class MemoryMappedBlockStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    def cacheFile = tmpDir.file("cache.bin")
+    def factory = { type -> new TextBlock() } as BlockStore.Factory
+
+    def "can write and read blocks spanning several regions"() {
+        def store = new MemoryMappedBlockStore(cacheFile, 16)
+        def blocks = (0..<10).collect { new TextBlock("block $it ".multiply(it + 1)) }
+
+        when:
+        store.open({}, factory)
+        blocks.each {
+            store.attach(it)
+            store.write(it)
+        }
+
+        then:
+        blocks.every { store.read(it.pos, TextBlock).text == it.text }
+
+        cleanup:
+        store.close()
+    }
+
+    def "truncates file to the end of the last block on close"() {
+        def store = new MemoryMappedBlockStore(cacheFile, 1024)
+        def block = new TextBlock("some text")
+
+        when:
+        store.open({}, factory)
+        store.attach(block)
+        store.write(block)
+
+        then:
+        cacheFile.length() == 1024
+
+        when:
+        store.close()
+
+        then:
+        cacheFile.length() == block.block.size
+    }
+
+    def "uses the same file format as file backed store"() {
+        def mappedStore = new MemoryMappedBlockStore(cacheFile, 16)
+        def first = new TextBlock("first")
+        def second = new TextBlock("second block")
+
+        when:
+        def fileStore = new FileBackedBlockStore(cacheFile)
+        fileStore.open({}, factory)
+        fileStore.attach(first)
+        fileStore.write(first)
+        fileStore.close()
+
+        mappedStore.open({}, factory)
+        mappedStore.attach(second)
+        mappedStore.write(second)
+        mappedStore.close()
+
+        fileStore = new FileBackedBlockStore(cacheFile)
+        fileStore.open({}, factory)
+
+        then:
+        fileStore.readFirst(TextBlock).text == "first"
+        fileStore.read(second.pos, TextBlock).text == "second block"
+
+        cleanup:
+        fileStore.close()
+    }
+
+    def "detects block with incomplete header"() {
+        def store = new MemoryMappedBlockStore(cacheFile, 1024)
+        def block = new TextBlock("some text")
+        store.open({}, factory)
+        store.attach(block)
+        store.write(block)
+        store.close()
+
+        // Simulate a write that stopped before the header was written
+        def file = new RandomAccessFile(cacheFile, "rw")
+        file.write(0)
+        file.close()
+
+        when:
+        store.open({}, factory)
+        store.readFirst(TextBlock)
+
+        then:
+        thrown(CorruptedCacheException)
+
+        cleanup:
+        store.close()
+    }
+
+    def "cache can use memory mapped store"() {
+        def serializer = new DefaultSerializer<String>()
+
+        when:
+        def cache = new BTreePersistentIndexedCache<String, String>(cacheFile, serializer, serializer, (short) 4, 100, true)
+        (0..<100).each { cache.put("key $it", "value $it") }
+        cache.verify()
+        cache.close()
+
+        cache = new BTreePersistentIndexedCache<String, String>(cacheFile, serializer, serializer, (short) 4, 100, false)
+
+        then:
+        (0..<100).every { cache.get("key $it") == "value $it" }
+
+        when:
+        cache.put("key 100", "value 100")
+        cache.close()
+        cache = new BTreePersistentIndexedCache<String, String>(cacheFile, serializer, serializer, (short) 4, 100, true)
+
+        then:
+        (0..100).every { cache.get("key $it") == "value $it" }
+        cache.verify()
+
+        cleanup:
+        cache.close()
+    }
+
+    static class TextBlock extends BlockPayload {
+        String text
+
+        TextBlock(String text = null) {
+            this.text = text
+        }
+
+        @Override
+        protected int getSize() {
+            return Block.INT_SIZE + text.length() * 2
+        }
+
+        @Override
+        protected byte getType() {
+            return 0x7f
+        }
+
+        @Override
+        protected void read(DataInputStream inputStream) throws Exception {
+            def chars = new char[inputStream.readInt()]
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = inputStream.readChar()
+            }
+            text = new String(chars)
+        }
+
+        @Override
+        protected void write(DataOutputStream outputStream) throws Exception {
+            outputStream.writeInt(text.length())
+            outputStream.writeChars(text)
+        }
+    }
+}
@@ -23,6 +23,7 @@ dependencies {
 
     testImplementation(project(":internal-integ-testing"))
     testImplementation(libs.jettyWebApp)
+    testImplementation(libs.jettyHttp2Server)
     testImplementation(testFixtures(project(":core")))
     testImplementation(testFixtures(project(":logging")))
 
@@ -33,3 +34,21 @@ dependencies {
 
     integTestDistributionRuntimeOnly(project(":distributions-core"))
 }
+
+// JdkHttpClientTransport uses the java.net.http API. It is compiled for Java 11 separately, and only loaded when running on Java 11 or later
+val java11SourceSet = sourceSets.create("java11") {
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+}
+
+tasks.named<JavaCompile>(java11SourceSet.compileJavaTaskName) {
+    options.release.set(11)
+}
+
+tasks.jar {
+    from(java11SourceSet.output)
+}
+
+sourceSets.test {
+    compileClasspath += java11SourceSet.output
+    runtimeClasspath += java11SourceSet.output
+}
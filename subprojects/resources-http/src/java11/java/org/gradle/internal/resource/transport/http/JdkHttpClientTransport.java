@@ -0,0 +1,356 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpVersion;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.gradle.internal.resource.UriTextResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLParameters;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Performs GET and HEAD requests with the JDK 11 {@link HttpClient}, which multiplexes the concurrent requests to a host
+ * over a single HTTP/2 connection when the server supports it, and falls back to HTTP/1.1 otherwise. This class is compiled for
+ * Java 11 and is loaded by the {@link JdkHttpClientTransportLoader}.
+ *
+ * The number of requests in flight to a host is limited, so that downloading many artifacts at once does not exceed the number
+ * of concurrent streams the server accepts. Repositories which require authentication, are accessed through a proxy or
+ * skip the verification of the host name keep using the Apache client.
+ */
+class JdkHttpClientTransport implements HttpRequestTransport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JdkHttpClientTransport.class);
+    public static final String MAX_CONCURRENT_REQUESTS_PER_HOST_SYSTEM_PROPERTY = "org.gradle.internal.http.http2.maxConcurrentRequestsPerHost";
+    /**
+     * Most servers accept 100 concurrent streams per HTTP/2 connection, so we stay below that.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST = 64;
+    private static final Set<Integer> REDIRECT_STATUS_CODES = ImmutableSet.of(301, 302, 303, 307, 308);
+    private static final ProtocolVersion HTTP_2 = new ProtocolVersion("HTTP", 2, 0);
+
+    private final HttpSettings settings;
+    private final HttpClient client;
+    private final int maxConcurrentRequestsPerHost;
+    private final ConcurrentMap<String, Semaphore> permitsPerHost = new ConcurrentHashMap<>();
+
+    JdkHttpClientTransport(HttpSettings settings) {
+        this.settings = settings;
+        this.maxConcurrentRequestsPerHost = initMaxConcurrentRequestsPerHost();
+
+        SSLParameters sslParameters = new SSLParameters();
+        sslParameters.setProtocols(HttpClientConfigurer.supportedTlsVersions().toArray(new String[0]));
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            // Redirects are followed by this class, so that they can be verified
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .sslContext(settings.getSslContextFactory().createSslContext())
+            .sslParameters(sslParameters);
+        int connectionTimeoutMs = settings.getTimeoutSettings().getConnectionTimeoutMs();
+        if (connectionTimeoutMs > 0) {
+            builder.connectTimeout(Duration.ofMillis(connectionTimeoutMs));
+        }
+        this.client = builder.build();
+    }
+
+    int getMaxConcurrentRequestsPerHost() {
+        return maxConcurrentRequestsPerHost;
+    }
+
+    @Override
+    public HttpClientResponse performHttpRequest(HttpRequestBase request) throws IOException {
+        String method = request.getMethod();
+        URI uri = request.getURI();
+        LOGGER.debug("Performing HTTP {} with the JDK client: {}", method, HttpClientHelper.stripUserCredentials(uri));
+
+        List<URI> redirectLocations = new ArrayList<>();
+        while (true) {
+            JdkHttpResponse response = send(method, uri, request.getAllHeaders());
+            Optional<String> location = response.location();
+            if (!REDIRECT_STATUS_CODES.contains(response.getStatusLine().getStatusCode()) || !location.isPresent()) {
+                return new HttpClientResponse(method, uri, response);
+            }
+            response.close();
+            if (redirectLocations.size() >= settings.getMaxRedirects()) {
+                throw new IOException(String.format("Maximum redirects (%d) exceeded", settings.getMaxRedirects()));
+            }
+            uri = uri.resolve(location.get());
+            redirectLocations.add(uri);
+            settings.getRedirectVerifier().validateRedirects(redirectLocations);
+        }
+    }
+
+    private JdkHttpResponse send(String method, URI uri, Header[] headers) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+            .method(method, HttpRequest.BodyPublishers.noBody())
+            .header(HttpHeaders.USER_AGENT, UriTextResource.getUserAgentString());
+        int socketTimeoutMs = settings.getTimeoutSettings().getSocketTimeoutMs();
+        if (socketTimeoutMs > 0) {
+            // Applies until the response headers are received, the BodyInputStream applies the timeout to the reads of the body
+            builder.timeout(Duration.ofMillis(socketTimeoutMs));
+        }
+        for (Header header : headers) {
+            builder.header(header.getName(), header.getValue());
+        }
+        HttpRequest request = builder.build();
+
+        Semaphore permits = permitsPerHost.computeIfAbsent(uri.getScheme() + "://" + uri.getRawAuthority(), host -> new Semaphore(maxConcurrentRequestsPerHost));
+        boolean sent = false;
+        try {
+            permits.acquire();
+            try {
+                HttpResponse<Flow.Publisher<List<ByteBuffer>>> response = client.send(request, HttpResponse.BodyHandlers.ofPublisher());
+                JdkHttpResponse jdkResponse = new JdkHttpResponse(response, new BodyInputStream(response.body(), socketTimeoutMs), permits);
+                sent = true;
+                return jdkResponse;
+            } finally {
+                if (!sent) {
+                    permits.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("Interrupted while performing HTTP %s: %s", method, HttpClientHelper.stripUserCredentials(uri)));
+        }
+    }
+
+    private static int initMaxConcurrentRequestsPerHost() {
+        String systemProperty = System.getProperty(MAX_CONCURRENT_REQUESTS_PER_HOST_SYSTEM_PROPERTY);
+
+        if (!StringUtils.isBlank(systemProperty)) {
+            try {
+                int value = Integer.parseInt(systemProperty);
+                if (value > 0) {
+                    return value;
+                }
+            } catch (NumberFormatException e) {
+                // Warned about below
+            }
+            LOGGER.warn("Invalid value for java system property '{}': {}. Default value '{}' will be used.",
+                MAX_CONCURRENT_REQUESTS_PER_HOST_SYSTEM_PROPERTY, systemProperty, DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST);
+        }
+
+        return DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST;
+    }
+
+    /**
+     * Presents a response of the JDK client as an Apache one, holding a permit of its host until it is closed.
+     */
+    private static class JdkHttpResponse extends BasicHttpResponse implements CloseableHttpResponse {
+        private final HttpResponse<?> response;
+        private final InputStream body;
+        private final Semaphore permits;
+        private boolean closed;
+
+        JdkHttpResponse(HttpResponse<?> response, InputStream body, Semaphore permits) {
+            super(new BasicStatusLine(
+                response.version() == HttpClient.Version.HTTP_2 ? HTTP_2 : HttpVersion.HTTP_1_1,
+                response.statusCode(),
+                EnglishReasonPhraseCatalog.INSTANCE.getReason(response.statusCode(), Locale.ENGLISH)
+            ));
+            this.response = response;
+            this.body = body;
+            this.permits = permits;
+            response.headers().map().forEach((name, values) -> {
+                if (!name.startsWith(":")) {
+                    values.forEach(value -> addHeader(name, value));
+                }
+            });
+            if (!"HEAD".equals(response.request().method())) {
+                InputStreamEntity entity = new InputStreamEntity(body, response.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH).orElse(-1));
+                response.headers().firstValue(HttpHeaders.CONTENT_TYPE).ifPresent(entity::setContentType);
+                response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).ifPresent(entity::setContentEncoding);
+                setEntity(entity);
+            }
+        }
+
+        Optional<String> location() {
+            return response.headers().firstValue(HttpHeaders.LOCATION);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                try {
+                    body.close();
+                } finally {
+                    permits.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the body of a response, failing when no data is received for longer than the socket timeout, as the Apache client does.
+     * The input stream of the JDK client blocks until data is received.
+     */
+    private static class BodyInputStream extends InputStream implements Flow.Subscriber<List<ByteBuffer>> {
+        private static final Object COMPLETE = new Object();
+        private final BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+        private final int timeoutMs;
+        private volatile Flow.Subscription subscription;
+        private Iterator<ByteBuffer> buffers = Collections.emptyIterator();
+        private ByteBuffer current;
+        private boolean complete;
+        private volatile boolean closed;
+
+        BodyInputStream(Flow.Publisher<List<ByteBuffer>> publisher, int timeoutMs) {
+            this.timeoutMs = timeoutMs;
+            publisher.subscribe(this);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (closed) {
+                subscription.cancel();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            received.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            received.add(COMPLETE);
+        }
+
+        @Override
+        public int read() throws IOException {
+            ByteBuffer buffer = nextBuffer();
+            return buffer == null ? -1 : buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            ByteBuffer buffer = nextBuffer();
+            if (buffer == null) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return current == null ? 0 : current.remaining();
+        }
+
+        private ByteBuffer nextBuffer() throws IOException {
+            while (current == null || !current.hasRemaining()) {
+                if (buffers.hasNext()) {
+                    current = buffers.next();
+                    continue;
+                }
+                if (closed) {
+                    throw new IOException("The response body has been closed.");
+                }
+                if (complete) {
+                    return null;
+                }
+                Object next = poll();
+                if (next == COMPLETE) {
+                    complete = true;
+                    return null;
+                }
+                if (next instanceof Throwable) {
+                    complete = true;
+                    throw new IOException((Throwable) next);
+                }
+                @SuppressWarnings("unchecked")
+                List<ByteBuffer> items = (List<ByteBuffer>) next;
+                buffers = items.iterator();
+                subscription.request(1);
+            }
+            return current;
+        }
+
+        private Object poll() throws IOException {
+            try {
+                if (timeoutMs <= 0) {
+                    return received.take();
+                }
+                Object next = received.poll(timeoutMs, TimeUnit.MILLISECONDS);
+                if (next == null) {
+                    close();
+                    throw new SocketTimeoutException("Read timed out");
+                }
+                return next;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading the response body.");
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            Flow.Subscription subscription = this.subscription;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+}
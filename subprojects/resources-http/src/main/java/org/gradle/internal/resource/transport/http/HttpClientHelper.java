@@ -66,6 +66,12 @@ public class HttpClientHelper implements Closeable {
      */
     private final ConcurrentLinkedQueue<HttpContext> sharedContext;
 
+    /**
+     * Whether GET and HEAD requests are performed with the JDK HTTP client transport, which is created lazily, like the Apache client.
+     */
+    private final boolean useJdkTransport;
+    private HttpRequestTransport jdkTransport;
+
     /**
      * Use {@link HttpClientHelper.Factory#create(HttpSettings)} to instantiate instances.
      */
@@ -78,6 +84,8 @@ public class HttpClientHelper implements Closeable {
         } else {
             sharedContext = null;
         }
+        // The transport cannot be loaded before Java 11
+        this.useJdkTransport = JdkHttpClientTransportLoader.isAvailable() && JdkHttpClientTransportLoader.supports(settings);
     }
 
     private HttpClientResponse performRawHead(String source, boolean revalidate) {
@@ -132,7 +140,7 @@ public HttpClientResponse performRequest(HttpRequestBase request, boolean revali
     }
 
     protected HttpClientResponse executeGetOrHead(HttpRequestBase method) throws IOException {
-        HttpClientResponse response = performHttpRequest(method);
+        HttpClientResponse response = useJdkTransport ? getJdkTransport().performHttpRequest(method) : performHttpRequest(method);
         // Consume content for non-successful, responses. This avoids the connection being left open.
         if (!response.wasSuccessful()) {
             response.close();
@@ -227,8 +235,17 @@ private synchronized CloseableHttpClient getClient() {
         return client;
     }
 
+    private synchronized HttpRequestTransport getJdkTransport() {
+        if (jdkTransport == null) {
+            jdkTransport = JdkHttpClientTransportLoader.create(settings);
+        }
+        return jdkTransport;
+    }
+
     @Override
     public synchronized void close() throws IOException {
+        // The JDK client cannot be closed before Java 21, it releases its connections once it is no longer referenced
+        jdkTransport = null;
         if (client != null) {
             client.close();
             if (sharedContext != null) {
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import org.apache.http.conn.ssl.DefaultHostnameVerifier;
+import org.gradle.api.JavaVersion;
+import org.gradle.internal.UncheckedException;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Creates the {@code JdkHttpClientTransport}, which uses the Java 11 {@code java.net.http} API. The transport is compiled separately from
+ * the rest of this module and is loaded reflectively, so it must only be created once {@link #isAvailable()} has returned true.
+ */
+final class JdkHttpClientTransportLoader {
+    public static final String HTTP2_SYSTEM_PROPERTY = "org.gradle.internal.http.http2";
+    private static final String TRANSPORT_CLASS_NAME = "org.gradle.internal.resource.transport.http.JdkHttpClientTransport";
+
+    private JdkHttpClientTransportLoader() {
+    }
+
+    /**
+     * Whether the transport is enabled, and can be loaded by this JVM.
+     */
+    static boolean isAvailable() {
+        return JavaVersion.current().isJava11Compatible() && Boolean.getBoolean(HTTP2_SYSTEM_PROPERTY);
+    }
+
+    /**
+     * Whether the transport can perform the requests for the given settings, the same way the Apache client would.
+     */
+    static boolean supports(HttpSettings settings) {
+        return settings.getAuthenticationSettings().isEmpty()
+            && settings.getProxySettings().getProxy() == null
+            && settings.getSecureProxySettings().getProxy() == null
+            && settings.getHostnameVerifier() instanceof DefaultHostnameVerifier;
+    }
+
+    static HttpRequestTransport create(HttpSettings settings) {
+        try {
+            Class<?> transportClass = Class.forName(TRANSPORT_CLASS_NAME);
+            return (HttpRequestTransport) transportClass.getDeclaredConstructor(HttpSettings.class).newInstance(settings);
+        } catch (InvocationTargetException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+}
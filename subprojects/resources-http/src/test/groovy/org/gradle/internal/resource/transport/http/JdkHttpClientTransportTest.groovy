@@ -0,0 +1,277 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http
+
+import com.sun.net.httpserver.HttpExchange
+import org.apache.http.client.methods.HttpGet
+import org.apache.http.client.methods.HttpHead
+import org.apache.http.ssl.SSLContexts
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory
+import org.eclipse.jetty.server.HttpConfiguration
+import org.eclipse.jetty.server.HttpConnectionFactory
+import org.eclipse.jetty.server.Request
+import org.eclipse.jetty.server.Server
+import org.eclipse.jetty.server.ServerConnector
+import org.eclipse.jetty.server.handler.AbstractHandler
+import org.gradle.authentication.Authentication
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+import org.gradle.test.fixtures.server.http.BlockingHttpServer
+import org.gradle.util.Requires
+import org.gradle.util.SetSystemProperties
+import org.gradle.util.TestPrecondition
+import org.junit.Rule
+
+import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import static org.gradle.internal.resource.transport.http.JavaSystemPropertiesHttpTimeoutSettings.SOCKET_TIMEOUT_SYSTEM_PROPERTY
+
+@Requires(TestPrecondition.JDK11_OR_LATER)
+class JdkHttpClientTransportTest extends ConcurrentSpec {
+    @Rule
+    SetSystemProperties systemProperties = new SetSystemProperties()
+    @Rule
+    BlockingHttpServer server = new BlockingHttpServer()
+    def redirects = []
+    HttpSettings settings = DefaultHttpSettings.builder()
+        .withAuthenticationSettings([])
+        .withSslContextFactory { SSLContexts.createDefault() }
+        .withRedirectVerifier({ redirects.addAll(it) })
+        .build()
+    Server h2cServer
+    ServerConnector h2cConnector
+
+    def cleanup() {
+        h2cServer?.stop()
+    }
+
+    def "downloads a resource"() {
+        server.expect(server.get("a").send("content"))
+        server.start()
+        def transport = new JdkHttpClientTransport(settings)
+
+        when:
+        def response = transport.performHttpRequest(new HttpGet(server.uri("a")))
+
+        then:
+        response.wasSuccessful()
+        response.getHeader("Content-Length") == "7"
+        response.content.text == "content"
+        response.effectiveUri == server.uri("a")
+
+        cleanup:
+        response?.close()
+    }
+
+    def "performs HEAD requests"() {
+        server.expect(server.head("a"))
+        server.start()
+        def transport = new JdkHttpClientTransport(settings)
+
+        when:
+        def response = transport.performHttpRequest(new HttpHead(server.uri("a")))
+
+        then:
+        response.wasSuccessful()
+
+        cleanup:
+        response?.close()
+    }
+
+    def "reports missing resources"() {
+        server.expect(server.get("a").missing())
+        server.start()
+        def transport = new JdkHttpClientTransport(settings)
+
+        when:
+        def response = transport.performHttpRequest(new HttpGet(server.uri("a")))
+
+        then:
+        response.wasMissing()
+        response.statusLine.statusCode == 404
+        response.statusLine.reasonPhrase == "Not Found"
+
+        cleanup:
+        response?.close()
+    }
+
+    def "follows and verifies redirects"() {
+        server.expect(server.get("a", { HttpExchange exchange ->
+            exchange.responseHeaders.add("Location", "/b")
+            exchange.sendResponseHeaders(302, -1)
+        }))
+        server.expect(server.get("b").send("redirected"))
+        server.start()
+        def transport = new JdkHttpClientTransport(settings)
+
+        when:
+        def response = transport.performHttpRequest(new HttpGet(server.uri("a")))
+
+        then:
+        response.content.text == "redirected"
+        response.effectiveUri == server.uri("b")
+        redirects == [server.uri("b")]
+
+        cleanup:
+        response?.close()
+    }
+
+    def "limits the number of concurrent requests to a host"() {
+        System.setProperty(JdkHttpClientTransport.MAX_CONCURRENT_REQUESTS_PER_HOST_SYSTEM_PROPERTY, "2")
+        server.expectConcurrent(2, "a", "b", "c", "d")
+        server.start()
+        def transport = new JdkHttpClientTransport(settings)
+
+        when:
+        async {
+            ["a", "b", "c", "d"].each { resource ->
+                start {
+                    def response = transport.performHttpRequest(new HttpGet(server.uri(resource)))
+                    try {
+                        response.content.text
+                    } finally {
+                        response.close()
+                    }
+                }
+            }
+        }
+
+        then:
+        noExceptionThrown()
+    }
+
+    def "fails when no data of the body is received within the socket timeout"() {
+        System.setProperty(SOCKET_TIMEOUT_SYSTEM_PROPERTY, "500")
+        def stalled = new CountDownLatch(1)
+        server.expect(server.get("a", { HttpExchange exchange ->
+            exchange.sendResponseHeaders(200, 10)
+            exchange.responseBody.write("12".bytes)
+            exchange.responseBody.flush()
+            stalled.await(20, TimeUnit.SECONDS)
+        }))
+        server.start()
+        def transport = new JdkHttpClientTransport(settings)
+
+        when:
+        def response = transport.performHttpRequest(new HttpGet(server.uri("a")))
+        response.content.text
+
+        then:
+        def e = thrown(SocketTimeoutException)
+        e.message == "Read timed out"
+
+        cleanup:
+        stalled.countDown()
+        response?.close()
+    }
+
+    def "multiplexes concurrent requests to a host over a single HTTP/2 connection"() {
+        def inFlight = new CountDownLatch(4)
+        def allInFlight = new ConcurrentLinkedQueue<Boolean>()
+        startH2cServer { HttpServletRequest request, HttpServletResponse response ->
+            if (request.requestURI != "/first") {
+                inFlight.countDown()
+                allInFlight.add(inFlight.await(20, TimeUnit.SECONDS))
+            }
+            response.writer.print(request.requestURI)
+        }
+        def transport = new JdkHttpClientTransport(settings)
+
+        when:
+        // The first request upgrades the connection to HTTP/2
+        def first = transport.performHttpRequest(new HttpGet(h2cUri("first")))
+
+        then:
+        first.statusLine.protocolVersion.major == 2
+        first.content.text == "/first"
+
+        when:
+        first.close()
+        async {
+            ["a", "b", "c", "d"].each { resource ->
+                start {
+                    def response = transport.performHttpRequest(new HttpGet(h2cUri(resource)))
+                    try {
+                        assert response.statusLine.protocolVersion.major == 2
+                        assert response.content.text == "/${resource}"
+                    } finally {
+                        response.close()
+                    }
+                }
+            }
+        }
+
+        then:
+        allInFlight as List == [true] * 4
+        h2cConnector.connectedEndPoints.size() == 1
+    }
+
+    def "uses the default limit of concurrent requests when the configured one is invalid"() {
+        System.setProperty(JdkHttpClientTransport.MAX_CONCURRENT_REQUESTS_PER_HOST_SYSTEM_PROPERTY, value)
+
+        expect:
+        new JdkHttpClientTransport(settings).maxConcurrentRequestsPerHost == JdkHttpClientTransport.DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST
+
+        where:
+        value << ["0", "-1", "many"]
+    }
+
+    def "only supports repositories without authentication and with host name verification"() {
+        expect:
+        JdkHttpClientTransportLoader.supports(settings)
+        !JdkHttpClientTransportLoader.supports(DefaultHttpSettings.builder()
+            .withAuthenticationSettings([Mock(Authentication)])
+            .withSslContextFactory { SSLContexts.createDefault() }
+            .withRedirectVerifier({})
+            .build())
+        !JdkHttpClientTransportLoader.supports(DefaultHttpSettings.builder()
+            .withAuthenticationSettings([])
+            .allowUntrustedConnections()
+            .withRedirectVerifier({})
+            .build())
+    }
+
+    def "loads the transport"() {
+        expect:
+        JdkHttpClientTransportLoader.create(settings) instanceof JdkHttpClientTransport
+    }
+
+    /**
+     * Starts a Jetty server which accepts HTTP/1.1 connections, and their upgrade to HTTP/2 without TLS.
+     */
+    private void startH2cServer(Closure handler) {
+        def config = new HttpConfiguration()
+        h2cServer = new Server()
+        h2cConnector = new ServerConnector(h2cServer, new HttpConnectionFactory(config), new HTTP2CServerConnectionFactory(config))
+        h2cServer.addConnector(h2cConnector)
+        h2cServer.handler = new AbstractHandler() {
+            @Override
+            void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) {
+                baseRequest.handled = true
+                handler.call(request, response)
+            }
+        }
+        h2cServer.start()
+    }
+
+    private URI h2cUri(String path) {
+        return new URI("http://localhost:${h2cConnector.localPort}/${path}")
+    }
+}
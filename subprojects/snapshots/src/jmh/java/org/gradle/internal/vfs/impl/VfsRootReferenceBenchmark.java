@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs.impl;
+
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.snapshot.CaseSensitivity;
+import org.gradle.internal.snapshot.MissingFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Stores snapshots in and invalidates locations of the virtual file system from many threads at once,
+ * like parallel tasks recording the snapshots of their outputs.
+ *
+ * Compares applying each update while holding the lock with queueing the updates and applying them in batches.
+ */
+@Fork(1)
+@Threads(32)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class VfsRootReferenceBenchmark {
+    private static final int PROJECTS = 64;
+    private static final int FILES_PER_PROJECT = 256;
+
+    @Param({"locking", "batched"})
+    String updateStrategy;
+
+    RootUpdater updater;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        SnapshotHierarchy root = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE);
+        updater = "locking".equals(updateStrategy)
+            ? new LockingRootUpdater(root)
+            : new BatchingRootUpdater(root);
+    }
+
+    @Benchmark
+    public void store() {
+        String location = randomLocation();
+        updater.update(root -> root.store(location, new MissingFileSnapshot(location, AccessType.DIRECT), SnapshotHierarchy.NodeDiffListener.NOOP));
+    }
+
+    @Benchmark
+    public void storeAndInvalidate() {
+        String location = randomLocation();
+        if (ThreadLocalRandom.current().nextInt(4) == 0) {
+            updater.update(root -> root.invalidate(location, SnapshotHierarchy.NodeDiffListener.NOOP));
+        } else {
+            updater.update(root -> root.store(location, new MissingFileSnapshot(location, AccessType.DIRECT), SnapshotHierarchy.NodeDiffListener.NOOP));
+        }
+    }
+
+    private static String randomLocation() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return "/workspace/project" + random.nextInt(PROJECTS) + "/build/classes/file" + random.nextInt(FILES_PER_PROJECT) + ".class";
+    }
+
+    private interface RootUpdater {
+        void update(UnaryOperator<SnapshotHierarchy> updateFunction);
+    }
+
+    /**
+     * Applies every update while holding the lock, like {@link VfsRootReference} did before batching updates.
+     */
+    private static class LockingRootUpdater implements RootUpdater {
+        private final ReentrantLock updateLock = new ReentrantLock();
+        private volatile SnapshotHierarchy root;
+
+        public LockingRootUpdater(SnapshotHierarchy root) {
+            this.root = root;
+        }
+
+        @Override
+        public void update(UnaryOperator<SnapshotHierarchy> updateFunction) {
+            updateLock.lock();
+            try {
+                root = updateFunction.apply(root);
+            } finally {
+                updateLock.unlock();
+            }
+        }
+    }
+
+    private static class BatchingRootUpdater implements RootUpdater {
+        private final VfsRootReference rootReference;
+
+        public BatchingRootUpdater(SnapshotHierarchy root) {
+            this.rootReference = new VfsRootReference(root);
+        }
+
+        @Override
+        public void update(UnaryOperator<SnapshotHierarchy> updateFunction) {
+            rootReference.updateInBatch(updateFunction);
+        }
+    }
+}
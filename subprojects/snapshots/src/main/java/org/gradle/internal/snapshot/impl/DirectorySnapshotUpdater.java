@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl;
+
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.DirectorySnapshotBuilder;
+import org.gradle.internal.snapshot.FileSystemLeafSnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder;
+import org.gradle.internal.snapshot.PathUtil;
+import org.gradle.internal.snapshot.SnapshotVisitResult;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static org.gradle.internal.snapshot.DirectorySnapshotBuilder.EmptyDirectoryHandlingStrategy.INCLUDE_EMPTY_DIRS;
+
+/**
+ * Applies the changes to some locations inside a directory hierarchy to a snapshot of the hierarchy taken earlier.
+ *
+ * Only the changed locations are snapshotted again. The snapshots of the unchanged locations are re-used,
+ * and the hashes of the directories containing changes are combined again from the hashes of their children.
+ */
+public class DirectorySnapshotUpdater {
+
+    private DirectorySnapshotUpdater() {
+    }
+
+    /**
+     * Updates the snapshot with the given changes.
+     *
+     * @param replacedLocations the locations which have been created, removed or replaced, including all their descendants.
+     * @param modifiedLocations the locations which have been modified in place. For directories, only their children have changed, which are part of the other changes.
+     * @param snapshotter snapshots a changed location. Returns a {@link org.gradle.internal.snapshot.MissingFileSnapshot} for locations which are missing or not part of the snapshots of their parent directory.
+     * @return the updated snapshot, or {@link Optional#empty()} when the changes can't be applied to the snapshot, and the whole hierarchy needs to be snapshotted again.
+     */
+    public static Optional<FileSystemLocationSnapshot> updateSnapshot(
+        DirectorySnapshot snapshot,
+        Collection<String> replacedLocations,
+        Collection<String> modifiedLocations,
+        Function<String, FileSystemLocationSnapshot> snapshotter
+    ) {
+        if (snapshot.getAccessType() != AccessType.DIRECT || hasEntriesAccessedViaSymlinks(snapshot)) {
+            // The changes to the targets of symlinks are not reported as changes inside the hierarchy
+            return Optional.empty();
+        }
+        String rootPath = snapshot.getAbsolutePath();
+        Change rootChange = new Change();
+        for (String replacedLocation : replacedLocations) {
+            if (replacedLocation.equals(rootPath)) {
+                return Optional.empty();
+            }
+            Change change = changeFor(rootChange, rootPath, replacedLocation);
+            if (change != null) {
+                change.replaced = true;
+            }
+        }
+        for (String modifiedLocation : modifiedLocations) {
+            changeFor(rootChange, rootPath, modifiedLocation);
+        }
+        return Optional.of(updateDirectory(snapshot, rootChange, snapshotter));
+    }
+
+    private static boolean hasEntriesAccessedViaSymlinks(DirectorySnapshot snapshot) {
+        return snapshot.accept(entry -> entry.getAccessType() == AccessType.DIRECT
+            ? SnapshotVisitResult.CONTINUE
+            : SnapshotVisitResult.TERMINATE
+        ) == SnapshotVisitResult.TERMINATE;
+    }
+
+    /**
+     * Returns the change for a location inside the root, creating the changes for the locations between the root and the location.
+     * Returns {@code null} for locations outside the root.
+     */
+    @Nullable
+    private static Change changeFor(Change rootChange, String rootPath, String location) {
+        if (location.length() <= rootPath.length() + 1
+            || !location.startsWith(rootPath)
+            || !PathUtil.isFileSeparator(location.charAt(rootPath.length()))) {
+            return null;
+        }
+        Change change = rootChange;
+        int start = rootPath.length() + 1;
+        for (int index = start; index <= location.length(); index++) {
+            if (index == location.length() || PathUtil.isFileSeparator(location.charAt(index))) {
+                if (index > start) {
+                    change = change.childChange(location.substring(start, index));
+                }
+                start = index + 1;
+            }
+        }
+        return change;
+    }
+
+    private static DirectorySnapshot updateDirectory(DirectorySnapshot directory, Change change, Function<String, FileSystemLocationSnapshot> snapshotter) {
+        Map<String, FileSystemLocationSnapshot> children = new LinkedHashMap<>();
+        for (FileSystemLocationSnapshot child : directory.getChildren()) {
+            children.put(child.getName(), child);
+        }
+        boolean updated = false;
+        for (Map.Entry<String, Change> entry : change.children.entrySet()) {
+            String name = entry.getKey();
+            Change childChange = entry.getValue();
+            FileSystemLocationSnapshot previousChild = children.get(name);
+            FileSystemLocationSnapshot updatedChild;
+            if (!childChange.replaced && previousChild instanceof DirectorySnapshot) {
+                // A directory modified in place keeps its children, so only the changes to its descendants need to be applied
+                updatedChild = childChange.children.isEmpty()
+                    ? previousChild
+                    : updateDirectory((DirectorySnapshot) previousChild, childChange, snapshotter);
+            } else {
+                updatedChild = snapshotter.apply(previousChild == null
+                    ? directory.getAbsolutePath() + File.separatorChar + name
+                    : previousChild.getAbsolutePath());
+            }
+            if (updatedChild == previousChild) {
+                continue;
+            }
+            updated = true;
+            if (updatedChild.getType() == FileType.Missing && updatedChild.getAccessType() == AccessType.DIRECT) {
+                children.remove(name);
+            } else {
+                children.put(name, updatedChild);
+            }
+        }
+        if (!updated) {
+            return directory;
+        }
+        DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+        builder.enterDirectory(directory, INCLUDE_EMPTY_DIRS);
+        for (FileSystemLocationSnapshot child : children.values()) {
+            if (child instanceof DirectorySnapshot) {
+                builder.visitDirectory((DirectorySnapshot) child);
+            } else {
+                builder.visitLeafElement((FileSystemLeafSnapshot) child);
+            }
+        }
+        return (DirectorySnapshot) builder.leaveDirectory();
+    }
+
+    private static class Change {
+        private final Map<String, Change> children = new HashMap<>();
+        private boolean replaced;
+
+        public Change childChange(String name) {
+            return children.computeIfAbsent(name, key -> new Change());
+        }
+    }
+}
@@ -48,12 +48,17 @@
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -62,6 +67,9 @@
 
 /**
  * For creating {@link DirectorySnapshot}s of directories.
+ *
+ * <p>Unless a filter is applied, sibling subdirectories are snapshotted in parallel on a fork/join pool.
+ * The builder of each directory sorts its children, so the result does not depend on the order in which subtrees complete.</p>
  */
 public class DirectorySnapshotter {
     private static final EnumSet<FileVisitOption> DONT_FOLLOW_SYMLINKS = EnumSet.noneOf(FileVisitOption.class);
@@ -87,12 +95,21 @@ public Iterable<String> getRemappedSegments(Iterable<String> segments) {
     private final Interner<String> stringInterner;
     private final DefaultExcludes defaultExcludes;
     private final DirectorySnapshotterStatistics.Collector collector;
+    private final ForkJoinPool walkerPool;
 
     public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector) {
+        this(hasher, stringInterner, defaultExcludes, collector, WalkerPool.INSTANCE);
+    }
+
+    /**
+     * Creates a snapshotter that walks subtrees on the given pool, or on the calling thread only when the pool is {@code null}.
+     */
+    public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector, @Nullable ForkJoinPool walkerPool) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
         this.collector = collector;
+        this.walkerPool = walkerPool;
     }
 
     /**
@@ -115,7 +132,9 @@ public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner,
     public FileSystemLocationSnapshot snapshot(String absolutePath, @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate, final AtomicBoolean hasBeenFiltered, Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer) {
         try {
             Path rootPath = Paths.get(absolutePath);
-            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, unfilteredSnapshotConsumer);
+            // Filtering tracks state across the whole walk, so filtered walks are not split up
+            ForkJoinPool pool = predicate == null ? walkerPool : null;
+            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, unfilteredSnapshotConsumer, pool, null);
             Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
             return visitor.getResult();
         } catch (IOException e) {
@@ -123,6 +142,28 @@ public FileSystemLocationSnapshot snapshot(String absolutePath, @Nullable Snapsh
         }
     }
 
+    /**
+     * Whether an entry with the given name and type is left out of the snapshots of the directory containing it.
+     */
+    public boolean isExcluded(String name, FileType type) {
+        return type == FileType.Directory
+            ? defaultExcludes.excludeDir(name)
+            : defaultExcludes.excludeFile(name);
+    }
+
+    private static class WalkerPool {
+        private static final ForkJoinPool INSTANCE = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors(),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("Directory snapshotter " + thread.getPoolIndex());
+                return thread;
+            },
+            null,
+            false
+        );
+    }
+
     private interface SymbolicLinkMapping {
         String remapAbsolutePath(Path path);
         @CheckReturnValue
@@ -252,6 +293,8 @@ private static class PathVisitor extends DirectorySnapshotterStatistics.Collecti
         private final Deque<String> parentDirectories = new ArrayDeque<>();
         private final Set<FileSystemLocationSnapshot> filteredDirectorySnapshots = new HashSet<>();
         private final Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer;
+        private final ForkJoinPool walkerPool;
+        private final Deque<List<SubtreeSnapshotTask>> pendingSubtrees = new ArrayDeque<>();
 
         public PathVisitor(
             @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
@@ -261,9 +304,15 @@ public PathVisitor(
             DefaultExcludes defaultExcludes,
             DirectorySnapshotterStatistics.Collector statisticsCollector,
             SymbolicLinkMapping symbolicLinkMapping,
-            Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer
+            Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer,
+            @Nullable ForkJoinPool walkerPool,
+            @Nullable Collection<String> ancestorDirectories
         ) {
-            super(statisticsCollector);
+            super(statisticsCollector, ancestorDirectories != null);
+            if (ancestorDirectories != null) {
+                this.parentDirectories.addAll(ancestorDirectories);
+            }
+            this.walkerPool = walkerPool;
             this.builder = FilteredTrackingMerkleDirectorySnapshotBuilder.sortingRequired(this::consumeUnfilteredSnapshot);
             this.predicate = predicate;
             this.hasBeenFiltered = hasBeenFiltered;
@@ -289,8 +338,16 @@ protected FileVisitResult doPreVisitDirectory(Path dir, BasicFileAttributes attr
             String fileName = getInternedFileName(dir);
             pathTracker.enter(fileName);
             if (shouldVisitDirectory(dir, fileName)) {
+                if (walkerPool != null && !pendingSubtrees.isEmpty()) {
+                    pathTracker.leave();
+                    forkSubtree(dir);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
                 builder.enterDirectory(AccessType.DIRECT, intern(symbolicLinkMapping.remapAbsolutePath(dir)), fileName, INCLUDE_EMPTY_DIRS);
                 parentDirectories.addFirst(dir.toString());
+                if (walkerPool != null) {
+                    pendingSubtrees.addFirst(new ArrayList<>());
+                }
                 return FileVisitResult.CONTINUE;
             } else {
                 pathTracker.leave();
@@ -307,6 +364,15 @@ protected FileVisitResult doPostVisitDirectory(Path dir, IOException exc) {
             if (isNotFileSystemLoopException(exc)) {
                 throw new UncheckedIOException(String.format("Could not read directory path '%s'.", dir), exc);
             }
+            if (walkerPool != null) {
+                for (SubtreeSnapshotTask subtree : pendingSubtrees.removeFirst()) {
+                    FileSystemLocationSnapshot subtreeSnapshot = subtree.join();
+                    // The subtree may have disappeared since it was found
+                    if (subtreeSnapshot instanceof DirectorySnapshot) {
+                        builder.visitDirectory((DirectorySnapshot) subtreeSnapshot);
+                    }
+                }
+            }
             boolean currentLevelComplete = builder.isCurrentLevelUnfiltered();
             FileSystemLocationSnapshot currentLevel = builder.leaveDirectory();
             if (!currentLevelComplete) {
@@ -316,6 +382,26 @@ protected FileVisitResult doPostVisitDirectory(Path dir, IOException exc) {
             return FileVisitResult.CONTINUE;
         }
 
+        private void forkSubtree(Path dir) {
+            SubtreeSnapshotTask subtree = new SubtreeSnapshotTask(dir, new PathVisitor(
+                predicate,
+                hasBeenFiltered,
+                hasher,
+                stringInterner,
+                defaultExcludes,
+                collector,
+                symbolicLinkMapping,
+                unfilteredSnapshotConsumer,
+                walkerPool,
+                parentDirectories));
+            if (ForkJoinTask.getPool() == walkerPool) {
+                subtree.fork();
+            } else {
+                walkerPool.execute(subtree);
+            }
+            pendingSubtrees.getFirst().add(subtree);
+        }
+
         @Override
         protected FileVisitResult doVisitFile(Path file, BasicFileAttributes attrs) {
             String internedFileName = getInternedFileName(file);
@@ -368,7 +454,9 @@ private DirectorySnapshot followSymlink(Path file, String internedFileName, Atom
                         defaultExcludes,
                         collector,
                         symbolicLinkMapping.withNewMapping(file.toString(), targetDirString, pathTracker),
-                        unfilteredSnapshotConsumer);
+                        unfilteredSnapshotConsumer,
+                        walkerPool,
+                        null);
                     Files.walkFileTree(targetDir, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, subtreeVisitor);
                     return (DirectorySnapshot) subtreeVisitor.getResult();
                 } else {
@@ -485,4 +573,27 @@ public FileSystemLocationSnapshot getResult() {
             return builder.getResult();
         }
     }
+
+    /**
+     * Snapshots a subdirectory found by another walk, continuing that walk's statistics and cycle detection.
+     */
+    private static class SubtreeSnapshotTask extends RecursiveTask<FileSystemLocationSnapshot> {
+        private final Path dir;
+        private final PathVisitor visitor;
+
+        public SubtreeSnapshotTask(Path dir, PathVisitor visitor) {
+            this.dir = dir;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected FileSystemLocationSnapshot compute() {
+            try {
+                Files.walkFileTree(dir, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
+                return visitor.getResult();
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", dir), e);
+            }
+        }
+    }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl;
+
+import org.gradle.internal.file.FileException;
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.file.Stat;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the locations in a snapshot which have changed since the snapshot has been taken, without hashing any file contents.
+ *
+ * The snapshots are validated by file metadata only: regular files need to have the same modification time and length,
+ * and directories need to contain the same children, ignoring the ones excluded by default.
+ */
+public class RestoredSnapshotValidator {
+    private final Stat stat;
+    private final DirectorySnapshotter.DefaultExcludes defaultExcludes;
+
+    public RestoredSnapshotValidator(Stat stat, Collection<String> defaultExcludes) {
+        this.stat = stat;
+        this.defaultExcludes = new DirectorySnapshotter.DefaultExcludes(defaultExcludes);
+    }
+
+    /**
+     * Returns the locations in the snapshot which may have changed.
+     *
+     * @param modifiedAfterMillis regular files modified at or after this time may have changed again within the resolution of the file system timestamps, and are reported as changed.
+     */
+    public List<String> findChangedLocations(FileSystemLocationSnapshot snapshot, long modifiedAfterMillis) {
+        List<String> changedLocations = new ArrayList<>();
+        validate(snapshot, modifiedAfterMillis, changedLocations);
+        return changedLocations;
+    }
+
+    private void validate(FileSystemLocationSnapshot snapshot, long modifiedAfterMillis, List<String> changedLocations) {
+        if (snapshot.getAccessType() != AccessType.DIRECT) {
+            // Changes to the targets of symlinks are not reported by file system watching
+            changedLocations.add(snapshot.getAbsolutePath());
+            return;
+        }
+        FileMetadata metadata = stat(snapshot.getAbsolutePath());
+        if (metadata == null || metadata.getAccessType() != AccessType.DIRECT || metadata.getType() != snapshot.getType()) {
+            changedLocations.add(snapshot.getAbsolutePath());
+            return;
+        }
+        snapshot.accept(new FileSystemLocationSnapshot.FileSystemLocationSnapshotVisitor() {
+            @Override
+            public void visitDirectory(DirectorySnapshot directorySnapshot) {
+                if (hasDifferentChildren(directorySnapshot)) {
+                    changedLocations.add(directorySnapshot.getAbsolutePath());
+                    return;
+                }
+                for (FileSystemLocationSnapshot child : directorySnapshot.getChildren()) {
+                    validate(child, modifiedAfterMillis, changedLocations);
+                }
+            }
+
+            @Override
+            public void visitRegularFile(RegularFileSnapshot fileSnapshot) {
+                FileMetadata snapshotMetadata = fileSnapshot.getMetadata();
+                if (snapshotMetadata.getLastModified() != metadata.getLastModified()
+                    || snapshotMetadata.getLength() != metadata.getLength()
+                    || snapshotMetadata.getLastModified() >= modifiedAfterMillis) {
+                    changedLocations.add(fileSnapshot.getAbsolutePath());
+                }
+            }
+        });
+    }
+
+    private boolean hasDifferentChildren(DirectorySnapshot directorySnapshot) {
+        String[] names = new File(directorySnapshot.getAbsolutePath()).list();
+        if (names == null) {
+            return true;
+        }
+        Set<String> childNames = new HashSet<>();
+        for (FileSystemLocationSnapshot child : directorySnapshot.getChildren()) {
+            childNames.add(child.getName());
+        }
+        for (String name : names) {
+            if (!childNames.contains(name) && !isExcluded(directorySnapshot.getAbsolutePath() + File.separatorChar + name, name)) {
+                return true;
+            }
+        }
+        // Children which have been removed are found when validating the children
+        return false;
+    }
+
+    private boolean isExcluded(String location, String name) {
+        FileMetadata metadata = stat(location);
+        if (metadata == null) {
+            return false;
+        }
+        return metadata.getType() == FileType.Directory
+            ? defaultExcludes.excludeDir(name)
+            : defaultExcludes.excludeFile(name);
+    }
+
+    @Nullable
+    private FileMetadata stat(String location) {
+        try {
+            return stat.stat(new File(location));
+        } catch (FileException e) {
+            return null;
+        }
+    }
+}
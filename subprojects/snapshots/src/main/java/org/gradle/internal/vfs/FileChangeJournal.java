@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs;
+
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Records the changes to locations on the file system, as reported by file system watching.
+ *
+ * Unlike the virtual file system, the journal also records the changes to the locations written by the current build.
+ */
+public interface FileChangeJournal {
+
+    /**
+     * Starts recording the changes to the given locations and their descendants.
+     */
+    Recording startRecording(Iterable<String> locations);
+
+    interface Recording {
+        /**
+         * A recording which never knows about all the changes, used when the file system is not watched.
+         */
+        Recording UNKNOWN_CHANGES = Optional::empty;
+
+        /**
+         * Stops recording and returns the changes made since the recording started, once all of them have been received.
+         *
+         * Returns {@link Optional#empty()} when it isn't known whether all the changes have been received,
+         * for example when the locations are not watched together with all their descendants,
+         * or when the watcher dropped some of the changes.
+         */
+        Optional<RecordedChanges> stop();
+    }
+
+    interface RecordedChanges {
+        /**
+         * The locations which have been created, removed or replaced, including all their descendants.
+         */
+        Set<String> getReplacedLocations();
+
+        /**
+         * The locations which have been modified in place.
+         *
+         * A directory modified in place keeps its children, whose changes are recorded separately.
+         */
+        Set<String> getModifiedLocations();
+    }
+}
@@ -17,6 +17,7 @@
 package org.gradle.internal.vfs;
 
 import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.snapshot.DirectorySnapshot;
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.SnapshottingFilter;
 
@@ -52,6 +53,14 @@ public interface FileSystemAccess {
      */
     void read(String location, SnapshottingFilter filter, Consumer<FileSystemLocationSnapshot> visitor);
 
+    /**
+     * Updates a snapshot of a directory hierarchy taken earlier with the changes made since to some of the locations inside the hierarchy,
+     * without visiting the unchanged locations again.
+     *
+     * @return the updated snapshot, or {@link Optional#empty()} when the changes can't be applied, and the hierarchy needs to be read again.
+     */
+    Optional<FileSystemLocationSnapshot> update(DirectorySnapshot snapshot, FileChangeJournal.RecordedChanges changes);
+
     /**
      * Runs an action which potentially writes to the given locations.
      */
@@ -46,13 +46,13 @@ public Optional<MetadataSnapshot> findMetadata(String absolutePath) {
 
     @Override
     public void store(String absolutePath, FileSystemLocationSnapshot snapshot) {
-        rootReference.update(root -> updateNotifyingListeners(diffListener -> root.store(absolutePath, snapshot, diffListener)));
+        rootReference.updateInBatch(root -> updateNotifyingListeners(diffListener -> root.store(absolutePath, snapshot, diffListener)));
     }
 
     @Override
     public void invalidate(Iterable<String> locations) {
         LOGGER.debug("Invalidating VFS paths: {}", locations);
-        rootReference.update(root -> {
+        rootReference.updateInBatch(root -> {
             SnapshotHierarchy result = root;
             for (String location : locations) {
                 SnapshotHierarchy currentRoot = result;
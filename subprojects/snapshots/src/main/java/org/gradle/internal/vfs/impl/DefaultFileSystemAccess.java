@@ -25,14 +25,17 @@
 import org.gradle.internal.file.Stat;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.snapshot.DirectorySnapshot;
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.gradle.internal.snapshot.MissingFileSnapshot;
 import org.gradle.internal.snapshot.RegularFileSnapshot;
 import org.gradle.internal.snapshot.SnapshottingFilter;
+import org.gradle.internal.snapshot.impl.DirectorySnapshotUpdater;
 import org.gradle.internal.snapshot.impl.DirectorySnapshotter;
 import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics;
 import org.gradle.internal.snapshot.impl.FileSystemSnapshotFilter;
+import org.gradle.internal.vfs.FileChangeJournal;
 import org.gradle.internal.vfs.FileSystemAccess;
 import org.gradle.internal.vfs.VirtualFileSystem;
 import org.slf4j.Logger;
@@ -201,6 +204,25 @@ private <T> T readSnapshotFromLocation(
             ));
     }
 
+    @Override
+    public Optional<FileSystemLocationSnapshot> update(DirectorySnapshot snapshot, FileChangeJournal.RecordedChanges changes) {
+        Optional<FileSystemLocationSnapshot> updatedSnapshot = DirectorySnapshotUpdater.updateSnapshot(
+            snapshot,
+            changes.getReplacedLocations(),
+            changes.getModifiedLocations(),
+            this::readChangedLocation
+        );
+        updatedSnapshot.ifPresent(this::record);
+        return updatedSnapshot;
+    }
+
+    private FileSystemLocationSnapshot readChangedLocation(String location) {
+        FileSystemLocationSnapshot snapshot = readLocation(location);
+        return directorySnapshotter.isExcluded(snapshot.getName(), snapshot.getType())
+            ? new MissingFileSnapshot(location, AccessType.DIRECT)
+            : snapshot;
+    }
+
     @Override
     public void write(Iterable<String> locations, Runnable action) {
         writeListener.locationsWritten(locations);
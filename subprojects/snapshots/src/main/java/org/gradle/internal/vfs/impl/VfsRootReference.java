@@ -16,14 +16,29 @@
 
 package org.gradle.internal.vfs.impl;
 
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 
+import javax.annotation.Nullable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.UnaryOperator;
 
+/**
+ * Holds the current root of the virtual file system.
+ *
+ * Reading the root never blocks. Updates are applied one after the other, since the update functions notify listeners
+ * about the changes they make, so they can't be retried when another update has been applied concurrently.
+ *
+ * To avoid that concurrent updates hand the lock over to each other, updates can be queued via {@link #updateInBatch(UnaryOperator)}.
+ * The thread holding the lock then applies all the queued updates in one go, and the other threads only wait until their own update has been applied.
+ */
 public class VfsRootReference {
     private volatile SnapshotHierarchy root;
     private final ReentrantLock updateLock = new ReentrantLock();
+    private final Queue<PendingUpdate> pendingUpdates = new ConcurrentLinkedQueue<>();
 
     public SnapshotHierarchy getRoot() {
         return root;
@@ -33,13 +48,91 @@ public VfsRootReference(SnapshotHierarchy root) {
         this.root = root;
     }
 
+    /**
+     * Applies the update on the current thread, after the updates queued before.
+     */
     public void update(UnaryOperator<SnapshotHierarchy> updateFunction) {
+        if (updateLock.isHeldByCurrentThread()) {
+            // Nested update from within an update function
+            root = updateFunction.apply(root);
+            return;
+        }
         updateLock.lock();
         try {
-            SnapshotHierarchy currentRoot = root;
-            root = updateFunction.apply(currentRoot);
+            applyPendingUpdates();
+            root = updateFunction.apply(root);
         } finally {
             updateLock.unlock();
         }
+        applyUpdatesQueuedMeanwhile();
+    }
+
+    /**
+     * Queues the update, which may then be applied by another thread updating the root at the same time.
+     *
+     * Returns once the update has been applied. The update function must not depend on the state of the current thread.
+     */
+    public void updateInBatch(UnaryOperator<SnapshotHierarchy> updateFunction) {
+        if (updateLock.isHeldByCurrentThread()) {
+            root = updateFunction.apply(root);
+            return;
+        }
+        PendingUpdate update = new PendingUpdate(updateFunction);
+        pendingUpdates.add(update);
+        applyUpdatesQueuedMeanwhile();
+        update.awaitApplied();
+    }
+
+    /**
+     * Applies the queued updates unless another thread holds the lock.
+     * That thread then applies the updates queued before it releases the lock.
+     */
+    private void applyUpdatesQueuedMeanwhile() {
+        // Re-check after releasing the lock, since updates queued while applying the last batch may not have been seen
+        while (!pendingUpdates.isEmpty() && updateLock.tryLock()) {
+            try {
+                applyPendingUpdates();
+            } finally {
+                updateLock.unlock();
+            }
+        }
+    }
+
+    private void applyPendingUpdates() {
+        PendingUpdate update;
+        while ((update = pendingUpdates.poll()) != null) {
+            update.applyTo(this);
+        }
+    }
+
+    private static class PendingUpdate {
+        private final UnaryOperator<SnapshotHierarchy> updateFunction;
+        private final CountDownLatch applied = new CountDownLatch(1);
+        @Nullable
+        private Throwable failure;
+
+        public PendingUpdate(UnaryOperator<SnapshotHierarchy> updateFunction) {
+            this.updateFunction = updateFunction;
+        }
+
+        public void applyTo(VfsRootReference reference) {
+            try {
+                reference.root = updateFunction.apply(reference.root);
+            } catch (RuntimeException | Error e) {
+                failure = e;
+            } finally {
+                applied.countDown();
+            }
+        }
+
+        public void awaitApplied() {
+            Uninterruptibles.awaitUninterruptibly(applied);
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+        }
     }
 }
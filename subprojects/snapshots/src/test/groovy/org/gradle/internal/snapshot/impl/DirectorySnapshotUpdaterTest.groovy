@@ -0,0 +1,178 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.TestFileHasher
+import org.gradle.internal.snapshot.DirectorySnapshot
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.MissingFileSnapshot
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.internal.snapshot.SnapshotVisitorUtil
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.Requires
+import org.gradle.util.TestPrecondition
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicBoolean
+
+@UsesNativeServices
+@CleanupTestDirectory(fieldName = "tmpDir")
+class DirectorySnapshotUpdaterTest extends Specification {
+    @Rule
+    public final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def fileHasher = new TestFileHasher()
+    def directorySnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], Stub(DirectorySnapshotterStatistics.Collector))
+    def snapshottedLocations = []
+
+    def rootDir = tmpDir.createDir("root")
+
+    def "unchanged snapshot is reused"() {
+        rootDir.file("a/b.txt").text = "b"
+        def snapshot = snapshotRoot()
+
+        when:
+        def updated = update(snapshot, [], [rootDir.file("a").absolutePath])
+
+        then:
+        updated.get().is(snapshot)
+        snapshottedLocations.empty
+    }
+
+    def "applies modified file"() {
+        rootDir.file("a/b.txt").text = "b"
+        rootDir.file("c/d.txt").text = "d"
+        def snapshot = snapshotRoot()
+
+        when:
+        rootDir.file("a/b.txt").text = "changed"
+        def updated = update(snapshot, [], [rootDir.file("a/b.txt").absolutePath])
+
+        then:
+        snapshottedLocations == [rootDir.file("a/b.txt").absolutePath]
+        sameAsFullSnapshot(updated.get())
+        // Unchanged directories are reused
+        childNamed(updated.get(), "c").is(childNamed(snapshot, "c"))
+    }
+
+    def "applies created and removed files and directories"() {
+        rootDir.file("a/b.txt").text = "b"
+        rootDir.file("removed/d.txt").text = "d"
+        rootDir.file("removed.txt").text = "removed"
+        def snapshot = snapshotRoot()
+
+        when:
+        rootDir.file("a/created.txt").text = "created"
+        rootDir.file("created/e/f.txt").text = "f"
+        rootDir.file("removed").deleteDir()
+        rootDir.file("removed.txt").delete()
+        def updated = update(snapshot, [
+            rootDir.file("a/created.txt").absolutePath,
+            rootDir.file("created").absolutePath,
+            rootDir.file("created/e/f.txt").absolutePath,
+            rootDir.file("removed").absolutePath,
+            rootDir.file("removed/d.txt").absolutePath,
+            rootDir.file("removed.txt").absolutePath,
+        ], [rootDir.file("a").absolutePath])
+
+        then:
+        sameAsFullSnapshot(updated.get())
+    }
+
+    def "applies file replaced by directory"() {
+        rootDir.file("a").text = "a"
+        def snapshot = snapshotRoot()
+
+        when:
+        rootDir.file("a").delete()
+        rootDir.file("a/b.txt").text = "b"
+        def updated = update(snapshot, [rootDir.file("a").absolutePath], [])
+
+        then:
+        sameAsFullSnapshot(updated.get())
+    }
+
+    def "ignores changes outside of the snapshot"() {
+        rootDir.file("a.txt").text = "a"
+        def snapshot = snapshotRoot()
+
+        when:
+        def updated = update(snapshot, [tmpDir.file("root2/a.txt").absolutePath, tmpDir.file("root.txt").absolutePath], [tmpDir.testDirectory.absolutePath])
+
+        then:
+        updated.get().is(snapshot)
+        snapshottedLocations.empty
+    }
+
+    def "cannot update snapshot when root is replaced"() {
+        rootDir.file("a.txt").text = "a"
+        def snapshot = snapshotRoot()
+
+        expect:
+        !update(snapshot, [rootDir.absolutePath], []).present
+    }
+
+    @Requires(TestPrecondition.SYMLINKS)
+    def "cannot update snapshot with entries accessed via symlinks"() {
+        def target = tmpDir.createDir("target")
+        target.file("a.txt").text = "a"
+        rootDir.file("link").createLink(target)
+        def snapshot = snapshotRoot()
+
+        expect:
+        !update(snapshot, [], [rootDir.file("link/a.txt").absolutePath]).present
+    }
+
+    private DirectorySnapshot snapshotRoot() {
+        directorySnapshotter.snapshot(rootDir.absolutePath, null, new AtomicBoolean(), {}) as DirectorySnapshot
+    }
+
+    private Optional<FileSystemLocationSnapshot> update(DirectorySnapshot snapshot, Collection<String> replaced, Collection<String> modified) {
+        DirectorySnapshotUpdater.updateSnapshot(snapshot, replaced, modified) { String location ->
+            snapshottedLocations.add(location)
+            snapshotLocation(location)
+        }
+    }
+
+    private FileSystemLocationSnapshot snapshotLocation(String location) {
+        def file = new File(location)
+        if (file.directory) {
+            return directorySnapshotter.snapshot(location, null, new AtomicBoolean(), {})
+        }
+        if (file.file) {
+            return new RegularFileSnapshot(location, file.name, fileHasher.hash(file), DefaultFileMetadata.file(file.lastModified(), file.length(), AccessType.DIRECT))
+        }
+        return new MissingFileSnapshot(location, AccessType.DIRECT)
+    }
+
+    private boolean sameAsFullSnapshot(FileSystemLocationSnapshot updated) {
+        def fullSnapshot = snapshotRoot()
+        assert SnapshotVisitorUtil.getAbsolutePaths(updated, true) == SnapshotVisitorUtil.getAbsolutePaths(fullSnapshot, true)
+        assert updated.hash == fullSnapshot.hash
+        return true
+    }
+
+    private static FileSystemLocationSnapshot childNamed(FileSystemLocationSnapshot directory, String name) {
+        (directory as DirectorySnapshot).children.find { it.name == name }
+    }
+}
@@ -39,6 +39,7 @@ import spock.lang.Issue
 import spock.lang.Specification
 
 import java.nio.file.Paths
+import java.util.concurrent.ForkJoinPool
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.function.Consumer
 
@@ -464,6 +465,36 @@ class DirectorySnapshotterTest extends Specification {
         pipe.delete()
     }
 
+    def "snapshots subtrees in parallel like a sequential walk"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        (1..5).each { first ->
+            (1..5).each { second ->
+                (1..3).each { file ->
+                    rootDir.file("dir${first}/sub${second}/file${file}.txt").text = "${first}-${second}-${file}"
+                }
+            }
+            rootDir.file("dir${first}/empty").createDir()
+        }
+        rootDir.file("file.txt").text = "root"
+        def sequentialStatistics = new DirectorySnapshotterStatistics.Collector()
+        def parallelStatistics = new DirectorySnapshotterStatistics.Collector()
+        def sequentialSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], sequentialStatistics, null)
+        def parallelSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], parallelStatistics, new ForkJoinPool(4))
+
+        when:
+        def sequential = sequentialSnapshotter.snapshot(rootDir.absolutePath, null, actuallyFiltered, unfilteredSubSnapshotsCollector)
+        def parallel = parallelSnapshotter.snapshot(rootDir.absolutePath, null, actuallyFiltered, unfilteredSubSnapshotsCollector)
+
+        then:
+        parallel.hash == sequential.hash
+        SnapshotVisitorUtil.getRelativePaths(parallel, true) == SnapshotVisitorUtil.getRelativePaths(sequential, true)
+        SnapshotVisitorUtil.getAbsolutePaths(parallel, true) == SnapshotVisitorUtil.getAbsolutePaths(sequential, true)
+        parallelStatistics.collect().toString() == sequentialStatistics.collect().toString()
+        !actuallyFiltered.get()
+        unfilteredSubsnapshots.empty
+    }
+
     def "default excludes are correctly parsed"() {
         def defaultExcludes = new DirectorySnapshotter.DefaultExcludes(DirectoryScanner.getDefaultExcludes() as List)
 
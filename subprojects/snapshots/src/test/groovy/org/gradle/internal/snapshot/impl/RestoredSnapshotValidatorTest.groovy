@@ -0,0 +1,142 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.hash.TestFileHasher
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.Requires
+import org.gradle.util.TestPrecondition
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicBoolean
+
+@UsesNativeServices
+@CleanupTestDirectory(fieldName = "tmpDir")
+class RestoredSnapshotValidatorTest extends Specification {
+    @Rule
+    public final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def defaultExcludes = ["**/.git", "**/.git/**"]
+    def directorySnapshotter = new DirectorySnapshotter(new TestFileHasher(), new StringInterner(), defaultExcludes, Stub(DirectorySnapshotterStatistics.Collector))
+    def validator = new RestoredSnapshotValidator(TestFiles.fileSystem(), defaultExcludes)
+
+    def rootDir = tmpDir.createDir("root")
+
+    def "unchanged snapshot is valid"() {
+        rootDir.file("a/b.txt").text = "b"
+        rootDir.file("c.txt").text = "c"
+        def snapshot = snapshotRoot()
+
+        expect:
+        findChangedLocations(snapshot).empty
+    }
+
+    def "reports modified file"() {
+        def modified = rootDir.file("a/b.txt")
+        modified.text = "b"
+        rootDir.file("c.txt").text = "c"
+        def snapshot = snapshotRoot()
+
+        when:
+        modified.text = "changed"
+        modified.lastModified = modified.lastModified() - 10000
+
+        then:
+        findChangedLocations(snapshot) == [modified.absolutePath]
+    }
+
+    def "reports directory with created child"() {
+        rootDir.file("a/b.txt").text = "b"
+        def snapshot = snapshotRoot()
+
+        when:
+        rootDir.file("a/created.txt").text = "created"
+
+        then:
+        findChangedLocations(snapshot) == [rootDir.file("a").absolutePath]
+    }
+
+    def "ignores created children excluded by default"() {
+        rootDir.file("a/b.txt").text = "b"
+        def snapshot = snapshotRoot()
+
+        when:
+        rootDir.file("a/.git/config").text = "excluded"
+
+        then:
+        findChangedLocations(snapshot).empty
+    }
+
+    def "reports removed file and directory"() {
+        rootDir.file("a/b.txt").text = "b"
+        rootDir.file("removed/d.txt").text = "d"
+        def snapshot = snapshotRoot()
+
+        when:
+        rootDir.file("a/b.txt").delete()
+        rootDir.file("removed").deleteDir()
+
+        then:
+        findChangedLocations(snapshot) as Set == [rootDir.file("a/b.txt").absolutePath, rootDir.file("removed").absolutePath] as Set
+    }
+
+    def "reports file replaced by directory"() {
+        rootDir.file("a").text = "a"
+        def snapshot = snapshotRoot()
+
+        when:
+        rootDir.file("a").delete()
+        rootDir.file("a/b.txt").text = "b"
+
+        then:
+        findChangedLocations(snapshot) == [rootDir.file("a").absolutePath]
+    }
+
+    def "reports files modified shortly before the snapshot has been stored"() {
+        def recent = rootDir.file("recent.txt")
+        recent.text = "recent"
+        def snapshot = snapshotRoot()
+
+        expect:
+        validator.findChangedLocations(snapshot, recent.lastModified()) == [recent.absolutePath]
+    }
+
+    @Requires(TestPrecondition.SYMLINKS)
+    def "reports entries accessed via symlinks"() {
+        def target = tmpDir.createDir("target")
+        target.file("a.txt").text = "a"
+        rootDir.file("link").createLink(target)
+        def snapshot = snapshotRoot()
+
+        expect:
+        findChangedLocations(snapshot) == [rootDir.file("link").absolutePath]
+    }
+
+    private FileSystemLocationSnapshot snapshotRoot() {
+        directorySnapshotter.snapshot(rootDir.absolutePath, null, new AtomicBoolean(), {})
+    }
+
+    private List<String> findChangedLocations(FileSystemLocationSnapshot snapshot) {
+        validator.findChangedLocations(snapshot, Long.MAX_VALUE)
+    }
+}
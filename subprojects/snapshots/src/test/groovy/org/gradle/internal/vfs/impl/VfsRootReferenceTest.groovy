@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs.impl
+
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.snapshot.MissingFileSnapshot
+import org.gradle.internal.snapshot.SnapshotHierarchy
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+import static org.gradle.internal.snapshot.CaseSensitivity.CASE_SENSITIVE
+
+class VfsRootReferenceTest extends Specification {
+    def rootReference = new VfsRootReference(DefaultSnapshotHierarchy.empty(CASE_SENSITIVE))
+
+    def "applies all concurrent updates"() {
+        def executorService = Executors.newFixedThreadPool(32)
+
+        when:
+        def futures = (1..1000).collect { num ->
+            executorService.submit {
+                String location = "/root/${num % 10}/${num}"
+                if (num % 2 == 0) {
+                    rootReference.updateInBatch { root -> root.store(location, new MissingFileSnapshot(location, AccessType.DIRECT), SnapshotHierarchy.NodeDiffListener.NOOP) }
+                } else {
+                    rootReference.update { root -> root.store(location, new MissingFileSnapshot(location, AccessType.DIRECT), SnapshotHierarchy.NodeDiffListener.NOOP) }
+                }
+            }
+        }
+        futures*.get(10, TimeUnit.SECONDS)
+
+        then:
+        (1..1000).each { num ->
+            assert rootReference.root.findSnapshot("/root/${num % 10}/${num}").present
+        }
+
+        cleanup:
+        executorService.shutdown()
+    }
+
+    def "failure of batched update is reported to the updating thread"() {
+        def failure = new RuntimeException("broken")
+
+        when:
+        rootReference.updateInBatch { root -> throw failure }
+
+        then:
+        def ex = thrown RuntimeException
+        ex.is(failure)
+
+        when:
+        rootReference.updateInBatch { root -> root.store("/root", new MissingFileSnapshot("/root", AccessType.DIRECT), SnapshotHierarchy.NodeDiffListener.NOOP) }
+
+        then:
+        rootReference.root.findSnapshot("/root").present
+    }
+
+    def "nested updates are applied directly"() {
+        when:
+        rootReference.update { root ->
+            rootReference.updateInBatch { nestedRoot -> nestedRoot.store("/nested", new MissingFileSnapshot("/nested", AccessType.DIRECT), SnapshotHierarchy.NodeDiffListener.NOOP) }
+            rootReference.root.store("/outer", new MissingFileSnapshot("/outer", AccessType.DIRECT), SnapshotHierarchy.NodeDiffListener.NOOP)
+        }
+
+        then:
+        rootReference.root.findSnapshot("/nested").present
+        rootReference.root.findSnapshot("/outer").present
+    }
+}